@@ -0,0 +1,188 @@
+package net.bplaced.clayn.c4j.bench;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+/**
+ * Small helpers shared by the benchmark drivers in this package. The drivers
+ * are plain {@code main} methods without any dependencies, so they can be
+ * compiled together with the sources and started directly:
+ * <pre>
+ * javac -d out $(find src bench -name '*.java')
+ * java -cp out net.bplaced.clayn.c4j.bench.EnvironmentMapBench
+ * </pre> Every measurement is repeated and the best round is reported, so
+ * the numbers are comparable between runs on the same machine but not between
+ * machines.
+ *
+ * @author Clayn
+ * @since 0.1
+ * @version 0.1
+ */
+public final class Bench
+{
+
+    //<editor-fold desc="Attribute">
+    private static volatile long sink;
+
+    //</editor-fold>
+    //<editor-fold desc="Konstruktoren">
+    private Bench()
+    {
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Public">
+    /**
+     * An operation that is measured by the helpers of {@link Bench}.
+     *
+     * @since 0.1
+     */
+    public interface Task
+    {
+
+        /**
+         * Runs the measured operation the given number of times.
+         *
+         * @param count how often the operation is run
+         * @return any value computed from the results, so the JIT can´t
+         * remove the operation
+         * @throws Exception if the operation fails
+         * @since 0.1
+         */
+        long run(int count) throws Exception;
+    }
+
+    /**
+     * Runs the task {@code rounds} times with {@code count} operations each
+     * and returns the time of the fastest round per operation.
+     *
+     * @param task the measured task
+     * @param count the operations per round
+     * @param rounds the number of rounds, the first ones also warm up
+     * @return the best time per operation in nanoseconds
+     * @throws Exception if the task fails
+     * @since 0.1
+     */
+    public static double nanosPerOp(Task task, int count, int rounds) throws
+            Exception
+    {
+        long best = Long.MAX_VALUE;
+        for (int r = 0; r < rounds; r++)
+        {
+            long start = System.nanoTime();
+            sink += task.run(count);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best / (double) count;
+    }
+
+    /**
+     * Runs the task in batches for {@code rounds} rounds of
+     * {@code roundMillis} each and returns the operations per second of the
+     * fastest round.
+     *
+     * @param task the measured task
+     * @param batch the operations per call of the task
+     * @param rounds the number of rounds, the first ones also warm up
+     * @param roundMillis the length of one round
+     * @return the best operations per second
+     * @throws Exception if the task fails
+     * @since 0.1
+     */
+    public static double perSecond(Task task, int batch, int rounds,
+            long roundMillis) throws Exception
+    {
+        double best = 0;
+        long length = roundMillis * 1000000L;
+        for (int r = 0; r < rounds; r++)
+        {
+            long ops = 0;
+            long start = System.nanoTime();
+            long elapsed;
+            do
+            {
+                sink += task.run(batch);
+                ops += batch;
+                elapsed = System.nanoTime() - start;
+            }
+            while (elapsed < length);
+            best = Math.max(best, ops / (elapsed / 1e9));
+        }
+        return best;
+    }
+
+    /**
+     * Returns the used heap after a few full garbage collections.
+     *
+     * @return the used heap in bytes
+     * @since 0.1
+     */
+    public static long usedHeap()
+    {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++)
+        {
+            System.gc();
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    /**
+     * Returns the time all garbage collectors spent so far.
+     *
+     * @return the collection time in milliseconds
+     * @since 0.1
+     */
+    public static long gcMillis()
+    {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.
+                getGarbageCollectorMXBeans())
+        {
+            total += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+
+    /**
+     * Keeps the given value alive, so the JIT can´t remove the code that
+     * computed it.
+     *
+     * @param value any value
+     * @since 0.1
+     */
+    public static void consume(Object value)
+    {
+        sink += System.identityHashCode(value);
+    }
+
+    /**
+     * Prints a formatted line with a fixed locale, so the numbers look the
+     * same on every machine.
+     *
+     * @param format the format of the line
+     * @param args the arguments for the format
+     * @since 0.1
+     */
+    public static void print(String format, Object... args)
+    {
+        System.out.println(String.format(Locale.ROOT, format, args));
+    }
+
+    /**
+     * Returns the argument at the given index as int or the default value if
+     * there is no such argument.
+     *
+     * @param args the arguments of the driver
+     * @param index the index of the argument
+     * @param def the default value
+     * @return the value of the argument
+     * @since 0.1
+     */
+    public static int intArg(String[] args, int index, int def)
+    {
+        return args.length > index ? Integer.parseInt(args[index]) : def;
+    }
+    //</editor-fold>
+}
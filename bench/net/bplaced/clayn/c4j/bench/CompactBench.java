@@ -0,0 +1,93 @@
+package net.bplaced.clayn.c4j.bench;
+
+import java.util.Map;
+import java.util.Properties;
+import net.bplaced.clayn.c4j.util.CompactMap;
+
+/**
+ * Measures the retained heap per entry of the {@link CompactMap} used by
+ * {@link net.bplaced.clayn.c4j.Configuration#compact(boolean)} and compares
+ * it with {@link Properties}, the store of a plain loaded configuration.
+ * Every key and value is a new String, like the ones created by
+ * {@link Properties#load(java.io.InputStream)}, and the values repeat a few
+ * distinct Strings.
+ * <pre>
+ * java -cp out net.bplaced.clayn.c4j.bench.CompactBench [keys]
+ * </pre> The default is 200,000 keys.
+ *
+ * @author Clayn
+ * @since 0.1
+ * @version 0.1
+ */
+public final class CompactBench
+{
+
+    //<editor-fold desc="Attribute">
+    private static final String[] VALUES =
+    {
+        "true", "false", "0", "1", "db1.example.org", "db2.example.org", "8080"
+    };
+
+    //</editor-fold>
+    //<editor-fold desc="Konstruktoren">
+    private CompactBench()
+    {
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Private">
+    private static String key(int index)
+    {
+        return new String("app.module" + (index % 500) + ".setting" + index);
+    }
+
+    private static String value(int index)
+    {
+        return new String(VALUES[index % VALUES.length]);
+    }
+
+    private static Object fill(String name, int size)
+    {
+        if (name.equals("Properties"))
+        {
+            Properties props = new Properties();
+            for (int i = 0; i < size; i++)
+            {
+                props.setProperty(key(i), value(i));
+            }
+            return props;
+        }
+        Map<String, String> map = new CompactMap(name.endsWith("packed"));
+        for (int i = 0; i < size; i++)
+        {
+            map.put(key(i), value(i));
+        }
+        return map;
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Public">
+    /**
+     * Runs the benchmark.
+     *
+     * @param args the number of keys
+     */
+    public static void main(String[] args)
+    {
+        int size = Bench.intArg(args, 0, 200000);
+        Bench.print("%,d keys, %d distinct values", size, VALUES.length);
+        for (String name : new String[]
+        {
+            "Properties", "CompactMap", "CompactMap packed"
+        })
+        {
+            long before = Bench.usedHeap();
+            Object store = fill(name, size);
+            long after = Bench.usedHeap();
+            Bench.print("%-18s %6.1f bytes/entry", name, (after - before)
+                    / (double) size);
+            Bench.consume(store);
+        }
+    }
+    //</editor-fold>
+}
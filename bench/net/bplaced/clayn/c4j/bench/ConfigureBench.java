@@ -0,0 +1,174 @@
+package net.bplaced.clayn.c4j.bench;
+
+import java.lang.reflect.Field;
+import java.util.logging.LogManager;
+import net.bplaced.clayn.c4j.Configuration;
+import net.bplaced.clayn.c4j.Environment;
+import net.bplaced.clayn.c4j.Setting;
+import net.bplaced.clayn.c4j.anno.Configure;
+import net.bplaced.clayn.c4j.anno.Env;
+import net.bplaced.clayn.c4j.set.BooleanSetting;
+import net.bplaced.clayn.c4j.set.IntSetting;
+import net.bplaced.clayn.c4j.set.StringSetting;
+
+/**
+ * Compares {@link Configuration#configure(java.lang.Object)} and
+ * {@link Environment#configure(java.lang.Object)} with the way they worked
+ * before the binding plans were cached. That way is rebuilt here: every call
+ * looks up the declared fields and their annotations, creates a new
+ * {@link Setting} per field through its String constructor and writes the
+ * value with {@link Field#set(java.lang.Object, java.lang.Object)}. The
+ * pending lazy values the old {@link Environment} checked for are left out,
+ * because none are used here.
+ * <pre>
+ * java -cp out net.bplaced.clayn.c4j.bench.ConfigureBench
+ * </pre> Every variant runs six rounds of half a second and the best round is
+ * reported.
+ *
+ * @author Clayn
+ * @since 0.1
+ * @version 0.1
+ */
+public final class ConfigureBench
+{
+
+    //<editor-fold desc="Attribute">
+    private static final Configuration CONF = new Configuration();
+    private static final Environment ENV = new Environment();
+
+    //</editor-fold>
+    //<editor-fold desc="Konstruktoren">
+    private ConfigureBench()
+    {
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Private">
+    private static final class Bean
+    {
+
+        @Configure(key = "a", setting = StringSetting.class)
+        private String a;
+        @Configure(key = "b", setting = IntSetting.class)
+        private Integer b;
+        @Configure(key = "c", setting = StringSetting.class)
+        private String c;
+        @Configure(key = "d", setting = BooleanSetting.class)
+        private Boolean d;
+        private int plain1;
+        private String plain2;
+        private long plain3;
+    }
+
+    private static final class EnvBean
+    {
+
+        @Env("x")
+        private Object x;
+        @Env("y")
+        private Object y;
+        private String z;
+    }
+
+    @SuppressWarnings(
+            {
+                "unchecked", "rawtypes"
+            })
+    private static <T> T reflective(Configuration conf, T obj) throws
+            ReflectiveOperationException
+    {
+        for (Field f : obj.getClass().getDeclaredFields())
+        {
+            if (f.isAnnotationPresent(Configure.class))
+            {
+                Configure anno = f.getAnnotation(Configure.class);
+                Setting setting = anno.setting().getConstructor(String.class).
+                        newInstance(anno.key());
+                f.setAccessible(true);
+                f.set(obj, conf.get(setting));
+            }
+        }
+        return obj;
+    }
+
+    private static <T> T reflective(Environment env, T obj) throws
+            ReflectiveOperationException
+    {
+        for (Field f : obj.getClass().getDeclaredFields())
+        {
+            if (f.isAnnotationPresent(Env.class))
+            {
+                f.setAccessible(true);
+                f.set(obj, env.get(f.getAnnotation(Env.class).value()));
+            }
+        }
+        return obj;
+    }
+
+    private static Bench.Task configure(final boolean env,
+            final boolean cached)
+    {
+        return new Bench.Task()
+        {
+            @Override
+            public long run(int count) throws Exception
+            {
+                long sum = 0;
+                for (int i = 0; i < count; i++)
+                {
+                    Object obj = env ? new EnvBean() : new Bean();
+                    if (cached)
+                    {
+                        obj = env ? ENV.configure(obj) : CONF.configure(obj);
+                    }
+                    else
+                    {
+                        obj = env ? reflective(ENV, obj) : reflective(CONF,
+                                obj);
+                    }
+                    sum += obj.hashCode();
+                }
+                return sum;
+            }
+        };
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Public">
+    /**
+     * Runs the benchmark.
+     *
+     * @param args not used
+     * @throws Exception if a task fails
+     */
+    public static void main(String[] args) throws Exception
+    {
+        LogManager.getLogManager().reset();
+        CONF.put(new StringSetting("a"), "A");
+        CONF.put(new IntSetting("b"), 5);
+        CONF.put(new StringSetting("c"), "C");
+        CONF.put(new BooleanSetting("d"), true);
+        ENV.put("x", 1);
+        ENV.put("y", "two");
+        Bean check = CONF.configure(new Bean());
+        EnvBean envCheck = ENV.configure(new EnvBean());
+        if (!"A".equals(check.a) || !Integer.valueOf(5).equals(check.b)
+                || !"C".equals(check.c) || !Boolean.TRUE.equals(check.d)
+                || !Integer.valueOf(1).equals(envCheck.x) || !"two".equals(
+                envCheck.y))
+        {
+            throw new IllegalStateException("configure did not set the fields");
+        }
+        Bench.print("Configuration.configure, 4 @Configure fields");
+        Bench.print("  per call lookups  %5.2fM/s", Bench.perSecond(configure(
+                false, false), 1000, 6, 500) / 1e6);
+        Bench.print("  cached plan       %5.2fM/s", Bench.perSecond(configure(
+                false, true), 1000, 6, 500) / 1e6);
+        Bench.print("Environment.configure, 2 @Env fields");
+        Bench.print("  per call lookups  %5.2fM/s", Bench.perSecond(configure(
+                true, false), 1000, 6, 500) / 1e6);
+        Bench.print("  cached plan       %5.2fM/s", Bench.perSecond(configure(
+                true, true), 1000, 6, 500) / 1e6);
+    }
+    //</editor-fold>
+}
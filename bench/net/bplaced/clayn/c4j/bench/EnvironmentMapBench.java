@@ -0,0 +1,120 @@
+package net.bplaced.clayn.c4j.bench;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares the reads of the plain {@link HashMap} that used to back the
+ * {@link net.bplaced.clayn.c4j.Environment} with the
+ * {@link ConcurrentHashMap} that backs it now. Every key is read once per
+ * pass and the passes are split between the reader threads.
+ * <pre>
+ * java -cp out net.bplaced.clayn.c4j.bench.EnvironmentMapBench [keys] [passes] [threads]
+ * </pre> The defaults are 100,000 keys, 100 passes and a single thread.
+ *
+ * @author Clayn
+ * @since 0.1
+ * @version 0.1
+ */
+public final class EnvironmentMapBench
+{
+
+    //<editor-fold desc="Konstruktoren">
+    private EnvironmentMapBench()
+    {
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Private">
+    private static long read(Map<String, Object> map, String[] keys,
+            int passes)
+    {
+        long found = 0;
+        for (int p = 0; p < passes; p++)
+        {
+            for (String key : keys)
+            {
+                if (map.get(key) != null)
+                {
+                    found++;
+                }
+            }
+        }
+        return found;
+    }
+
+    private static Bench.Task reader(final Map<String, Object> map,
+            final String[] keys, final int threads)
+    {
+        return new Bench.Task()
+        {
+            @Override
+            public long run(int count) throws Exception
+            {
+                if (threads == 1)
+                {
+                    return read(map, keys, count);
+                }
+                final AtomicLong found = new AtomicLong();
+                Thread[] readers = new Thread[threads];
+                for (int t = 0; t < threads; t++)
+                {
+                    final int passes = count / threads + (t < count % threads
+                            ? 1 : 0);
+                    readers[t] = new Thread()
+                    {
+                        @Override
+                        public void run()
+                        {
+                            found.addAndGet(read(map, keys, passes));
+                        }
+                    };
+                    readers[t].start();
+                }
+                for (Thread reader : readers)
+                {
+                    reader.join();
+                }
+                return found.get();
+            }
+        };
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Public">
+    /**
+     * Runs the benchmark.
+     *
+     * @param args the number of keys, passes and reader threads
+     * @throws Exception if a reader is interrupted
+     */
+    public static void main(String[] args) throws Exception
+    {
+        String[] keys = new String[Bench.intArg(args, 0, 100000)];
+        int passes = Bench.intArg(args, 1, 100);
+        int threads = Bench.intArg(args, 2, 1);
+        Map<String, Object> hash = new HashMap<>();
+        Map<String, Object> concurrent = new ConcurrentHashMap<>();
+        for (int i = 0; i < keys.length; i++)
+        {
+            keys[i] = "app.key." + i;
+            hash.put(keys[i], i);
+            concurrent.put(keys[i], i);
+        }
+        Bench.print("%,d keys x %d passes, %d thread(s), %d CPU(s)",
+                keys.length, passes, threads, Runtime.getRuntime().
+                availableProcessors());
+        for (int r = 0; r < 2; r++)
+        {
+            Bench.nanosPerOp(reader(hash, keys, threads), 20, 3);
+            Bench.nanosPerOp(reader(concurrent, keys, threads), 20, 3);
+        }
+        Bench.print("HashMap            %6.1f ns/get", Bench.nanosPerOp(
+                reader(hash, keys, threads), passes, 3) / keys.length);
+        Bench.print("ConcurrentHashMap  %6.1f ns/get", Bench.nanosPerOp(
+                reader(concurrent, keys, threads), passes, 3) / keys.length);
+    }
+    //</editor-fold>
+}
@@ -0,0 +1,113 @@
+package net.bplaced.clayn.c4j.bench;
+
+import java.util.HashMap;
+import java.util.Map;
+import net.bplaced.clayn.c4j.util.FrozenMap;
+import net.bplaced.clayn.c4j.util.PersistentMap;
+
+/**
+ * Compares the reads of a {@link FrozenMap}, as returned by
+ * {@link net.bplaced.clayn.c4j.Environment#freeze()}, with the
+ * {@link PersistentMap} of a mutable store and a plain {@link HashMap}, and
+ * measures how long it takes to build a {@link FrozenMap}.
+ * <pre>
+ * java -cp out net.bplaced.clayn.c4j.bench.FreezeBench [keys] [buildKeys]
+ * </pre> The defaults are 200,000 keys for the reads and 100,000 keys for
+ * the build.
+ *
+ * @author Clayn
+ * @since 0.1
+ * @version 0.1
+ */
+public final class FreezeBench
+{
+
+    //<editor-fold desc="Konstruktoren">
+    private FreezeBench()
+    {
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Private">
+    private static Map<String, Object> fill(String[] keys)
+    {
+        Map<String, Object> map = new HashMap<>();
+        for (int i = 0; i < keys.length; i++)
+        {
+            keys[i] = "app.k" + i;
+            map.put(keys[i], i);
+        }
+        return map;
+    }
+
+    private static Bench.Task reader(final Map<String, Object> map,
+            final String[] keys)
+    {
+        return new Bench.Task()
+        {
+            @Override
+            public long run(int count)
+            {
+                long found = 0;
+                for (int p = 0; p < count; p++)
+                {
+                    for (String key : keys)
+                    {
+                        if (map.get(key) != null)
+                        {
+                            found++;
+                        }
+                    }
+                }
+                return found;
+            }
+        };
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Public">
+    /**
+     * Runs the benchmark.
+     *
+     * @param args the number of keys to read and to build a map from
+     * @throws Exception if a task fails
+     */
+    public static void main(String[] args) throws Exception
+    {
+        String[] keys = new String[Bench.intArg(args, 0, 200000)];
+        Map<String, Object> hash = fill(keys);
+        Map<String, Object> persistent = new PersistentMap<>(hash);
+        Map<String, Object> frozen = new FrozenMap<>(hash);
+        for (int r = 0; r < 3; r++)
+        {
+            Bench.nanosPerOp(reader(frozen, keys), 5, 1);
+            Bench.nanosPerOp(reader(persistent, keys), 5, 1);
+            Bench.nanosPerOp(reader(hash, keys), 5, 1);
+        }
+        Bench.print("%,d keys", keys.length);
+        Bench.print("FrozenMap.get      %6.1f ns", Bench.nanosPerOp(reader(
+                frozen, keys), 20, 3) / keys.length);
+        Bench.print("PersistentMap.get  %6.1f ns", Bench.nanosPerOp(reader(
+                persistent, keys), 20, 3) / keys.length);
+        Bench.print("HashMap.get        %6.1f ns", Bench.nanosPerOp(reader(
+                hash, keys), 20, 3) / keys.length);
+        final Map<String, Object> source = fill(new String[Bench.intArg(args,
+                1, 100000)]);
+        double build = Bench.nanosPerOp(new Bench.Task()
+        {
+            @Override
+            public long run(int count)
+            {
+                long size = 0;
+                for (int i = 0; i < count; i++)
+                {
+                    size += new FrozenMap<>(source).size();
+                }
+                return size;
+            }
+        }, 1, 5);
+        Bench.print("FrozenMap of %,d keys built in %.0f ms", source.size(),
+                build / 1e6);
+    }
+    //</editor-fold>
+}
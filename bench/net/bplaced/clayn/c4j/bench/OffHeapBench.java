@@ -0,0 +1,120 @@
+package net.bplaced.clayn.c4j.bench;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+import net.bplaced.clayn.c4j.util.OffHeapMap;
+
+/**
+ * Compares the {@link OffHeapMap} used by
+ * {@link net.bplaced.clayn.c4j.Environment#offHeap()} with a {@link HashMap}
+ * holding the same small objects. For each store it measures the time to fill
+ * it, the retained heap, the time of a full {@link System#gc()}, the time
+ * spent in young collections while garbage is allocated and the time of
+ * random gets.
+ * <pre>
+ * java -Xmx2g -cp out net.bplaced.clayn.c4j.bench.OffHeapBench [heap|offheap] [entries]
+ * </pre> Without arguments both stores are measured one after the other with
+ * 1,000,000 entries. The numbers are more reliable if every store is
+ * measured in its own JVM.
+ *
+ * @author Clayn
+ * @since 0.1
+ * @version 0.1
+ */
+public final class OffHeapBench
+{
+
+    //<editor-fold desc="Konstruktoren">
+    private OffHeapBench()
+    {
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Private">
+    private static final class Value implements Serializable
+    {
+
+        private static final long serialVersionUID = 1L;
+        private final int id;
+        private final String name;
+        private final long[] data = new long[4];
+
+        private Value(int id)
+        {
+            this.id = id;
+            this.name = "val" + id;
+        }
+    }
+
+    private static void measure(String mode, int size)
+    {
+        long before = Bench.usedHeap();
+        Map<String, Object> map = mode.equals("heap")
+                ? new HashMap<String, Object>() : new OffHeapMap();
+        long start = System.nanoTime();
+        for (int i = 0; i < size; i++)
+        {
+            map.put("key" + i, new Value(i));
+        }
+        long fill = System.nanoTime() - start;
+        long heap = Bench.usedHeap() - before;
+        start = System.nanoTime();
+        System.gc();
+        long full = System.nanoTime() - start;
+        long gc = Bench.gcMillis();
+        long garbage = 0;
+        for (int i = 0; i < 30000000; i++)
+        {
+            garbage += new byte[64].length;
+        }
+        long young = Bench.gcMillis() - gc;
+        int gets = 1000000;
+        start = System.nanoTime();
+        for (int i = 0; i < gets; i++)
+        {
+            garbage += ((Value) map.get("key" + (int) ((i * 7919L) % size))).id;
+        }
+        long get = System.nanoTime() - start;
+        Bench.print("%-8s fill %,6d ms, heap %6.1f MB, System.gc() %4d ms, "
+                + "young GC %3d ms, get %6.2f us", mode, fill / 1000000,
+                heap / 1e6, full / 1000000, young, get / 1e3 / gets);
+        if (map instanceof OffHeapMap)
+        {
+            Bench.print("%-8s direct %6.1f MB", mode, ((OffHeapMap) map).
+                    getOffHeapBytes() / 1e6);
+        }
+        Bench.consume(garbage);
+        Bench.consume(map);
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Public">
+    /**
+     * Runs the benchmark.
+     *
+     * @param args the store to measure and the number of entries
+     */
+    public static void main(String[] args)
+    {
+        String[] modes = args.length > 0 ? new String[]
+        {
+            args[0]
+        } : new String[]
+        {
+            "heap", "offheap"
+        };
+        int size = Bench.intArg(args, 1, 1000000);
+        Bench.print("%,d entries, max heap %d MB", size, Runtime.getRuntime().
+                maxMemory() / (1024 * 1024));
+        for (String mode : modes)
+        {
+            if (!mode.equals("heap") && !mode.equals("offheap"))
+            {
+                throw new IllegalArgumentException("Unknown store: " + mode);
+            }
+            measure(mode, size);
+        }
+    }
+    //</editor-fold>
+}
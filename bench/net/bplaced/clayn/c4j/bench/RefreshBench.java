@@ -0,0 +1,125 @@
+package net.bplaced.clayn.c4j.bench;
+
+import java.util.Observable;
+import java.util.Observer;
+import net.bplaced.clayn.c4j.Configuration;
+import net.bplaced.clayn.c4j.RefreshService;
+import net.bplaced.clayn.c4j.set.StringSetting;
+
+/**
+ * Measures a {@link Configuration#put(net.bplaced.clayn.c4j.Setting, java.lang.Object)}
+ * on a key with one binding while a growing number of bindings exist for
+ * other keys. Before the {@link RefreshService}s were indexed by their key,
+ * every change walked all of them and compared the keys. That scan is
+ * rebuilt here with an {@link Observer} and is measured in addition to the
+ * indexed lookup.
+ * <pre>
+ * java -cp out net.bplaced.clayn.c4j.bench.RefreshBench
+ * </pre>
+ *
+ * @author Clayn
+ * @since 0.1
+ * @version 0.1
+ */
+public final class RefreshBench
+{
+
+    //<editor-fold desc="Konstruktoren">
+    private RefreshBench()
+    {
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Private">
+    public static final class Bean
+    {
+
+        public String value;
+    }
+
+    private static final class ScanningConfiguration extends Configuration
+    {
+
+        private void scan()
+        {
+            addObserver(new Observer()
+            {
+                @Override
+                public void update(Observable o, Object arg)
+                {
+                    int found = 0;
+                    for (RefreshService ref : services)
+                    {
+                        if (ref.getKey().equals(arg))
+                        {
+                            found++;
+                        }
+                    }
+                    Bench.consume(found);
+                }
+            });
+        }
+    }
+
+    private static double put(int others, boolean scan) throws Exception
+    {
+        ScanningConfiguration conf = new ScanningConfiguration();
+        Bean[] beans = new Bean[others];
+        for (int i = 0; i < others; i++)
+        {
+            beans[i] = new Bean();
+            conf.add("k" + i, beans[i], "value");
+        }
+        final Bean hot = new Bean();
+        conf.add("hot", hot, "value");
+        if (scan)
+        {
+            conf.scan();
+        }
+        final Configuration target = conf;
+        final StringSetting setting = new StringSetting("hot");
+        int count = others >= 100000 ? 200 : 20000;
+        double nanos = Bench.nanosPerOp(new Bench.Task()
+        {
+            @Override
+            public long run(int count)
+            {
+                for (int i = 0; i < count; i++)
+                {
+                    target.put(setting, "v" + (i & 7));
+                }
+                return hot.value.length();
+            }
+        }, count, 5);
+        if (hot.value == null)
+        {
+            throw new IllegalStateException("The binding was not refreshed");
+        }
+        Bench.consume(beans);
+        return nanos;
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Public">
+    /**
+     * Runs the benchmark.
+     *
+     * @param args not used
+     * @throws Exception if a task fails
+     */
+    public static void main(String[] args) throws Exception
+    {
+        put(1000, true);
+        put(1000, false);
+        Bench.print("%10s %14s %14s", "bindings", "scan", "indexed");
+        for (int others : new int[]
+        {
+            0, 1000, 10000, 100000
+        })
+        {
+            Bench.print("%,10d %11.1f us %11.1f us", others + 1, put(others,
+                    true) / 1e3, put(others, false) / 1e3);
+        }
+    }
+    //</editor-fold>
+}
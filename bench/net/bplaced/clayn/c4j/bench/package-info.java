@@ -0,0 +1,6 @@
+/**
+ * Benchmark drivers for Config4J. They are not part of the library and only
+ * exist to reproduce the measurements of its storage and binding code.
+ * @since 0.1
+ */
+package net.bplaced.clayn.c4j.bench;
@@ -0,0 +1,70 @@
+package net.bplaced.clayn.c4j;
+
+import net.bplaced.clayn.c4j.anno.Configure;
+import net.bplaced.clayn.c4j.anno.Env;
+
+/**
+ * Configures the fields of a single class without reflection. Binders are
+ * generated at compile time by
+ * {@link net.bplaced.clayn.c4j.processor.BinderProcessor} for every class
+ * with {@link Configure} or {@link Env} fields and named like the binary name
+ * of the class followed by {@code $$Binder}. If such a binder exists,
+ * {@link Configuration#configure(java.lang.Object)} and
+ * {@link Environment#configure(java.lang.Object)} use it, otherwise the
+ * fields are found with reflection.
+ *
+ * @author Clayn
+ * @param <T> the type of the configured Objects
+ * @see net.bplaced.clayn.c4j.processor.BinderProcessor
+ * @since 0.1
+ * @version 0.1
+ */
+public interface Binder<T>
+{
+
+    /**
+     * Sets a single field of an Object. Used instead of a
+     * {@link java.lang.reflect.Field} to set and refresh the field.
+     *
+     * @since 0.1
+     */
+    public interface Hook
+    {
+
+        /**
+         * Sets the field of the given Object to the given value.
+         *
+         * @param target the Object whose field is set
+         * @param value the new value
+         * @throws ClassCastException if the value has the wrong type
+         * @since 0.1
+         */
+        public void set(Object target, Object value);
+    }
+
+    /**
+     * Sets all {@link Configure} fields of the given Object with the values of
+     * the given Configuration.
+     *
+     * @param conf the Configuration to read the values from
+     * @param obj the Object to configure
+     * @see Configuration#bind(java.lang.Object, java.lang.String,
+     * net.bplaced.clayn.c4j.Setting, boolean, boolean,
+     * net.bplaced.clayn.c4j.Binder.Hook)
+     * @since 0.1
+     */
+    public void configure(Configuration conf, T obj);
+
+    /**
+     * Sets all {@link Env} fields of the given Object with the values of the
+     * given Environment.
+     *
+     * @param env the Environment to read the values from
+     * @param obj the Object to configure
+     * @see Environment#bind(java.lang.Object, java.lang.String,
+     * java.lang.String, boolean, boolean,
+     * net.bplaced.clayn.c4j.Binder.Hook)
+     * @since 0.1
+     */
+    public void configure(Environment env, T obj);
+}
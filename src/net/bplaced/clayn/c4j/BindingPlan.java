@@ -0,0 +1,187 @@
+package net.bplaced.clayn.c4j;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import net.bplaced.clayn.c4j.anno.Configure;
+import net.bplaced.clayn.c4j.anno.Env;
+import net.bplaced.clayn.c4j.project.LogSystem;
+import net.bplaced.clayn.c4j.util.FieldWriter;
+
+/**
+ * The fields of a class which are configured by {@link Configuration} and
+ * {@link Environment}. The plan is created once for each class with the first
+ * call of {@code configure} and holds the annotated fields, their keys and
+ * the {@link Setting}s for {@link Configure} fields. So configuring another
+ * instance of the same class does not need any reflective lookups. If a
+ * generated {@link Binder} exists for the class, the plan only holds the
+ * binder and the fields are not looked up at all. The plans are stored with
+ * {@link ClassValue}, so they do not prevent the classes from being
+ * unloaded.
+ *
+ * @author Clayn
+ * @since 0.1
+ * @version 0.1
+ */
+final class BindingPlan
+{
+
+    //<editor-fold desc="Attribute">
+    private static final ClassValue<BindingPlan> PLANS = new ClassValue<BindingPlan>()
+    {
+        @Override
+        protected BindingPlan computeValue(Class<?> type)
+        {
+            return new BindingPlan(type);
+        }
+    };
+    private static final Binding[] NONE = new Binding[0];
+
+    /**
+     * The fields with the {@link Configure} annotation.
+     */
+    final Binding[] configure;
+    /**
+     * The fields with the {@link Env} annotation.
+     */
+    final Binding[] env;
+    /**
+     * The generated binder of the class or {@code null}.
+     */
+    final Binder<Object> binder;
+
+    //</editor-fold>
+    //<editor-fold desc="Konstruktoren">
+    private BindingPlan(Class<?> type)
+    {
+        binder = binderOf(type);
+        if (binder != null)
+        {
+            configure = NONE;
+            env = NONE;
+            return;
+        }
+        List<Binding> conf = new ArrayList<>();
+        List<Binding> envs = new ArrayList<>();
+        for (Field f : type.getDeclaredFields())
+        {
+            Configure c = f.getAnnotation(Configure.class);
+            if (c != null)
+            {
+                try
+                {
+                    Setting<?> setting = c.setting().getConstructor(
+                            String.class).newInstance(c.key());
+                    conf.add(new Binding(f, c.key(), c.refresh(), c.async(),
+                            setting));
+                }
+                catch (NoSuchMethodException | SecurityException |
+                        InstantiationException | IllegalAccessException |
+                        IllegalArgumentException | InvocationTargetException ex)
+                {
+                    LogSystem.getLogger(Configuration.class).
+                            log(Level.WARNING, null, ex);
+                }
+            }
+            Env e = f.getAnnotation(Env.class);
+            if (e != null)
+            {
+                try
+                {
+                    envs.add(new Binding(f, e.value(), e.refresh(), e.async(),
+                            null));
+                }
+                catch (IllegalArgumentException ex)
+                {
+                    LogSystem.getLogger(Environment.class).
+                            log(Level.WARNING, null, ex);
+                }
+            }
+        }
+        configure = conf.isEmpty() ? NONE : conf.toArray(new Binding[conf.
+                size()]);
+        env = envs.isEmpty() ? NONE : envs.toArray(new Binding[envs.size()]);
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Private">
+    /**
+     * A single annotated field.
+     */
+    static final class Binding
+    {
+
+        final Field field;
+        final FieldWriter writer;
+        final String key;
+        final boolean refresh;
+        final boolean async;
+        /**
+         * The Setting for the key or {@code null} for {@link Env} fields.
+         */
+        final Setting<?> setting;
+
+        private Binding(Field field, String key, boolean refresh,
+                boolean async, Setting<?> setting)
+        {
+            this.field = field;
+            this.writer = FieldWriter.of(field);
+            this.key = key;
+            this.refresh = refresh;
+            this.async = async;
+            this.setting = setting;
+        }
+    }
+
+    /**
+     * Creates the generated binder of the given class if there is one. The
+     * binder is generated for exactly that class, so it accepts every
+     * instance the plan is used for.
+     */
+    @SuppressWarnings("unchecked")
+    private static Binder<Object> binderOf(Class<?> type)
+    {
+        ClassLoader loader = type.getClassLoader();
+        if (loader == null)
+        {
+            return null;
+        }
+        try
+        {
+            Class<?> cl = Class.forName(type.getName() + "$$Binder", true,
+                    loader);
+            if (Binder.class.isAssignableFrom(cl))
+            {
+                return (Binder<Object>) cl.getDeclaredConstructor().
+                        newInstance();
+            }
+        }
+        catch (ClassNotFoundException ex)
+        {
+            return null;
+        }
+        catch (ReflectiveOperationException | LinkageError ex)
+        {
+            LogSystem.getLogger(BindingPlan.class).
+                    log(Level.WARNING, null, ex);
+        }
+        return null;
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Public">
+    /**
+     * Returns the plan for the given class. Fields which can´t be written,
+     * like static final fields, are left out.
+     *
+     * @param type the class of the configured Objects
+     * @return the plan for the class
+     */
+    static BindingPlan of(Class<?> type)
+    {
+        return PLANS.get(type);
+    }
+    //</editor-fold>
+}
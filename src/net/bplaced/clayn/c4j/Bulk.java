@@ -0,0 +1,174 @@
+package net.bplaced.clayn.c4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Configures many Objects in parallel on the common {@link ForkJoinPool}. The
+ * Objects are split into ranges until a range is small enough to be
+ * configured by a single thread. The {@link RefreshService}s of each range
+ * are collected in a list, so they can be registered all at once afterwards.
+ *
+ * @author Clayn
+ * @see Configurator#configureAll(java.util.Collection)
+ * @since 0.1
+ * @version 0.1
+ */
+final class Bulk extends RecursiveAction
+{
+
+    //<editor-fold desc="Attribute">
+    private static final long serialVersionUID = 1L;
+    /**
+     * Number of Objects that are configured without splitting the range.
+     */
+    static final int THRESHOLD = 512;
+    /**
+     * The list for the {@link RefreshService}s of the current thread while it
+     * configures a range, {@code null} otherwise.
+     */
+    static final ThreadLocal<List<RefreshService>> BATCH = new ThreadLocal<>();
+    private final Object[] objs;
+    private final int from;
+    private final int to;
+    private final Applier applier;
+    private final Queue<List<RefreshService>> batches;
+
+    //</editor-fold>
+    //<editor-fold desc="Konstruktoren">
+    private Bulk(Object[] objs, int from, int to, Applier applier,
+            Queue<List<RefreshService>> batches)
+    {
+        this.objs = objs;
+        this.from = from;
+        this.to = to;
+        this.applier = applier;
+        this.batches = batches;
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Private">
+    /**
+     * Configures a single Object.
+     */
+    interface Applier
+    {
+
+        /**
+         * Configures the given Object and adds its {@link RefreshService}s to
+         * the given list.
+         *
+         * @param obj the Object to configure
+         * @param batch the list for the {@link RefreshService}s
+         */
+        void apply(Object obj, List<RefreshService> batch);
+    }
+
+    private void applyAll()
+    {
+        List<RefreshService> batch = new ArrayList<>();
+        BATCH.set(batch);
+        try
+        {
+            for (int i = from; i < to; i++)
+            {
+                applier.apply(objs[i], batch);
+            }
+        }
+        finally
+        {
+            BATCH.remove();
+        }
+        if (!batch.isEmpty())
+        {
+            batches.add(batch);
+        }
+    }
+
+    @Override
+    protected void compute()
+    {
+        if (to - from <= THRESHOLD)
+        {
+            applyAll();
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        invokeAll(new Bulk(objs, from, mid, applier, batches), new Bulk(objs,
+                mid, to, applier, batches));
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Public">
+    /**
+     * Configures all the given Objects and adds their {@link RefreshService}s
+     * to the given collection with a single call.
+     *
+     * @param objs the Objects to configure
+     * @param applier configures a single Object
+     * @param services the collection for the {@link RefreshService}s
+     */
+    static void run(Object[] objs, Applier applier,
+            Collection<RefreshService> services)
+    {
+        Queue<List<RefreshService>> batches = new ConcurrentLinkedQueue<>();
+        Bulk bulk = new Bulk(objs, 0, objs.length, applier, batches);
+        if (objs.length <= THRESHOLD)
+        {
+            bulk.applyAll();
+        }
+        else
+        {
+            ForkJoinPool.commonPool().invoke(bulk);
+        }
+        List<RefreshService> all;
+        if (batches.size() == 1)
+        {
+            all = batches.peek();
+        }
+        else
+        {
+            all = new ArrayList<>();
+            for (List<RefreshService> batch : batches)
+            {
+                all.addAll(batch);
+            }
+        }
+        if (!all.isEmpty())
+        {
+            services.addAll(all);
+        }
+    }
+
+    /**
+     * Applies the given applier to all Objects again as long as the given
+     * Refresher informed about a change since the given number of changes.
+     * The {@link RefreshService}s of a bulk configure are registered only
+     * after all Objects were configured, so a change which was made before
+     * that is applied by this instead of the services. Does nothing if no
+     * change was made.
+     *
+     * @param objs the configured Objects
+     * @param applier sets the current values of the refreshed fields
+     * @param source the Refresher the Objects were configured by
+     * @param changes the number of changes before the values were read
+     * @see Refresher#changes()
+     */
+    static void repeat(Object[] objs, Applier applier, Refresher source,
+            long changes)
+    {
+        long now;
+        while ((now = source.changes()) != changes)
+        {
+            changes = now;
+            run(objs, applier, Collections.<RefreshService>emptyList());
+        }
+    }
+    //</editor-fold>
+}
@@ -0,0 +1,158 @@
+package net.bplaced.clayn.c4j;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import net.bplaced.clayn.c4j.anno.Configure;
+
+/**
+ * Base class of the implementations returned by
+ * {@link Configuration#proxy(java.lang.Class)}. Each method of the
+ * implemented interface has an index and a {@link Setting}. The value for a
+ * method is parsed once and then kept until the stored String for its key is
+ * changed at the {@link Configuration} in any way, so calling a method costs
+ * about as much as reading a field. The implementations are generated at compile time by
+ * {@link net.bplaced.clayn.c4j.processor.BinderProcessor} for every
+ * interface with {@link Configure} methods and named like the binary name of
+ * the interface followed by {@code $$Proxy}. If no such class exists, a
+ * {@link java.lang.reflect.Proxy} with the same caching is used instead.
+ *
+ * @author Clayn
+ * @see Configuration#proxy(java.lang.Class)
+ * @since 0.1
+ * @version 0.1
+ */
+public abstract class ConfigProxy
+{
+
+    //<editor-fold desc="Attribute">
+    private final Configuration conf;
+    private final String[] names;
+    private final Setting<?>[] settings;
+    /**
+     * The cached values, a {@link Stale} marks a value which must be read
+     * again.
+     */
+    private final AtomicReferenceArray<Object> values;
+
+    //</editor-fold>
+    //<editor-fold desc="Konstruktoren">
+    /**
+     * Creates a new proxy which reads its values from the given
+     * Configuration. Should only be done by generated classes.
+     *
+     * @param conf the Configuration to read the values from
+     * @param names the names of the methods
+     * @param settings the Settings of the methods in the same order
+     * @since 0.1
+     */
+    protected ConfigProxy(Configuration conf, String[] names,
+            Setting<?>[] settings)
+    {
+        this.conf = conf;
+        this.names = names;
+        this.settings = settings;
+        this.values = new AtomicReferenceArray<>(settings.length);
+        for (int i = 0; i < settings.length; i++)
+        {
+            values.set(i, new Stale());
+        }
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Private">
+    /**
+     * Marks a value which must be read again. Every change creates a new
+     * marker, so a value which was read before the change is never cached
+     * after it.
+     */
+    private static final class Stale
+    {
+    }
+
+    /**
+     * Drops the values of all methods for the given key. Called by the
+     * {@link Configuration} every time the stored String for the key was
+     * changed.
+     *
+     * @param key the changed key
+     */
+    final void invalidate(String key)
+    {
+        for (int i = 0; i < settings.length; i++)
+        {
+            if (key.equals(settings[i].getSettingsKey()))
+            {
+                values.set(i, new Stale());
+            }
+        }
+    }
+
+    /**
+     * Drops the values of all methods whose key starts with the given
+     * prefix.
+     *
+     * @param prefix the prefix of the changed keys
+     */
+    final void invalidatePrefix(String prefix)
+    {
+        for (int i = 0; i < settings.length; i++)
+        {
+            if (settings[i].getSettingsKey().startsWith(prefix))
+            {
+                values.set(i, new Stale());
+            }
+        }
+    }
+
+    /**
+     * Returns the Object which implements the interface.
+     */
+    Object view()
+    {
+        return this;
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Public">
+    /**
+     * Returns the value for the method with the given index. The value is
+     * parsed only if it was changed since the last call.
+     *
+     * @param index the index of the method
+     * @return the value for the method, may be {@code null}
+     * @since 0.1
+     */
+    protected final Object value(int index)
+    {
+        Object v = values.get(index);
+        if (v instanceof Stale)
+        {
+            Object val = conf.get(settings[index]);
+            values.compareAndSet(index, v, val);
+            return val;
+        }
+        return v;
+    }
+
+    /**
+     * Returns the value for the method with the given index such as
+     * {@link #value(int)} but fails if there is no value. Used for methods
+     * with a primitive return type.
+     *
+     * @param index the index of the method
+     * @return the value for the method
+     * @throws IllegalStateException if no value is stored for the key
+     * @since 0.1
+     */
+    protected final Object require(int index)
+    {
+        Object v = value(index);
+        if (v == null)
+        {
+            throw new IllegalStateException("No value for the key "
+                    + settings[index].getSettingsKey() + " of the method "
+                    + names[index]);
+        }
+        return v;
+    }
+    //</editor-fold>
+}
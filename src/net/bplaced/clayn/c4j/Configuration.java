@@ -3,14 +3,33 @@ package net.bplaced.clayn.c4j;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Observer;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
 import net.bplaced.clayn.c4j.anno.Configure;
 import net.bplaced.clayn.c4j.project.LogSystem;
-import net.bplaced.clayn.c4j.util.ConfigUtil;
+import net.bplaced.clayn.c4j.set.BooleanSetting;
+import net.bplaced.clayn.c4j.set.DoubleSetting;
+import net.bplaced.clayn.c4j.set.IntSetting;
+import net.bplaced.clayn.c4j.set.LongSetting;
+import net.bplaced.clayn.c4j.util.CompactMap;
+import net.bplaced.clayn.c4j.util.FrozenMap;
+import net.bplaced.clayn.c4j.util.OverlayMap;
+import net.bplaced.clayn.c4j.util.PersistentMap;
 
 /**
  * A Configuration is a class for an easy way to store application informations
@@ -29,9 +48,54 @@ public class Configuration extends Refresher implements Configurator
 
     //<editor-fold desc="Attribute">
     /**
-     * The {@link Properties} to store all informations (as Strings).
+     * The map to store all informations (as Strings). Other than
+     * {@link Properties} the map does not synchronize, so reading threads
+     * never block each other. {@link Properties} are only used for the
+     * loading and saving to keep the format. Per default the map is a
+     * {@link ConcurrentHashMap}, a {@link #persistent()} Configuration uses a
+     * {@link PersistentMap} so {@link #snapshot()} and {@link #fork()} need
+     * constant time.
      */
-    protected final Properties properties = new Properties();
+    protected final ConcurrentMap<String, String> properties;
+
+    /**
+     * Cache for the values that were already parsed by a {@link Setting}. An
+     * entry is only used if it was parsed from the String that is currently
+     * stored and by the same {@link Setting} class.
+     */
+    private final ConcurrentMap<String, ParsedValue> parsed = new ConcurrentHashMap<>();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+
+    /**
+     * Cache for the values read with a {@link SettingHandle}.
+     */
+    private final SlotCache slots = new SlotCache();
+
+    /**
+     * The Configuration this one is an {@link #overlay()} of or {@code null}.
+     */
+    private final Configuration parent;
+
+    /**
+     * The overlays of this Configuration. They are only weakly referenced, so
+     * overlays which are not used anymore can be collected. The references of
+     * collected overlays are removed with the next new overlay.
+     */
+    private final Set<Reference<Configuration>> overlays = ConcurrentHashMap.
+            newKeySet();
+    private final ReferenceQueue<Configuration> collected = new ReferenceQueue<>();
+
+    /**
+     * The Settings the keys were bound with for refreshes. Used to parse the
+     * value of a key which was changed without a {@link Setting}.
+     */
+    private final ConcurrentMap<String, Setting<?>> bound = new ConcurrentHashMap<>();
+
+    /**
+     * The implementations returned by {@link #proxy(java.lang.Class)}.
+     */
+    private final ConcurrentMap<Class<?>, ConfigProxy> proxies = new ConcurrentHashMap<>();
     //</editor-fold>
 
     //<editor-fold desc="Konstruktoren">
@@ -43,7 +107,37 @@ public class Configuration extends Refresher implements Configurator
      */
     public Configuration()
     {
+        this(new ConcurrentHashMap<String, String>());
+    }
+
+    /**
+     * Creates a new Configuration which uses the given map to store its
+     * values. The map is used directly and not copied.
+     *
+     * @param properties the map to store the values in
+     * @since 0.1
+     * @see #Configuration()
+     */
+    protected Configuration(ConcurrentMap<String, String> properties)
+    {
+        this(null, properties);
+    }
 
+    /**
+     * Creates a new Configuration which is an overlay of the given parent.
+     *
+     * @param parent the parent Configuration or {@code null}
+     * @param properties the map to store the values in
+     */
+    private Configuration(Configuration parent,
+            ConcurrentMap<String, String> properties)
+    {
+        this.properties = properties;
+        this.parent = parent;
+        if (parent != null)
+        {
+            parent.register(this);
+        }
     }
 
     /**
@@ -67,14 +161,184 @@ public class Configuration extends Refresher implements Configurator
     //</editor-fold>
 
     //<editor-fold desc="Private">
+    /**
+     * A value parsed by a {@link Setting} together with the String it was
+     * parsed from.
+     */
+    private static final class ParsedValue
+    {
+
+        private final Class<?> setting;
+        private final String raw;
+        private final Object value;
+
+        private ParsedValue(Class<?> setting, String raw, Object value)
+        {
+            this.setting = setting;
+            this.raw = raw;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Removes the cached value for the given key and marks all values cached
+     * for {@link SettingHandle}s and by {@link #proxy(java.lang.Class)}s as
+     * invalid. Must be called every time the stored String for the key was
+     * changed.
+     *
+     * @param key the key which value was changed
+     */
+    void invalidate(String key)
+    {
+        parsed.remove(key);
+        slots.invalidate();
+        for (ConfigProxy proxy : proxies.values())
+        {
+            proxy.invalidate(key);
+        }
+        for (Configuration overlay : overlays())
+        {
+            if (overlay.inherits(key))
+            {
+                overlay.invalidate(key);
+            }
+        }
+    }
+
+    /**
+     * Informs the {@link RefreshService}s and {@link Observer}s of this
+     * Configuration and of all overlays which do not override the key.
+     *
+     * @param key the key which value was changed
+     * @param val the new value
+     */
+    private void publish(String key, Object val)
+    {
+        inform(key, val);
+        for (Configuration overlay : overlays())
+        {
+            if (overlay.inherits(key))
+            {
+                overlay.publish(key, val);
+            }
+        }
+    }
+
+    /**
+     * Removes the cached values for all keys with the given prefix, also in
+     * all overlays.
+     *
+     * @param prefix the prefix of the changed keys
+     */
+    private void invalidatePrefix(String prefix)
+    {
+        Iterator<String> it = parsed.keySet().iterator();
+        while (it.hasNext())
+        {
+            if (it.next().startsWith(prefix))
+            {
+                it.remove();
+            }
+        }
+        slots.invalidate();
+        for (ConfigProxy proxy : proxies.values())
+        {
+            proxy.invalidatePrefix(prefix);
+        }
+        for (Configuration overlay : overlays())
+        {
+            overlay.invalidatePrefix(prefix);
+        }
+    }
+
+    /**
+     * Returns whether a change of the given key at the parent is visible in
+     * this Configuration.
+     */
+    private boolean inherits(String key)
+    {
+        return !((OverlayMap<String, String>) properties).isOverridden(key);
+    }
+
+    /**
+     * Adds the given overlay and forgets all overlays which were collected.
+     * Needs constant time for each collected overlay.
+     */
+    private void register(Configuration overlay)
+    {
+        Reference<? extends Configuration> ref;
+        while ((ref = collected.poll()) != null)
+        {
+            overlays.remove(ref);
+        }
+        overlays.add(new WeakReference<>(overlay, collected));
+    }
+
+    /**
+     * Returns all overlays which are still used.
+     */
+    private List<Configuration> overlays()
+    {
+        if (overlays.isEmpty())
+        {
+            return Collections.emptyList();
+        }
+        List<Configuration> back = new ArrayList<>(overlays.size());
+        for (Reference<Configuration> ref : overlays)
+        {
+            Configuration overlay = ref.get();
+            if (overlay != null)
+            {
+                back.add(overlay);
+            }
+        }
+        return back;
+    }
+
+    /**
+     * Remembers the Setting the key of a {@link RefreshService} was bound
+     * with.
+     */
+    private void bound(Setting<?> setting)
+    {
+        bound.put(setting.getSettingsKey(), setting);
+    }
+
+    /**
+     * Returns the current value of the given key parsed by the
+     * {@link Setting} it was bound with or the stored String if it was never
+     * bound.
+     *
+     * @param key the key of the value
+     * @return the value or {@code null} if there is none
+     */
+    Object valueOf(String key)
+    {
+        Setting<?> setting = bound.get(key);
+        return setting == null ? properties.get(key) : get(setting);
+    }
+
+    /**
+     * Removes the cached value of the given key and informs about its current
+     * value such as {@link #put(net.bplaced.clayn.c4j.Setting, java.lang.Object)}
+     * does. Must be called after the stored String for the key was changed
+     * without a {@link Setting}.
+     *
+     * @param key the key which value was changed
+     */
+    void changed(String key)
+    {
+        invalidate(key);
+        publish(key, valueOf(key));
+    }
     //</editor-fold>
     //<editor-fold desc="Public">
     /**
      * Saves this Configuration into the given OutputStream and adds the given
-     * comment to it. This method simply calls
-     * {@link Properties#store(java.io.OutputStream, java.lang.String)}. So the
-     * exact behaviour can be found there. The given OutputStream remains open
-     * afterwards.
+     * comment to it. This method copies the values into {@link Properties} and
+     * calls {@link Properties#store(java.io.OutputStream, java.lang.String)}.
+     * So the exact behaviour can be found there. The given OutputStream
+     * remains open afterwards.
      *
      * @param com the comment added into the OutputStream
      * @param out the OutputStream to store the values.
@@ -84,12 +348,12 @@ public class Configuration extends Refresher implements Configurator
      */
     public final void save(String com, OutputStream out) throws IOException
     {
-        properties.store(out, com);
+        toProperties().store(out, com);
     }
 
     /**
      * Loads all the values from the given InputStream and stores them into this
-     * Configuration. This method calls
+     * Configuration. This method reads the values with
      * {@link Properties#load(java.io.InputStream)} so the exact behaviour can
      * be found there. The stream remains open afterwards.
      *
@@ -100,13 +364,40 @@ public class Configuration extends Refresher implements Configurator
      */
     public final void load(InputStream in) throws IOException
     {
-        properties.load(in);
+        Properties p = new Properties();
+        p.load(in);
+        for (String key : p.stringPropertyNames())
+        {
+            properties.put(key, p.getProperty(key));
+            invalidate(key);
+        }
+    }
+
+    /**
+     * Returns a new {@link Properties} Object which contains all the values
+     * currently stored in this Configuration. The values are taken from a
+     * {@link #snapshot()} so they are consistent even if other threads change
+     * this Configuration. Changes at the returned {@link Properties} will not
+     * affect this Configuration.
+     *
+     * @return a copy of the stored values as {@link Properties}
+     * @since 0.1
+     */
+    public Properties toProperties()
+    {
+        Properties p = new Properties();
+        p.putAll(PersistentMap.snapshotOf(properties));
+        return p;
     }
 
     /**
      * Returns the value stored with the key from the given {@link Setting} or
      * the {@code def} value if no value was found. The given {@link Setting}
-     * will be used to parse the stored String back to the wished type.
+     * will be used to parse the stored String back to the wished type. The
+     * parsed value is cached until the stored String changes, so as long as
+     * the same {@link Setting} class is used the same instance will be
+     * returned. Settings that parse into mutable Objects should keep that in
+     * mind.
      *
      * @param <T> The type of the Object that was stored before and into the
      * value will be parsed.
@@ -119,9 +410,30 @@ public class Configuration extends Refresher implements Configurator
      * @see #get(net.bplaced.clayn.c4j.Setting)
      * @since 0.1
      */
+    @SuppressWarnings("unchecked")
     public <T> T get(Setting<T> set, T def)
     {
-        T t = set.parseFrom(properties.getProperty(set.getSettingsKey()));
+        String key = set.getSettingsKey();
+        String raw = properties.get(key);
+        if (raw == null)
+        {
+            T t = set.parseFrom(null);
+            return t == null ? def : t;
+        }
+        ParsedValue cached = parsed.get(key);
+        T t;
+        if (cached != null && cached.raw == raw && cached.setting == set.
+                getClass())
+        {
+            cacheHits.increment();
+            t = (T) cached.value;
+        }
+        else
+        {
+            cacheMisses.increment();
+            t = set.parseFrom(raw);
+            parsed.put(key, new ParsedValue(set.getClass(), raw, t));
+        }
         return t == null ? def : t;
     }
 
@@ -145,6 +457,164 @@ public class Configuration extends Refresher implements Configurator
         return get(set, null);
     }
 
+    /**
+     * Returns the value stored with the key from the {@link Setting} of the
+     * given handle or the {@code def} value if no value was found. This method
+     * works the same as
+     * {@link #get(net.bplaced.clayn.c4j.Setting, java.lang.Object)} but as long
+     * as this Configuration was not changed the value is taken from an array
+     * at the slot of the handle. So no hashing of the key is needed. Every
+     * change at this Configuration invalidates all those values, so this
+     * method is meant for values that are read much more often than any
+     * value is changed.
+     *
+     * @param <T> the type, the value should be parsed to.
+     * @param handle the handle for the Setting to use
+     * @param def the default value that will be returned if the found value was
+     * {@code null}.
+     * @return the value that was parsed from the String stored under the key
+     * or {@code def} if the value was {@code null}.
+     * @see SettingRegistry#register(net.bplaced.clayn.c4j.Setting)
+     * @since 0.1
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(SettingHandle<T> handle, T def)
+    {
+        Setting<T> set = handle.getSetting();
+        SlotCache.Entry e = slots.get(handle.getSlot(), set.getClass());
+        if (e == null)
+        {
+            long version = slots.version();
+            T t = get(set);
+            slots.put(handle.getSlot(), version, set.getClass(), t);
+            return t == null ? def : t;
+        }
+        return e.value == null ? def : (T) e.value;
+    }
+
+    /**
+     * Returns the value stored with the key from the {@link Setting} of the
+     * given handle or {@code null} if no value was found. This method is equal
+     * to {@code get(handle,null);}
+     *
+     * @param <T> the type, the value should be parsed to.
+     * @param handle the handle for the Setting to use
+     * @return the stored value parsed into {@code T} or {@code null}
+     * @see #get(net.bplaced.clayn.c4j.SettingHandle, java.lang.Object)
+     * @since 0.1
+     */
+    public <T> T get(SettingHandle<T> handle)
+    {
+        return get(handle, null);
+    }
+
+    /**
+     * Returns the {@code int} stored with the key from the given
+     * {@link IntSetting} or {@code def} if no value was found. Other than
+     * {@link #get(net.bplaced.clayn.c4j.Setting, java.lang.Object)} the value
+     * is parsed directly from the stored String without creating any Objects.
+     * If a subclass of {@link IntSetting} is given, its parsing will be used
+     * instead.
+     *
+     * @param set the Setting that will be used to generate the key.
+     * @param def the default value that will be returned if no value was
+     * found.
+     * @return the stored value or {@code def} if no value was found.
+     * @throws NumberFormatException if the stored value is not an {@code int}
+     * @see #get(net.bplaced.clayn.c4j.Setting, java.lang.Object)
+     * @since 0.1
+     */
+    public int getInt(IntSetting set, int def)
+    {
+        if (set.getClass() != IntSetting.class)
+        {
+            Integer t = get(set);
+            return t == null ? def : t;
+        }
+        String raw = properties.get(set.getSettingsKey());
+        return raw == null ? def : Integer.parseInt(raw);
+    }
+
+    /**
+     * Returns the {@code long} stored with the key from the given
+     * {@link LongSetting} or {@code def} if no value was found. Other than
+     * {@link #get(net.bplaced.clayn.c4j.Setting, java.lang.Object)} the value
+     * is parsed directly from the stored String without creating any Objects.
+     * If a subclass of {@link LongSetting} is given, its parsing will be used
+     * instead.
+     *
+     * @param set the Setting that will be used to generate the key.
+     * @param def the default value that will be returned if no value was
+     * found.
+     * @return the stored value or {@code def} if no value was found.
+     * @throws NumberFormatException if the stored value is not a {@code long}
+     * @see #get(net.bplaced.clayn.c4j.Setting, java.lang.Object)
+     * @since 0.1
+     */
+    public long getLong(LongSetting set, long def)
+    {
+        if (set.getClass() != LongSetting.class)
+        {
+            Long t = get(set);
+            return t == null ? def : t;
+        }
+        String raw = properties.get(set.getSettingsKey());
+        return raw == null ? def : Long.parseLong(raw);
+    }
+
+    /**
+     * Returns the {@code double} stored with the key from the given
+     * {@link DoubleSetting} or {@code def} if no value was found. Parsing a
+     * {@code double} always creates temporary Objects, so the parsed value is
+     * taken from the same cache as
+     * {@link #get(net.bplaced.clayn.c4j.Setting, java.lang.Object)} uses. As
+     * long as the stored String does not change no Objects will be created.
+     *
+     * @param set the Setting that will be used to generate the key.
+     * @param def the default value that will be returned if no value was
+     * found.
+     * @return the stored value or {@code def} if no value was found.
+     * @throws NumberFormatException if the stored value is not a
+     * {@code double}
+     * @see #get(net.bplaced.clayn.c4j.Setting, java.lang.Object)
+     * @since 0.1
+     */
+    public double getDouble(DoubleSetting set, double def)
+    {
+        Double t = get(set);
+        return t == null ? def : t;
+    }
+
+    /**
+     * Returns the {@code boolean} stored with the key from the given
+     * {@link BooleanSetting} or {@code def} if no value was found. Other than
+     * {@link #get(net.bplaced.clayn.c4j.Setting, java.lang.Object)} the
+     * {@code def} value is returned if no value was found and not
+     * {@code false}. If a subclass of {@link BooleanSetting} is given, its
+     * parsing will be used instead.
+     *
+     * @param set the Setting that will be used to generate the key.
+     * @param def the default value that will be returned if no value was
+     * found.
+     * @return the stored value or {@code def} if no value was found.
+     * @see #get(net.bplaced.clayn.c4j.Setting, java.lang.Object)
+     * @since 0.1
+     */
+    public boolean getBoolean(BooleanSetting set, boolean def)
+    {
+        String raw = properties.get(set.getSettingsKey());
+        if (raw == null)
+        {
+            return def;
+        }
+        if (set.getClass() != BooleanSetting.class)
+        {
+            Boolean t = get(set);
+            return t == null ? def : t;
+        }
+        return Boolean.parseBoolean(raw);
+    }
+
     /**
      * Stores the given value into this {@link Configuration} stored under the
      * key from the given {@link Setting}. Due to the fact that all values are
@@ -152,7 +622,8 @@ public class Configuration extends Refresher implements Configurator
      * the value into a String. After inserting the parsed value all registered
      * {@link RefreshService} will be updated and all registered
      * {@link Observer} will be informed with the generated key (from
-     * {@link Setting#getSettingsKey()}) as argument.
+     * {@link Setting#getSettingsKey()}) as argument. If the value is parsed to
+     * {@code null} the key will be removed.
      *
      * @param <T> the type of the Object that will be stored and parsed.
      * @param set the Setting that will be used to parse and generate the needed
@@ -165,11 +636,46 @@ public class Configuration extends Refresher implements Configurator
     public <T> T put(Setting<T> set, T val)
     {
         T old = get(set);
-        properties.setProperty(set.getSettingsKey(), set.parseTo(val));
-        inform(set.getSettingsKey(), val);
+        String str = set.parseTo(val);
+        if (str == null)
+        {
+            properties.remove(set.getSettingsKey());
+        }
+        else
+        {
+            properties.put(set.getSettingsKey(), str);
+        }
+        invalidate(set.getSettingsKey());
+        publish(set.getSettingsKey(), val);
         return old;
     }
 
+    /**
+     * Returns how many times {@link #get(net.bplaced.clayn.c4j.Setting)} could
+     * return an already parsed value.
+     *
+     * @return the number of cache hits
+     * @see #getCacheMisses()
+     * @since 0.1
+     */
+    public long getCacheHits()
+    {
+        return cacheHits.sum();
+    }
+
+    /**
+     * Returns how many times {@link #get(net.bplaced.clayn.c4j.Setting)} had
+     * to parse the stored value.
+     *
+     * @return the number of cache misses
+     * @see #getCacheHits()
+     * @since 0.1
+     */
+    public long getCacheMisses()
+    {
+        return cacheMisses.sum();
+    }
+
     /**
      * Configures the given Object and returns it afterwards. All fields from
      * the given Object that are marked with the {@link Configure} annotation
@@ -177,7 +683,10 @@ public class Configuration extends Refresher implements Configurator
      * specified with the annotation. Note that only those {@link Setting}'s can
      * be used that provide a consturctor with a single String as argument. If
      * {@link Configure#refresh()} returns {@code true} a new
-     * {@link RefreshService} will be added for this field.
+     * {@link RefreshService} will be added for this field. The annotated
+     * fields and their {@link Setting}s are created only once for each class
+     * and used for all instances of it, so a {@link Setting} must not keep any
+     * state.
      *
      * @param <T> the type of the Object that will be configured.
      * @param obj the Object that will be configured
@@ -187,37 +696,517 @@ public class Configuration extends Refresher implements Configurator
     @Override
     public <T> T configure(T obj)
     {
-        Class cl = obj.getClass();
-        Field[] fields = cl.getDeclaredFields();
-        for (Field f : fields)
+        BindingPlan plan = BindingPlan.of(obj.getClass());
+        if (plan.binder != null)
+        {
+            plan.binder.configure(this, obj);
+            return obj;
+        }
+        for (BindingPlan.Binding b : plan.configure)
+        {
+            try
+            {
+                b.writer.set(obj, get(b.setting));
+                if (b.refresh)
+                {
+                    bound(b.setting);
+                    add(b.key, obj, b.field, b.async);
+                }
+            }
+            catch (IllegalArgumentException ex)
+            {
+                LogSystem.getLogger(Configuration.class).
+                        log(Level.WARNING, null, ex);
+            }
+        }
+        return obj;
+    }
+    /**
+     * Configures all the given Objects such as
+     * {@link #configure(java.lang.Object)} would do, but in parallel on the
+     * common {@link java.util.concurrent.ForkJoinPool}. The value of each
+     * field is read and parsed only once for each class and not for every
+     * Object. All {@link RefreshService}s are registered at once after all
+     * Objects were configured. If a value was changed before that, the
+     * refreshed fields are set again with the current values. Small
+     * collections are configured by the calling thread. The Objects must not
+     * be configured by other threads at the same time.
+     *
+     * @param <T> the type of the Objects
+     * @param objs the Objects that will be configured
+     * @return the same collection
+     * @since 0.1
+     */
+    @Override
+    public <T> Collection<T> configureAll(Collection<T> objs)
+    {
+        long changes = changes();
+        Object[] arr = objs.toArray();
+        final Map<Class<?>, Object[]> values = new IdentityHashMap<>();
+        for (Object obj : arr)
+        {
+            Class<?> cl = obj.getClass();
+            if (!values.containsKey(cl))
+            {
+                BindingPlan.Binding[] bindings = BindingPlan.of(cl).configure;
+                Object[] vals = new Object[bindings.length];
+                for (int i = 0; i < bindings.length; i++)
+                {
+                    vals[i] = get(bindings[i].setting);
+                }
+                values.put(cl, vals);
+            }
+        }
+        Bulk.run(arr, new Bulk.Applier()
         {
-            if (f.isAnnotationPresent(Configure.class))
+            @Override
+            public void apply(Object obj, List<RefreshService> batch)
             {
-                try
+                BindingPlan plan = BindingPlan.of(obj.getClass());
+                if (plan.binder != null)
+                {
+                    plan.binder.configure(Configuration.this, obj);
+                    return;
+                }
+                Object[] vals = values.get(obj.getClass());
+                for (int i = 0; i < vals.length; i++)
                 {
-                    Configure conf = f.getAnnotation(Configure.class);
-                    String key = conf.key();
-                    Class<? extends Setting> set = conf.setting();
-                    Setting setter = set.getConstructor(key.getClass()).
-                            newInstance(key);
-                    ConfigUtil.setField(f, obj, get(setter));
-                    if (conf.refresh())
+                    BindingPlan.Binding b = plan.configure[i];
+                    try
+                    {
+                        b.writer.set(obj, vals[i]);
+                        if (b.refresh)
+                        {
+                            bound(b.setting);
+                            batch.add(new RefreshService(b.key,
+                                    reference(obj), b.field, b.async));
+                        }
+                    }
+                    catch (IllegalArgumentException ex)
                     {
-                        add(key, obj, f.getName());
+                        LogSystem.getLogger(Configuration.class).
+                                log(Level.WARNING, null, ex);
                     }
                 }
-                catch (NoSuchMethodException | SecurityException |
-                        InstantiationException | IllegalAccessException |
-                        IllegalArgumentException | InvocationTargetException |
-                        NoSuchFieldException ex)
+            }
+        }, services);
+        Bulk.repeat(arr, new Bulk.Applier()
+        {
+            @Override
+            public void apply(Object obj, List<RefreshService> batch)
+            {
+                for (BindingPlan.Binding b : BindingPlan.of(obj.getClass()).
+                        configure)
                 {
-                    LogSystem.getLogger(Configuration.class).
-                            log(Level.WARNING, null, ex);
+                    try
+                    {
+                        if (b.refresh)
+                        {
+                            b.writer.set(obj, get(b.setting));
+                        }
+                    }
+                    catch (IllegalArgumentException ex)
+                    {
+                        LogSystem.getLogger(Configuration.class).
+                                log(Level.WARNING, null, ex);
+                    }
                 }
             }
+        }, this, changes);
+        return objs;
+    }
+
+    /**
+     * Sets a single field of the given Object with the value of the given
+     * {@link Setting} and registers the field for refreshes if
+     * {@code refresh} is {@code true}. This is used by generated
+     * {@link Binder}s, so the field is set by the given hook without
+     * reflection.
+     *
+     * @param obj the Object to configure
+     * @param name the name of the field
+     * @param setting the Setting for the key and the parsing of the value
+     * @param refresh whether the field should be refreshed
+     * @param async whether the field is refreshed by the executor
+     * @param hook the hook which sets the field
+     * @see #configure(java.lang.Object)
+     * @see Configure#async()
+     * @since 0.1
+     */
+    public void bind(Object obj, String name, Setting<?> setting,
+            boolean refresh, boolean async, Binder.Hook hook)
+    {
+        try
+        {
+            hook.set(obj, get(setting));
+        }
+        catch (ClassCastException ex)
+        {
+            LogSystem.getLogger(Configuration.class).
+                    log(Level.WARNING, null, ex);
+        }
+        if (refresh)
+        {
+            bound(setting);
+            RefreshService service = new RefreshService(setting.
+                    getSettingsKey(), reference(obj), name, hook, async);
+            List<RefreshService> batch = Bulk.BATCH.get();
+            if (batch != null)
+            {
+                batch.add(service);
+            }
+            else
+            {
+                services.add(service);
+            }
         }
-        return obj;
     }
+
+    /**
+     * Creates a new Object of the given class with the values of this
+     * Configuration. The class must either have a single constructor whose
+     * parameters are all annotated with {@link Configure} or be a record
+     * whose components are annotated with {@link Configure}. Each parameter
+     * gets the value stored with the key of its annotation, parsed by the
+     * {@link Setting} of the annotation. The constructor and the
+     * {@link Setting}s are looked up only once for each class, so that
+     * immutable configuration Objects can be created as often as needed.
+     * Unlike {@link #configure(java.lang.Object)} the created Objects are
+     * never refreshed.
+     *
+     * @param <R> the type of the created Object
+     * @param type the class of the created Object
+     * @return a new Object created with the stored values
+     * @throws IllegalArgumentException if the class has no suitable
+     * constructor or a value has the wrong type for its parameter
+     * @throws IllegalStateException if no value is stored for a primitive
+     * parameter
+     * @see Configure
+     * @since 0.1
+     */
+    public <R> R bind(Class<R> type)
+    {
+        CreationPlan plan = CreationPlan.of(type);
+        Object[] args = new Object[plan.settings.length];
+        for (int i = 0; i < args.length; i++)
+        {
+            args[i] = get(plan.settings[i]);
+            if (args[i] == null && plan.primitive[i])
+            {
+                throw new IllegalStateException("No value for the key "
+                        + plan.settings[i].getSettingsKey()
+                        + " of a primitive parameter of " + type.getName());
+            }
+        }
+        return type.cast(plan.create(args));
+    }
+
+    /**
+     * Returns an implementation of the given interface whose methods return
+     * the values of this Configuration. Every method of the interface must
+     * be annotated with {@link Configure} and have no parameters, it returns
+     * the value stored with the key of its annotation, parsed by the
+     * {@link Setting} of the annotation. The parsed value is kept until the
+     * stored String for the key is changed, no matter if by
+     * {@link #put(net.bplaced.clayn.c4j.Setting, java.lang.Object)},
+     * {@link #load(java.io.InputStream)} or through a
+     * {@link #namespace(java.lang.String)}, so the methods can be called as often as a field would be read.
+     * Methods with a primitive return type throw an
+     * {@link IllegalStateException} if no value is stored.
+     * <br><br>
+     * The implementation is generated at compile time by
+     * {@link net.bplaced.clayn.c4j.processor.BinderProcessor}. Without it a
+     * {@link java.lang.reflect.Proxy} is used, which caches the values in the
+     * same way but can´t call default methods, so interfaces with default
+     * methods are rejected then. Each Configuration creates only one
+     * implementation of each interface.
+     *
+     * @param <T> the type of the interface
+     * @param type the interface to implement
+     * @return the implementation of the interface for this Configuration
+     * @throws IllegalArgumentException if the type is no interface or has a
+     * method without {@link Configure} annotation or with parameters or if
+     * it has a default method and no generated implementation
+     * @see ConfigProxy
+     * @since 0.1
+     */
+    public <T> T proxy(Class<T> type)
+    {
+        ConfigProxy proxy = proxies.get(type);
+        if (proxy == null)
+        {
+            proxy = ProxyPlan.of(type).create(this);
+            ConfigProxy old = proxies.putIfAbsent(type, proxy);
+            if (old != null)
+            {
+                proxy = old;
+            }
+        }
+        return type.cast(proxy.view());
+    }
+
+    /**
+     * Returns a live view of all the stored Strings whose key starts with the
+     * given prefix. The keys of the view are the stored keys without the
+     * prefix, so {@code namespace("db.").get("url")} returns the String stored
+     * under {@code "db.url"}. Nothing is copied, all reads and writes go
+     * directly to this Configuration. Such as
+     * {@link #load(java.io.InputStream)} writing through the view does not
+     * update any {@link RefreshService} or {@link Observer}. Putting
+     * {@code null} removes the key and clearing the view removes all keys with
+     * the prefix. Iterating the view only needs time for the matching keys.
+     *
+     * @param prefix the prefix of the keys
+     * @return a live view of the values with the given prefix
+     * @see #removePrefix(java.lang.String)
+     * @since 0.1
+     */
+    public Map<String, String> namespace(String prefix)
+    {
+        return new Namespace<String>(prefix, properties)
+        {
+            @Override
+            String write(String key, String val)
+            {
+                String old = val == null ? properties.remove(key) : properties.
+                        put(key, val);
+                invalidate(key);
+                return old;
+            }
+
+            @Override
+            int removeAll(String prefix)
+            {
+                return removePrefix(prefix);
+            }
+        };
+    }
+
+    /**
+     * Removes all values whose key starts with the given prefix. Such as
+     * {@link #load(java.io.InputStream)} this does not update any
+     * {@link RefreshService} or {@link Observer}. If the values are stored in
+     * a {@link PersistentMap} (see {@link #persistent()}) all keys will be
+     * removed at once and the needed time only depends on the number of
+     * removed keys.
+     *
+     * @param prefix the prefix of the keys to remove
+     * @return the number of removed keys
+     * @see #namespace(java.lang.String)
+     * @since 0.1
+     */
+    public int removePrefix(String prefix)
+    {
+        int count;
+        if (properties instanceof PersistentMap)
+        {
+            count = ((PersistentMap<String, String>) properties).removePrefix(
+                    prefix);
+        }
+        else
+        {
+            count = 0;
+            for (String key : PersistentMap.keysOf(properties, prefix))
+            {
+                count += properties.remove(key) == null ? 0 : 1;
+            }
+        }
+        invalidatePrefix(prefix);
+        return count;
+    }
+
+    /**
+     * Returns a read only {@link Configuration} with all the values stored in
+     * this Configuration at the moment. Later changes at this Configuration
+     * will not affect the snapshot and trying to put values into the snapshot
+     * will throw an {@link UnsupportedOperationException}. If the values are
+     * stored in a {@link PersistentMap} (see {@link #persistent()}) no values
+     * will be copied. Observers and {@link RefreshService}s are not part of the
+     * snapshot.
+     *
+     * @return a read only copy of this Configuration
+     * @see #fork()
+     * @since 0.1
+     */
+    public Configuration snapshot()
+    {
+        return new Configuration(PersistentMap.snapshotOf(properties));
+    }
+
+    /**
+     * Returns a new {@link Configuration} with all the values stored in this
+     * Configuration at the moment. Both Configurations can be changed without
+     * affecting each other. If the values are stored in a
+     * {@link PersistentMap} (see {@link #persistent()}) no values will be
+     * copied. A {@link #compact()} Configuration stays compact and the fork of an
+     * {@link #overlay()} is another overlay of the same parent with a copy of
+     * the overridden values. Observers and {@link RefreshService}s are not
+     * part of the copy.
+     *
+     * @return a changeable copy of this Configuration
+     * @see #snapshot()
+     * @since 0.1
+     */
+    public Configuration fork()
+    {
+        if (properties instanceof OverlayMap)
+        {
+            return new Configuration(parent,
+                    ((OverlayMap<String, String>) properties).fork());
+        }
+        return properties instanceof CompactMap ? new Configuration(
+                ((CompactMap) properties).fork()) : new Configuration(
+                        PersistentMap.copyOf(properties));
+    }
+
+    /**
+     * Returns a read only {@link Configuration} with all the values stored in
+     * this Configuration at the moment. Other than {@link #snapshot()} the
+     * values are copied into a {@link FrozenMap} which needs only a single
+     * probe for each lookup. This is the fastest way to read values that will
+     * not change anymore. Trying to put values into the returned
+     * Configuration will throw an {@link UnsupportedOperationException}, use
+     * {@link #fork()} on it to get a changeable copy again.
+     *
+     * @return a read only copy of this Configuration which is optimized for
+     * reading
+     * @see #snapshot()
+     * @see #fork()
+     * @since 0.1
+     */
+    public Configuration freeze()
+    {
+        return new Configuration(new FrozenMap<>(PersistentMap.snapshotOf(
+                properties)));
+    }
+
+    /**
+     * Returns a changeable {@link Configuration} with all the values stored in
+     * this Configuration at the moment whose values are stored in a
+     * {@link PersistentMap} with prefix index. Its {@link #snapshot()} and
+     * {@link #fork()} need constant time and {@link #removePrefix(java.lang.String)}
+     * only touches the removed keys, but every lookup needs about four times
+     * as long as with the default storage and every value needs more memory.
+     * So you should only use this for configurations which are often copied.
+     *
+     * @return a persistent copy of this Configuration
+     * @see #snapshot()
+     * @see #fork()
+     * @since 0.1
+     */
+    public Configuration persistent()
+    {
+        PersistentMap<String, String> map = PersistentMap.indexed();
+        map.putAll(PersistentMap.snapshotOf(properties));
+        return new Configuration(map);
+    }
+
+    /**
+     * Returns a changeable {@link Configuration} with all the values stored in
+     * this Configuration at the moment which needs as little memory as
+     * possible. The values are stored in a {@link CompactMap}, so there is no
+     * entry object for each value and equal values are only stored once.
+     * This is meant for very large configurations, so you should call this
+     * method on an empty Configuration and load the values into the returned
+     * one. Lookups are about as fast as with the default
+     * storage but {@link #snapshot()} needs to copy the table.
+     *
+     * @return a compact copy of this Configuration
+     * @see #compact(boolean)
+     * @since 0.1
+     */
+    public Configuration compact()
+    {
+        return compact(false);
+    }
+
+    /**
+     * Returns a changeable {@link Configuration} with all the values stored in
+     * this Configuration at the moment which needs as little memory as
+     * possible. If {@code pack} is {@code true} the keys are stored as Latin-1
+     * byte arrays instead of Strings. This saves the String object of
+     * each key but every iteration over the keys, for example while saving,
+     * creates them again.
+     *
+     * @param pack whether the keys should be packed into byte arrays
+     * @return a compact copy of this Configuration
+     * @see #compact()
+     * @see CompactMap
+     * @since 0.1
+     */
+    public Configuration compact(boolean pack)
+    {
+        CompactMap map = new CompactMap(pack);
+        map.putAll(PersistentMap.snapshotOf(properties));
+        return new Configuration(map);
+    }
+
+    /**
+     * Returns a new {@link Configuration} which reads all values from this
+     * Configuration unless they are overridden in the overlay. Putting or
+     * removing values in the overlay never changes this Configuration, and
+     * the overlay only needs memory for the values it overrides. A lookup of
+     * a value which is not overridden needs a single additional hash lookup.
+     * <br><br>
+     * Changes at this Configuration are visible in the overlay immediately.
+     * If a value is changed with
+     * {@link #put(net.bplaced.clayn.c4j.Setting, java.lang.Object)} the
+     * {@link RefreshService}s and {@link Observer}s of all overlays which do
+     * not override the key are informed as well. This needs time for every
+     * overlay of this Configuration. Overlays are only weakly referenced, so
+     * they can be collected as soon as they are not used anymore.
+     * {@link #snapshot()} of an overlay only copies the overridden values if
+     * this Configuration uses the default storage.
+     *
+     * @return a new, empty overlay of this Configuration
+     * @see #getParent()
+     * @see #reset(java.lang.String)
+     * @since 0.1
+     */
+    public Configuration overlay()
+    {
+        return new Configuration(this, new OverlayMap<>(properties));
+    }
+
+    /**
+     * Returns the Configuration this one is an {@link #overlay()} of.
+     *
+     * @return the parent Configuration or {@code null} if this Configuration
+     * is no overlay
+     * @since 0.1
+     */
+    public Configuration getParent()
+    {
+        return parent;
+    }
+
+    /**
+     * Removes the overridden value of the given key from this overlay, so the
+     * value of the parent is used again. The {@link RefreshService}s and
+     * {@link Observer}s of this overlay and of its overlays which do not
+     * override the key are informed the same way as by
+     * {@link #put(net.bplaced.clayn.c4j.Setting, java.lang.Object)}. The value
+     * of the parent is parsed by the {@link Setting} the key was bound with,
+     * if it was never bound the String is used.
+     *
+     * @param key the key to reset
+     * @return the String that was stored before
+     * @throws UnsupportedOperationException if this Configuration is no
+     * {@link #overlay()}
+     * @since 0.1
+     */
+    public String reset(String key)
+    {
+        if (!(properties instanceof OverlayMap))
+        {
+            throw new UnsupportedOperationException(
+                    "Only an overlay can reset its values.");
+        }
+        String old = ((OverlayMap<String, String>) properties).reset(key);
+        changed(key);
+        return old;
+    }
+
     @Override
     public boolean equals(Object obj)
     {
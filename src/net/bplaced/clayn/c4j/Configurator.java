@@ -1,5 +1,7 @@
 package net.bplaced.clayn.c4j;
 
+import java.util.Collection;
+
 /**
  * Implementations of this interface will allow you to configure an Object in 
  * different ways. The exact way how the object will be configured depends on 
@@ -21,4 +23,23 @@ public interface Configurator
      * @since 0.1
      */
     public <T> T configure(T obj);
+
+    /**
+     * Configures all the given objects and returns the same collection. Per
+     * default each object is simply given to {@link #configure(java.lang.Object)},
+     * implementations may configure the objects in parallel.
+     *
+     * @param <T> the type of the given objects
+     * @param objs the objects that will be configured
+     * @return the exact same collection which was configured
+     * @since 0.1
+     */
+    public default <T> Collection<T> configureAll(Collection<T> objs)
+    {
+        for (T obj : objs)
+        {
+            configure(obj);
+        }
+        return objs;
+    }
 }
@@ -0,0 +1,271 @@
+package net.bplaced.clayn.c4j;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import net.bplaced.clayn.c4j.anno.Configure;
+
+/**
+ * The constructor which is used by {@link Configuration#bind(java.lang.Class)}
+ * to create the Objects of a class. The constructor is either the only
+ * constructor whose parameters are all annotated with {@link Configure} or,
+ * for a record, the canonical constructor with the {@link Configure}
+ * annotations of the record components. The plan holds a {@link MethodHandle}
+ * for the constructor that takes all arguments as a single array and the
+ * {@link Setting}s of the parameters, so creating another Object of the same
+ * class does not need any reflective lookups. Records are detected with
+ * reflection, so this class also works on Java versions without records.
+ *
+ * @author Clayn
+ * @since 0.1
+ * @version 0.1
+ */
+final class CreationPlan
+{
+
+    //<editor-fold desc="Attribute">
+    private static final ClassValue<CreationPlan> PLANS = new ClassValue<CreationPlan>()
+    {
+        @Override
+        protected CreationPlan computeValue(Class<?> type)
+        {
+            return new CreationPlan(type);
+        }
+    };
+    private static final Method IS_RECORD = methodOf(Class.class, "isRecord");
+    private static final Method COMPONENTS = methodOf(Class.class,
+            "getRecordComponents");
+
+    /**
+     * The constructor with the type {@code (Object[])Object}.
+     */
+    private final MethodHandle creator;
+    /**
+     * The Settings for the parameters of the constructor.
+     */
+    final Setting<?>[] settings;
+    /**
+     * Whether the parameter with the same index is primitive and so needs a
+     * value.
+     */
+    final boolean[] primitive;
+
+    //</editor-fold>
+    //<editor-fold desc="Konstruktoren">
+    private CreationPlan(Class<?> type)
+    {
+        if (type.isInterface() || type.isPrimitive() || type.isArray()
+                || Modifier.isAbstract(type.getModifiers()))
+        {
+            throw new IllegalArgumentException("Can´t create Objects of "
+                    + type);
+        }
+        Constructor<?> ctor = null;
+        Configure[] confs = null;
+        for (Constructor<?> c : type.getDeclaredConstructors())
+        {
+            Configure[] found = annotationsOf(c);
+            if (found == null)
+            {
+                continue;
+            }
+            if (ctor != null)
+            {
+                throw new IllegalArgumentException(
+                        "More than one constructor of " + type
+                        + " has only Configure parameters");
+            }
+            ctor = c;
+            confs = found;
+        }
+        if (ctor == null && isRecord(type))
+        {
+            Class<?>[] types = componentTypes(type);
+            confs = new Configure[types.length];
+            try
+            {
+                ctor = type.getDeclaredConstructor(types);
+                Object[] comps = (Object[]) COMPONENTS.invoke(type);
+                for (int i = 0; i < comps.length; i++)
+                {
+                    String name = (String) comps[i].getClass().getMethod(
+                            "getName").invoke(comps[i]);
+                    Field f = type.getDeclaredField(name);
+                    confs[i] = f.getAnnotation(Configure.class);
+                    if (confs[i] == null)
+                    {
+                        throw new IllegalArgumentException("The component "
+                                + name + " of " + type
+                                + " has no Configure annotation");
+                    }
+                }
+            }
+            catch (NoSuchMethodException | NoSuchFieldException |
+                    IllegalAccessException | InvocationTargetException ex)
+            {
+                throw new IllegalArgumentException(
+                        "Can´t find the canonical constructor of " + type, ex);
+            }
+        }
+        if (ctor == null)
+        {
+            throw new IllegalArgumentException(type
+                    + " is no record and has no constructor with only Configure parameters");
+        }
+        Class<?>[] params = ctor.getParameterTypes();
+        settings = new Setting<?>[params.length];
+        primitive = new boolean[params.length];
+        for (int i = 0; i < params.length; i++)
+        {
+            primitive[i] = params[i].isPrimitive();
+            try
+            {
+                settings[i] = confs[i].setting().getConstructor(String.class).
+                        newInstance(confs[i].key());
+            }
+            catch (NoSuchMethodException | InstantiationException |
+                    IllegalAccessException | InvocationTargetException ex)
+            {
+                throw new IllegalArgumentException("Can´t create the Setting "
+                        + "for the key " + confs[i].key(), ex);
+            }
+        }
+        try
+        {
+            ctor.setAccessible(true);
+            creator = MethodHandles.lookup().unreflectConstructor(ctor).asType(
+                    MethodType.genericMethodType(params.length)).asSpreader(
+                    Object[].class, params.length);
+        }
+        catch (IllegalAccessException | RuntimeException ex)
+        {
+            throw new IllegalArgumentException("Can´t call the constructor "
+                    + ctor, ex);
+        }
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Private">
+    private static Method methodOf(Class<?> type, String name)
+    {
+        try
+        {
+            return type.getMethod(name);
+        }
+        catch (NoSuchMethodException ex)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the annotations of the parameters of the given constructor or
+     * {@code null} if it has no parameters or not all of them are annotated.
+     */
+    private static Configure[] annotationsOf(Constructor<?> ctor)
+    {
+        Annotation[][] annos = ctor.getParameterAnnotations();
+        if (annos.length == 0 || annos.length != ctor.getParameterCount())
+        {
+            return null;
+        }
+        Configure[] confs = new Configure[annos.length];
+        for (int i = 0; i < annos.length; i++)
+        {
+            for (Annotation a : annos[i])
+            {
+                if (a instanceof Configure)
+                {
+                    confs[i] = (Configure) a;
+                }
+            }
+            if (confs[i] == null)
+            {
+                return null;
+            }
+        }
+        return confs;
+    }
+
+    private static boolean isRecord(Class<?> type)
+    {
+        try
+        {
+            return IS_RECORD != null && (Boolean) IS_RECORD.invoke(type);
+        }
+        catch (IllegalAccessException | InvocationTargetException ex)
+        {
+            return false;
+        }
+    }
+
+    private static Class<?>[] componentTypes(Class<?> type)
+    {
+        try
+        {
+            Object[] comps = (Object[]) COMPONENTS.invoke(type);
+            Class<?>[] types = new Class<?>[comps.length];
+            for (int i = 0; i < comps.length; i++)
+            {
+                types[i] = (Class<?>) comps[i].getClass().getMethod("getType").
+                        invoke(comps[i]);
+            }
+            return types;
+        }
+        catch (NoSuchMethodException | IllegalAccessException |
+                InvocationTargetException ex)
+        {
+            throw new IllegalArgumentException(
+                    "Can´t read the components of " + type, ex);
+        }
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Public">
+    /**
+     * Returns the plan for the given class.
+     *
+     * @param type the class of the created Objects
+     * @return the plan for the class
+     * @throws IllegalArgumentException if the class is no record and has no
+     * constructor with only {@link Configure} parameters or more than one
+     */
+    static CreationPlan of(Class<?> type)
+    {
+        return PLANS.get(type);
+    }
+
+    /**
+     * Creates a new Object with the given arguments.
+     *
+     * @param args the arguments in the order of the parameters
+     * @return the new Object
+     * @throws IllegalArgumentException if an argument has the wrong type
+     */
+    Object create(Object[] args)
+    {
+        try
+        {
+            return creator.invokeExact(args);
+        }
+        catch (ClassCastException ex)
+        {
+            throw new IllegalArgumentException(ex);
+        }
+        catch (RuntimeException | Error ex)
+        {
+            throw ex;
+        }
+        catch (Throwable ex)
+        {
+            throw new IllegalStateException(ex);
+        }
+    }
+    //</editor-fold>
+}
@@ -0,0 +1,209 @@
+package net.bplaced.clayn.c4j;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import net.bplaced.clayn.c4j.project.LogSystem;
+
+/**
+ * Delivers the changes of a {@link Refresher} on an {@link Executor}. Each
+ * key has its own mailbox which is run by at most one task at a time, so the
+ * changes of a key are delivered in the order they were made. A mailbox only
+ * keeps the latest value, so a burst of changes to the same key is delivered
+ * as a single change with the last value. Each task delivers one value and
+ * submits a new task if there is another one, so a key which is changed all
+ * the time does not block a thread of the executor. A mailbox which has
+ * nothing left to deliver is removed, so keys which are changed only once do
+ * not keep their mailbox forever.
+ *
+ * @author Clayn
+ * @see Refresher#setExecutor(java.util.concurrent.Executor)
+ * @since 0.1
+ * @version 0.1
+ */
+final class Dispatcher
+{
+
+    //<editor-fold desc="Attribute">
+    private final Executor executor;
+    private final Refresher target;
+    private final ConcurrentMap<String, Mailbox> mailboxes = new ConcurrentHashMap<>();
+    /**
+     * Marks a mailbox which was removed and takes no more values.
+     */
+    private static final Object[] RETIRED = new Object[0];
+
+    //</editor-fold>
+    //<editor-fold desc="Konstruktoren">
+    Dispatcher(Executor executor, Refresher target)
+    {
+        this.executor = executor;
+        this.target = target;
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Private">
+    /**
+     * The latest undelivered value of a single key.
+     */
+    private final class Mailbox implements Runnable
+    {
+
+        private final String key;
+        /**
+         * The latest value wrapped in an array, so {@code null} values can be
+         * delivered too, {@code null} if there is none or {@link #RETIRED}
+         * if the mailbox was removed.
+         */
+        private final AtomicReference<Object[]> latest = new AtomicReference<>();
+        /**
+         * Set while a task runs or is about to run the mailbox. A removed
+         * mailbox keeps it set, so it is never run again.
+         */
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        private Mailbox(String key)
+        {
+            this.key = key;
+        }
+
+        /**
+         * Replaces the latest value unless the mailbox was removed.
+         *
+         * @return {@code false} if the mailbox was removed and a new one must
+         * be used
+         */
+        private boolean offer(Object[] val)
+        {
+            while (true)
+            {
+                Object[] cur = latest.get();
+                if (cur == RETIRED)
+                {
+                    return false;
+                }
+                if (latest.compareAndSet(cur, val))
+                {
+                    return true;
+                }
+            }
+        }
+
+        private void schedule()
+        {
+            if (!scheduled.compareAndSet(false, true))
+            {
+                return;
+            }
+            try
+            {
+                executor.execute(this);
+            }
+            catch (RejectedExecutionException ex)
+            {
+                LogSystem.getLogger(Dispatcher.class).
+                        log(Level.WARNING,
+                                "Delivering the change synchronously", ex);
+                run();
+            }
+        }
+
+        @Override
+        public void run()
+        {
+            Object[] next = latest.getAndSet(null);
+            try
+            {
+                if (next != null)
+                {
+                    target.deliver(key, next[0]);
+                }
+            }
+            catch (RuntimeException ex)
+            {
+                LogSystem.getLogger(Dispatcher.class).
+                        log(Level.SEVERE, null, ex);
+            }
+            finally
+            {
+                if (latest.compareAndSet(null, RETIRED))
+                {
+                    // Still scheduled, so no other task runs this mailbox
+                    // and a later change goes into a new one.
+                    mailboxes.remove(key, this);
+                }
+                else
+                {
+                    scheduled.set(false);
+                    if (latest.get() != null)
+                    {
+                        schedule();
+                    }
+                }
+            }
+        }
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Public">
+    /**
+     * Returns the executor the changes are delivered on.
+     *
+     * @return the executor
+     */
+    Executor getExecutor()
+    {
+        return executor;
+    }
+
+    /**
+     * Returns the number of keys which have a mailbox, which are the keys
+     * whose last change is not delivered yet.
+     *
+     * @return the number of mailboxes
+     */
+    int size()
+    {
+        return mailboxes.size();
+    }
+
+    /**
+     * Delivers the given change on the executor. If the key is already
+     * waiting for its delivery, only the value is replaced.
+     *
+     * @param key the changed key
+     * @param val the new value
+     */
+    void dispatch(String key, Object val)
+    {
+        Object[] wrapped =
+        {
+            val
+        };
+        while (true)
+        {
+            Mailbox box = mailboxes.get(key);
+            if (box == null)
+            {
+                box = new Mailbox(key);
+                Mailbox old = mailboxes.putIfAbsent(key, box);
+                if (old != null)
+                {
+                    box = old;
+                }
+            }
+            if (box.offer(wrapped))
+            {
+                box.schedule();
+                return;
+            }
+            // The mailbox was retired after it was looked up.
+            mailboxes.remove(key, box);
+        }
+    }
+    //</editor-fold>
+}
@@ -1,23 +1,42 @@
 package net.bplaced.clayn.c4j;
 
 import java.io.EOFException;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
-import java.lang.reflect.Field;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Observer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import net.bplaced.clayn.c4j.anno.Env;
 import net.bplaced.clayn.c4j.project.LogSystem;
-import net.bplaced.clayn.c4j.util.ConfigUtil;
+import net.bplaced.clayn.c4j.util.BoundedMap;
+import net.bplaced.clayn.c4j.util.FrozenMap;
+import net.bplaced.clayn.c4j.util.OffHeapMap;
+import net.bplaced.clayn.c4j.util.PersistentMap;
+import net.bplaced.clayn.c4j.util.TimerWheel;
 
 /**
  * An {@link Environment} is a storage class which can store any Object other
@@ -41,9 +60,43 @@ public class Environment extends Refresher implements Configurator
 
     //<editor-fold desc="Attribute">
     /**
-     * The map that represents the storage for Objects and key to save
+     * The map that represents the storage for Objects and key to save. The map
+     * is a {@link ConcurrentMap} so reading threads never block and never wait
+     * for writing threads. Because of that {@code null} can´t be stored as a
+     * value. Storing {@code null} removes the key instead. Per default the map
+     * is a {@link ConcurrentHashMap}, a {@link #persistent()} Environment uses
+     * a {@link PersistentMap} so {@link #snapshot()} and {@link #fork()} need
+     * constant time.
      */
-    protected final Map<String, Object> environment = new HashMap<>();
+    protected final ConcurrentMap<String, Object> environment;
+
+    /**
+     * Cache for the values read with a {@link SettingHandle}.
+     */
+    private final SlotCache slots = new SlotCache();
+
+    /**
+     * The expiry times of the values stored with a time to live. Created with
+     * the first such value. From then on every write holds the lock of the
+     * wheel and cancels or replaces the timer of its key, so a scheduled
+     * timer is the stamp of the entry that is stored for its key.
+     */
+    private volatile TimerWheel expiry;
+
+    /**
+     * The values which are computed with their first access.
+     */
+    private final ConcurrentMap<String, Lazy> lazies = new ConcurrentHashMap<>();
+
+    /**
+     * The running computations of the {@link #loader}.
+     */
+    private final ConcurrentMap<String, Lazy> loading = new ConcurrentHashMap<>();
+
+    /**
+     * Loads the values for missing keys or {@code null}.
+     */
+    private volatile Function<String, ?> loader;
 
     //</editor-fold>
     //<editor-fold desc="Konstruktoren">
@@ -55,7 +108,20 @@ public class Environment extends Refresher implements Configurator
      */
     public Environment()
     {
-        
+        this(new ConcurrentHashMap<String, Object>());
+    }
+
+    /**
+     * Generates a new Environment which uses the given map to store its
+     * values. The map is used directly and not copied.
+     *
+     * @param environment the map to store the values in
+     * @since 0.1
+     * @see #Environment()
+     */
+    protected Environment(ConcurrentMap<String, Object> environment)
+    {
+        this.environment = environment;
     }
 
     /**
@@ -126,6 +192,390 @@ public class Environment extends Refresher implements Configurator
 
     }
 
+    /**
+     * Removes the expired values of an {@link Environment} once per second.
+     * Only holds a weak reference to the {@link Environment} and stops itself
+     * when the {@link Environment} was collected.
+     */
+    private static final class Sweeper implements Runnable
+    {
+
+        private static final ScheduledExecutorService EXECUTOR = Executors.
+                newSingleThreadScheduledExecutor(new ThreadFactory()
+                {
+                    @Override
+                    public Thread newThread(Runnable r)
+                    {
+                        Thread t = new Thread(r, "Config4J-Expiry");
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+        private final WeakReference<Environment> env;
+        private volatile ScheduledFuture<?> future;
+
+        private Sweeper(Environment env)
+        {
+            this.env = new WeakReference<>(env);
+        }
+
+        private void start()
+        {
+            future = EXECUTOR.scheduleWithFixedDelay(this, 1, 1,
+                    TimeUnit.SECONDS);
+        }
+
+        @Override
+        public void run()
+        {
+            Environment e = env.get();
+            if (e == null)
+            {
+                future.cancel(false);
+                return;
+            }
+            try
+            {
+                e.expire();
+            }
+            catch (RuntimeException ex)
+            {
+                LogSystem.getLogger(Environment.class).
+                        log(Level.WARNING, null, ex);
+            }
+        }
+    }
+
+    /**
+     * A value which is computed once. All threads which need the value at the
+     * same time wait for the same computation. Fields which were configured
+     * before the value was ready are set once it is ready.
+     */
+    private static final class Lazy extends FutureTask<Object>
+    {
+
+        private final Callable<Object> source;
+        private final AtomicBoolean published = new AtomicBoolean();
+        private final List<RefreshService> waiting = new ArrayList<>();
+        private boolean done;
+        private Object value;
+        /**
+         * The Lazy which replaced this one and waits in its place or
+         * {@code null}.
+         */
+        private Lazy next;
+
+        private Lazy(Callable<Object> source)
+        {
+            super(source);
+            this.source = source;
+        }
+
+        /**
+         * Returns {@code true} for the only caller that may publish the
+         * value.
+         */
+        private boolean publish()
+        {
+            return published.compareAndSet(false, true);
+        }
+
+        private synchronized void await(RefreshService service)
+        {
+            if (next != null)
+            {
+                next.await(service);
+            }
+            else if (done)
+            {
+                set(service, value);
+            }
+            else
+            {
+                waiting.add(service);
+            }
+        }
+
+        private synchronized void release(Object val)
+        {
+            done = true;
+            value = val;
+            for (RefreshService service : waiting)
+            {
+                set(service, val);
+            }
+            waiting.clear();
+        }
+
+        /**
+         * Moves all waiting services to the given Lazy which replaces this
+         * one. Services which wait later are moved too.
+         */
+        private synchronized void forward(Lazy lazy)
+        {
+            next = lazy;
+            for (RefreshService service : waiting)
+            {
+                lazy.await(service);
+            }
+            waiting.clear();
+        }
+
+        private static void set(RefreshService service, Object val)
+        {
+            try
+            {
+                service.update(val);
+            }
+            catch (IllegalArgumentException ex)
+            {
+                LogSystem.getLogger(Environment.class).
+                        log(Level.WARNING, null, ex);
+            }
+        }
+    }
+
+    /**
+     * Returns the lazy or loaded value for the given key or {@code null} if
+     * there is none.
+     */
+    private Object load(final String key)
+    {
+        Lazy lazy = lazies.get(key);
+        if (lazy != null)
+        {
+            return compute(key, lazy, lazies);
+        }
+        final Function<String, ?> l = loader;
+        if (l == null)
+        {
+            return null;
+        }
+        lazy = loading.get(key);
+        if (lazy == null)
+        {
+            Lazy created = new Lazy(new Callable<Object>()
+            {
+                @Override
+                public Object call() throws Exception
+                {
+                    return l.apply(key);
+                }
+            });
+            lazy = loading.putIfAbsent(key, created);
+            if (lazy == null)
+            {
+                lazy = created;
+            }
+        }
+        return compute(key, lazy, loading);
+    }
+
+    /**
+     * Runs the computation if no other thread did and waits for the result.
+     * The first thread that has the result stores it unless another value was
+     * put in the meantime.
+     */
+    private Object compute(String key, Lazy lazy,
+            ConcurrentMap<String, Lazy> owner)
+    {
+        lazy.run();
+        Object val;
+        try
+        {
+            val = lazy.get();
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(
+                    "Interrupted while waiting for the value of " + key, ex);
+        }
+        catch (ExecutionException ex)
+        {
+            if (owner == lazies)
+            {
+                Lazy retry = new Lazy(lazy.source);
+                if (lazies.replace(key, lazy, retry))
+                {
+                    lazy.forward(retry);
+                }
+            }
+            else
+            {
+                loading.remove(key, lazy);
+            }
+            throw new IllegalStateException(
+                    "The value for " + key + " could not be computed", ex.
+                    getCause());
+        }
+        if (lazy.publish())
+        {
+            if (val != null && storeIfAbsent(key, val) == null)
+            {
+                slots.invalidate();
+                inform(key, val);
+            }
+            owner.remove(key, lazy);
+            lazy.release(val);
+        }
+        return val;
+    }
+
+    private TimerWheel wheel()
+    {
+        TimerWheel w = expiry;
+        if (w == null)
+        {
+            synchronized (this)
+            {
+                w = expiry;
+                if (w == null)
+                {
+                    w = new TimerWheel();
+                    expiry = w;
+                    new Sweeper(this).start();
+                }
+            }
+        }
+        return w;
+    }
+
+    /**
+     * Writes the value into the map, {@code null} removes the key. If
+     * {@code ttl} is positive the entry expires after that many nanoseconds,
+     * otherwise a scheduled expiry of the key is cancelled. Does not inform
+     * anyone.
+     */
+    private Object store(String key, Object val, long ttl)
+    {
+        TimerWheel w = ttl > 0 ? wheel() : expiry;
+        if (w == null)
+        {
+            return val == null ? environment.remove(key) : environment.put(
+                    key, val);
+        }
+        long now = System.nanoTime();
+        synchronized (w)
+        {
+            Object old = val == null ? environment.remove(key) : environment.
+                    put(key, val);
+            if (ttl > 0 && val != null)
+            {
+                w.schedule(key, now + ttl);
+            }
+            else
+            {
+                w.cancel(key);
+            }
+            return old;
+        }
+    }
+
+    /**
+     * Writes the value into the map if the key has no value. Does not inform
+     * anyone.
+     */
+    private Object storeIfAbsent(String key, Object val)
+    {
+        TimerWheel w = expiry;
+        if (w == null)
+        {
+            return environment.putIfAbsent(key, val);
+        }
+        synchronized (w)
+        {
+            Object old = environment.putIfAbsent(key, val);
+            if (old == null)
+            {
+                w.cancel(key);
+            }
+            return old;
+        }
+    }
+
+    /**
+     * Removes the entry of the given timer if the timer is still its stamp and
+     * informs about the removal.
+     */
+    private boolean expire(TimerWheel w, TimerWheel.Timer timer)
+    {
+        Object old;
+        synchronized (w)
+        {
+            old = w.cancel(timer) ? environment.remove(timer.getKey()) : null;
+        }
+        if (old == null)
+        {
+            return false;
+        }
+        slots.invalidate();
+        inform(timer.getKey(), null);
+        return true;
+    }
+
+    /**
+     * Removes the entries of the given timers if they were not changed since
+     * the timers were scheduled.
+     */
+    private int expire(TimerWheel w, List<TimerWheel.Timer> timers)
+    {
+        int count = 0;
+        for (TimerWheel.Timer timer : timers)
+        {
+            if (expire(w, timer))
+            {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Checks whether the given value that was read for the key is expired and
+     * removes it in that case.
+     */
+    private boolean expired(String key, Object val)
+    {
+        TimerWheel w = expiry;
+        if (w == null || val == null)
+        {
+            return false;
+        }
+        return expired(w, w.get(key));
+    }
+
+    /**
+     * Checks whether the given timer is expired and removes its value in that
+     * case.
+     */
+    private boolean expired(TimerWheel w, TimerWheel.Timer timer)
+    {
+        if (timer == null || !timer.isExpired(System.nanoTime()))
+        {
+            return false;
+        }
+        expire(w, timer);
+        return true;
+    }
+
+    /**
+     * Stores the value with the given time to live in nanoseconds, if it is
+     * positive, and informs about the change.
+     */
+    private Object write(String key, Object val, long ttl)
+    {
+        Lazy lazy = lazies.isEmpty() ? null : lazies.remove(key);
+        Object old = store(key, val, ttl);
+        slots.invalidate();
+        inform(key, val);
+        if (lazy != null && lazy.publish())
+        {
+            lazy.release(val);
+        }
+        return old;
+    }
+
     //</editor-fold>
     //<editor-fold desc="Public">
     /**
@@ -137,7 +587,8 @@ public class Environment extends Refresher implements Configurator
      * yourself.<br><br>
      * Note: To save the value and the key they will be wrappend into an
      * {@link StoredObject} so you have to cast to {@link StoredObject} and then
-     * you can work with it. Also this operation is Threadsafe which means that
+     * you can work with it. Also this operation is Threadsafe but it does not
+     * block other threads. The values are taken from a {@link #snapshot()} so
      * all changes made during the saving process will not be saved.
      *
      *
@@ -153,27 +604,25 @@ public class Environment extends Refresher implements Configurator
         {
             return;
         }
-        synchronized (environment)
+        Map<String, Object> snapshot = PersistentMap.snapshotOf(environment);
+        List<StoredObject> stored = new ArrayList<>(snapshot.size());
+        for (Map.Entry<String, Object> entry : snapshot.entrySet())
         {
-            List<StoredObject> stored = new ArrayList<>(environment.size());
-            for (String key : environment.keySet())
+            Object object = entry.getValue();
+            if (object instanceof Serializable)
             {
-                Object object = environment.get(key);
-                if (object instanceof Serializable)
-                {
-                    StoredObject obj = new StoredObject(key, object);
-                    stored.add(obj);
-                }
+                StoredObject obj = new StoredObject(entry.getKey(), object);
+                stored.add(obj);
             }
-            try (ObjectOutputStream objout = new ObjectOutputStream(out))
+        }
+        try (ObjectOutputStream objout = new ObjectOutputStream(out))
+        {
+            objout.writeInt(stored.size());
+            for (StoredObject storedObject : stored)
             {
-                objout.writeInt(stored.size());
-                for (StoredObject storedObject : stored)
-                {
-                    objout.writeObject(storedObject);
-                }
-                objout.flush();
+                objout.writeObject(storedObject);
             }
+            objout.flush();
         }
     }
 
@@ -186,8 +635,8 @@ public class Environment extends Refresher implements Configurator
      * {@link #save(java.io.OutputStream)}. If all those conditions are correct
      * all stored Objects will be stored under theyre specific key.
      * <br><br>
-     * Note: This method is Threadsafe so theire will be no changes at the
-     * current values during the loading process.
+     * Note: This method is Threadsafe but does not block other threads. Each
+     * loaded Object becomes visible as soon as it was stored.
      *
      * @param in the Inputstream to load the Objects from. If this argument is
      * {@code null} this method will simply return.
@@ -200,30 +649,31 @@ public class Environment extends Refresher implements Configurator
         {
             return;
         }
-        synchronized (environment)
+        try
         {
-            try
+            try (ObjectInputStream objin = new ObjectInputStream(in))
             {
-                try (ObjectInputStream objin = new ObjectInputStream(in))
+                int count = objin.readInt();
+                for (int i = 0; i < count; i++)
                 {
-                    int count = objin.readInt();
-                    for (int i = 0; i < count; i++)
+                    StoredObject stored = (StoredObject) objin.readObject();
+                    if (stored.getValue() != null)
                     {
-                        StoredObject stored = (StoredObject) objin.readObject();
-                        environment.put(stored.getKey(), stored.getValue());
+                        store(stored.getKey(), stored.getValue(), 0);
+                        slots.invalidate();
                     }
                 }
             }
-            catch (EOFException ex)
-            {
-                Logger.getLogger("Unexcpected Exception").warning(
-                        "There was an EOFException during the loading of the Environment which should not occur");
-            }
-            catch (ClassNotFoundException ex)
-            {
-                LogSystem.getLogger(Environment.class).
-                        log(Level.SEVERE, null, ex);
-            }
+        }
+        catch (EOFException ex)
+        {
+            Logger.getLogger("Unexcpected Exception").warning(
+                    "There was an EOFException during the loading of the Environment which should not occur");
+        }
+        catch (ClassNotFoundException ex)
+        {
+            LogSystem.getLogger(Environment.class).
+                    log(Level.SEVERE, null, ex);
         }
     }
 
@@ -235,7 +685,9 @@ public class Environment extends Refresher implements Configurator
      * {@code true} this field will be added to the fields that will be updated
      * when the value for the specific {@code key} was changed. This behaviour
      * can be also started manually with
-     * {@link #add(java.lang.String, java.lang.Object, java.lang.String)}.
+     * {@link #add(java.lang.String, java.lang.Object, java.lang.String)}. The
+     * annotated fields of a class are only looked up with the first call for
+     * an instance of that class.
      *
      * @param <T> the type of the Object to configure
      * @param obj the object that should be configured
@@ -249,37 +701,216 @@ public class Environment extends Refresher implements Configurator
     @Override
     public <T> T configure(T obj)
     {
-        Class cl = obj.getClass();
-        Field[] fields = cl.getDeclaredFields();
-        for (Field f : fields)
+        BindingPlan plan = BindingPlan.of(obj.getClass());
+        if (plan.binder != null)
         {
-            if (f.isAnnotationPresent(Env.class))
+            plan.binder.configure(this, obj);
+            return obj;
+        }
+        for (BindingPlan.Binding b : plan.env)
+        {
+            try
             {
-                try
+                Lazy lazy = lazies.isEmpty() ? null : lazies.get(b.key);
+                if (lazy != null && environment.get(b.key) == null)
                 {
-                    Env conf = f.getAnnotation(Env.class);
-                    String key = conf.value();
-                    ConfigUtil.setField(f, obj, get(key));
-                    if (conf.refresh())
+                    if (!b.refresh)
                     {
-                        add(key, obj, f.getName());
+                        lazy.await(new RefreshService(b.key, reference(obj),
+                                b.field, false));
                     }
                 }
-                catch (NoSuchFieldException | IllegalArgumentException |
-                        IllegalAccessException ex)
+                else
                 {
-                    LogSystem.getLogger(Environment.class).
-                            log(Level.WARNING, null, ex);
+                    b.writer.set(obj, get(b.key));
                 }
+                if (b.refresh)
+                {
+                    add(b.key, obj, b.field, b.async);
+                }
+            }
+            catch (IllegalArgumentException ex)
+            {
+                LogSystem.getLogger(Environment.class).
+                        log(Level.WARNING, null, ex);
             }
         }
         return obj;
     }
 
+    /**
+     * Sets a single field of the given Object with the value stored under the
+     * given key and registers the field for refreshes if {@code refresh} is
+     * {@code true}. This is used by generated {@link Binder}s, so the field is
+     * set by the given hook without reflection. Such as
+     * {@link #configure(java.lang.Object)} a value which was put with
+     * {@link #putLazy(java.lang.String, java.util.function.Supplier)} is not
+     * computed, the field is set once the value is ready.
+     *
+     * @param obj the Object to configure
+     * @param name the name of the field
+     * @param key the key of the value
+     * @param refresh whether the field should be refreshed
+     * @param async whether the field is refreshed by the executor
+     * @param hook the hook which sets the field
+     * @see #configure(java.lang.Object)
+     * @see Env#async()
+     * @since 0.1
+     */
+    public void bind(Object obj, String name, String key, boolean refresh,
+            boolean async, Binder.Hook hook)
+    {
+        RefreshService service = new RefreshService(key, reference(obj), name,
+                hook, async);
+        try
+        {
+            Lazy lazy = lazies.isEmpty() ? null : lazies.get(key);
+            if (lazy != null && environment.get(key) == null)
+            {
+                if (!refresh)
+                {
+                    lazy.await(service);
+                }
+            }
+            else
+            {
+                service.update(get(key));
+            }
+        }
+        catch (IllegalArgumentException ex)
+        {
+            LogSystem.getLogger(Environment.class).
+                    log(Level.WARNING, null, ex);
+        }
+        if (refresh)
+        {
+            List<RefreshService> batch = Bulk.BATCH.get();
+            if (batch != null)
+            {
+                batch.add(service);
+            }
+            else
+            {
+                services.add(service);
+            }
+        }
+    }
+
+    /**
+     * Configures all the given Objects such as
+     * {@link #configure(java.lang.Object)} would do, but in parallel on the
+     * common {@link java.util.concurrent.ForkJoinPool}. The value of each
+     * field is read only once for each class and not for every Object. All
+     * {@link RefreshService}s are registered at once after all Objects were
+     * configured. If a value was changed before that, the refreshed fields
+     * are set again with the current values. Small collections are
+     * configured by the calling thread. The Objects must not be configured by
+     * other threads at the same time.
+     *
+     * @param <T> the type of the Objects
+     * @param objs the Objects that will be configured
+     * @return the same collection
+     * @since 0.1
+     */
+    @Override
+    public <T> Collection<T> configureAll(Collection<T> objs)
+    {
+        long changes = changes();
+        Object[] arr = objs.toArray();
+        final Map<Class<?>, Object[]> values = new IdentityHashMap<>();
+        for (Object obj : arr)
+        {
+            Class<?> cl = obj.getClass();
+            if (!values.containsKey(cl))
+            {
+                BindingPlan.Binding[] bindings = BindingPlan.of(cl).env;
+                Object[] vals = new Object[bindings.length];
+                for (int i = 0; i < bindings.length; i++)
+                {
+                    String key = bindings[i].key;
+                    Lazy lazy = lazies.isEmpty() ? null : lazies.get(key);
+                    vals[i] = lazy != null && environment.get(key) == null
+                            ? lazy : get(key);
+                }
+                values.put(cl, vals);
+            }
+        }
+        Bulk.run(arr, new Bulk.Applier()
+        {
+            @Override
+            public void apply(Object obj, List<RefreshService> batch)
+            {
+                BindingPlan plan = BindingPlan.of(obj.getClass());
+                if (plan.binder != null)
+                {
+                    plan.binder.configure(Environment.this, obj);
+                    return;
+                }
+                Object[] vals = values.get(obj.getClass());
+                for (int i = 0; i < vals.length; i++)
+                {
+                    BindingPlan.Binding b = plan.env[i];
+                    try
+                    {
+                        if (vals[i] instanceof Lazy)
+                        {
+                            if (!b.refresh)
+                            {
+                                ((Lazy) vals[i]).await(new RefreshService(
+                                        b.key, reference(obj), b.field,
+                                        false));
+                            }
+                        }
+                        else
+                        {
+                            b.writer.set(obj, vals[i]);
+                        }
+                        if (b.refresh)
+                        {
+                            batch.add(new RefreshService(b.key,
+                                    reference(obj), b.field, b.async));
+                        }
+                    }
+                    catch (IllegalArgumentException ex)
+                    {
+                        LogSystem.getLogger(Environment.class).
+                                log(Level.WARNING, null, ex);
+                    }
+                }
+            }
+        }, services);
+        Bulk.repeat(arr, new Bulk.Applier()
+        {
+            @Override
+            public void apply(Object obj, List<RefreshService> batch)
+            {
+                for (BindingPlan.Binding b : BindingPlan.of(obj.getClass()).
+                        env)
+                {
+                    try
+                    {
+                        if (b.refresh && (lazies.isEmpty() || !lazies.
+                                containsKey(b.key)))
+                        {
+                            b.writer.set(obj, get(b.key));
+                        }
+                    }
+                    catch (IllegalArgumentException ex)
+                    {
+                        LogSystem.getLogger(Environment.class).
+                                log(Level.WARNING, null, ex);
+                    }
+                }
+            }
+        }, this, changes);
+        return objs;
+    }
+
     /**
      * Puts the given value into the {@link Environment} stored under the given
      * key. All attached {@link Observer} will be notified with the {@code key}
-     * as argument.
+     * as argument after the value was stored. Storing {@code null} removes the
+     * key from this {@link Environment}.
      *
      * @param key the key for the given value
      * @param val the value to be stored
@@ -297,8 +928,153 @@ public class Environment extends Refresher implements Configurator
             throw new IllegalArgumentException(
                     "Can´t store the environment within itself");
         }
-        inform(key, val);
-        return environment.put(key, val);
+        return write(key, val, 0);
+    }
+
+    /**
+     * Stores a value under the given key which is computed by the given
+     * supplier with the first access. Until then the key has no value and the
+     * supplier is not called. If multiple threads need the value at the same
+     * time the supplier is only called once and all threads wait for its
+     * result. The result is stored the same way as with
+     * {@link #put(java.lang.String, java.lang.Object)}, so all
+     * {@link RefreshService}s are informed. Fields which are
+     * {@link #configure(java.lang.Object) configured} with the key before the
+     * value is ready are set once it is ready. If the supplier throws an
+     * exception, it will be called again with the next access and the fields
+     * keep waiting. The value that was stored before is removed without
+     * informing anyone, so the computed value is the only change the
+     * {@link RefreshService}s and {@link Observer}s are informed about.
+     * <br><br>
+     * Putting a value under the same key cancels the supplier. Values which
+     * were not computed yet are not part of {@link #snapshot()},
+     * {@link #fork()} or the saved values. The supplier must not read its own
+     * key.
+     *
+     * @param key the key for the value
+     * @param supplier the supplier which computes the value
+     * @return the Object that was stored with this key before or {@code null}
+     * if no Object was stored before.
+     * @throws IllegalArgumentException if {@code supplier} is {@code null}
+     * @see #setLoader(java.util.function.Function)
+     * @since 0.1
+     */
+    public Object putLazy(String key, final Supplier<?> supplier)
+    {
+        if (supplier == null)
+        {
+            throw new IllegalArgumentException(
+                    "The supplier must not be 'null'.");
+        }
+        Lazy lazy = new Lazy(new Callable<Object>()
+        {
+            @Override
+            public Object call() throws Exception
+            {
+                return supplier.get();
+            }
+        });
+        Lazy previous = lazies.put(key, lazy);
+        Object old = store(key, null, 0);
+        slots.invalidate();
+        if (previous != null && previous.publish())
+        {
+            previous.forward(lazy);
+        }
+        return old;
+    }
+
+    /**
+     * Sets the loader which is asked for the value of every key that has no
+     * value. The loaded value is stored the same way as with
+     * {@link #put(java.lang.String, java.lang.Object)}, so all
+     * {@link RefreshService}s are informed. If multiple threads miss the same
+     * key at the same time the loader is only called once. If the loader
+     * returns {@code null} nothing is stored and the loader is asked again
+     * with the next miss.
+     *
+     * @param loader the loader for missing keys or {@code null} to remove
+     * the loader
+     * @see #putLazy(java.lang.String, java.util.function.Supplier)
+     * @since 0.1
+     */
+    public void setLoader(Function<String, ?> loader)
+    {
+        this.loader = loader;
+    }
+
+    /**
+     * Returns the loader for missing keys.
+     *
+     * @return the loader or {@code null} if no loader was set
+     * @see #setLoader(java.util.function.Function)
+     * @since 0.1
+     */
+    public Function<String, ?> getLoader()
+    {
+        return loader;
+    }
+
+    /**
+     * Puts the given value into the {@link Environment} stored under the given
+     * key and removes it again after the given time. Until then this method
+     * behaves the same as {@link #put(java.lang.String, java.lang.Object)}.
+     * Putting another value under the same key cancels the expiry. Expired
+     * values are removed when they are read and once per second in the
+     * background. Attached {@link Observer}s and {@link RefreshService}s are
+     * informed about the removal the same way as if {@code null} was put.
+     * Scheduling the expiry needs constant time no matter how many values
+     * expire. The time to live is not part of {@link #snapshot()},
+     * {@link #fork()} or the saved values.
+     *
+     * @param key the key for the given value
+     * @param val the value to be stored
+     * @param ttl the time to live of the value
+     * @param unit the unit of {@code ttl}
+     * @return the Object that was stored with this key before or {@code null}
+     * if no Object was stored before.
+     * @throws IllegalArgumentException if {@code ttl} is not positive,
+     * {@code unit} is {@code null} or you try to store the environment
+     * itself.
+     * @see #put(java.lang.String, java.lang.Object)
+     * @see #expire()
+     * @since 0.1
+     */
+    public Object put(String key, Object val, long ttl, TimeUnit unit)
+    {
+        if (ttl <= 0 || unit == null)
+        {
+            throw new IllegalArgumentException(
+                    "The time to live must be positive");
+        }
+        if (val == this)
+        {
+            throw new IllegalArgumentException(
+                    "Can´t store the environment within itself");
+        }
+        Object old = write(key, val, unit.toNanos(ttl));
+        if (val != null)
+        {
+            TimerWheel w = expiry;
+            expire(w, w.advance(System.nanoTime()));
+        }
+        return old;
+    }
+
+    /**
+     * Removes all values whose time to live is over. This is done once per
+     * second in the background, so it is only necessary to call this method
+     * if the values must be removed right now.
+     *
+     * @return the number of removed values
+     * @see #put(java.lang.String, java.lang.Object, long,
+     * java.util.concurrent.TimeUnit)
+     * @since 0.1
+     */
+    public int expire()
+    {
+        TimerWheel w = expiry;
+        return w == null ? 0 : expire(w, w.expired(System.nanoTime()));
     }
 
     /**
@@ -363,6 +1139,14 @@ public class Environment extends Refresher implements Configurator
     public <T> T get(String key, T def)
     {
         Object back = environment.get(key);
+        if (expired(key, back))
+        {
+            back = null;
+        }
+        if (back == null && (loader != null || !lazies.isEmpty()))
+        {
+            back = load(key);
+        }
         return (T) (back == null ? def : back);
     }
 
@@ -409,6 +1193,319 @@ public class Environment extends Refresher implements Configurator
         return get(key, null);
     }
 
+    /**
+     * Returns the value that was stored with the key of the {@link Setting}
+     * from the given handle and tries to cast it. If no such value was found
+     * the {@code def} value will be returned. As long as this
+     * {@link Environment} was not changed the value is taken from an array at
+     * the slot of the handle, so no hashing of the key is needed. Every change
+     * at this {@link Environment} invalidates all those values.
+     *
+     * @param <T> the type in which the returned object should be casted
+     * @param handle the handle which contains the key to recieve
+     * @param def the default value which will be returned if no Object was
+     * stored with the given key.
+     * @return the Object that was stored which the specific key or {@code def}
+     * if it was {@code null}
+     * @see SettingRegistry#register(net.bplaced.clayn.c4j.Setting)
+     * @since 0.1
+     * @throws ClassCastException If the stored Object can´t be cast to
+     * {@code T}
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(SettingHandle<?> handle, T def)
+    {
+        SlotCache.Entry e = slots.get(handle.getSlot(), null);
+        Object val;
+        TimerWheel.Timer timer;
+        TimerWheel w = expiry;
+        if (e == null)
+        {
+            long version = slots.version();
+            String key = handle.getSetting().getSettingsKey();
+            val = environment.get(key);
+            timer = w == null || val == null ? null : w.get(key);
+            slots.put(handle.getSlot(), version, null, val, timer);
+        }
+        else
+        {
+            val = e.value;
+            timer = e.timer;
+        }
+        if (timer != null && expired(w, timer))
+        {
+            val = null;
+        }
+        if (val == null && (loader != null || !lazies.isEmpty()))
+        {
+            val = load(handle.getSetting().getSettingsKey());
+        }
+        return (T) (val == null ? def : val);
+    }
+
+    /**
+     * Returns the value that was stored with the key of the {@link Setting}
+     * from the given handle and tries to cast it. This method is equal to
+     * {@code get(handle,null);}
+     *
+     * @param <T> the type in which the returned object should be casted
+     * @param handle the handle which contains the key to recieve
+     * @return the value that was stored with the specific key or {@code null}
+     * if no such value was found
+     * @see #get(net.bplaced.clayn.c4j.SettingHandle, java.lang.Object)
+     * @since 0.1
+     * @throws ClassCastException If the stored Object can´t be cast to
+     * {@code T}
+     */
+    public <T> T get(SettingHandle<?> handle)
+    {
+        return get(handle, null);
+    }
+
+    /**
+     * Returns a live view of all the Objects whose key starts with the given
+     * prefix. The keys of the view are the stored keys without the prefix, so
+     * {@code namespace("db.").get("pool")} returns the Object stored under
+     * {@code "db.pool"}. Nothing is copied, all reads and writes go directly
+     * to this {@link Environment} and writes behave the same as
+     * {@link #put(java.lang.String, java.lang.Object)}. Clearing the view
+     * removes all keys with the prefix. Iterating the view only needs time for
+     * the matching keys.
+     *
+     * @param prefix the prefix of the keys
+     * @return a live view of the values with the given prefix
+     * @see #removePrefix(java.lang.String)
+     * @since 0.1
+     */
+    public Map<String, Object> namespace(String prefix)
+    {
+        return new Namespace<Object>(prefix, environment)
+        {
+            @Override
+            Object write(String key, Object val)
+            {
+                return put(key, val);
+            }
+
+            @Override
+            int removeAll(String prefix)
+            {
+                return removePrefix(prefix);
+            }
+        };
+    }
+
+    /**
+     * Removes all Objects whose key starts with the given prefix. Such as
+     * {@link #load(java.io.InputStream)} this does not update any
+     * {@link RefreshService} or {@link Observer}. If the values are stored in
+     * a {@link PersistentMap} (see {@link #persistent()}) all keys will be
+     * removed at once and the needed time only depends on the number of
+     * removed keys.
+     *
+     * @param prefix the prefix of the keys to remove
+     * @return the number of removed keys
+     * @see #namespace(java.lang.String)
+     * @since 0.1
+     */
+    public int removePrefix(String prefix)
+    {
+        int count;
+        if (environment instanceof PersistentMap)
+        {
+            count = ((PersistentMap<String, Object>) environment).removePrefix(
+                    prefix);
+        }
+        else
+        {
+            count = 0;
+            for (String key : PersistentMap.keysOf(environment, prefix))
+            {
+                count += environment.remove(key) == null ? 0 : 1;
+            }
+        }
+        slots.invalidate();
+        return count;
+    }
+
+    /**
+     * Returns a read only {@link Environment} with all the values stored in
+     * this {@link Environment} at the moment. Later changes at this
+     * {@link Environment} will not affect the snapshot and trying to put
+     * values into the snapshot will throw an
+     * {@link UnsupportedOperationException}. If the values are stored in a
+     * {@link PersistentMap} (see {@link #persistent()}) no values will be
+     * copied. Observers and {@link RefreshService}s are not part of the snapshot.
+     *
+     * @return a read only copy of this {@link Environment}
+     * @see #fork()
+     * @since 0.1
+     */
+    public Environment snapshot()
+    {
+        return new Environment(PersistentMap.snapshotOf(environment));
+    }
+
+    /**
+     * Returns a new {@link Environment} with all the values stored in this
+     * {@link Environment} at the moment. Both Environments can be changed
+     * without affecting each other. If the values are stored in a
+     * {@link PersistentMap} (see {@link #persistent()}) no values will be
+     * copied. An {@link #offHeap()} Environment stays off heap. Observers and
+     * {@link RefreshService}s are not part of the copy.
+     *
+     * @return a changeable copy of this {@link Environment}
+     * @see #snapshot()
+     * @since 0.1
+     */
+    public Environment fork()
+    {
+        return environment instanceof OffHeapMap ? new Environment(
+                ((OffHeapMap) environment).fork()) : new Environment(
+                        PersistentMap.copyOf(environment));
+    }
+
+    /**
+     * Returns a read only {@link Environment} with all the values stored in
+     * this {@link Environment} at the moment. Other than {@link #snapshot()}
+     * the values are copied into a {@link FrozenMap} which needs only a single
+     * probe for each lookup. This is the fastest way to read values that will
+     * not change anymore. Trying to put values into the returned
+     * {@link Environment} will throw an {@link UnsupportedOperationException},
+     * use {@link #fork()} on it to get a changeable copy again.
+     *
+     * @return a read only copy of this {@link Environment} which is optimized
+     * for reading
+     * @see #snapshot()
+     * @see #fork()
+     * @since 0.1
+     */
+    public Environment freeze()
+    {
+        return new Environment(new FrozenMap<>(PersistentMap.snapshotOf(
+                environment)));
+    }
+
+    /**
+     * Returns a changeable {@link Environment} with all the values stored in
+     * this {@link Environment} at the moment whose values are stored in a
+     * {@link PersistentMap} with prefix index. Its {@link #snapshot()} and
+     * {@link #fork()} need constant time and {@link #removePrefix(java.lang.String)}
+     * only touches the removed keys, but every lookup needs about four times
+     * as long as with the default storage and every value needs more memory.
+     * So you should only use this for Environments which are often copied.
+     *
+     * @return a persistent copy of this {@link Environment}
+     * @see #snapshot()
+     * @see #fork()
+     * @since 0.1
+     */
+    public Environment persistent()
+    {
+        PersistentMap<String, Object> map = PersistentMap.indexed();
+        map.putAll(PersistentMap.snapshotOf(environment));
+        return new Environment(map);
+    }
+
+    /**
+     * Returns a changeable {@link Environment} with all the values stored in
+     * this {@link Environment} at the moment which keeps its values outside
+     * of the heap. The values are serialized into an {@link OffHeapMap}, so
+     * only {@link Serializable} values can be stored and {@link #put(java.lang.String, java.lang.Object)}
+     * throws an {@link IllegalArgumentException} for all other values. Every
+     * read returns a deserialized copy of the value, only the last read values
+     * are kept on the heap. This is meant for very large Environments whose
+     * values would keep the garbage collector busy, so you should call this
+     * method on an empty Environment and load the values into the returned
+     * one.
+     *
+     * @return an off heap copy of this {@link Environment}
+     * @throws IllegalArgumentException if a stored value is not
+     * {@link Serializable}
+     * @see #offHeap(int)
+     * @since 0.1
+     */
+    public Environment offHeap()
+    {
+        return offHeap(OffHeapMap.DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Returns a changeable {@link Environment} with all the values stored in
+     * this {@link Environment} at the moment which keeps its values outside
+     * of the heap. At most {@code cacheSize} of the last read values are kept
+     * on the heap.
+     *
+     * @param cacheSize the number of values to keep on the heap
+     * @return an off heap copy of this {@link Environment}
+     * @throws IllegalArgumentException if a stored value is not
+     * {@link Serializable} or the cache size is not positive
+     * @see #offHeap()
+     * @see OffHeapMap
+     * @since 0.1
+     */
+    public Environment offHeap(int cacheSize)
+    {
+        OffHeapMap map = new OffHeapMap(OffHeapMap.DEFAULT_SEGMENT_SIZE,
+                cacheSize);
+        map.putAll(PersistentMap.snapshotOf(environment));
+        return new Environment(map);
+    }
+
+    /**
+     * Returns a changeable {@link Environment} with all the values stored in
+     * this {@link Environment} at the moment which keeps at most
+     * {@code maximumSize} values in memory. Values which are not
+     * {@link Serializable} are never evicted.
+     *
+     * @param maximumSize the maximal number of values in memory
+     * @param spillDirectory the directory to spill the evicted values to or
+     * {@code null} to discard them
+     * @return a bounded copy of this {@link Environment}
+     * @throws IllegalArgumentException if the maximum is not positive
+     * @see #bounded(long, net.bplaced.clayn.c4j.util.BoundedMap.Weigher,
+     * java.io.File, boolean)
+     * @since 0.1
+     */
+    public Environment bounded(long maximumSize, File spillDirectory)
+    {
+        return bounded(maximumSize, null, spillDirectory, false);
+    }
+
+    /**
+     * Returns a changeable {@link Environment} with all the values stored in
+     * this {@link Environment} at the moment which keeps values with a total
+     * weight of at most {@code maximumWeight} in memory. The values to evict
+     * are chosen by a {@link BoundedMap}, which keeps the values that were
+     * used most often. Evicted {@link Serializable} values are written into a
+     * file in the given directory and are read back when they are requested
+     * again. Values which are not {@link Serializable} are only discarded if
+     * {@code evictUnserializable} is {@code true}, otherwise they stay in
+     * memory and don´t count against the bound. {@link #snapshot()} and
+     * {@link #fork()} copy all values, including the spilled ones, into the
+     * default storage.
+     *
+     * @param maximumWeight the maximal weight of the values in memory
+     * @param weigher the weigher for the values or {@code null} to count the
+     * values
+     * @param spillDirectory the directory to spill the evicted values to or
+     * {@code null} to discard them
+     * @param evictUnserializable whether values which are not
+     * {@link Serializable} may be discarded
+     * @return a bounded copy of this {@link Environment}
+     * @throws IllegalArgumentException if the maximum is not positive
+     * @see #bounded(long, java.io.File)
+     * @since 0.1
+     */
+    public Environment bounded(long maximumWeight, BoundedMap.Weigher weigher,
+            File spillDirectory, boolean evictUnserializable)
+    {
+        BoundedMap map = new BoundedMap(maximumWeight, weigher, spillDirectory,
+                evictUnserializable);
+        map.putAll(PersistentMap.snapshotOf(environment));
+        return new Environment(map);
+    }
+
     @Override
     public boolean equals(Object obj)
     {
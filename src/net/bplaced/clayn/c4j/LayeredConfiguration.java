@@ -0,0 +1,403 @@
+package net.bplaced.clayn.c4j;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import net.bplaced.clayn.c4j.io.ConfigFile;
+import net.bplaced.clayn.c4j.util.LayeredMap;
+
+/**
+ * Subclass of {@link Configuration} which resolves its values across ordered
+ * layers of sources like default values, classpath resources,
+ * {@link ConfigFile}s, the system properties and the environment variables.
+ * Each layer which is added overrides all layers which were added before, so
+ * the layers should be added from the most general to the most specific one.
+ * Values which are put into this Configuration override all layers, while
+ * removing them makes the value of the layers visible again. Saving this
+ * Configuration saves the merged values of all layers.
+ * <br><br>
+ * Resolved values are cached, so reading a value needs the same time no
+ * matter how many layers there are. Reloading a layer only removes the cached
+ * values of its keys. Adding, reloading or removing a layer informs the
+ * observers and updates the {@link RefreshService}s of every key whose
+ * resolved value was changed by it, such as putting the value would do.
+ *
+ * @author Clayn
+ * @see LayeredMap
+ * @see Configuration
+ * @since 0.1
+ * @version 0.1
+ */
+public class LayeredConfiguration extends Configuration
+{
+
+    //<editor-fold desc="Attribute">
+    /**
+     * The sources of the layers by their name, so the layers can be
+     * reloaded.
+     */
+    private final Map<String, Callable<Map<String, String>>> sources = new LinkedHashMap<>();
+    //</editor-fold>
+
+    //<editor-fold desc="Konstruktoren">
+    /**
+     * Creates a new {@link LayeredConfiguration} without any layers.
+     *
+     * @since 0.1
+     */
+    public LayeredConfiguration()
+    {
+        super(new LayeredMap());
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Private">
+    private LayeredMap layers()
+    {
+        return (LayeredMap) properties;
+    }
+
+    private static Map<String, String> read(InputStream in) throws IOException
+    {
+        Properties p = new Properties();
+        p.load(in);
+        Map<String, String> back = new HashMap<>();
+        for (String key : p.stringPropertyNames())
+        {
+            back.put(key, p.getProperty(key));
+        }
+        return back;
+    }
+
+    private static Map<String, String> call(
+            Callable<Map<String, String>> source) throws IOException
+    {
+        try
+        {
+            return source.call();
+        }
+        catch (IOException | RuntimeException ex)
+        {
+            throw ex;
+        }
+        catch (Exception ex)
+        {
+            throw new IOException(ex);
+        }
+    }
+
+    /**
+     * Returns the currently resolved values of the given keys.
+     */
+    private Map<String, String> resolve(Collection<String> keys,
+            Map<String, String> back)
+    {
+        for (String key : keys)
+        {
+            back.put(key, properties.get(key));
+        }
+        return back;
+    }
+
+    /**
+     * Removes the cached values of the given keys and informs about every
+     * key whose resolved value differs from the given one.
+     *
+     * @param before the resolved values before the layers were changed
+     */
+    private void changed(Map<String, String> before)
+    {
+        for (Map.Entry<String, String> e : before.entrySet())
+        {
+            if (Objects.equals(e.getValue(), properties.get(e.getKey())))
+            {
+                invalidate(e.getKey());
+            }
+            else
+            {
+                changed(e.getKey());
+            }
+        }
+    }
+
+    /**
+     * Reads the given source and adds its values as a new layer.
+     */
+    private void add(String name, Callable<Map<String, String>> source)
+            throws IOException
+    {
+        synchronized (sources)
+        {
+            if (sources.containsKey(name))
+            {
+                throw new IllegalArgumentException(
+                        "There is already a layer named " + name);
+            }
+            Map<String, String> values = call(source);
+            Map<String, String> before = resolve(values.keySet(),
+                    new HashMap<String, String>());
+            layers().addLayer(name, values);
+            sources.put(name, source);
+            changed(before);
+        }
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Public">
+    /**
+     * Adds a layer with the given values. The values are copied, later
+     * changes at the given map do not affect this Configuration until the
+     * layer is reloaded.
+     *
+     * @param name the unique name of the layer
+     * @param values the values of the layer
+     * @throws IllegalArgumentException if a layer with the name already
+     * exists
+     * @since 0.1
+     */
+    public void addDefaults(String name, final Map<String, String> values)
+    {
+        try
+        {
+            add(name, new Callable<Map<String, String>>()
+            {
+                @Override
+                public Map<String, String> call()
+                {
+                    return values;
+                }
+            });
+        }
+        catch (IOException ex)
+        {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Adds a layer with the values of the given classpath resource. The
+     * resource is read with {@link Properties#load(java.io.InputStream)} and
+     * the layer is named {@code "classpath:" + resource}.
+     *
+     * @param resource the name of the resource
+     * @param loader the ClassLoader to find the resource with
+     * @throws IOException if the resource can´t be found or read
+     * @throws IllegalArgumentException if the resource was already added
+     * @since 0.1
+     */
+    public void addResource(final String resource, final ClassLoader loader)
+            throws IOException
+    {
+        add("classpath:" + resource, new Callable<Map<String, String>>()
+        {
+            @Override
+            public Map<String, String> call() throws IOException
+            {
+                InputStream in = loader.getResourceAsStream(resource);
+                if (in == null)
+                {
+                    throw new FileNotFoundException(
+                            "Can´t find the resource " + resource);
+                }
+                try
+                {
+                    return read(in);
+                }
+                finally
+                {
+                    in.close();
+                }
+            }
+        });
+    }
+
+    /**
+     * Adds a layer with the values of the file of the given
+     * {@link ConfigFile}. All values of the file are used, not only those
+     * with the praefix of the {@link ConfigFile}. The layer is named
+     * {@code "file:" + path}.
+     *
+     * @param file the file to read
+     * @throws IOException if the file can´t be read
+     * @throws IllegalArgumentException if the file was already added
+     * @since 0.1
+     */
+    public void addFile(final ConfigFile file) throws IOException
+    {
+        add("file:" + file.getConfigFile().getPath(),
+                new Callable<Map<String, String>>()
+        {
+            @Override
+            public Map<String, String> call() throws IOException
+            {
+                try (InputStream in = new FileInputStream(file.
+                        getConfigFile()))
+                {
+                    return read(in);
+                }
+            }
+        });
+    }
+
+    /**
+     * Adds a layer named {@code "system"} with the current system
+     * properties. Reloading the layer reads the system properties again.
+     *
+     * @throws IllegalArgumentException if the layer was already added
+     * @since 0.1
+     */
+    public void addSystemProperties()
+    {
+        try
+        {
+            add("system", new Callable<Map<String, String>>()
+            {
+                @Override
+                public Map<String, String> call()
+                {
+                    Properties p = System.getProperties();
+                    Map<String, String> back = new HashMap<>();
+                    for (String key : p.stringPropertyNames())
+                    {
+                        back.put(key, p.getProperty(key));
+                    }
+                    return back;
+                }
+            });
+        }
+        catch (IOException ex)
+        {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Adds a layer named {@code "env"} with the environment variables. The
+     * names of the variables are used as keys without any change.
+     *
+     * @throws IllegalArgumentException if the layer was already added
+     * @since 0.1
+     */
+    public void addEnvironmentVariables()
+    {
+        try
+        {
+            add("env", new Callable<Map<String, String>>()
+            {
+                @Override
+                public Map<String, String> call()
+                {
+                    return System.getenv();
+                }
+            });
+        }
+        catch (IOException ex)
+        {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Reads the source of the layer with the given name again. Only the
+     * cached values of the keys which were or are in the layer are removed
+     * and only the keys whose resolved value changed are published.
+     *
+     * @param name the name of the layer
+     * @throws IOException if the source can´t be read. The layer keeps its
+     * values.
+     * @throws IllegalArgumentException if there is no layer with the name
+     * @since 0.1
+     */
+    public void reload(String name) throws IOException
+    {
+        synchronized (sources)
+        {
+            Callable<Map<String, String>> source = sources.get(name);
+            if (source == null)
+            {
+                throw new IllegalArgumentException("There is no layer named "
+                        + name);
+            }
+            Map<String, String> values = call(source);
+            Map<String, String> before = resolve(values.keySet(),
+                    new HashMap<String, String>());
+            Map<String, String> old = layers().getLayer(name);
+            resolve(old.keySet(), before);
+            layers().setLayer(name, values);
+            changed(before);
+        }
+    }
+
+    /**
+     * Reads the sources of all layers again.
+     *
+     * @throws IOException if a source can´t be read
+     * @see #reload(java.lang.String)
+     * @since 0.1
+     */
+    public void reload() throws IOException
+    {
+        for (String name : getLayers())
+        {
+            reload(name);
+        }
+    }
+
+    /**
+     * Removes the layer with the given name. The keys of the layer resolve
+     * to the values of the lower layers afterwards.
+     *
+     * @param name the name of the layer
+     * @return {@code true} if the layer was removed
+     * @since 0.1
+     */
+    public boolean removeLayer(String name)
+    {
+        synchronized (sources)
+        {
+            if (sources.remove(name) == null)
+            {
+                return false;
+            }
+            Map<String, String> before = resolve(layers().getLayer(name).
+                    keySet(), new HashMap<String, String>());
+            layers().removeLayer(name);
+            changed(before);
+            return true;
+        }
+    }
+
+    /**
+     * Returns the names of all layers, the lowest layer first.
+     *
+     * @return a new list with the names of the layers
+     * @since 0.1
+     */
+    public List<String> getLayers()
+    {
+        return layers().getLayers();
+    }
+
+    /**
+     * Returns the name of the layer the value of the given key comes from.
+     *
+     * @param key the key to resolve
+     * @return the name of the layer or {@code null} if the value was put into
+     * this Configuration or there is no value
+     * @since 0.1
+     */
+    public String getSource(String key)
+    {
+        return layers().getSource(key);
+    }
+    //</editor-fold>
+}
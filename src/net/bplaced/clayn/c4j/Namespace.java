@@ -0,0 +1,195 @@
+package net.bplaced.clayn.c4j;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import net.bplaced.clayn.c4j.util.PersistentMap;
+
+/**
+ * A live view of all the values whose key starts with a given prefix. The keys
+ * of the view are the stored keys without the prefix. All values are read
+ * from and written into the underlying storage directly, so no values will be
+ * copied. Subclasses define how the values are written.
+ *
+ * @author Clayn
+ * @param <V> the type of the values
+ * @see Configuration#namespace(java.lang.String)
+ * @see Environment#namespace(java.lang.String)
+ * @since 0.1
+ * @version 0.1
+ */
+abstract class Namespace<V> extends AbstractMap<String, V>
+{
+
+    //<editor-fold desc="Attribute">
+    private final String prefix;
+    private final Map<String, V> store;
+    private transient Set<Map.Entry<String, V>> entrySet;
+
+    //</editor-fold>
+    //<editor-fold desc="Konstruktoren">
+    /**
+     * Creates a new view for the given prefix.
+     *
+     * @param prefix the prefix of the keys
+     * @param store the storage to read the values from
+     */
+    Namespace(String prefix, Map<String, V> store)
+    {
+        if (prefix == null)
+        {
+            throw new IllegalArgumentException(
+                    "The prefix must not be 'null'.");
+        }
+        this.prefix = prefix;
+        this.store = store;
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Private">
+    /**
+     * Writes the given value under the given complete key. Writing
+     * {@code null} removes the key.
+     *
+     * @param key the complete key including the prefix
+     * @param val the value to write or {@code null}
+     * @return the old value or {@code null}
+     */
+    abstract V write(String key, V val);
+
+    /**
+     * Removes all keys that start with the given prefix.
+     *
+     * @param prefix the prefix of the keys to remove
+     * @return the number of removed keys
+     */
+    abstract int removeAll(String prefix);
+
+    //</editor-fold>
+    //<editor-fold desc="Public">
+    /**
+     * Returns the prefix of this view.
+     *
+     * @return the prefix
+     */
+    public String getPrefix()
+    {
+        return prefix;
+    }
+
+    @Override
+    public V get(Object key)
+    {
+        return key instanceof String ? store.get(prefix + key) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key)
+    {
+        return get(key) != null;
+    }
+
+    @Override
+    public V put(String key, V value)
+    {
+        return write(prefix + key, value);
+    }
+
+    @Override
+    public V remove(Object key)
+    {
+        return key instanceof String ? write(prefix + key, null) : null;
+    }
+
+    @Override
+    public void clear()
+    {
+        removeAll(prefix);
+    }
+
+    @Override
+    public int size()
+    {
+        return PersistentMap.keysOf(store, prefix).size();
+    }
+
+    @Override
+    public Set<Map.Entry<String, V>> entrySet()
+    {
+        if (entrySet == null)
+        {
+            entrySet = new AbstractSet<Map.Entry<String, V>>()
+            {
+                @Override
+                public Iterator<Map.Entry<String, V>> iterator()
+                {
+                    final List<String> keys = PersistentMap.keysOf(store,
+                            prefix);
+                    return new Iterator<Map.Entry<String, V>>()
+                    {
+                        private int index;
+                        private Map.Entry<String, V> next = advance();
+                        private String last;
+
+                        private Map.Entry<String, V> advance()
+                        {
+                            while (index < keys.size())
+                            {
+                                String key = keys.get(index++);
+                                V val = store.get(key);
+                                if (val != null)
+                                {
+                                    return new SimpleImmutableEntry<>(key.
+                                            substring(prefix.length()), val);
+                                }
+                            }
+                            return null;
+                        }
+
+                        @Override
+                        public boolean hasNext()
+                        {
+                            return next != null;
+                        }
+
+                        @Override
+                        public Map.Entry<String, V> next()
+                        {
+                            if (next == null)
+                            {
+                                throw new NoSuchElementException();
+                            }
+                            Map.Entry<String, V> back = next;
+                            last = back.getKey();
+                            next = advance();
+                            return back;
+                        }
+
+                        @Override
+                        public void remove()
+                        {
+                            if (last == null)
+                            {
+                                throw new IllegalStateException();
+                            }
+                            write(prefix + last, null);
+                            last = null;
+                        }
+                    };
+                }
+
+                @Override
+                public int size()
+                {
+                    return Namespace.this.size();
+                }
+            };
+        }
+        return entrySet;
+    }
+    //</editor-fold>
+}
@@ -0,0 +1,247 @@
+package net.bplaced.clayn.c4j;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import net.bplaced.clayn.c4j.anno.Configure;
+import net.bplaced.clayn.c4j.project.LogSystem;
+
+/**
+ * The way {@link Configuration#proxy(java.lang.Class)} implements an
+ * interface. The plan is created once for each interface and either holds
+ * the constructor of the generated {@code $$Proxy} class or the methods and
+ * {@link Setting}s for a {@link Proxy}. The plans are stored with
+ * {@link ClassValue}, so they do not prevent the interfaces from being
+ * unloaded.
+ *
+ * @author Clayn
+ * @see ConfigProxy
+ * @since 0.1
+ * @version 0.1
+ */
+final class ProxyPlan
+{
+
+    //<editor-fold desc="Attribute">
+    private static final ClassValue<ProxyPlan> PLANS = new ClassValue<ProxyPlan>()
+    {
+        @Override
+        protected ProxyPlan computeValue(Class<?> type)
+        {
+            return new ProxyPlan(type);
+        }
+    };
+    private final Class<?> type;
+    /**
+     * The constructor of the generated class with the type
+     * {@code (Configuration)ConfigProxy} or {@code null}.
+     */
+    private final MethodHandle generated;
+    private final Map<Method, Integer> indexes;
+    private final String[] names;
+    private final Setting<?>[] settings;
+
+    //</editor-fold>
+    //<editor-fold desc="Konstruktoren">
+    private ProxyPlan(Class<?> type)
+    {
+        if (!type.isInterface())
+        {
+            throw new IllegalArgumentException(type + " is no interface");
+        }
+        this.type = type;
+        this.generated = generatedOf(type);
+        if (generated != null)
+        {
+            indexes = null;
+            names = null;
+            settings = null;
+            return;
+        }
+        indexes = new HashMap<>();
+        List<String> n = new ArrayList<>();
+        List<Setting<?>> s = new ArrayList<>();
+        for (Method m : type.getMethods())
+        {
+            if (m.isDefault())
+            {
+                throw new IllegalArgumentException("The method " + m
+                        + " is a default method, which can only be called "
+                        + "by the class generated by the BinderProcessor");
+            }
+            if (Modifier.isStatic(m.getModifiers()) || !Modifier.isAbstract(m.
+                    getModifiers()))
+            {
+                continue;
+            }
+            Configure c = m.getAnnotation(Configure.class);
+            if (c == null || m.getParameterCount() != 0)
+            {
+                throw new IllegalArgumentException("The method " + m
+                        + " has parameters or no Configure annotation");
+            }
+            try
+            {
+                s.add(c.setting().getConstructor(String.class).newInstance(c.
+                        key()));
+            }
+            catch (NoSuchMethodException | InstantiationException |
+                    IllegalAccessException | InvocationTargetException ex)
+            {
+                throw new IllegalArgumentException("Can´t create the Setting "
+                        + "for the key " + c.key(), ex);
+            }
+            indexes.put(m, n.size());
+            n.add(m.getName());
+        }
+        names = n.toArray(new String[n.size()]);
+        settings = s.toArray(new Setting<?>[s.size()]);
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Private">
+    /**
+     * The {@link InvocationHandler} for interfaces without a generated class.
+     */
+    private static final class Handler extends ConfigProxy implements
+            InvocationHandler
+    {
+
+        private final ProxyPlan plan;
+        private final Object proxy;
+
+        private Handler(Configuration conf, ProxyPlan plan)
+        {
+            super(conf, plan.names, plan.settings);
+            this.plan = plan;
+            this.proxy = Proxy.newProxyInstance(plan.type.getClassLoader(),
+                    new Class<?>[]
+                    {
+                        plan.type
+                    }, this);
+        }
+
+        @Override
+        Object view()
+        {
+            return proxy;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args)
+                throws Throwable
+        {
+            Integer index = plan.indexes.get(method);
+            if (index != null)
+            {
+                return method.getReturnType().isPrimitive() ? require(index)
+                        : value(index);
+            }
+            switch (method.getName())
+            {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return plan.type.getName() + "$Proxy@" + Integer.
+                            toHexString(System.identityHashCode(proxy));
+                default:
+                    throw new UnsupportedOperationException(method.toString());
+            }
+        }
+    }
+
+    /**
+     * Returns the constructor of the generated class of the given interface
+     * if there is one.
+     */
+    private static MethodHandle generatedOf(Class<?> type)
+    {
+        ClassLoader loader = type.getClassLoader();
+        if (loader == null)
+        {
+            return null;
+        }
+        try
+        {
+            Class<?> cl = Class.forName(type.getName() + "$$Proxy", true,
+                    loader);
+            if (ConfigProxy.class.isAssignableFrom(cl) && type.
+                    isAssignableFrom(cl))
+            {
+                return MethodHandles.publicLookup().findConstructor(cl,
+                        MethodType.methodType(void.class,
+                                Configuration.class)).asType(MethodType.
+                                methodType(ConfigProxy.class,
+                                        Configuration.class));
+            }
+        }
+        catch (ClassNotFoundException ex)
+        {
+            return null;
+        }
+        catch (NoSuchMethodException | IllegalAccessException |
+                LinkageError ex)
+        {
+            LogSystem.getLogger(ProxyPlan.class).
+                    log(Level.WARNING, null, ex);
+        }
+        return null;
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Public">
+    /**
+     * Returns the plan for the given interface.
+     *
+     * @param type the implemented interface
+     * @return the plan for the interface
+     * @throws IllegalArgumentException if the type is no interface or has a
+     * method without {@link Configure} annotation or with parameters or if
+     * there is no generated class and the interface has a default method
+     */
+    static ProxyPlan of(Class<?> type)
+    {
+        return PLANS.get(type);
+    }
+
+    /**
+     * Creates a new implementation which reads its values from the given
+     * Configuration. Its values are only dropped on changes once the
+     * Configuration keeps it.
+     *
+     * @param conf the Configuration to read the values from
+     * @return the new implementation
+     */
+    ConfigProxy create(Configuration conf)
+    {
+        if (generated == null)
+        {
+            return new Handler(conf, this);
+        }
+        try
+        {
+            return (ConfigProxy) generated.invokeExact(conf);
+        }
+        catch (RuntimeException | Error ex)
+        {
+            throw ex;
+        }
+        catch (Throwable ex)
+        {
+            throw new IllegalStateException(ex);
+        }
+    }
+    //</editor-fold>
+}
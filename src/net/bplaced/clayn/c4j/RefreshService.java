@@ -1,13 +1,16 @@
 package net.bplaced.clayn.c4j;
 
+import java.lang.ref.Reference;
 import java.lang.reflect.Field;
 import java.util.Objects;
+import net.bplaced.clayn.c4j.util.FieldWriter;
 
 /**
  * This class saves several informations that are used to keep Fields from Objects 
  * up to date if the values stored with the reqzested key will be changed. 
  * It does only update when a new value was set and not when the Object was 
- * changed itself.
+ * changed itself. The Object to update is only weakly referenced, so a 
+ * RefreshService does not prevent it from being collected.
  *
  * @author Clayn
  * @since 0.1
@@ -18,14 +21,14 @@ public final class RefreshService
 
     //<editor-fold desc="Attribute">
     private final String key;
-    private final Object requester;
+    private final Reference<Object> requester;
+    private final int hash;
     private final Field requestField;
+    private final String fieldName;
+    private final FieldWriter writer;
+    private final Binder.Hook hook;
+    private final boolean async;
 
-    //</editor-fold>
-    //<editor-fold desc="Private">
-    //</editor-fold>
-    //<editor-fold desc="Public">
-    //</editor-fold>
     //</editor-fold>
     //<editor-fold desc="Konstruktoren">
     /**
@@ -33,21 +36,115 @@ public final class RefreshService
      * be done by classes extending {@link Refresher}
      *
      * @param key the requested key
-     * @param requester the Object that should be updated
+     * @param requester the weak reference to the Object that should be
+     * updated
      * @param requestField the name of the Field to update
+     * @param async whether the field is updated by the executor of the
+     * {@link Refresher}
+     * @throws IllegalArgumentException if the field is static and final
+     * @see Refresher#reference(java.lang.Object)
      * @since 0.1
      */
-    RefreshService(String key, Object requester, Field requestField)
+    RefreshService(String key, Reference<Object> requester,
+            Field requestField, boolean async)
     {
         this.key = key;
         this.requester = requester;
         this.requestField = requestField;
+        this.fieldName = requestField.getName();
+        this.hash = hash(key, requester.get(), fieldName);
+        this.writer = FieldWriter.of(requestField);
+        this.hook = null;
+        this.async = async;
     }
 
+    /**
+     * Constructs a RefreshService which sets the field with the given
+     * {@link Binder.Hook} instead of reflection.
+     *
+     * @param key the requested key
+     * @param requester the weak reference to the Object that should be
+     * updated
+     * @param fieldName the name of the Field to update
+     * @param hook the hook which sets the field
+     * @param async whether the field is updated by the executor of the
+     * {@link Refresher}
+     * @see Refresher#reference(java.lang.Object)
+     * @since 0.1
+     */
+    RefreshService(String key, Reference<Object> requester,
+            String fieldName, Binder.Hook hook, boolean async)
+    {
+        this.key = key;
+        this.requester = requester;
+        this.requestField = null;
+        this.fieldName = fieldName;
+        this.hash = hash(key, requester.get(), fieldName);
+        this.writer = null;
+        this.hook = hook;
+        this.async = async;
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Private">
+    /**
+     * Sets the field of the requester to the given value. Nothing is done if
+     * the requester was already collected.
+     *
+     * @param val the new value
+     * @throws IllegalArgumentException if the value can´t be assigned to the
+     * field
+     */
+    void update(Object val)
+    {
+        Object target = requester.get();
+        if (target == null)
+        {
+            return;
+        }
+        if (hook != null)
+        {
+            try
+            {
+                hook.set(target, val);
+            }
+            catch (ClassCastException ex)
+            {
+                throw new IllegalArgumentException(ex);
+            }
+        }
+        else
+        {
+            writer.set(target, val);
+        }
+    }
+
+    /**
+     * Returns the weak reference to the requester.
+     */
+    Reference<Object> reference()
+    {
+        return requester;
+    }
+
+    private static int hash(String key, Object requester, String fieldName)
+    {
+        int hash = 7;
+        hash = 71 * hash + Objects.hashCode(key);
+        hash = 71 * hash + System.identityHashCode(requester);
+        hash = 71 * hash + Objects.hashCode(fieldName);
+        return hash;
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Public">
+
     /**
      * Returns the Field that should be updated.
      *
-     * @return the field to update
+     * @return the field to update or {@code null} if the field is set by a
+     * generated {@link Binder}
+     * @see #getFieldName()
      * @since 0.1
      */
     public Field getRequestField()
@@ -55,15 +152,40 @@ public final class RefreshService
         return requestField;
     }
 
+    /**
+     * Returns the name of the Field that should be updated.
+     *
+     * @return the name of the field to update
+     * @since 0.1
+     */
+    public String getFieldName()
+    {
+        return fieldName;
+    }
+
+    /**
+     * Returns whether the field is updated by the executor of the
+     * {@link Refresher} instead of the thread that changed the value.
+     *
+     * @return {@code true} if the field is updated asynchronously
+     * @see Refresher#setExecutor(java.util.concurrent.Executor)
+     * @since 0.1
+     */
+    public boolean isAsync()
+    {
+        return async;
+    }
+
     /**
      * Returns the Object that requests the updates.
      *
-     * @return the objects to be updated
+     * @return the objects to be updated or {@code null} if it was already
+     * collected
      * @since 0.1
      */
     public Object getRequester()
     {
-        return requester;
+        return requester.get();
     }
 
     /**
@@ -80,8 +202,11 @@ public final class RefreshService
     /**
      * Returns {@code true} if the given Object is equals with this {@link RefreshService}
      *  {@code false} otherwise. Two {@link RefreshService} are equal if they
-     * request the same key, the requesters are instances from the same
-     * {@link Class} and the field to update has the same name.
+     * request the same key, have the same requester and the field to update
+     * has the same name. Requesters are compared by identity, so every
+     * configured instance gets its own {@link RefreshService}. A
+     * RefreshService whose requester was collected is only equal to
+     * itself.
      * <br><br><b>Documentation from
      * {@link Object#equals(java.lang.Object)}:</b><br> {@inheritDoc }
      *
@@ -92,14 +217,18 @@ public final class RefreshService
     @Override
     public boolean equals(Object obj)
     {
+        if (obj == this)
+        {
+            return true;
+        }
         if (obj == null || !(obj instanceof RefreshService))
         {
             return false;
         }
         RefreshService oth = (RefreshService) obj;
-        return (key.equals(oth.getKey())) && (requester.getClass().equals(oth.
-                getRequester().getClass())) && (requestField.getName().
-                equals(oth.getRequestField().getName()));
+        Object req = requester.get();
+        return (key.equals(oth.getKey())) && req != null && (req == oth.
+                getRequester()) && (fieldName.equals(oth.getFieldName()));
     }
 
     /**
@@ -110,10 +239,6 @@ public final class RefreshService
     @Override
     public int hashCode()
     {
-        int hash = 7;
-        hash = 71 * hash + Objects.hashCode(this.key);
-        hash = 71 * hash + Objects.hashCode(this.requester.getClass().getName());
-        hash = 71 * hash + Objects.hashCode(this.requestField.getName());
         return hash;
     }
 
@@ -121,9 +246,8 @@ public final class RefreshService
     public String toString()
     {
         return new StringBuilder().append("[Key: ").append(key).
-                append("; Instance: ").append(requester.toString()).
-                append("; Field: ").append(requestField.
-                        getName()).append(
+                append("; Instance: ").append(requester.get()).
+                append("; Field: ").append(fieldName).append(
                         "]").toString();
     }
 
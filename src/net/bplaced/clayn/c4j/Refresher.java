@@ -1,14 +1,17 @@
 package net.bplaced.clayn.c4j;
 
+import java.lang.ref.Reference;
 import java.lang.reflect.Field;
-import java.util.HashSet;
 import java.util.Objects;
 import java.util.Observable;
 import java.util.Observer;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
+import net.bplaced.clayn.c4j.anno.Configure;
+import net.bplaced.clayn.c4j.anno.Env;
 import net.bplaced.clayn.c4j.project.LogSystem;
-import net.bplaced.clayn.c4j.util.ConfigUtil;
 
 /**
  * Classes that extend this class are able to store {@link RefreshService}.
@@ -23,10 +26,30 @@ public abstract class Refresher extends Observable
 {
 
     //<editor-fold desc="Attribute">
+    private final ServiceRegistry registry = new ServiceRegistry();
     /**
-     * Set of the {@link RefreshService} to be informed.
+     * Set of the {@link RefreshService} to be informed. The services are
+     * indexed by their key, so informing about a key only touches the
+     * services for that key. The set can be changed by many threads at the
+     * same time. The Objects which are refreshed are only weakly referenced,
+     * the services of collected Objects are removed automatically.
      */
-    protected final Set<RefreshService> services = new HashSet<>();
+    protected final Set<RefreshService> services = registry;
+    /**
+     * Delivers the changes on an executor or {@code null} if all changes are
+     * delivered synchronously.
+     */
+    private volatile Dispatcher dispatcher;
+    /**
+     * Lock for the {@link Observer}s, so changes which are delivered by
+     * different threads don´t get lost.
+     */
+    private final Object observing = new Object();
+    /**
+     * Counts the changes this Refresher informed about, so a bulk configure
+     * can tell whether a value was changed while it ran.
+     */
+    private final AtomicLong changes = new AtomicLong();
     //</editor-fold>
 
     //<editor-fold desc="Konstruktoren">
@@ -44,36 +67,114 @@ public abstract class Refresher extends Observable
     /**
      * Updates all {@link RefreshService}´s that are interested in the given
      * {@code key} and the given {@code val}. Also this methos informs all
-     * attached {@link Observer} with the {@code key} as argument.
+     * attached {@link Observer} with the {@code key} as argument. If an
+     * executor was set, only the synchronous {@link RefreshService}s are
+     * updated by the calling thread, the {@link Observer}s and the
+     * asynchronous services are informed by the executor.
      *
      * @param key the key which stores the changed Object
      * @param val the new Object for the given {@code key}
+     * @see #setExecutor(java.util.concurrent.Executor)
      * @since 0.1
      */
     protected final void inform(String key, Object val)
     {
-        setChanged();
-        notifyObservers(key);
-        for (RefreshService ref : services)
+        changes.incrementAndGet();
+        Dispatcher d = dispatcher;
+        if (d == null)
+        {
+            setChanged();
+            notifyObservers(key);
+            update(key, val, true, true);
+            return;
+        }
+        update(key, val, true, false);
+        d.dispatch(key, val);
+    }
+
+    /**
+     * Returns the number of changes this Refresher informed about so far.
+     * The number is increased before the {@link RefreshService}s are
+     * updated, so a value which is read after this call is at least as new
+     * as every change that was counted.
+     *
+     * @return the number of changes
+     */
+    final long changes()
+    {
+        return changes.get();
+    }
+
+    /**
+     * Updates the services for the given key.
+     */
+    private void update(String key, Object val, boolean sync, boolean async)
+    {
+        for (RefreshService ref : registry.get(key))
         {
-            if (ref.getKey().equals(key))
+            if (ref.isAsync() ? !async : !sync)
             {
-                try
-                {
-                    ConfigUtil.setField(ref.getRequestField(), ref.
-                            getRequester(),
-                            val);
-                }
-                catch (NoSuchFieldException | IllegalArgumentException |
-                        IllegalAccessException ex)
-                {
-                    LogSystem.getLogger(Refresher.class).
-                            log(Level.SEVERE, null, ex);
-                }
+                continue;
+            }
+            try
+            {
+                ref.update(val);
+            }
+            catch (IllegalArgumentException ex)
+            {
+                LogSystem.getLogger(Refresher.class).
+                        log(Level.SEVERE, null, ex);
             }
         }
     }
 
+    /**
+     * Informs the {@link Observer}s and asynchronous {@link RefreshService}s
+     * about a change. Called by the executor, never for the same key at the
+     * same time.
+     *
+     * @param key the changed key
+     * @param val the latest value for the key
+     */
+    final void deliver(String key, Object val)
+    {
+        synchronized (observing)
+        {
+            setChanged();
+            notifyObservers(key);
+        }
+        update(key, val, false, true);
+    }
+
+    /**
+     * Registers a new {@link RefreshService} for the given field without
+     * looking it up by its name.
+     *
+     * @param key the key for the value that will be set to the field
+     * @param request the Object in which the changes will be made
+     * @param field the field to change
+     * @param async whether the field is refreshed by the executor
+     * @return {@code true} if the {@link RefreshService} was added
+     */
+    boolean add(String key, Object request, Field field, boolean async)
+    {
+        return services.add(new RefreshService(key, reference(request),
+                field, async));
+    }
+
+    /**
+     * Returns the weak reference to the given Object which is used for all
+     * its {@link RefreshService}s. All services of an Object share the same
+     * reference, so they can be removed together when it was collected.
+     *
+     * @param obj the Object which requests updates
+     * @return the weak reference to the Object
+     */
+    final Reference<Object> reference(Object obj)
+    {
+        return registry.reference(obj);
+    }
+
     //</editor-fold>
     //<editor-fold desc="Public">
     /**
@@ -86,6 +187,8 @@ public abstract class Refresher extends Observable
      * @param fieldName the name of the field to change
      * @return {@code true} if the {@link RefreshService} was sucessfully added
      * {@code false} otherwise.
+     * @throws IllegalArgumentException if one of the parameters is
+     * {@code null} or the field is static and final
      * @since 0.1
      */
     public boolean add(String key, Object request, String fieldName)
@@ -106,7 +209,7 @@ public abstract class Refresher extends Observable
                 //if (f.isAnnotationPresent(Configure.class) || f.
                 //        isAnnotationPresent(Env.class))
                 //{
-                serv = new RefreshService(key, request, f);
+                serv = new RefreshService(key, reference(request), f, false);
                 break;
                 //}
             }
@@ -114,6 +217,63 @@ public abstract class Refresher extends Observable
         return serv == null ? false : services.add(serv);
     }
 
+    /**
+     * Sets the executor that informs the {@link Observer}s and the
+     * asynchronous {@link RefreshService}s about changes, so a slow
+     * {@link Observer} does not slow down the thread that changes a value.
+     * Any executor can be used, also one which runs every task in a new
+     * virtual thread. The changes of a key are delivered in the order they
+     * were made, but if a key is changed again before its last change was
+     * delivered, only the latest value is delivered. Synchronous
+     * {@link RefreshService}s are still updated by the changing thread, so
+     * their fields are up to date as soon as the change returns. Per default
+     * no executor is set and all changes are delivered synchronously.
+     *
+     * @param executor the executor for the changes or {@code null} to
+     * deliver all changes synchronously again
+     * @see Configure#async()
+     * @see Env#async()
+     * @since 0.1
+     */
+    public void setExecutor(Executor executor)
+    {
+        dispatcher = executor == null ? null : new Dispatcher(executor, this);
+    }
+
+    /**
+     * Returns the executor that informs about changes.
+     *
+     * @return the executor or {@code null} if all changes are delivered
+     * synchronously
+     * @see #setExecutor(java.util.concurrent.Executor)
+     * @since 0.1
+     */
+    public Executor getExecutor()
+    {
+        Dispatcher d = dispatcher;
+        return d == null ? null : d.getExecutor();
+    }
+
+    /**
+     * Removes all {@link RefreshService}s of the given Object, so its fields
+     * are not refreshed anymore. Services of Objects which were collected
+     * are removed automatically, but Objects which are still used but don´t
+     * need their fields refreshed anymore should be unbound.
+     *
+     * @param obj the Object whose fields should not be refreshed anymore
+     * @return the number of removed {@link RefreshService}s
+     * @throws IllegalArgumentException if the Object is {@code null}
+     * @since 0.1
+     */
+    public int unbind(Object obj)
+    {
+        if (obj == null)
+        {
+            throw new IllegalArgumentException("Can´t unbind null");
+        }
+        return registry.unbind(obj);
+    }
+
     //</editor-fold>
     
     @Override
@@ -0,0 +1,320 @@
+package net.bplaced.clayn.c4j;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The {@link RefreshService}s of a {@link Refresher}, indexed by their key.
+ * So informing about a changed key only touches the services for that key
+ * and not all services. Adding and removing a service needs constant time.
+ * The registry can be used by many threads at the same time. The set for a
+ * key is kept after its last service was removed, so the number of sets is
+ * bound by the number of keys that were ever used.
+ * <br><br>
+ * The services are also indexed by their requester, which is only weakly
+ * referenced. When a requester was collected, all its services are removed
+ * the next time a service is added or a key is informed about, so the
+ * registry does not grow with Objects which are not used anymore.
+ *
+ * @author Clayn
+ * @see Refresher#inform(java.lang.String, java.lang.Object)
+ * @since 0.1
+ * @version 0.1
+ */
+final class ServiceRegistry extends AbstractSet<RefreshService>
+{
+
+    //<editor-fold desc="Attribute">
+    private final ConcurrentMap<String, Set<RefreshService>> byKey = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Requester, Requester> byRequester = new ConcurrentHashMap<>();
+    private final ReferenceQueue<Object> queue = new ReferenceQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    //</editor-fold>
+    //<editor-fold desc="Private">
+    /**
+     * A weak reference to a requester which is compared by the identity of
+     * the requester. A collected requester is only equal to itself. All
+     * services of a requester share the same reference, which also holds
+     * them. Most requesters only have a few services, so they are kept in a
+     * small list which is guarded by the reference.
+     */
+    private static final class Requester extends WeakReference<Object>
+    {
+
+        private final int hash;
+        private final ServiceRegistry owner;
+        private List<RefreshService> services;
+
+        private Requester(Object referent, ReferenceQueue<Object> queue,
+                ServiceRegistry owner)
+        {
+            super(referent, queue);
+            this.hash = System.identityHashCode(referent);
+            this.owner = owner;
+        }
+
+        private synchronized void add(RefreshService service)
+        {
+            if (services == null)
+            {
+                services = new ArrayList<>(2);
+            }
+            services.add(service);
+        }
+
+        private synchronized void remove(RefreshService service)
+        {
+            if (services != null)
+            {
+                services.remove(service);
+            }
+        }
+
+        private synchronized List<RefreshService> services()
+        {
+            return services == null ? Collections.<RefreshService>emptyList()
+                    : new ArrayList<>(services);
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (obj == this)
+            {
+                return true;
+            }
+            if (!(obj instanceof Requester))
+            {
+                return false;
+            }
+            Object referent = get();
+            return referent != null && referent == ((Requester) obj).get();
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+    }
+
+    /**
+     * Returns the reference of the requester of the given service if it was
+     * created by this registry.
+     */
+    private Requester ownerOf(RefreshService service)
+    {
+        Reference<Object> ref = service.reference();
+        if (ref instanceof Requester && ((Requester) ref).owner == this)
+        {
+            return (Requester) ref;
+        }
+        Object requester = ref.get();
+        return requester == null ? null : (Requester) reference(requester);
+    }
+
+    /**
+     * Removes the given services from the key index.
+     */
+    private int removeAll(List<RefreshService> services)
+    {
+        int count = 0;
+        for (RefreshService service : services)
+        {
+            Set<RefreshService> set = byKey.get(service.getKey());
+            if (set != null && set.remove(service))
+            {
+                size.decrementAndGet();
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Removes the services of all collected requesters.
+     */
+    private void purge()
+    {
+        Reference<?> ref;
+        while ((ref = queue.poll()) != null)
+        {
+            byRequester.remove(ref);
+            removeAll(((Requester) ref).services());
+        }
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Public">
+    /**
+     * Returns the weak reference to the given requester which is used for
+     * all its services.
+     *
+     * @param requester the requester
+     * @return the reference to the requester
+     */
+    Reference<Object> reference(Object requester)
+    {
+        Requester ref = byRequester.get(new Requester(requester, null, null));
+        if (ref == null)
+        {
+            ref = new Requester(requester, queue, this);
+            Requester old = byRequester.putIfAbsent(ref, ref);
+            if (old != null)
+            {
+                ref = old;
+            }
+        }
+        return ref;
+    }
+
+    /**
+     * Returns the services for the given key.
+     *
+     * @param key the key
+     * @return a live view of the services for the key
+     */
+    Set<RefreshService> get(String key)
+    {
+        purge();
+        Set<RefreshService> set = byKey.get(key);
+        return set == null ? Collections.<RefreshService>emptySet() : set;
+    }
+
+    /**
+     * Removes all services of the given requester.
+     *
+     * @param requester the requester
+     * @return the number of removed services
+     */
+    int unbind(Object requester)
+    {
+        purge();
+        Requester ref = byRequester.remove(new Requester(requester, null,
+                null));
+        return ref == null ? 0 : removeAll(ref.services());
+    }
+
+    @Override
+    public boolean add(RefreshService service)
+    {
+        purge();
+        Requester own = ownerOf(service);
+        if (own == null)
+        {
+            return false;
+        }
+        Set<RefreshService> set = byKey.get(service.getKey());
+        if (set == null)
+        {
+            set = ConcurrentHashMap.newKeySet();
+            Set<RefreshService> old = byKey.putIfAbsent(service.getKey(), set);
+            if (old != null)
+            {
+                set = old;
+            }
+        }
+        if (!set.add(service))
+        {
+            return false;
+        }
+        size.incrementAndGet();
+        own.add(service);
+        return true;
+    }
+
+    @Override
+    public boolean remove(Object o)
+    {
+        if (!(o instanceof RefreshService))
+        {
+            return false;
+        }
+        RefreshService service = (RefreshService) o;
+        Set<RefreshService> set = byKey.get(service.getKey());
+        if (set == null || !set.remove(service))
+        {
+            return false;
+        }
+        size.decrementAndGet();
+        Requester own = ownerOf(service);
+        if (own != null)
+        {
+            own.remove(service);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean contains(Object o)
+    {
+        return o instanceof RefreshService && get(((RefreshService) o).
+                getKey()).contains(o);
+    }
+
+    @Override
+    public Iterator<RefreshService> iterator()
+    {
+        purge();
+        return new Iterator<RefreshService>()
+        {
+            private final Iterator<Set<RefreshService>> sets = byKey.values().
+                    iterator();
+            private Iterator<RefreshService> current = Collections.
+                    emptyIterator();
+            private RefreshService last;
+
+            @Override
+            public boolean hasNext()
+            {
+                while (!current.hasNext() && sets.hasNext())
+                {
+                    current = sets.next().iterator();
+                }
+                return current.hasNext();
+            }
+
+            @Override
+            public RefreshService next()
+            {
+                if (!hasNext())
+                {
+                    throw new NoSuchElementException();
+                }
+                last = current.next();
+                return last;
+            }
+
+            @Override
+            public void remove()
+            {
+                if (last == null)
+                {
+                    throw new IllegalStateException();
+                }
+                ServiceRegistry.this.remove(last);
+                last = null;
+            }
+        };
+    }
+
+    @Override
+    public int size()
+    {
+        purge();
+        return size.get();
+    }
+    //</editor-fold>
+}
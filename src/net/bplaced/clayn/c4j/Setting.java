@@ -25,6 +25,12 @@ public abstract class Setting<T> implements Parseable<T, String>, Serializable
      */
     protected final String settingsKey;
 
+    /**
+     * The hash code of this setting, computed on first use since settings are
+     * used as keys very often. Transient to keep the serialized form.
+     */
+    private transient int hash;
+
     /**
      * Creates a new Setting with the given key as identifier.
      *
@@ -77,9 +83,13 @@ public abstract class Setting<T> implements Parseable<T, String>, Serializable
     @Override
     public int hashCode()
     {
-        int hash = 7;
-        hash = 37 * hash + Objects.hashCode(this.settingsKey);
-        return hash;
+        int h = hash;
+        if (h == 0)
+        {
+            h = 37 * 7 + Objects.hashCode(this.settingsKey);
+            hash = h;
+        }
+        return h;
     }
 
     @Override
@@ -0,0 +1,72 @@
+package net.bplaced.clayn.c4j;
+
+/**
+ * A handle for a {@link Setting} which was registered at the
+ * {@link SettingRegistry}. Each handle carries a dense slot id that is unique
+ * for the key of its {@link Setting}. {@link Configuration} and
+ * {@link Environment} use that slot id to look up values in an array instead
+ * of hashing the key each time. Handles should be created once and then be
+ * kept, for example in a {@code static final} field.
+ *
+ * @author Clayn
+ * @param <T> The type of Objects that can be stored with the saved key
+ * @see SettingRegistry#register(net.bplaced.clayn.c4j.Setting)
+ * @since 0.1
+ * @version 0.1
+ */
+public final class SettingHandle<T>
+{
+
+    //<editor-fold desc="Attribute">
+    private final Setting<T> setting;
+    private final int slot;
+
+    //</editor-fold>
+    //<editor-fold desc="Konstruktoren">
+    /**
+     * Creates a new handle for the given {@link Setting} and slot. Should only
+     * be done by the {@link SettingRegistry}.
+     *
+     * @param setting the Setting for this handle
+     * @param slot the slot id for the key of the Setting
+     * @since 0.1
+     */
+    SettingHandle(Setting<T> setting, int slot)
+    {
+        this.setting = setting;
+        this.slot = slot;
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Public">
+    /**
+     * Returns the {@link Setting} this handle was created for.
+     *
+     * @return the Setting for this handle
+     * @since 0.1
+     */
+    public Setting<T> getSetting()
+    {
+        return setting;
+    }
+
+    /**
+     * Returns the slot id for the key of the {@link Setting}. All handles for
+     * the same key share the same slot id.
+     *
+     * @return the slot id of this handle
+     * @since 0.1
+     */
+    public int getSlot()
+    {
+        return slot;
+    }
+
+    @Override
+    public String toString()
+    {
+        return new StringBuilder().append("[Setting: ").append(setting).
+                append("; Slot: ").append(slot).append("]").toString();
+    }
+    //</editor-fold>
+}
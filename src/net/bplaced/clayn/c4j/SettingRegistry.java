@@ -0,0 +1,93 @@
+package net.bplaced.clayn.c4j;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Registry which assigns a dense slot id to each key of the registered
+ * {@link Setting}s. The slot ids start with {@code 0} and are never reused, so
+ * they can be used as index into an array. Keys that were never registered
+ * can still be used with {@link Configuration} and {@link Environment} as
+ * usual.
+ *
+ * @author Clayn
+ * @see SettingHandle
+ * @since 0.1
+ * @version 0.1
+ */
+public final class SettingRegistry
+{
+
+    //<editor-fold desc="Attribute">
+    private static final ConcurrentMap<String, Integer> SLOTS = new ConcurrentHashMap<>();
+    private static final AtomicInteger NEXT = new AtomicInteger();
+
+    //</editor-fold>
+    //<editor-fold desc="Konstruktoren">
+    /**
+     * Prevent Instances of this class
+     */
+    private SettingRegistry()
+    {
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Public">
+    /**
+     * Registers the given {@link Setting} and returns a handle for it. If the
+     * key of the Setting was registered before, the handle gets the same slot
+     * id as before.
+     *
+     * @param <T> the type of the Setting
+     * @param set the Setting to register
+     * @return a handle for the given Setting
+     * @throws IllegalArgumentException if the Setting or its key is
+     * {@code null}
+     * @since 0.1
+     */
+    public static <T> SettingHandle<T> register(Setting<T> set)
+    {
+        if (set == null || set.getSettingsKey() == null)
+        {
+            throw new IllegalArgumentException(
+                    "Setting and its key must not be 'null'.");
+        }
+        return new SettingHandle<>(set, slotOf(set.getSettingsKey()));
+    }
+
+    /**
+     * Returns the slot id for the given key. If the key was not registered
+     * before, it will be registered now.
+     *
+     * @param key the key to get the slot id for
+     * @return the slot id for the given key
+     * @since 0.1
+     */
+    public static int slotOf(String key)
+    {
+        Integer slot = SLOTS.get(key);
+        if (slot == null)
+        {
+            Integer next = NEXT.getAndIncrement();
+            slot = SLOTS.putIfAbsent(key, next);
+            if (slot == null)
+            {
+                slot = next;
+            }
+        }
+        return slot;
+    }
+
+    /**
+     * Returns how many keys are registered.
+     *
+     * @return the number of registered keys
+     * @since 0.1
+     */
+    public static int size()
+    {
+        return SLOTS.size();
+    }
+    //</editor-fold>
+}
@@ -0,0 +1,137 @@
+package net.bplaced.clayn.c4j;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import net.bplaced.clayn.c4j.util.TimerWheel;
+
+/**
+ * Array of cached values indexed by the slot ids from the
+ * {@link SettingRegistry}. Each entry remembers the version of the storage it
+ * was read from. Every change at the storage increases the version, so that
+ * all entries which were read before the change will not be used anymore.
+ *
+ * @author Clayn
+ * @since 0.1
+ * @version 0.1
+ */
+final class SlotCache
+{
+
+    //<editor-fold desc="Attribute">
+    private final AtomicLong version = new AtomicLong();
+    private volatile Entry[] entries = new Entry[16];
+
+    //</editor-fold>
+    //<editor-fold desc="Private">
+    /**
+     * A cached value together with the storage version it was read from, the
+     * type of the {@link Setting} used to read it and the timer of the value
+     * if it has a time to live. Every change of the value or its timer
+     * changes the version, so the timer stays the one of the value.
+     */
+    static final class Entry
+    {
+
+        final long version;
+        final Class<?> type;
+        final Object value;
+        final TimerWheel.Timer timer;
+
+        private Entry(long version, Class<?> type, Object value,
+                TimerWheel.Timer timer)
+        {
+            this.version = version;
+            this.type = type;
+            this.value = value;
+            this.timer = timer;
+        }
+    }
+
+    private synchronized Entry[] grow(int slot)
+    {
+        Entry[] arr = entries;
+        if (slot >= arr.length)
+        {
+            arr = Arrays.copyOf(arr, Math.max(slot + 1, arr.length * 2));
+            entries = arr;
+        }
+        return arr;
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Public">
+    /**
+     * Returns the current version of the storage. Must be read before the
+     * value that will be cached is read.
+     *
+     * @return the current version
+     */
+    long version()
+    {
+        return version.get();
+    }
+
+    /**
+     * Returns the valid entry for the given slot or {@code null} if no valid
+     * entry exists.
+     *
+     * @param slot the slot to look up
+     * @param type the type of the Setting that is used to read the value
+     * @return the valid entry or {@code null}
+     */
+    Entry get(int slot, Class<?> type)
+    {
+        Entry[] arr = entries;
+        if (slot >= arr.length)
+        {
+            return null;
+        }
+        Entry e = arr[slot];
+        return e != null && e.type == type && e.version == version.get() ? e
+                : null;
+    }
+
+    /**
+     * Caches the given value for the given slot.
+     *
+     * @param slot the slot to cache the value for
+     * @param version the version read before reading the value
+     * @param type the type of the Setting that was used to read the value
+     * @param value the value to cache
+     */
+    void put(int slot, long version, Class<?> type, Object value)
+    {
+        put(slot, version, type, value, null);
+    }
+
+    /**
+     * Caches the given value and its timer for the given slot.
+     *
+     * @param slot the slot to cache the value for
+     * @param version the version read before reading the value
+     * @param type the type of the Setting that was used to read the value
+     * @param value the value to cache
+     * @param timer the timer of the value or {@code null} if it does not
+     * expire
+     */
+    void put(int slot, long version, Class<?> type, Object value,
+            TimerWheel.Timer timer)
+    {
+        Entry[] arr = entries;
+        if (slot >= arr.length)
+        {
+            arr = grow(slot);
+        }
+        arr[slot] = new Entry(version, type, value, timer);
+    }
+
+    /**
+     * Marks all cached values as invalid. Must be called after every change
+     * at the storage.
+     */
+    void invalidate()
+    {
+        version.incrementAndGet();
+    }
+    //</editor-fold>
+}
@@ -6,8 +6,17 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.IdentityHashMap;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
 import net.bplaced.clayn.c4j.io.ConfigFile;
+import net.bplaced.clayn.c4j.util.CompactMap;
+import net.bplaced.clayn.c4j.io.PrefixRouter;
+import net.bplaced.clayn.c4j.project.LogSystem;
+import net.bplaced.clayn.c4j.util.FrozenMap;
+import net.bplaced.clayn.c4j.util.PersistentMap;
 
 /**
  * Subclass of {@link Configuration} which allows you to store different 
@@ -24,6 +33,7 @@ import net.bplaced.clayn.c4j.io.ConfigFile;
 public class SplittedConfiguration extends Configuration implements Splitable
 {
     //<editor-fold desc="Attribute">   
+    private volatile boolean routing;
     //</editor-fold>
 
     //<editor-fold desc="Konstruktoren">
@@ -59,7 +69,8 @@ public class SplittedConfiguration extends Configuration implements Splitable
     /**
      * Creates a new {@link SplittedConfiguration} with all the values from the
      * given {@link Configuration}. This creates a flat copy of the given
-     * {@link Configuration}.
+     * {@link Configuration}. If the given {@link Configuration} stores its
+     * values in a {@link PersistentMap} no values will be copied.
      *
      * @param conf the Configuration to copy the values from.
      * @see #SplittedConfiguration()
@@ -68,17 +79,27 @@ public class SplittedConfiguration extends Configuration implements Splitable
      */
     public SplittedConfiguration(Configuration conf)
     {
-        this();
-        for (String key : conf.properties.stringPropertyNames())
-        {
-            properties.setProperty(key, conf.properties.getProperty(key));
-        }
+        this(PersistentMap.copyOf(conf.properties));
+    }
+
+    /**
+     * Creates a new {@link SplittedConfiguration} which uses the given map to
+     * store its values.
+     *
+     * @param properties the map to store the values in
+     * @see Configuration#Configuration(java.util.concurrent.ConcurrentMap)
+     * @since 0.1
+     */
+    protected SplittedConfiguration(ConcurrentMap<String, String> properties)
+    {
+        super(properties);
     }
 
     //</editor-fold>
     //<editor-fold desc="Private">
 
-    private Properties buildProperties(ConfigFile file)
+    private Properties buildProperties(Map<String, String> snapshot,
+            ConfigFile file)
     {
 
         Properties p = new Properties();
@@ -86,18 +107,137 @@ public class SplittedConfiguration extends Configuration implements Splitable
         {
             return p;
         }
-        for (String key : properties.stringPropertyNames())
+        for (String key : PersistentMap.keysOf(snapshot, file.getPraefix()))
+        {
+            p.setProperty(key, snapshot.get(key));
+        }
+        return p;
+    }
+
+    /**
+     * Routes every key of the snapshot to the file with the longest matching
+     * praefix in a single pass over the snapshot.
+     *
+     * @param snapshot the values to store
+     * @param files the files to route the keys to
+     * @return the properties for each of the given files
+     */
+    private Map<ConfigFile, Properties> route(Map<String, String> snapshot,
+            ConfigFile[] files)
+    {
+        PrefixRouter router = new PrefixRouter(files);
+        Map<ConfigFile, Properties> back = new IdentityHashMap<>();
+        for (ConfigFile file : files)
+        {
+            back.put(file, new Properties());
+        }
+        for (Map.Entry<String, String> entry : snapshot.entrySet())
         {
-            if (key.startsWith(file.getPraefix()))
+            ConfigFile file = router.route(entry.getKey());
+            if (file != null)
             {
-                p.setProperty(key, properties.getProperty(key));
+                back.get(file).setProperty(entry.getKey(), entry.getValue());
             }
         }
-        return p;
+        LogSystem.getLogger(SplittedConfiguration.class).log(Level.FINE,
+                "Routed the keys for saving: {0}", router);
+        return back;
     }
     //</editor-fold>
 
     //<editor-fold desc="Public">
+    /**
+     * {@inheritDoc }
+     *
+     * @return a read only copy of this {@link SplittedConfiguration}
+     */
+    @Override
+    public SplittedConfiguration snapshot()
+    {
+        return new SplittedConfiguration(PersistentMap.snapshotOf(properties));
+    }
+
+    /**
+     * {@inheritDoc }
+     *
+     * @return a changeable copy of this {@link SplittedConfiguration}
+     */
+    @Override
+    public SplittedConfiguration fork()
+    {
+        return properties instanceof CompactMap ? new SplittedConfiguration(
+                ((CompactMap) properties).fork()) : new SplittedConfiguration(
+                        PersistentMap.copyOf(properties));
+    }
+
+    /**
+     * {@inheritDoc }
+     *
+     * @return a read only copy of this {@link SplittedConfiguration} which is
+     * optimized for reading
+     */
+    @Override
+    public SplittedConfiguration freeze()
+    {
+        return new SplittedConfiguration(new FrozenMap<>(PersistentMap.
+                snapshotOf(properties)));
+    }
+
+    /**
+     * {@inheritDoc }
+     *
+     * @return a compact copy of this {@link SplittedConfiguration}
+     */
+    @Override
+    public SplittedConfiguration compact(boolean pack)
+    {
+        CompactMap map = new CompactMap(pack);
+        map.putAll(PersistentMap.snapshotOf(properties));
+        return new SplittedConfiguration(map);
+    }
+
+    /**
+     * {@inheritDoc }
+     *
+     * @return a compact copy of this {@link SplittedConfiguration}
+     */
+    @Override
+    public SplittedConfiguration compact()
+    {
+        return compact(false);
+    }
+
+    /**
+     * Enables or disables the routing of the keys while saving. Without
+     * routing a key is written into every {@link ConfigFile} whose praefix the
+     * key starts with, so a key can be written multiple times. With routing
+     * every key is written into exactly one {@link ConfigFile}: the one with
+     * the longest matching praefix. If multiple {@link ConfigFile}s share that
+     * praefix, the first one gets the key. Routing is disabled by default.
+     *
+     * @param routing {@code true} to write every key only once
+     * @see #save(net.bplaced.clayn.c4j.io.ConfigFile[])
+     * @see PrefixRouter
+     * @since 0.1
+     */
+    public void setRouting(boolean routing)
+    {
+        this.routing = routing;
+    }
+
+    /**
+     * Returns whether every key is only written into the {@link ConfigFile}
+     * with the longest matching praefix.
+     *
+     * @return {@code true} if the routing is enabled
+     * @see #setRouting(boolean)
+     * @since 0.1
+     */
+    public boolean isRouting()
+    {
+        return routing;
+    }
+
     /**
      * Loads all configurations from the given ConfigFiles into the
      * Configurations Properties. The praefixes of the ConfigFiles will be
@@ -132,6 +272,8 @@ public class SplittedConfiguration extends Configuration implements Splitable
      * keys that start with the given praefix from the associated
      * {@link ConfigFile}. If multiple {@link ConfigFile}s share the same
      * praefix all those files will be filled with the same key and value pairs.
+     * All files are written from the same {@link #snapshot()}. If the routing
+     * is enabled every key is written into only one file instead.
      *
      * @param files the files were to store the configuration
      * @throws IOException in an IOException occures during the writing.
@@ -140,10 +282,14 @@ public class SplittedConfiguration extends Configuration implements Splitable
     @Override
     public void save(ConfigFile... files) throws IOException
     {
+        Map<String, String> snapshot = PersistentMap.snapshotOf(properties);
+        Map<ConfigFile, Properties> routed = routing ? route(snapshot, files)
+                : null;
         for (ConfigFile file : files)
         {
             File f = file.getConfigFile();
-            Properties p = buildProperties(file);
+            Properties p = routed == null ? buildProperties(snapshot, file)
+                    : routed.get(file);
             try (OutputStream out = new FileOutputStream(f))
             {
                 p.store(out, file.getComment());
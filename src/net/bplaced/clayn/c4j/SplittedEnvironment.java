@@ -2,6 +2,7 @@ package net.bplaced.clayn.c4j;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -9,8 +10,18 @@ import java.io.InputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
 import net.bplaced.clayn.c4j.io.ConfigFile;
+import net.bplaced.clayn.c4j.io.PrefixRouter;
+import net.bplaced.clayn.c4j.project.LogSystem;
+import net.bplaced.clayn.c4j.util.BoundedMap;
+import net.bplaced.clayn.c4j.util.FrozenMap;
+import net.bplaced.clayn.c4j.util.OffHeapMap;
+import net.bplaced.clayn.c4j.util.PersistentMap;
 
 /**
  * Sublcass of {@link Environment} which enables, due to implementation of
@@ -28,7 +39,7 @@ import net.bplaced.clayn.c4j.io.ConfigFile;
 public class SplittedEnvironment extends Environment implements Splitable
 {
     //<editor-fold desc="Attribute">
-
+    private volatile boolean routing;
     //</editor-fold>
     //<editor-fold desc="Konstruktoren">
     /**
@@ -64,7 +75,8 @@ public class SplittedEnvironment extends Environment implements Splitable
      * Creates a new {@link SplittedEnvironment} with all the informations from
      * the given {@link Environment}. This constructor creates a flat copy,
      * which means that manipulation at the original {@link Environment} will
-     * not affect the new one.
+     * not affect the new one. If the given {@link Environment} stores its
+     * values in a {@link PersistentMap} no values will be copied.
      *
      * @param env the {@link Environment} to get the data from.
      * @see #SplittedEnvironment()
@@ -73,11 +85,20 @@ public class SplittedEnvironment extends Environment implements Splitable
      */
     public SplittedEnvironment(Environment env)
     {
-        this();
-        for (String key : env.environment.keySet())
-        {
-            put(key, env.get(key));
-        }
+        this(PersistentMap.copyOf(env.environment));
+    }
+
+    /**
+     * Creates a new {@link SplittedEnvironment} which uses the given map to
+     * store its values.
+     *
+     * @param environment the map to store the values in
+     * @see Environment#Environment(java.util.concurrent.ConcurrentMap)
+     * @since 0.1
+     */
+    protected SplittedEnvironment(ConcurrentMap<String, Object> environment)
+    {
+        super(environment);
     }
     //</editor-fold>
 
@@ -87,22 +108,58 @@ public class SplittedEnvironment extends Environment implements Splitable
      * ConfigFile. Only Objects implementing {@link Serializable} will be added
      * to the list.
      *
+     * @param snapshot the values to choose from
      * @param file
      * @return a list of the Objects to store
      */
-    private List<Serializable> buildStoreList(ConfigFile file)
+    private List<Serializable> buildStoreList(Map<String, Object> snapshot,
+            ConfigFile file)
     {
         List<Serializable> back = new ArrayList<>();
-        for (String key : environment.keySet())
+        for (String key : PersistentMap.keysOf(snapshot, file.getPraefix()))
         {
-            if (key.startsWith(file.getPraefix()) && (environment.get(key) instanceof Serializable))
+            Object value = snapshot.get(key);
+            if (value instanceof Serializable)
             {
-                back.add((Serializable) environment.get(key));
+                back.add((Serializable) value);
             }
         }
         return back;
     }
 
+    /**
+     * Routes every {@link Serializable} value of the snapshot to the file with
+     * the longest matching praefix in a single pass over the snapshot.
+     *
+     * @param snapshot the values to store
+     * @param files the files to route the values to
+     * @return the Objects to store for each of the given files
+     */
+    private Map<ConfigFile, List<Serializable>> route(
+            Map<String, Object> snapshot, ConfigFile[] files)
+    {
+        PrefixRouter router = new PrefixRouter(files);
+        Map<ConfigFile, List<Serializable>> back = new IdentityHashMap<>();
+        for (ConfigFile file : files)
+        {
+            back.put(file, new ArrayList<Serializable>());
+        }
+        for (Map.Entry<String, Object> entry : snapshot.entrySet())
+        {
+            if (entry.getValue() instanceof Serializable)
+            {
+                ConfigFile file = router.route(entry.getKey());
+                if (file != null)
+                {
+                    back.get(file).add((Serializable) entry.getValue());
+                }
+            }
+        }
+        LogSystem.getLogger(SplittedEnvironment.class).log(Level.FINE,
+                "Routed the keys for saving: {0}", router);
+        return back;
+    }
+
     /**
      * Stores a list of {@link Serializable} objects into the given
      * OutputStream. At first the number, in other words {@code list.size()},
@@ -126,6 +183,126 @@ public class SplittedEnvironment extends Environment implements Splitable
     //</editor-fold>
 
     //<editor-fold desc="Public">
+    /**
+     * {@inheritDoc }
+     *
+     * @return a read only copy of this {@link SplittedEnvironment}
+     */
+    @Override
+    public SplittedEnvironment snapshot()
+    {
+        return new SplittedEnvironment(PersistentMap.snapshotOf(environment));
+    }
+
+    /**
+     * {@inheritDoc }
+     *
+     * @return a changeable copy of this {@link SplittedEnvironment}
+     */
+    @Override
+    public SplittedEnvironment fork()
+    {
+        return environment instanceof OffHeapMap ? new SplittedEnvironment(
+                ((OffHeapMap) environment).fork()) : new SplittedEnvironment(
+                        PersistentMap.copyOf(environment));
+    }
+
+    /**
+     * {@inheritDoc }
+     *
+     * @return a read only copy of this {@link SplittedEnvironment} which is
+     * optimized for reading
+     */
+    @Override
+    public SplittedEnvironment freeze()
+    {
+        return new SplittedEnvironment(new FrozenMap<>(PersistentMap.
+                snapshotOf(environment)));
+    }
+
+    /**
+     * {@inheritDoc }
+     *
+     * @return an off heap copy of this {@link SplittedEnvironment}
+     */
+    @Override
+    public SplittedEnvironment offHeap()
+    {
+        return offHeap(OffHeapMap.DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * {@inheritDoc }
+     *
+     * @return an off heap copy of this {@link SplittedEnvironment}
+     */
+    @Override
+    public SplittedEnvironment offHeap(int cacheSize)
+    {
+        OffHeapMap map = new OffHeapMap(OffHeapMap.DEFAULT_SEGMENT_SIZE,
+                cacheSize);
+        map.putAll(PersistentMap.snapshotOf(environment));
+        return new SplittedEnvironment(map);
+    }
+
+    /**
+     * {@inheritDoc }
+     *
+     * @return a bounded copy of this {@link SplittedEnvironment}
+     */
+    @Override
+    public SplittedEnvironment bounded(long maximumSize, File spillDirectory)
+    {
+        return bounded(maximumSize, null, spillDirectory, false);
+    }
+
+    /**
+     * {@inheritDoc }
+     *
+     * @return a bounded copy of this {@link SplittedEnvironment}
+     */
+    @Override
+    public SplittedEnvironment bounded(long maximumWeight,
+            BoundedMap.Weigher weigher, File spillDirectory,
+            boolean evictUnserializable)
+    {
+        BoundedMap map = new BoundedMap(maximumWeight, weigher, spillDirectory,
+                evictUnserializable);
+        map.putAll(PersistentMap.snapshotOf(environment));
+        return new SplittedEnvironment(map);
+    }
+
+    /**
+     * Enables or disables the routing of the keys while saving. Without
+     * routing a value is written into every {@link ConfigFile} whose praefix
+     * the key starts with, so a value can be written multiple times. With
+     * routing every value is written into exactly one {@link ConfigFile}: the
+     * one with the longest matching praefix. If multiple {@link ConfigFile}s
+     * share that praefix, the first one gets the value. Routing is disabled by
+     * default.
+     *
+     * @param routing {@code true} to write every value only once
+     * @see #save(net.bplaced.clayn.c4j.io.ConfigFile[])
+     * @see PrefixRouter
+     * @since 0.1
+     */
+    public void setRouting(boolean routing)
+    {
+        this.routing = routing;
+    }
+
+    /**
+     * Returns whether every value is only written into the {@link ConfigFile}
+     * with the longest matching praefix.
+     *
+     * @return {@code true} if the routing is enabled
+     * @see #setRouting(boolean)
+     * @since 0.1
+     */
+    public boolean isRouting()
+    {
+        return routing;
+    }
     //</editor-fold>
     /**
      * Loads all stored values from all the given files and stores them under 
@@ -157,7 +334,9 @@ public class SplittedEnvironment extends Environment implements Splitable
      * file. If the requested keys are very abstract the files may contain the 
      * same keys and values. Even if no keys where found for a ConfigFile the 
      * requested File will be created. The way the values will be stored is the 
-     * same as {@link #save(java.io.OutputStream)}. 
+     * same as {@link #save(java.io.OutputStream)}. All files are written from 
+     * the same {@link #snapshot()}. If the routing is enabled every value is 
+     * written into only one file instead. 
      * @param files the files that should contain the specific key,value pairs.
      * @throws IOException if an IOException occures during the writing.
      * @see #load(net.bplaced.clayn.c4j.io.ConfigFile[]).
@@ -166,13 +345,17 @@ public class SplittedEnvironment extends Environment implements Splitable
     @Override
     public void save(ConfigFile... files) throws IOException
     {
+        Map<String, Object> snapshot = PersistentMap.snapshotOf(environment);
+        Map<ConfigFile, List<Serializable>> routed = routing ? route(snapshot,
+                files) : null;
         for (ConfigFile cf : files)
         {
             try (ObjectOutputStream out = new ObjectOutputStream(
                     new BufferedOutputStream(new FileOutputStream(cf.
                                     getConfigFile()))))
             {
-                storeList(buildStoreList(cf), out);
+                storeList(routed == null ? buildStoreList(snapshot, cf)
+                        : routed.get(cf), out);
                 out.flush();
                             }
         }
@@ -1,6 +1,8 @@
 package net.bplaced.clayn.c4j.anno;
 
 import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.ElementType.PARAMETER;
 import java.lang.annotation.Retention;
 import static java.lang.annotation.RetentionPolicy.RUNTIME;
 import java.lang.annotation.Target;
@@ -12,11 +14,16 @@ import net.bplaced.clayn.c4j.Setting;
  * Annotation that will mark Fields of your class for the {@link Configuration} 
  * to be loaded with a specific object stored before. Additionally you can decide 
  * if the field should be always up to date with the current stored objects. 
+ * Constructor parameters can be annotated as well, so that 
+ * {@link Configuration#bind(java.lang.Class)} can create the Object with the 
+ * stored values. Such parameters are never refreshed. The methods of an 
+ * interface can be annotated too, so that 
+ * {@link Configuration#proxy(java.lang.Class)} can implement the interface.
  * @author Clayn
  * @since 0.1
  * @version 0.1
  */
-@Target({FIELD})
+@Target({FIELD, METHOD, PARAMETER})
 @Retention( value = RUNTIME )
 public @interface Configure 
 {
@@ -48,4 +55,18 @@ public @interface Configure
      * @see Env#refresh() 
      */
     boolean refresh() default false;
-}
+    
+    /**
+     * Returns if the field should be refreshed by the executor of the 
+     * {@link net.bplaced.clayn.c4j.Refresher} instead of the thread which 
+     * changed the value. This is only used if {@link #refresh()} returns 
+     * {@code true} and an executor was set, otherwise the field is refreshed 
+     * synchronously. Per default {@code false} will be returned.
+     * @return {@code true} if the field should be refreshed asynchronously, 
+     * {@code false} otherwise.
+     * @since 0.1
+     * @see net.bplaced.clayn.c4j.Refresher#setExecutor(java.util.concurrent.Executor)
+     * @see Env#async() 
+     */
+    boolean async() default false;
+}
\ No newline at end of file
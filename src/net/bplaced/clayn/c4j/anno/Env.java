@@ -36,4 +36,18 @@ public @interface Env
      * @see Configure#refresh() 
      */
     boolean refresh() default false;
-}
+    
+    /**
+     * Returns if the field should be refreshed by the executor of the 
+     * {@link net.bplaced.clayn.c4j.Refresher} instead of the thread which 
+     * changed the value. This is only used if {@link #refresh()} returns 
+     * {@code true} and an executor was set, otherwise the field is refreshed 
+     * synchronously. Per default {@code false} will be returned.
+     * @return {@code true} if the field should be refreshed asynchronously, 
+     * {@code false} otherwise.
+     * @since 0.1
+     * @see net.bplaced.clayn.c4j.Refresher#setExecutor(java.util.concurrent.Executor)
+     * @see Configure#async() 
+     */
+    boolean async() default false;
+}
\ No newline at end of file
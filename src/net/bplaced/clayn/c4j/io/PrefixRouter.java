@@ -0,0 +1,175 @@
+package net.bplaced.clayn.c4j.io;
+
+import java.util.Arrays;
+
+/**
+ * Assigns each key to exactly one {@link ConfigFile}, namely the one with the
+ * longest praefix the key starts with. If multiple {@link ConfigFile}s share
+ * the same praefix, the first one wins. The praefixes are compiled into a
+ * trie so routing a key only needs time for the length of the key.
+ * <br><br>
+ * A router also counts how many keys it routed and how many writes would
+ * have been needed if every key was written into all the {@link ConfigFile}s
+ * with a matching praefix. A router is meant to be used for a single save and
+ * is not threadsafe.
+ *
+ * @author Clayn
+ * @since 0.1
+ * @version 0.1
+ */
+public final class PrefixRouter
+{
+
+    //<editor-fold desc="Attribute">
+    private final Node root = new Node();
+    private long routed;
+    private long unrouted;
+
+    //</editor-fold>
+    //<editor-fold desc="Konstruktoren">
+    /**
+     * Creates a new router for the given files.
+     *
+     * @param files the files to route the keys to
+     * @since 0.1
+     */
+    public PrefixRouter(ConfigFile... files)
+    {
+        for (ConfigFile file : files)
+        {
+            Node node = root;
+            String praefix = file.getPraefix();
+            for (int i = 0; i < praefix.length(); i++)
+            {
+                node = node.child(praefix.charAt(i), true);
+            }
+            if (node.file == null)
+            {
+                node.file = file;
+            }
+            node.matches++;
+        }
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Private">
+    /**
+     * A node of the praefix trie.
+     */
+    private static final class Node
+    {
+
+        private char[] chars = new char[0];
+        private Node[] next = new Node[0];
+        private ConfigFile file;
+        private int matches;
+
+        private Node child(char c, boolean create)
+        {
+            int i = Arrays.binarySearch(chars, c);
+            if (i >= 0)
+            {
+                return next[i];
+            }
+            if (!create)
+            {
+                return null;
+            }
+            i = -i - 1;
+            char[] cs = new char[chars.length + 1];
+            Node[] ns = new Node[next.length + 1];
+            System.arraycopy(chars, 0, cs, 0, i);
+            System.arraycopy(next, 0, ns, 0, i);
+            System.arraycopy(chars, i, cs, i + 1, chars.length - i);
+            System.arraycopy(next, i, ns, i + 1, next.length - i);
+            cs[i] = c;
+            ns[i] = new Node();
+            chars = cs;
+            next = ns;
+            return ns[i];
+        }
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Public">
+    /**
+     * Returns the {@link ConfigFile} with the longest praefix the given key
+     * starts with or {@code null} if no praefix matches.
+     *
+     * @param key the key to route
+     * @return the file for the key or {@code null}
+     * @since 0.1
+     */
+    public ConfigFile route(String key)
+    {
+        Node node = root;
+        ConfigFile best = node.file;
+        int matches = node.matches;
+        for (int i = 0; i < key.length(); i++)
+        {
+            node = node.child(key.charAt(i), false);
+            if (node == null)
+            {
+                break;
+            }
+            if (node.file != null)
+            {
+                best = node.file;
+                matches += node.matches;
+            }
+        }
+        if (best != null)
+        {
+            routed++;
+            unrouted += matches;
+        }
+        return best;
+    }
+
+    /**
+     * Returns how many keys were routed to a file.
+     *
+     * @return the number of routed keys
+     * @since 0.1
+     */
+    public long getRouted()
+    {
+        return routed;
+    }
+
+    /**
+     * Returns how many times the routed keys would have been written if each
+     * key was written into every file with a matching praefix.
+     *
+     * @return the number of writes without routing
+     * @since 0.1
+     */
+    public long getUnrouted()
+    {
+        return unrouted;
+    }
+
+    /**
+     * Returns the average number of files each routed key would have been
+     * written to without routing. With routing each key is written exactly
+     * once, so the write amplification is {@code 1}.
+     *
+     * @return the write amplification without routing or {@code 0} if no key
+     * was routed
+     * @since 0.1
+     */
+    public double getUnroutedAmplification()
+    {
+        return routed == 0 ? 0 : (double) unrouted / routed;
+    }
+
+    @Override
+    public String toString()
+    {
+        return new StringBuilder().append("[Routed: ").append(routed).
+                append("; Without routing: ").append(unrouted).append(
+                "; Write amplification: 1 instead of ").append(
+                        getUnroutedAmplification()).append("]").toString();
+    }
+    //</editor-fold>
+}
@@ -0,0 +1,463 @@
+package net.bplaced.clayn.c4j.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.MirroredTypeException;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import net.bplaced.clayn.c4j.Binder;
+import net.bplaced.clayn.c4j.ConfigProxy;
+import net.bplaced.clayn.c4j.anno.Configure;
+import net.bplaced.clayn.c4j.anno.Env;
+import net.bplaced.clayn.c4j.util.Primitives;
+
+/**
+ * Annotation processor which generates a {@link Binder} for every class with
+ * {@link Configure} or {@link Env} fields. The binder is put into the package
+ * of the class and named like the binary name of the class followed by
+ * {@code $$Binder}. It creates the needed {@link net.bplaced.clayn.c4j.Setting}s
+ * once and sets the fields with direct assignments, also when they are
+ * refreshed.
+ * <br><br>
+ * A binder can only assign fields which are visible in the package of the
+ * class, so no binder is generated if an annotated field is private or final
+ * or the class itself is private. Those classes are still configured with
+ * reflection and a note is reported for them. The processor is registered in
+ * {@code META-INF/services}, so it runs whenever Config4J is on the
+ * classpath of the compiler.
+ * <br><br>
+ * For every interface with {@link Configure} methods a {@link ConfigProxy}
+ * is generated in the same way, named like the binary name of the interface
+ * followed by {@code $$Proxy}. It is used by
+ * {@link net.bplaced.clayn.c4j.Configuration#proxy(java.lang.Class)}. No
+ * implementation is generated if the interface is private or generic or one
+ * of its methods has parameters or no {@link Configure} annotation.
+ *
+ * @author Clayn
+ * @since 0.1
+ * @version 0.1
+ */
+@SupportedAnnotationTypes(
+        {
+            "net.bplaced.clayn.c4j.anno.Configure",
+            "net.bplaced.clayn.c4j.anno.Env"
+        })
+public class BinderProcessor extends AbstractProcessor
+{
+
+    //<editor-fold desc="Attribute">
+    private static final String SUFFIX = "$$Binder";
+    private static final String PROXY_SUFFIX = "$$Proxy";
+    /**
+     * The annotations whose elements are processed.
+     */
+    private static final List<Class<? extends Annotation>> ANNOTATIONS
+            = Arrays.<Class<? extends Annotation>>asList(Configure.class,
+                    Env.class);
+
+    //</editor-fold>
+    //<editor-fold desc="Private">
+    /**
+     * Returns the type of the Setting of the given annotation. The class
+     * itself is not loaded while compiling, so it is read from the exception.
+     */
+    private static TypeMirror settingOf(Configure conf)
+    {
+        try
+        {
+            conf.setting();
+            throw new IllegalStateException("The setting must be a mirror.");
+        }
+        catch (MirroredTypeException ex)
+        {
+            return ex.getTypeMirror();
+        }
+    }
+
+    /**
+     * Returns why a binder can´t assign the given field or {@code null} if it
+     * can.
+     */
+    private static String check(VariableElement field)
+    {
+        Set<Modifier> mods = field.getModifiers();
+        if (mods.contains(Modifier.PRIVATE))
+        {
+            return "the field " + field.getSimpleName() + " is private";
+        }
+        if (mods.contains(Modifier.FINAL))
+        {
+            return "the field " + field.getSimpleName() + " is final";
+        }
+        if (mods.contains(Modifier.STATIC))
+        {
+            return "the field " + field.getSimpleName() + " is static";
+        }
+        for (Element e = field.getEnclosingElement(); e != null && e.getKind()
+                != ElementKind.PACKAGE; e = e.getEnclosingElement())
+        {
+            if (e.getModifiers().contains(Modifier.PRIVATE))
+            {
+                return "the class " + e.getSimpleName() + " is private";
+            }
+            if (e.getKind() != ElementKind.CLASS)
+            {
+                return e.getSimpleName() + " is no class";
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the statement of the hook which assigns the value to the field.
+     * Primitive fields are assigned with {@link Primitives}, so they accept
+     * the same values as with reflection.
+     */
+    private String assignment(String type, VariableElement field)
+    {
+        Types types = processingEnv.getTypeUtils();
+        TypeMirror mirror = field.asType();
+        String target = "((" + type + ") target)." + field.getSimpleName();
+        if (mirror.getKind().isPrimitive())
+        {
+            String name = mirror.getKind().name().toLowerCase(Locale.ROOT);
+            return "if (value != null) " + target + " = "
+                    + Primitives.class.getName() + ".to" + Character.
+                    toUpperCase(name.charAt(0)) + name.substring(1)
+                    + "(value);";
+        }
+        return target + " = (" + types.erasure(mirror) + ") value;";
+    }
+
+    /**
+     * Returns the methods which the implementation of the given interface
+     * must implement.
+     */
+    private List<ExecutableElement> abstractMethods(TypeElement type)
+    {
+        List<ExecutableElement> back = new ArrayList<>();
+        for (ExecutableElement m : ElementFilter.methodsIn(processingEnv.
+                getElementUtils().getAllMembers(type)))
+        {
+            if (m.getModifiers().contains(Modifier.ABSTRACT))
+            {
+                back.add(m);
+            }
+        }
+        return back;
+    }
+
+    /**
+     * Returns why no implementation can be generated for the given interface
+     * or {@code null} if it can.
+     */
+    private static String checkProxy(TypeElement type,
+            List<ExecutableElement> methods)
+    {
+        if (!type.getTypeParameters().isEmpty())
+        {
+            return "the interface " + type.getSimpleName() + " is generic";
+        }
+        for (Element e = type; e != null && e.getKind() != ElementKind.PACKAGE;
+                e = e.getEnclosingElement())
+        {
+            if (e.getModifiers().contains(Modifier.PRIVATE))
+            {
+                return e.getSimpleName() + " is private";
+            }
+        }
+        for (ExecutableElement m : methods)
+        {
+            if (m.getAnnotation(Configure.class) == null)
+            {
+                return "the method " + m.getSimpleName()
+                        + " has no Configure annotation";
+            }
+            if (!m.getParameters().isEmpty() || !m.getTypeParameters().
+                    isEmpty())
+            {
+                return "the method " + m.getSimpleName() + " has parameters";
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the simple name of the generated class for the given type.
+     */
+    private String generatedName(TypeElement type, String suffix)
+    {
+        Elements elements = processingEnv.getElementUtils();
+        PackageElement pkg = elements.getPackageOf(type);
+        String binary = elements.getBinaryName(type).toString();
+        return (pkg.isUnnamed() ? binary : binary.substring(pkg.
+                getQualifiedName().length() + 1)) + suffix;
+    }
+
+    private void generateProxy(TypeElement type,
+            List<ExecutableElement> methods) throws IOException
+    {
+        Elements elements = processingEnv.getElementUtils();
+        Types types = processingEnv.getTypeUtils();
+        PackageElement pkg = elements.getPackageOf(type);
+        String simple = generatedName(type, PROXY_SUFFIX);
+        String name = types.erasure(type.asType()).toString();
+        StringBuilder names = new StringBuilder();
+        StringBuilder settings = new StringBuilder();
+        StringBuilder impls = new StringBuilder();
+        for (int i = 0; i < methods.size(); i++)
+        {
+            ExecutableElement m = methods.get(i);
+            Configure c = m.getAnnotation(Configure.class);
+            String sep = i == 0 ? "" : ", ";
+            names.append(sep).append(elements.getConstantExpression(m.
+                    getSimpleName().toString()));
+            settings.append(sep).append("new ").append(types.erasure(
+                    settingOf(c))).append("(").append(elements.
+                    getConstantExpression(c.key())).append(")");
+            TypeMirror ret = m.getReturnType();
+            String call;
+            if (ret.getKind().isPrimitive())
+            {
+                call = "(" + types.boxedClass(types.getPrimitiveType(ret.
+                        getKind())).getQualifiedName() + ") require(" + i + ")";
+            }
+            else
+            {
+                call = "(" + types.erasure(ret) + ") value(" + i + ")";
+            }
+            impls.append("\n    @Override\n    public ").append(types.erasure(
+                    ret)).append(" ").append(m.getSimpleName()).append(
+                    "()\n    {\n        return ").append(call).append(
+                    ";\n    }\n");
+        }
+        String qualified = pkg.isUnnamed() ? simple : pkg.getQualifiedName()
+                + "." + simple;
+        try (Writer w = processingEnv.getFiler().createSourceFile(qualified,
+                type).openWriter())
+        {
+            if (!pkg.isUnnamed())
+            {
+                w.write("package " + pkg.getQualifiedName() + ";\n\n");
+            }
+            w.write("import net.bplaced.clayn.c4j.ConfigProxy;\n"
+                    + "import net.bplaced.clayn.c4j.Configuration;\n"
+                    + "import net.bplaced.clayn.c4j.Setting;\n\n"
+                    + "/**\n * Implementation of {@link " + name
+                    + "} generated by the BinderProcessor of Config4J.\n */\n"
+                    + "public final class " + simple
+                    + " extends ConfigProxy implements " + name + "\n{\n\n"
+                    + "    private static final String[] NAMES = {" + names
+                    + "};\n"
+                    + "    private static final Setting<?>[] SETTINGS = {"
+                    + settings + "};\n\n"
+                    + "    public " + simple + "(Configuration conf)\n    {\n"
+                    + "        super(conf, NAMES, SETTINGS);\n    }\n");
+            w.write(impls.toString());
+            w.write("}\n");
+        }
+    }
+
+    private void generate(TypeElement type, List<VariableElement> fields)
+            throws IOException
+    {
+        Elements elements = processingEnv.getElementUtils();
+        PackageElement pkg = elements.getPackageOf(type);
+        String simple = generatedName(type, SUFFIX);
+        String name = processingEnv.getTypeUtils().erasure(type.asType()).
+                toString();
+        StringBuilder consts = new StringBuilder();
+        StringBuilder conf = new StringBuilder();
+        StringBuilder env = new StringBuilder();
+        for (int i = 0; i < fields.size(); i++)
+        {
+            VariableElement field = fields.get(i);
+            String fieldName = elements.getConstantExpression(field.
+                    getSimpleName().toString());
+            consts.append("    private static final Binder.Hook H").append(i).
+                    append(" = new Binder.Hook()\n    {\n")
+                    .append("        @Override\n")
+                    .append("        public void set(Object target, Object value)\n")
+                    .append("        {\n            ").append(assignment(name,
+                            field)).append("\n        }\n    };\n");
+            Configure c = field.getAnnotation(Configure.class);
+            if (c != null)
+            {
+                consts.append("    private static final ").append(
+                        "net.bplaced.clayn.c4j.Setting S").append(i).append(
+                        " = new ").append(processingEnv.getTypeUtils().
+                                erasure(settingOf(c))).append("(").append(
+                                elements.getConstantExpression(c.key())).
+                        append(");\n");
+                conf.append("        conf.bind(obj, ").append(fieldName).
+                        append(", S").append(i).append(", ").append(c.
+                        refresh()).append(", ").append(c.async()).append(
+                        ", H").append(i).append(");\n");
+            }
+            Env e = field.getAnnotation(Env.class);
+            if (e != null)
+            {
+                env.append("        env.bind(obj, ").append(fieldName).append(
+                        ", ").append(elements.getConstantExpression(e.value())).
+                        append(", ").append(e.refresh()).append(", ").
+                        append(e.async()).append(", H").append(i).append(
+                        ");\n");
+            }
+        }
+        String qualified = pkg.isUnnamed() ? simple : pkg.getQualifiedName()
+                + "." + simple;
+        try (Writer w = processingEnv.getFiler().createSourceFile(qualified,
+                type).openWriter())
+        {
+            if (!pkg.isUnnamed())
+            {
+                w.write("package " + pkg.getQualifiedName() + ";\n\n");
+            }
+            w.write("import net.bplaced.clayn.c4j.Binder;\n"
+                    + "import net.bplaced.clayn.c4j.Configuration;\n"
+                    + "import net.bplaced.clayn.c4j.Environment;\n\n"
+                    + "/**\n * Binder for {@link " + name
+                    + "} generated by the BinderProcessor of Config4J.\n */\n"
+                    + "@SuppressWarnings(\"unchecked\")\n"
+                    + "public final class " + simple + " implements Binder<"
+                    + name + ">\n{\n\n");
+            w.write(consts.toString());
+            w.write("\n    @Override\n    public void configure(Configuration conf, "
+                    + name + " obj)\n    {\n");
+            w.write(conf.toString());
+            w.write("    }\n\n    @Override\n    public void configure(Environment env, "
+                    + name + " obj)\n    {\n");
+            w.write(env.toString());
+            w.write("    }\n}\n");
+        }
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Public">
+    @Override
+    public SourceVersion getSupportedSourceVersion()
+    {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations,
+            RoundEnvironment round)
+    {
+        Map<TypeElement, List<VariableElement>> types = new LinkedHashMap<>();
+        Set<TypeElement> interfaces = new LinkedHashSet<>();
+        for (Class<? extends Annotation> anno : ANNOTATIONS)
+        {
+            for (Element e : round.getElementsAnnotatedWith(anno))
+            {
+                if (e.getKind() == ElementKind.METHOD && e.
+                        getEnclosingElement().getKind()
+                        == ElementKind.INTERFACE)
+                {
+                    interfaces.add((TypeElement) e.getEnclosingElement());
+                }
+                if (e.getKind() != ElementKind.FIELD)
+                {
+                    continue;
+                }
+                TypeElement type = (TypeElement) e.getEnclosingElement();
+                List<VariableElement> fields = types.get(type);
+                if (fields == null)
+                {
+                    fields = new ArrayList<>();
+                    types.put(type, fields);
+                }
+                if (!fields.contains(e))
+                {
+                    fields.add((VariableElement) e);
+                }
+            }
+        }
+        Messager messager = processingEnv.getMessager();
+        for (Map.Entry<TypeElement, List<VariableElement>> entry : types.
+                entrySet())
+        {
+            String reason = null;
+            for (VariableElement field : entry.getValue())
+            {
+                reason = check(field);
+                if (reason != null)
+                {
+                    break;
+                }
+            }
+            if (reason == null && entry.getKey().asType().getKind()
+                    != TypeKind.DECLARED)
+            {
+                reason = "it is no declared type";
+            }
+            if (reason != null)
+            {
+                messager.printMessage(Diagnostic.Kind.NOTE,
+                        "No Binder generated, " + reason
+                        + ". The class is configured with reflection.",
+                        entry.getKey());
+                continue;
+            }
+            try
+            {
+                generate(entry.getKey(), entry.getValue());
+            }
+            catch (IOException ex)
+            {
+                messager.printMessage(Diagnostic.Kind.ERROR,
+                        "Can´t write the Binder: " + ex.getMessage(), entry.
+                        getKey());
+            }
+        }
+        for (TypeElement type : interfaces)
+        {
+            List<ExecutableElement> methods = abstractMethods(type);
+            String reason = checkProxy(type, methods);
+            if (reason != null)
+            {
+                messager.printMessage(Diagnostic.Kind.NOTE,
+                        "No Proxy generated, " + reason
+                        + ". The interface is implemented with reflection.",
+                        type);
+                continue;
+            }
+            try
+            {
+                generateProxy(type, methods);
+            }
+            catch (IOException ex)
+            {
+                messager.printMessage(Diagnostic.Kind.ERROR,
+                        "Can´t write the Proxy: " + ex.getMessage(), type);
+            }
+        }
+        return false;
+    }
+    //</editor-fold>
+}
@@ -0,0 +1,6 @@
+/**
+ * Contains the annotation processor which generates the
+ * {@link net.bplaced.clayn.c4j.Binder}s for the annotated classes at compile time. 
+ * @since 0.1
+ */
+package net.bplaced.clayn.c4j.processor;
\ No newline at end of file
@@ -1,6 +1,7 @@
 
 package net.bplaced.clayn.c4j.stat;
 
+import java.util.Collection;
 import net.bplaced.clayn.c4j.Configuration;
 
 /**
@@ -63,4 +64,21 @@ public final class C
             return C.config.configure(obj);
         return obj;
     }
+
+    /**
+     * Easily configures all your objects such as {@link Configuration} would
+     * do. In fact this method simple gives the objects to the stored
+     * {@link Configuration} if its not {@code null}.
+     * @param <T> the type of Objects to be configured
+     * @param objs the objects that should be configured.
+     * @return the same collection as given to this method
+     * @see Configuration#configureAll(java.util.Collection)
+     * @since 0.1
+     */
+    public static <T> Collection<T> configAll(Collection<T> objs)
+    {
+        if(C.config!=null)
+            return C.config.configureAll(objs);
+        return objs;
+    }
 }
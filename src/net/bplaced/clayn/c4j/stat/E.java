@@ -2,6 +2,7 @@ package net.bplaced.clayn.c4j.stat;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collection;
 import net.bplaced.clayn.c4j.Environment;
 
 /**
@@ -89,4 +90,24 @@ public final class E
         }
         return null;
     }
+
+    /**
+     * Easily configures all your objects such as {@link Environment} would
+     * do. In fact this method simple gives the objects to the stored
+     * {@link Environment} if its not {@code null}.
+     *
+     * @param <T> the type of Objects to be configured
+     * @param objs the objects that should be configured.
+     * @return the same collection as given to this method
+     * @see Environment#configureAll(java.util.Collection)
+     * @since 0.1
+     */
+    public static <T> Collection<T> configAll(Collection<T> objs)
+    {
+        if (E.environment != null)
+        {
+            return environment.configureAll(objs);
+        }
+        return objs;
+    }
 }
@@ -0,0 +1,122 @@
+package net.bplaced.clayn.c4j.util;
+
+/**
+ * A Bloom filter for String keys. It is used by {@link LayeredMap} to skip
+ * the layers which surely do not contain a key. Each key sets four bits of
+ * the table. If one of the four bits of a key is not set, the key was never
+ * added. Filters can be combined, so a single filter can tell whether any of
+ * several filters may contain a key. Since the sizes are powers of two, the
+ * bit of a key in a smaller filter is its bit in a larger filter with the
+ * upper bits cut off, so filters of different sizes can be combined too. This class is not
+ * threadsafe while keys are added.
+ *
+ * @author Clayn
+ * @since 0.1
+ * @version 0.1
+ */
+final class BloomFilter
+{
+
+    //<editor-fold desc="Attribute">
+    private static final int HASHES = 4;
+    /**
+     * Number of bits per expected key, which gives about one percent false
+     * positives.
+     */
+    private static final int BITS_PER_KEY = 10;
+    private final long[] bits;
+    private final int mask;
+
+    //</editor-fold>
+    //<editor-fold desc="Konstruktoren">
+    /**
+     * Creates a new, empty filter for the given number of keys.
+     *
+     * @param keys the expected number of keys
+     */
+    BloomFilter(int keys)
+    {
+        long size = 64;
+        while (size < (long) keys * BITS_PER_KEY && size < (1L << 31))
+        {
+            size <<= 1;
+        }
+        bits = new long[(int) (size >>> 6)];
+        mask = (int) (size - 1);
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Private">
+    private static int spread(int h)
+    {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Public">
+    /**
+     * Adds the given key.
+     *
+     * @param key the key to add
+     */
+    void add(String key)
+    {
+        int h1 = spread(key.hashCode());
+        int h2 = Integer.rotateLeft(h1, 16) * 0x85EBCA6B | 1;
+        for (int i = 0; i < HASHES; i++)
+        {
+            int bit = (h1 + i * h2) & mask;
+            bits[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    /**
+     * Returns whether the given key may have been added. If {@code false} is
+     * returned the key was surely never added.
+     *
+     * @param key the key to check
+     * @return {@code false} if the key was never added
+     */
+    boolean mightContain(String key)
+    {
+        int h1 = spread(key.hashCode());
+        int h2 = Integer.rotateLeft(h1, 16) * 0x85EBCA6B | 1;
+        for (int i = 0; i < HASHES; i++)
+        {
+            int bit = (h1 + i * h2) & mask;
+            if ((bits[bit >>> 6] & (1L << bit)) == 0)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds all keys of the given filter. A larger filter is folded into this
+     * one, a smaller one is repeated across this one. Either way this filter
+     * afterwards contains at least all bits the keys of the other filter
+     * would set in it.
+     *
+     * @param other the filter to combine with this one
+     */
+    void or(BloomFilter other)
+    {
+        if (other.bits.length >= bits.length)
+        {
+            for (int i = 0; i < other.bits.length; i++)
+            {
+                bits[i & (bits.length - 1)] |= other.bits[i];
+            }
+        }
+        else
+        {
+            for (int i = 0; i < bits.length; i++)
+            {
+                bits[i] |= other.bits[i & (other.bits.length - 1)];
+            }
+        }
+    }
+    //</editor-fold>
+}
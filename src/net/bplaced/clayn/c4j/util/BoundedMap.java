@@ -0,0 +1,1052 @@
+package net.bplaced.clayn.c4j.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import net.bplaced.clayn.c4j.project.LogSystem;
+
+/**
+ * A {@link ConcurrentMap} which only keeps a bounded number of values in
+ * memory. If the bound is exceeded values are evicted with the W-TinyLFU
+ * policy: new values enter a small window, values that leave the window are
+ * only admitted into the main area if they were used more often than the
+ * value they would replace. The frequencies are estimated by a
+ * {@link FrequencySketch}, so keys that were used often in the past survive
+ * short bursts of keys which are only used once.
+ * <br><br>
+ * Evicted {@link Serializable} values are written into a spill file on the
+ * disk and are read back on the next {@link #get(java.lang.Object)}. If no
+ * spill directory is set they are discarded. Values which are not
+ * {@link Serializable} are only discarded if that is explicitly allowed,
+ * otherwise they are kept in memory outside of the bound.
+ * <br><br>
+ * Reads of values in memory don´t block. All changes and the bookkeeping of
+ * the policy are made under a single lock. If the lock is busy the usage of a
+ * read value is not recorded.
+ *
+ * @author Clayn
+ * @since 0.1
+ * @version 0.1
+ */
+public final class BoundedMap extends AbstractMap<String, Object> implements
+        ConcurrentMap<String, Object>
+{
+
+    //<editor-fold desc="Attribute">
+    private static final byte WINDOW = 0;
+    private static final byte PROBATION = 1;
+    private static final byte PROTECTED = 2;
+    private static final byte PINNED = 3;
+    private static final byte REMOVED = 4;
+    private final long maximum;
+    private final long windowMaximum;
+    private final long protectedMaximum;
+    private final Weigher weigher;
+    private final boolean evictUnserializable;
+    private final ConcurrentHashMap<String, Node> data = new ConcurrentHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final FrequencySketch sketch;
+    private final Queue window = new Queue();
+    private final Queue probation = new Queue();
+    private final Queue protect = new Queue();
+    private final Spill spill;
+    private long weight;
+    private long windowWeight;
+    private long protectedWeight;
+    private transient Set<Map.Entry<String, Object>> entrySet;
+
+    //</editor-fold>
+    //<editor-fold desc="Konstruktoren">
+    /**
+     * Creates a new BoundedMap which keeps at most {@code maximumSize} values
+     * in memory. Values which are not {@link Serializable} are never evicted.
+     *
+     * @param maximumSize the maximal number of values in memory
+     * @param spillDirectory the directory for the spill file or {@code null}
+     * to discard evicted values
+     * @throws IllegalArgumentException if the maximum is not positive
+     * @see #BoundedMap(long, net.bplaced.clayn.c4j.util.BoundedMap.Weigher,
+     * java.io.File, boolean)
+     * @since 0.1
+     */
+    public BoundedMap(long maximumSize, File spillDirectory)
+    {
+        this(maximumSize, null, spillDirectory, false);
+    }
+
+    /**
+     * Creates a new BoundedMap which keeps values with a total weight of at
+     * most {@code maximumWeight} in memory.
+     *
+     * @param maximumWeight the maximal weight of the values in memory
+     * @param weigher the weigher for the values or {@code null} to give every
+     * value the weight {@code 1}
+     * @param spillDirectory the directory for the spill file or {@code null}
+     * to discard evicted values
+     * @param evictUnserializable whether values which are not
+     * {@link Serializable} may be discarded
+     * @throws IllegalArgumentException if the maximum is not positive
+     * @since 0.1
+     */
+    public BoundedMap(long maximumWeight, Weigher weigher, File spillDirectory,
+            boolean evictUnserializable)
+    {
+        if (maximumWeight <= 0)
+        {
+            throw new IllegalArgumentException(
+                    "The maximum weight must be positive");
+        }
+        this.maximum = maximumWeight;
+        this.windowMaximum = Math.max(1, maximumWeight / 100);
+        this.protectedMaximum = (maximumWeight - windowMaximum) * 8 / 10;
+        this.weigher = weigher;
+        this.evictUnserializable = evictUnserializable;
+        this.sketch = new FrequencySketch(maximumWeight);
+        this.spill = spillDirectory == null ? null : new Spill(spillDirectory);
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Private">
+    /**
+     * Calculates the weight of the values in a {@link BoundedMap}.
+     *
+     * @since 0.1
+     */
+    public interface Weigher
+    {
+
+        /**
+         * Returns the weight of the given value.
+         *
+         * @param key the key of the value
+         * @param value the value
+         * @return the weight, must not be negative
+         * @since 0.1
+         */
+        public int weigh(String key, Object value);
+    }
+
+    /**
+     * A value in memory together with its place in the policy.
+     */
+    private static final class Node
+    {
+
+        private final String key;
+        private volatile Object value;
+        private int weight;
+        private byte queue;
+        private Node prev;
+        private Node next;
+
+        private Node(String key)
+        {
+            this.key = key;
+        }
+    }
+
+    /**
+     * A doubly linked list from the least to the most recently used node.
+     */
+    private static final class Queue
+    {
+
+        private Node head;
+        private Node tail;
+
+        private void add(Node node)
+        {
+            node.prev = tail;
+            node.next = null;
+            if (tail == null)
+            {
+                head = node;
+            }
+            else
+            {
+                tail.next = node;
+            }
+            tail = node;
+        }
+
+        private void unlink(Node node)
+        {
+            if (node.prev == null)
+            {
+                head = node.next;
+            }
+            else
+            {
+                node.prev.next = node.next;
+            }
+            if (node.next == null)
+            {
+                tail = node.prev;
+            }
+            else
+            {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+        }
+
+        private void clear()
+        {
+            head = null;
+            tail = null;
+        }
+    }
+
+    /**
+     * The spill file with all evicted values. Records are appended and the
+     * file is rewritten once more than half of it is unused. Must only be used
+     * while holding the lock.
+     */
+    private static final class Spill
+    {
+
+        private final File directory;
+        private final Map<String, long[]> index = new HashMap<>();
+        private File file;
+        private FileChannel channel;
+        private long live;
+        private long dead;
+
+        private Spill(File directory)
+        {
+            this.directory = directory;
+        }
+
+        private void open() throws IOException
+        {
+            if (channel == null)
+            {
+                file = File.createTempFile("c4j", ".spill", directory);
+                file.deleteOnExit();
+                channel = new RandomAccessFile(file, "rw").getChannel();
+            }
+        }
+
+        private void write(String key, byte[] bytes) throws IOException
+        {
+            drop(key);
+            open();
+            long position = channel.size();
+            ByteBuffer buf = ByteBuffer.wrap(bytes);
+            while (buf.hasRemaining())
+            {
+                channel.write(buf, position + buf.position());
+            }
+            index.put(key, new long[]
+            {
+                position, bytes.length
+            });
+            live += bytes.length;
+        }
+
+        private byte[] read(String key) throws IOException
+        {
+            long[] pos = index.get(key);
+            if (pos == null)
+            {
+                return null;
+            }
+            ByteBuffer buf = ByteBuffer.allocate((int) pos[1]);
+            while (buf.hasRemaining())
+            {
+                if (channel.read(buf, pos[0] + buf.position()) < 0)
+                {
+                    throw new IOException("The spill file is truncated");
+                }
+            }
+            return buf.array();
+        }
+
+        private boolean drop(String key) throws IOException
+        {
+            long[] pos = index.remove(key);
+            if (pos == null)
+            {
+                return false;
+            }
+            live -= pos[1];
+            dead += pos[1];
+            if (dead > live && dead > (1 << 20))
+            {
+                rewrite();
+            }
+            return true;
+        }
+
+        private void rewrite() throws IOException
+        {
+            File old = file;
+            FileChannel from = channel;
+            channel = null;
+            open();
+            long position = 0;
+            for (long[] pos : index.values())
+            {
+                long done = 0;
+                while (done < pos[1])
+                {
+                    done += from.transferTo(pos[0] + done, pos[1] - done,
+                            channel);
+                }
+                pos[0] = position;
+                position += pos[1];
+            }
+            dead = 0;
+            from.close();
+            old.delete();
+        }
+
+        private void clear() throws IOException
+        {
+            index.clear();
+            live = 0;
+            dead = 0;
+            if (channel != null)
+            {
+                channel.close();
+                channel = null;
+                file.delete();
+            }
+        }
+    }
+
+    private static byte[] serialize(Object value) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes))
+        {
+            out.writeObject(value);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Object deserialize(byte[] bytes) throws IOException
+    {
+        try (ObjectInputStream in = new ObjectInputStream(
+                new ByteArrayInputStream(bytes)))
+        {
+            return in.readObject();
+        }
+        catch (ClassNotFoundException ex)
+        {
+            throw new IOException(ex);
+        }
+    }
+
+    private int weigh(String key, Object value)
+    {
+        if (weigher == null)
+        {
+            return 1;
+        }
+        int w = weigher.weigh(key, value);
+        if (w < 0)
+        {
+            throw new IllegalArgumentException("A weight must not be negative");
+        }
+        return w;
+    }
+
+    private boolean evictable(Object value)
+    {
+        return evictUnserializable || value instanceof Serializable;
+    }
+
+    private Queue queue(Node node)
+    {
+        switch (node.queue)
+        {
+            case WINDOW:
+                return window;
+            case PROBATION:
+                return probation;
+            case PROTECTED:
+                return protect;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Removes the node from the policy. Must hold the lock.
+     */
+    private void unlink(Node node)
+    {
+        Queue q = queue(node);
+        if (q != null)
+        {
+            q.unlink(node);
+            weight -= node.weight;
+            if (node.queue == WINDOW)
+            {
+                windowWeight -= node.weight;
+            }
+            else if (node.queue == PROTECTED)
+            {
+                protectedWeight -= node.weight;
+            }
+        }
+        node.queue = REMOVED;
+    }
+
+    /**
+     * Adds a new or changed node to the window or pins it. Must hold the
+     * lock.
+     */
+    private void link(Node node, Object value)
+    {
+        node.value = value;
+        if (!evictable(value))
+        {
+            node.queue = PINNED;
+            return;
+        }
+        node.weight = weigh(node.key, value);
+        node.queue = WINDOW;
+        window.add(node);
+        weight += node.weight;
+        windowWeight += node.weight;
+    }
+
+    /**
+     * Records a use of the given node. Must hold the lock.
+     */
+    private void access(Node node)
+    {
+        sketch.increment(node.key.hashCode());
+        switch (node.queue)
+        {
+            case WINDOW:
+                window.unlink(node);
+                window.add(node);
+                break;
+            case PROBATION:
+                probation.unlink(node);
+                node.queue = PROTECTED;
+                protect.add(node);
+                protectedWeight += node.weight;
+                while (protectedWeight > protectedMaximum && protect.head
+                        != node)
+                {
+                    Node demoted = protect.head;
+                    protect.unlink(demoted);
+                    protectedWeight -= demoted.weight;
+                    demoted.queue = PROBATION;
+                    probation.add(demoted);
+                }
+                break;
+            case PROTECTED:
+                protect.unlink(node);
+                protect.add(node);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Moves the values that don´t fit into the window into the main area and
+     * evicts values until the bound is kept. A value from the window only
+     * replaces the least recently used value of the main area if it is used
+     * more often. Must hold the lock.
+     */
+    private void evict()
+    {
+        List<Node> candidates = new ArrayList<>();
+        while (windowWeight > windowMaximum && window.head != null)
+        {
+            Node node = window.head;
+            window.unlink(node);
+            windowWeight -= node.weight;
+            node.queue = PROBATION;
+            probation.add(node);
+            candidates.add(node);
+        }
+        int next = 0;
+        while (weight > maximum)
+        {
+            Node victim = probation.head != null ? probation.head
+                    : protect.head != null ? protect.head : window.head;
+            if (victim == null)
+            {
+                break;
+            }
+            while (next < candidates.size() && candidates.get(next).queue
+                    != PROBATION)
+            {
+                next++;
+            }
+            Node candidate = next < candidates.size() ? candidates.get(next)
+                    : null;
+            if (candidate != null && candidate != victim)
+            {
+                if (sketch.frequency(candidate.key.hashCode()) <= sketch.
+                        frequency(victim.key.hashCode()))
+                {
+                    victim = candidate;
+                }
+            }
+            evict(victim);
+        }
+    }
+
+    /**
+     * Evicts the given node and writes its value into the spill file. Values
+     * which can´t be written are discarded if allowed or pinned otherwise.
+     * Must hold the lock.
+     */
+    private void evict(Node node)
+    {
+        unlink(node);
+        Object value = node.value;
+        if (spill != null && value instanceof Serializable)
+        {
+            try
+            {
+                spill.write(node.key, serialize(value));
+                data.remove(node.key, node);
+                return;
+            }
+            catch (IOException ex)
+            {
+                LogSystem.getLogger(BoundedMap.class).log(Level.WARNING,
+                        "Could not spill the value for " + node.key, ex);
+            }
+        }
+        if (evictUnserializable || spill == null && value instanceof Serializable)
+        {
+            data.remove(node.key, node);
+        }
+        else
+        {
+            node.queue = PINNED;
+        }
+    }
+
+    /**
+     * Reads the spilled value of the key and removes it from the spill file.
+     * Must hold the lock.
+     */
+    private Object unspill(String key)
+    {
+        if (spill == null)
+        {
+            return null;
+        }
+        try
+        {
+            byte[] bytes = spill.read(key);
+            if (bytes == null)
+            {
+                return null;
+            }
+            Object value = deserialize(bytes);
+            spill.drop(key);
+            return value;
+        }
+        catch (IOException ex)
+        {
+            throw new IllegalStateException(
+                    "The spilled value for " + key + " can´t be read", ex);
+        }
+    }
+
+    /**
+     * Reads the spilled value of the key without changing the spill file.
+     * Must hold the lock.
+     */
+    private Object peekSpill(String key)
+    {
+        try
+        {
+            byte[] bytes = spill == null ? null : spill.read(key);
+            return bytes == null ? null : deserialize(bytes);
+        }
+        catch (IOException ex)
+        {
+            throw new IllegalStateException(
+                    "The spilled value for " + key + " can´t be read", ex);
+        }
+    }
+
+    /**
+     * Returns the current value and brings it back into memory if it was
+     * spilled. Must hold the lock.
+     */
+    private Object load(String key)
+    {
+        Node node = data.get(key);
+        if (node != null)
+        {
+            return node.value;
+        }
+        Object value = unspill(key);
+        if (value == null)
+        {
+            return null;
+        }
+        node = new Node(key);
+        link(node, value);
+        data.put(key, node);
+        sketch.increment(key.hashCode());
+        evict();
+        return value;
+    }
+
+    /**
+     * Stores the value, must hold the lock.
+     */
+    private Object store(String key, Object value, Node node)
+    {
+        Object old = null;
+        if (node == null)
+        {
+            unspill(key);
+            node = new Node(key);
+            data.put(key, node);
+        }
+        else
+        {
+            old = node.value;
+            unlink(node);
+        }
+        link(node, value);
+        sketch.increment(key.hashCode());
+        evict();
+        return old;
+    }
+
+    private static void check(Object key, Object value)
+    {
+        if (key == null || value == null)
+        {
+            throw new NullPointerException();
+        }
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Public">
+    /**
+     * Returns the maximal weight of the values in memory.
+     *
+     * @return the maximal weight
+     * @since 0.1
+     */
+    public long getMaximum()
+    {
+        return maximum;
+    }
+
+    /**
+     * Returns the current weight of the values in memory. Values which are
+     * kept in memory outside of the bound are not counted.
+     *
+     * @return the current weight
+     * @since 0.1
+     */
+    public long getWeight()
+    {
+        lock.lock();
+        try
+        {
+            return weight;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of values which are currently in memory.
+     *
+     * @return the number of values in memory
+     * @since 0.1
+     */
+    public int getResidentSize()
+    {
+        return data.size();
+    }
+
+    @Override
+    public Object get(Object key)
+    {
+        Node node = data.get(key);
+        if (node != null)
+        {
+            Object value = node.value;
+            if (lock.tryLock())
+            {
+                try
+                {
+                    if (node.queue != REMOVED)
+                    {
+                        access(node);
+                    }
+                }
+                finally
+                {
+                    lock.unlock();
+                }
+            }
+            return value;
+        }
+        if (spill == null || !(key instanceof String))
+        {
+            return null;
+        }
+        lock.lock();
+        try
+        {
+            return load((String) key);
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean containsKey(Object key)
+    {
+        if (data.containsKey(key))
+        {
+            return true;
+        }
+        if (spill == null)
+        {
+            return false;
+        }
+        lock.lock();
+        try
+        {
+            return data.containsKey(key) || spill.index.containsKey(key);
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size()
+    {
+        if (spill == null)
+        {
+            return data.size();
+        }
+        lock.lock();
+        try
+        {
+            return data.size() + spill.index.size();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Object put(String key, Object value)
+    {
+        check(key, value);
+        lock.lock();
+        try
+        {
+            Node node = data.get(key);
+            Object old = node == null ? unspill(key) : null;
+            Object back = store(key, value, node);
+            return node == null ? old : back;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Object putIfAbsent(String key, Object value)
+    {
+        check(key, value);
+        lock.lock();
+        try
+        {
+            Object old = load(key);
+            if (old != null)
+            {
+                return old;
+            }
+            store(key, value, null);
+            return null;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Object remove(Object key)
+    {
+        if (!(key instanceof String))
+        {
+            return null;
+        }
+        lock.lock();
+        try
+        {
+            Node node = data.remove(key);
+            if (node == null)
+            {
+                return unspill((String) key);
+            }
+            unlink(node);
+            return node.value;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(Object key, Object value)
+    {
+        if (!(key instanceof String) || value == null)
+        {
+            return false;
+        }
+        lock.lock();
+        try
+        {
+            Object old = load((String) key);
+            if (old == null || !value.equals(old))
+            {
+                return false;
+            }
+            Node node = data.remove(key);
+            if (node == null)
+            {
+                unspill((String) key);
+            }
+            else
+            {
+                unlink(node);
+            }
+            return true;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean replace(String key, Object oldValue, Object newValue)
+    {
+        check(key, newValue);
+        Objects.requireNonNull(oldValue);
+        lock.lock();
+        try
+        {
+            Object old = load(key);
+            if (old == null || !oldValue.equals(old))
+            {
+                return false;
+            }
+            store(key, newValue, data.get(key));
+            return true;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Object replace(String key, Object value)
+    {
+        check(key, value);
+        lock.lock();
+        try
+        {
+            Object old = load(key);
+            if (old == null)
+            {
+                return null;
+            }
+            store(key, value, data.get(key));
+            return old;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void clear()
+    {
+        lock.lock();
+        try
+        {
+            for (Node node : data.values())
+            {
+                node.queue = REMOVED;
+            }
+            data.clear();
+            window.clear();
+            probation.clear();
+            protect.clear();
+            weight = 0;
+            windowWeight = 0;
+            protectedWeight = 0;
+            if (spill != null)
+            {
+                spill.clear();
+            }
+        }
+        catch (IOException ex)
+        {
+            LogSystem.getLogger(BoundedMap.class).log(Level.WARNING,
+                    "Could not delete the spill file", ex);
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     * <br><br>
+     * The iterators work on the keys at the moment the iterator is created.
+     * Spilled values are read from the spill file without bringing them back
+     * into memory.
+     */
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet()
+    {
+        if (entrySet == null)
+        {
+            entrySet = new AbstractSet<Map.Entry<String, Object>>()
+            {
+                @Override
+                public Iterator<Map.Entry<String, Object>> iterator()
+                {
+                    final List<String> keys;
+                    lock.lock();
+                    try
+                    {
+                        keys = new ArrayList<>(data.keySet());
+                        if (spill != null)
+                        {
+                            keys.addAll(spill.index.keySet());
+                        }
+                    }
+                    finally
+                    {
+                        lock.unlock();
+                    }
+                    return new Iterator<Map.Entry<String, Object>>()
+                    {
+                        private int index;
+                        private Map.Entry<String, Object> next = advance();
+                        private String last;
+
+                        private Map.Entry<String, Object> advance()
+                        {
+                            while (index < keys.size())
+                            {
+                                String key = keys.get(index++);
+                                Object value;
+                                lock.lock();
+                                try
+                                {
+                                    Node node = data.get(key);
+                                    value = node != null ? node.value
+                                            : peekSpill(key);
+                                }
+                                finally
+                                {
+                                    lock.unlock();
+                                }
+                                if (value != null)
+                                {
+                                    return new SimpleImmutableEntry<>(key,
+                                            value);
+                                }
+                            }
+                            return null;
+                        }
+
+                        @Override
+                        public boolean hasNext()
+                        {
+                            return next != null;
+                        }
+
+                        @Override
+                        public Map.Entry<String, Object> next()
+                        {
+                            if (next == null)
+                            {
+                                throw new NoSuchElementException();
+                            }
+                            Map.Entry<String, Object> back = next;
+                            last = back.getKey();
+                            next = advance();
+                            return back;
+                        }
+
+                        @Override
+                        public void remove()
+                        {
+                            if (last == null)
+                            {
+                                throw new IllegalStateException();
+                            }
+                            BoundedMap.this.remove(last);
+                            last = null;
+                        }
+                    };
+                }
+
+                @Override
+                public int size()
+                {
+                    return BoundedMap.this.size();
+                }
+            };
+        }
+        return entrySet;
+    }
+    //</editor-fold>
+}
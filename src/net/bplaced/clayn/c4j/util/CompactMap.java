@@ -0,0 +1,708 @@
+package net.bplaced.clayn.c4j.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * A {@link ConcurrentMap} from Strings to Strings which needs as little memory
+ * as possible for each mapping. The mappings are stored in an open addressing
+ * table of three parallel arrays, so there is no entry object for a mapping.
+ * All values are deduplicated with a pool of this map, so a value like
+ * {@code "true"} or {@code "0"} only exists once no matter how often it is
+ * stored. The pool is not shared with other maps and only keeps the values
+ * which are stored since the last time it was rebuilt, so unlike
+ * {@link String#intern()} it does not grow with values that are not used
+ * anymore. The keys can be packed into Latin-1 byte arrays which don´t need
+ * the String object around them. Keys with other chars are always kept as
+ * Strings.
+ * <br><br>
+ * Lookups don´t need any lock as long as the map is not changed at the same
+ * time. Changes are made under a single lock, so this map is meant for large
+ * configurations which are read much more often than written.
+ *
+ * @author Clayn
+ * @since 0.1
+ * @version 0.1
+ */
+public final class CompactMap extends AbstractMap<String, String> implements
+        ConcurrentMap<String, String>
+{
+
+    //<editor-fold desc="Attribute">
+    private static final int INITIAL_CAPACITY = 16;
+    private final boolean pack;
+    private final boolean readOnly;
+    private final StampedLock lock = new StampedLock();
+    /**
+     * The current table. Only replaced or changed under the write lock.
+     */
+    private Table table;
+    private int size;
+    /**
+     * The distinct values as open addressing set or {@code null} for a read
+     * only map. Only used under the write lock.
+     */
+    private String[] pool;
+    private int pooled;
+    private transient Set<Map.Entry<String, String>> entrySet;
+
+    //</editor-fold>
+    //<editor-fold desc="Konstruktoren">
+    /**
+     * Creates a new, empty CompactMap which stores its keys as Strings.
+     *
+     * @see #CompactMap(boolean)
+     * @since 0.1
+     */
+    public CompactMap()
+    {
+        this(false);
+    }
+
+    /**
+     * Creates a new, empty CompactMap. If {@code pack} is {@code true} all
+     * keys which only consist of Latin-1 chars will be stored as byte arrays.
+     * This saves the String object of each key but iterating the keys will
+     * create new Strings.
+     *
+     * @param pack whether the keys should be packed into byte arrays
+     * @since 0.1
+     */
+    public CompactMap(boolean pack)
+    {
+        this(new Table(INITIAL_CAPACITY), 0, pack, false);
+    }
+
+    private CompactMap(Table table, int size, boolean pack, boolean readOnly)
+    {
+        this.table = table;
+        this.size = size;
+        this.pack = pack;
+        this.readOnly = readOnly;
+        if (!readOnly)
+        {
+            repool();
+        }
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Private">
+    /**
+     * The arrays of the open addressing table. A slot is empty if its key is
+     * {@code null}. A key is either a String or a Latin-1 byte array.
+     */
+    private static final class Table
+    {
+
+        private final int[] hashes;
+        private final Object[] keys;
+        private final String[] values;
+
+        private Table(int capacity)
+        {
+            hashes = new int[capacity];
+            keys = new Object[capacity];
+            values = new String[capacity];
+        }
+
+        private Table(Table table)
+        {
+            hashes = table.hashes.clone();
+            keys = table.keys.clone();
+            values = table.values.clone();
+        }
+    }
+
+    private static int spread(int hash)
+    {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean matches(Object stored, String key)
+    {
+        if (!(stored instanceof byte[]))
+        {
+            return key.equals(stored);
+        }
+        byte[] bytes = (byte[]) stored;
+        if (bytes.length != key.length())
+        {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++)
+        {
+            if ((bytes[i] & 0xff) != key.charAt(i))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String decode(Object stored)
+    {
+        return stored instanceof byte[] ? new String((byte[]) stored,
+                StandardCharsets.ISO_8859_1) : (String) stored;
+    }
+
+    private Object encode(String key)
+    {
+        if (pack)
+        {
+            int len = key.length();
+            byte[] bytes = new byte[len];
+            for (int i = 0; i < len; i++)
+            {
+                char c = key.charAt(i);
+                if (c > 0xff)
+                {
+                    return key;
+                }
+                bytes[i] = (byte) c;
+            }
+            return bytes;
+        }
+        return key;
+    }
+
+    /**
+     * Returns the pooled String which is equal to the given value and pools
+     * the value if there is none. Must hold the write lock.
+     */
+    private String pooled(String value)
+    {
+        int mask = pool.length - 1;
+        int i = spread(value.hashCode()) & mask;
+        String p;
+        while ((p = pool[i]) != null)
+        {
+            if (p.equals(value))
+            {
+                return p;
+            }
+            i = (i + 1) & mask;
+        }
+        if ((pooled + 1) * 4 > pool.length * 3)
+        {
+            repool();
+            return pooled(value);
+        }
+        pool[i] = value;
+        pooled++;
+        return value;
+    }
+
+    /**
+     * Rebuilds the pool with only the values which are stored at the moment.
+     * The new pool is at most half full, so it is rebuilt again after at
+     * least {@code size} new distinct values and the rebuilds need constant
+     * time for each change. Must hold the write lock or be called by the
+     * constructor.
+     */
+    private void repool()
+    {
+        int capacity = INITIAL_CAPACITY;
+        while (capacity < (size + 1) * 2)
+        {
+            capacity <<= 1;
+        }
+        pool = new String[capacity];
+        pooled = 0;
+        String[] values = table.values;
+        for (String value : values)
+        {
+            if (value != null)
+            {
+                pooled(value);
+            }
+        }
+    }
+
+    /**
+     * Returns the slot of the given key or {@code -(slot+1)} of the empty slot
+     * where the key would be inserted. The probing stops after one round, so
+     * it ends even if the table is changed concurrently.
+     */
+    private static int slot(Table t, String key, int hash)
+    {
+        int mask = t.keys.length - 1;
+        int i = spread(hash) & mask;
+        for (int n = 0; n <= mask; n++)
+        {
+            Object k = t.keys[i];
+            if (k == null)
+            {
+                return -(i + 1);
+            }
+            if (t.hashes[i] == hash && matches(k, key))
+            {
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+        return -(i + 1);
+    }
+
+    private static String find(Table t, String key, int hash)
+    {
+        int i = slot(t, key, hash);
+        return i < 0 ? null : t.values[i];
+    }
+
+    private void checkWrite(Object key, Object value)
+    {
+        if (readOnly)
+        {
+            throw new UnsupportedOperationException("This map is read only");
+        }
+        if (key == null || value == null)
+        {
+            throw new NullPointerException();
+        }
+    }
+
+    /**
+     * Inserts the key into the given empty slot. Must hold the write lock.
+     */
+    private void insert(int slot, String key, int hash, String value)
+    {
+        if ((size + 1) * 4 > table.keys.length * 3)
+        {
+            resize();
+            slot = slot(table, key, hash);
+        }
+        int i = -slot - 1;
+        table.hashes[i] = hash;
+        table.values[i] = pooled(value);
+        table.keys[i] = encode(key);
+        size++;
+    }
+
+    private void resize()
+    {
+        Table old = table;
+        Table t = new Table(old.keys.length * 2);
+        int mask = t.keys.length - 1;
+        for (int j = 0; j < old.keys.length; j++)
+        {
+            if (old.keys[j] != null)
+            {
+                int i = spread(old.hashes[j]) & mask;
+                while (t.keys[i] != null)
+                {
+                    i = (i + 1) & mask;
+                }
+                t.hashes[i] = old.hashes[j];
+                t.keys[i] = old.keys[j];
+                t.values[i] = old.values[j];
+            }
+        }
+        table = t;
+    }
+
+    /**
+     * Removes the mapping at the given slot and shifts the following mappings
+     * back, so no deleted markers are needed. Must hold the write lock.
+     */
+    private String delete(int i)
+    {
+        Table t = table;
+        String old = t.values[i];
+        int mask = t.keys.length - 1;
+        int j = i;
+        while (true)
+        {
+            j = (j + 1) & mask;
+            if (t.keys[j] == null)
+            {
+                break;
+            }
+            int ideal = spread(t.hashes[j]) & mask;
+            boolean move = i <= j ? ideal <= i || ideal > j
+                    : ideal <= i && ideal > j;
+            if (move)
+            {
+                t.hashes[i] = t.hashes[j];
+                t.keys[i] = t.keys[j];
+                t.values[i] = t.values[j];
+                i = j;
+            }
+        }
+        t.keys[i] = null;
+        t.values[i] = null;
+        t.hashes[i] = 0;
+        size--;
+        return old;
+    }
+
+    private Table copy()
+    {
+        long stamp = lock.readLock();
+        try
+        {
+            return new Table(table);
+        }
+        finally
+        {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Public">
+    /**
+     * Returns a read only copy of this map. Only the arrays of the table are
+     * copied, the keys and values are shared.
+     *
+     * @return a read only copy of this map
+     * @see PersistentMap#snapshotOf(java.util.Map)
+     * @since 0.1
+     */
+    public CompactMap snapshot()
+    {
+        if (readOnly)
+        {
+            return this;
+        }
+        long stamp = lock.readLock();
+        try
+        {
+            return new CompactMap(new Table(table), size, pack, true);
+        }
+        finally
+        {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Returns a changeable copy of this map. Only the arrays of the table are
+     * copied, the keys and values are shared.
+     *
+     * @return a changeable copy of this map
+     * @since 0.1
+     */
+    public CompactMap fork()
+    {
+        long stamp = lock.readLock();
+        try
+        {
+            return new CompactMap(new Table(table), size, pack, false);
+        }
+        finally
+        {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Returns whether this map is a read only snapshot.
+     *
+     * @return {@code true} if this map can´t be changed
+     * @since 0.1
+     */
+    public boolean isReadOnly()
+    {
+        return readOnly;
+    }
+
+    @Override
+    public String get(Object key)
+    {
+        if (!(key instanceof String))
+        {
+            return null;
+        }
+        String k = (String) key;
+        int hash = k.hashCode();
+        long stamp = lock.tryOptimisticRead();
+        String val = find(table, k, hash);
+        if (!lock.validate(stamp))
+        {
+            stamp = lock.readLock();
+            try
+            {
+                val = find(table, k, hash);
+            }
+            finally
+            {
+                lock.unlockRead(stamp);
+            }
+        }
+        return val;
+    }
+
+    @Override
+    public boolean containsKey(Object key)
+    {
+        return get(key) != null;
+    }
+
+    @Override
+    public int size()
+    {
+        long stamp = lock.tryOptimisticRead();
+        int s = size;
+        if (!lock.validate(stamp))
+        {
+            stamp = lock.readLock();
+            try
+            {
+                s = size;
+            }
+            finally
+            {
+                lock.unlockRead(stamp);
+            }
+        }
+        return s;
+    }
+
+    @Override
+    public String put(String key, String value)
+    {
+        checkWrite(key, value);
+        int hash = key.hashCode();
+        long stamp = lock.writeLock();
+        try
+        {
+            int i = slot(table, key, hash);
+            if (i >= 0)
+            {
+                String old = table.values[i];
+                table.values[i] = pooled(value);
+                return old;
+            }
+            insert(i, key, hash, value);
+            return null;
+        }
+        finally
+        {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public String putIfAbsent(String key, String value)
+    {
+        checkWrite(key, value);
+        int hash = key.hashCode();
+        long stamp = lock.writeLock();
+        try
+        {
+            int i = slot(table, key, hash);
+            if (i >= 0)
+            {
+                return table.values[i];
+            }
+            insert(i, key, hash, value);
+            return null;
+        }
+        finally
+        {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public String remove(Object key)
+    {
+        if (readOnly)
+        {
+            throw new UnsupportedOperationException("This map is read only");
+        }
+        if (!(key instanceof String))
+        {
+            return null;
+        }
+        String k = (String) key;
+        long stamp = lock.writeLock();
+        try
+        {
+            int i = slot(table, k, k.hashCode());
+            return i < 0 ? null : delete(i);
+        }
+        finally
+        {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean remove(Object key, Object value)
+    {
+        if (readOnly)
+        {
+            throw new UnsupportedOperationException("This map is read only");
+        }
+        if (!(key instanceof String) || value == null)
+        {
+            return false;
+        }
+        String k = (String) key;
+        long stamp = lock.writeLock();
+        try
+        {
+            int i = slot(table, k, k.hashCode());
+            if (i < 0 || !value.equals(table.values[i]))
+            {
+                return false;
+            }
+            delete(i);
+            return true;
+        }
+        finally
+        {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean replace(String key, String oldValue, String newValue)
+    {
+        checkWrite(key, newValue);
+        if (oldValue == null)
+        {
+            throw new NullPointerException();
+        }
+        long stamp = lock.writeLock();
+        try
+        {
+            int i = slot(table, key, key.hashCode());
+            if (i < 0 || !oldValue.equals(table.values[i]))
+            {
+                return false;
+            }
+            table.values[i] = pooled(newValue);
+            return true;
+        }
+        finally
+        {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public String replace(String key, String value)
+    {
+        checkWrite(key, value);
+        long stamp = lock.writeLock();
+        try
+        {
+            int i = slot(table, key, key.hashCode());
+            if (i < 0)
+            {
+                return null;
+            }
+            String old = table.values[i];
+            table.values[i] = pooled(value);
+            return old;
+        }
+        finally
+        {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void clear()
+    {
+        if (readOnly)
+        {
+            throw new UnsupportedOperationException("This map is read only");
+        }
+        long stamp = lock.writeLock();
+        try
+        {
+            table = new Table(INITIAL_CAPACITY);
+            size = 0;
+            repool();
+        }
+        finally
+        {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     * <br><br>
+     * The iterators work on a copy of the table which is made when the
+     * iterator is created.
+     */
+    @Override
+    public Set<Map.Entry<String, String>> entrySet()
+    {
+        if (entrySet == null)
+        {
+            entrySet = new AbstractSet<Map.Entry<String, String>>()
+            {
+                @Override
+                public Iterator<Map.Entry<String, String>> iterator()
+                {
+                    final Table t = readOnly ? table : copy();
+                    return new Iterator<Map.Entry<String, String>>()
+                    {
+                        private int index = advance(0);
+                        private String last;
+
+                        private int advance(int i)
+                        {
+                            while (i < t.keys.length && t.keys[i] == null)
+                            {
+                                i++;
+                            }
+                            return i;
+                        }
+
+                        @Override
+                        public boolean hasNext()
+                        {
+                            return index < t.keys.length;
+                        }
+
+                        @Override
+                        public Map.Entry<String, String> next()
+                        {
+                            if (index >= t.keys.length)
+                            {
+                                throw new NoSuchElementException();
+                            }
+                            int i = index;
+                            index = advance(i + 1);
+                            last = decode(t.keys[i]);
+                            return new SimpleImmutableEntry<>(last,
+                                    t.values[i]);
+                        }
+
+                        @Override
+                        public void remove()
+                        {
+                            if (last == null)
+                            {
+                                throw new IllegalStateException();
+                            }
+                            CompactMap.this.remove(last);
+                            last = null;
+                        }
+                    };
+                }
+
+                @Override
+                public int size()
+                {
+                    return CompactMap.this.size();
+                }
+            };
+        }
+        return entrySet;
+    }
+    //</editor-fold>
+}
@@ -1,7 +1,7 @@
 package net.bplaced.clayn.c4j.util;
 
 import java.lang.reflect.Field;
-import java.lang.reflect.Modifier;
+import java.util.Objects;
 
 /**
  * This class contains utility methods used by Config4J.
@@ -30,9 +30,10 @@ public final class ConfigUtil
      * Sets the value for the given field to the new Object and returns if the
      * changing was successfull or not. This method may fail under certain
      * circumstances, such as the given field does not exist or some other
-     * exceptions will occur. The given field may be final or private but will
-     * changed anyway. Modifiers of this field will not changed and will stay
-     * the same as before.
+     * exceptions will occur. The given field may be private or a final
+     * instance field but will changed anyway. The field is written with its
+     * cached {@link FieldWriter}, so the modifiers of the field are not
+     * changed. Static final fields can´t be changed.
      *
      * @param fl the field that should be manipulated
      * @param inst the instance from the field that should be changed. May be
@@ -41,25 +42,23 @@ public final class ConfigUtil
      * type
      * @return {@code true} if and only if the value of {@code fl} (which should
      * be changed) is equal to {@code val}, {@code false} otherwise. In other
-     * words this method will return {@code fl.get(inst).equals(val);}.
-     * @throws NoSuchFieldException if
-     * {@link Class#getDeclaredField(java.lang.String)} throws an exception
-     * which should not happen.
-     * @throws IllegalAccessException if manipilating on the field fails for
-     * example if an {@link SecurityManager} is installed.
+     * words this method will return
+     * {@code Objects.equals(fl.get(inst), val);}.
+     * @throws NoSuchFieldException is not thrown anymore, kept for
+     * compatibility.
+     * @throws IllegalAccessException is not thrown anymore, kept for
+     * compatibility.
+     * @throws IllegalArgumentException if the field is static and final or
+     * the value can´t be assigned to it
+     * @see FieldWriter
      * @since 0.1
      */
     public static boolean setField(Field fl, Object inst, Object val) throws
             NoSuchFieldException, IllegalAccessException
     {
-        fl.setAccessible(true);
-        Field modField = Field.class.getDeclaredField("modifiers");
-        int modold = fl.getModifiers();
-        modField.setAccessible(true);
-        modField.setInt(fl, fl.getModifiers() & ~Modifier.FINAL);
-        fl.set(inst, val);
-        modField.setInt(fl, modold);
-        return fl.get(inst).equals(val);
+        FieldWriter writer = FieldWriter.of(fl);
+        writer.set(inst, val);
+        return Objects.equals(writer.get(inst), val);
     }
     //</editor-fold>
 }
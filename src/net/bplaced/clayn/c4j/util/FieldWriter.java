@@ -0,0 +1,185 @@
+package net.bplaced.clayn.c4j.util;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Writes the value of a single field with a {@link MethodHandle}. The handle
+ * is created once for each field, so writing the field needs no reflective
+ * calls and costs about as much as a direct assignment. The writers are
+ * cached per declaring class with {@link ClassValue}, so they do not prevent
+ * the classes from being unloaded.
+ * <br><br>
+ * Private fields can be written. A final instance field is written the same
+ * way as {@link Field#set(java.lang.Object, java.lang.Object)} allows it
+ * after {@link Field#setAccessible(boolean)}, which is supported by the JVM,
+ * but other threads and code that was compiled with the old value may not see
+ * the new one. Static final fields can´t be written in a supported way, so no
+ * writer can be created for them.
+ *
+ * @author Clayn
+ * @since 0.1
+ * @version 0.1
+ */
+public final class FieldWriter
+{
+
+    //<editor-fold desc="Attribute">
+    private static final MethodType SETTER = MethodType.methodType(void.class,
+            Object.class, Object.class);
+    private static final ClassValue<ConcurrentMap<String, FieldWriter>> WRITERS = new ClassValue<ConcurrentMap<String, FieldWriter>>()
+    {
+        @Override
+        protected ConcurrentMap<String, FieldWriter> computeValue(
+                Class<?> type)
+        {
+            return new ConcurrentHashMap<>();
+        }
+    };
+    private final Field field;
+    /**
+     * The setter with the type {@code (Object,Object)void}, static fields
+     * ignore the first argument.
+     */
+    private final MethodHandle setter;
+
+    //</editor-fold>
+    //<editor-fold desc="Konstruktoren">
+    private FieldWriter(Field field)
+    {
+        if (Modifier.isStatic(field.getModifiers()) && Modifier.isFinal(field.
+                getModifiers()))
+        {
+            throw new IllegalArgumentException(
+                    "Can´t write the static final field " + field);
+        }
+        try
+        {
+            field.setAccessible(true);
+            MethodHandle mh = MethodHandles.lookup().unreflectSetter(field);
+            if (Modifier.isStatic(field.getModifiers()))
+            {
+                mh = MethodHandles.dropArguments(mh, 0, Object.class);
+            }
+            this.setter = mh.asType(SETTER);
+        }
+        catch (IllegalAccessException | RuntimeException ex)
+        {
+            throw new IllegalArgumentException("Can´t write the field "
+                    + field, ex);
+        }
+        this.field = field;
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Public">
+    /**
+     * Returns the writer for the given field.
+     *
+     * @param field the field to write
+     * @return the cached writer for the field
+     * @throws IllegalArgumentException if the field is static and final or
+     * can´t be made accessible
+     * @since 0.1
+     */
+    public static FieldWriter of(Field field)
+    {
+        ConcurrentMap<String, FieldWriter> writers = WRITERS.get(field.
+                getDeclaringClass());
+        FieldWriter writer = writers.get(field.getName());
+        if (writer == null)
+        {
+            writer = new FieldWriter(field);
+            FieldWriter old = writers.putIfAbsent(field.getName(), writer);
+            if (old != null)
+            {
+                writer = old;
+            }
+        }
+        return writer;
+    }
+
+    /**
+     * Returns the field this writer writes.
+     *
+     * @return the field
+     * @since 0.1
+     */
+    public Field getField()
+    {
+        return field;
+    }
+
+    /**
+     * Sets the field of the given instance to the given value. Primitive
+     * fields accept the wrapper of their type, other values are converted the
+     * same way as {@link Field#set(java.lang.Object, java.lang.Object)} does.
+     *
+     * @param target the instance whose field is set, ignored for static
+     * fields
+     * @param value the new value
+     * @throws IllegalArgumentException if the value can´t be assigned to the
+     * field or the target is no instance of the declaring class
+     * @since 0.1
+     */
+    public void set(Object target, Object value)
+    {
+        try
+        {
+            setter.invokeExact(target, value);
+        }
+        catch (ClassCastException | NullPointerException ex)
+        {
+            try
+            {
+                field.set(target, value);
+            }
+            catch (IllegalAccessException ex1)
+            {
+                throw new IllegalArgumentException(ex1);
+            }
+        }
+        catch (RuntimeException | Error ex)
+        {
+            throw ex;
+        }
+        catch (Throwable ex)
+        {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Returns the current value of the field of the given instance.
+     *
+     * @param target the instance whose field is read, ignored for static
+     * fields
+     * @return the value of the field
+     * @throws IllegalArgumentException if the target is no instance of the
+     * declaring class
+     * @since 0.1
+     */
+    public Object get(Object target)
+    {
+        try
+        {
+            return field.get(target);
+        }
+        catch (IllegalAccessException ex)
+        {
+            throw new IllegalArgumentException(ex);
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "FieldWriter: " + field;
+    }
+    //</editor-fold>
+}
@@ -0,0 +1,118 @@
+package net.bplaced.clayn.c4j.util;
+
+/**
+ * A Count-Min sketch with 4 bit counters which estimates how often a key was
+ * used recently. It is used by {@link BoundedMap} to decide whether a new key
+ * should replace an old one. Each key is counted at four places of the table
+ * and the smallest of the four counters is the estimated frequency. After a
+ * fixed number of increments all counters are halved, so old usage fades out.
+ * This class is not threadsafe.
+ *
+ * @author Clayn
+ * @since 0.1
+ * @version 0.1
+ */
+final class FrequencySketch
+{
+
+    //<editor-fold desc="Attribute">
+    private static final long[] SEEDS =
+    {
+        0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL,
+        0xcbf29ce484222325L
+    };
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private final long[] table;
+    private final int sampleSize;
+    private int size;
+
+    //</editor-fold>
+    //<editor-fold desc="Konstruktoren">
+    /**
+     * Creates a new sketch for the given number of keys.
+     *
+     * @param maximum the expected number of keys
+     */
+    FrequencySketch(long maximum)
+    {
+        int n = 1;
+        while (n < maximum && n < (1 << 26))
+        {
+            n <<= 1;
+        }
+        table = new long[Math.max(8, n)];
+        sampleSize = 10 * table.length;
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Private">
+    private long mix(int hash, int i)
+    {
+        long h = (hash + SEEDS[i]) * SEEDS[i];
+        return h + (h >>> 32);
+    }
+
+    private int index(long h)
+    {
+        return (int) h & (table.length - 1);
+    }
+
+    private static int shift(long h)
+    {
+        return (int) ((h >>> 40) & 15) << 2;
+    }
+
+    private void reset()
+    {
+        for (int i = 0; i < table.length; i++)
+        {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        size /= 2;
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Public">
+    /**
+     * Returns the estimated frequency of the key with the given hash code.
+     *
+     * @param hash the hash code of the key
+     * @return the frequency between 0 and 15
+     */
+    int frequency(int hash)
+    {
+        int freq = 15;
+        for (int i = 0; i < SEEDS.length; i++)
+        {
+            long h = mix(hash, i);
+            freq = Math.min(freq, (int) (table[index(h)] >>> shift(h)) & 15);
+        }
+        return freq;
+    }
+
+    /**
+     * Counts one use of the key with the given hash code.
+     *
+     * @param hash the hash code of the key
+     */
+    void increment(int hash)
+    {
+        boolean added = false;
+        for (int i = 0; i < SEEDS.length; i++)
+        {
+            long h = mix(hash, i);
+            int idx = index(h);
+            int shift = shift(h);
+            if (((table[idx] >>> shift) & 15) < 15)
+            {
+                table[idx] += 1L << shift;
+                added = true;
+            }
+        }
+        if (added && ++size >= sampleSize)
+        {
+            reset();
+        }
+    }
+    //</editor-fold>
+}
@@ -0,0 +1,374 @@
+package net.bplaced.clayn.c4j.util;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * An immutable {@link ConcurrentMap} which stores its mappings in a table
+ * that is addressed by a minimal perfect hash function. The function is
+ * computed once when the map is created, so that every key has its own slot
+ * in a table which is exactly as big as the number of keys. A lookup needs a
+ * single probe into that table and does not need any locks or volatile
+ * reads. All methods which would change the map throw an
+ * {@link UnsupportedOperationException}.
+ * <br><br>
+ * Creating the map needs more time than filling a {@link HashMap}, so this map
+ * should be used for mappings that are read very often but never change.
+ * Keys which have exactly the same hash code can´t be separated by the hash
+ * function. Those keys are stored in a small {@link HashMap} which is only
+ * used if the probed slot holds another key.
+ *
+ * @author Clayn
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ * @since 0.1
+ * @version 0.1
+ */
+public final class FrozenMap<K, V> extends AbstractMap<K, V> implements
+        ConcurrentMap<K, V>
+{
+
+    //<editor-fold desc="Attribute">
+    /**
+     * Average number of keys per bucket of the hash function.
+     */
+    private static final int BUCKET_SIZE = 2;
+    /**
+     * Seeds for each bucket. A negative seed {@code -(slot+1)} places the
+     * single key of a bucket directly in the slot.
+     */
+    private final int[] seeds;
+    private final Object[] keys;
+    private final Object[] values;
+    private final Map<Object, Object> overflow;
+    private transient Set<Map.Entry<K, V>> entrySet;
+
+    //</editor-fold>
+    //<editor-fold desc="Konstruktoren">
+    /**
+     * Creates a new FrozenMap with all the mappings from the given map.
+     *
+     * @param map the map to copy the mappings from
+     * @throws NullPointerException if the given map contains {@code null} as
+     * key or value
+     * @since 0.1
+     */
+    public FrozenMap(Map<? extends K, ? extends V> map)
+    {
+        List<Object> ks = new ArrayList<>(map.size());
+        List<Object> vs = new ArrayList<>(map.size());
+        Map<Object, Object> over = new HashMap<>();
+        Map<Integer, Object> hashes = new HashMap<>(map.size());
+        for (Map.Entry<? extends K, ? extends V> entry : map.entrySet())
+        {
+            Object key = entry.getKey();
+            Object val = entry.getValue();
+            if (key == null || val == null)
+            {
+                throw new NullPointerException();
+            }
+            if (hashes.put(hash(key), key) == null)
+            {
+                ks.add(key);
+                vs.add(val);
+            }
+            else
+            {
+                over.put(key, val);
+            }
+        }
+        int n = ks.size();
+        keys = new Object[n];
+        values = new Object[n];
+        seeds = new int[Math.max(1, n / BUCKET_SIZE)];
+        overflow = over.isEmpty() ? Collections.<Object, Object>emptyMap() : over;
+        build(ks, vs);
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Private">
+    private static int hash(Object key)
+    {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static int mix(int hash, int seed, int n)
+    {
+        int x = hash * 0x9E3779B9 ^ seed * 0x85EBCA6B;
+        x ^= x >>> 15;
+        x *= 0x2C1B3C6D;
+        x ^= x >>> 12;
+        return (x & 0x7fffffff) % n;
+    }
+
+    private int bucket(int hash)
+    {
+        return (hash & 0x7fffffff) % seeds.length;
+    }
+
+    private int slot(int hash)
+    {
+        int seed = seeds[bucket(hash)];
+        return seed < 0 ? -seed - 1 : mix(hash, seed, keys.length);
+    }
+
+    /**
+     * Computes the seeds for all buckets. The buckets with the most keys are
+     * placed first since they are the hardest to place. Buckets with a single
+     * key simply take the next free slot.
+     */
+    private void build(List<Object> ks, List<Object> vs)
+    {
+        int n = ks.size();
+        if (n == 0)
+        {
+            return;
+        }
+        List<List<Integer>> buckets = new ArrayList<>(seeds.length);
+        for (int i = 0; i < seeds.length; i++)
+        {
+            buckets.add(new ArrayList<Integer>(BUCKET_SIZE));
+        }
+        for (int i = 0; i < n; i++)
+        {
+            buckets.get(bucket(hash(ks.get(i)))).add(i);
+        }
+        Integer[] order = new Integer[seeds.length];
+        for (int i = 0; i < order.length; i++)
+        {
+            order[i] = i;
+        }
+        final List<List<Integer>> sizes = buckets;
+        Arrays.sort(order, new Comparator<Integer>()
+        {
+            @Override
+            public int compare(Integer o1, Integer o2)
+            {
+                return sizes.get(o2).size() - sizes.get(o1).size();
+            }
+        });
+        boolean[] used = new boolean[n];
+        int[] slots = new int[BUCKET_SIZE];
+        int free = 0;
+        for (Integer b : order)
+        {
+            List<Integer> bucket = buckets.get(b);
+            if (bucket.isEmpty())
+            {
+                break;
+            }
+            if (bucket.size() == 1)
+            {
+                while (used[free])
+                {
+                    free++;
+                }
+                used[free] = true;
+                seeds[b] = -free - 1;
+                place(free, bucket.get(0), ks, vs);
+                continue;
+            }
+            if (slots.length < bucket.size())
+            {
+                slots = new int[bucket.size()];
+            }
+            for (int seed = 1;; seed++)
+            {
+                if (fits(bucket, seed, used, slots, ks))
+                {
+                    seeds[b] = seed;
+                    for (int i = 0; i < bucket.size(); i++)
+                    {
+                        used[slots[i]] = true;
+                        place(slots[i], bucket.get(i), ks, vs);
+                    }
+                    break;
+                }
+            }
+        }
+    }
+
+    private boolean fits(List<Integer> bucket, int seed, boolean[] used,
+            int[] slots, List<Object> ks)
+    {
+        for (int i = 0; i < bucket.size(); i++)
+        {
+            int slot = mix(hash(ks.get(bucket.get(i))), seed, keys.length);
+            if (used[slot])
+            {
+                return false;
+            }
+            for (int j = 0; j < i; j++)
+            {
+                if (slots[j] == slot)
+                {
+                    return false;
+                }
+            }
+            slots[i] = slot;
+        }
+        return true;
+    }
+
+    private void place(int slot, int index, List<Object> ks, List<Object> vs)
+    {
+        keys[slot] = ks.get(index);
+        values[slot] = vs.get(index);
+    }
+
+    private static UnsupportedOperationException frozen()
+    {
+        return new UnsupportedOperationException("This map can´t be changed");
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Public">
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key)
+    {
+        if (keys.length == 0)
+        {
+            return null;
+        }
+        int slot = slot(hash(key));
+        Object k = keys[slot];
+        if (k == key || key.equals(k))
+        {
+            return (V) values[slot];
+        }
+        return overflow.isEmpty() ? null : (V) overflow.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key)
+    {
+        return get(key) != null;
+    }
+
+    @Override
+    public int size()
+    {
+        return keys.length + overflow.size();
+    }
+
+    @Override
+    public V put(K key, V value)
+    {
+        throw frozen();
+    }
+
+    @Override
+    public V remove(Object key)
+    {
+        throw frozen();
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> m)
+    {
+        throw frozen();
+    }
+
+    @Override
+    public void clear()
+    {
+        throw frozen();
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value)
+    {
+        throw frozen();
+    }
+
+    @Override
+    public boolean remove(Object key, Object value)
+    {
+        throw frozen();
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue)
+    {
+        throw frozen();
+    }
+
+    @Override
+    public V replace(K key, V value)
+    {
+        throw frozen();
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet()
+    {
+        if (entrySet == null)
+        {
+            entrySet = new AbstractSet<Map.Entry<K, V>>()
+            {
+                @Override
+                public Iterator<Map.Entry<K, V>> iterator()
+                {
+                    final Iterator<Map.Entry<Object, Object>> over = overflow.
+                            entrySet().iterator();
+                    return new Iterator<Map.Entry<K, V>>()
+                    {
+                        private int index;
+
+                        @Override
+                        public boolean hasNext()
+                        {
+                            return index < keys.length || over.hasNext();
+                        }
+
+                        @Override
+                        @SuppressWarnings("unchecked")
+                        public Map.Entry<K, V> next()
+                        {
+                            if (index < keys.length)
+                            {
+                                int i = index++;
+                                return new SimpleImmutableEntry<>((K) keys[i],
+                                        (V) values[i]);
+                            }
+                            if (!over.hasNext())
+                            {
+                                throw new NoSuchElementException();
+                            }
+                            Map.Entry<Object, Object> e = over.next();
+                            return new SimpleImmutableEntry<>((K) e.getKey(),
+                                    (V) e.getValue());
+                        }
+
+                        @Override
+                        public void remove()
+                        {
+                            throw frozen();
+                        }
+                    };
+                }
+
+                @Override
+                public int size()
+                {
+                    return FrozenMap.this.size();
+                }
+            };
+        }
+        return entrySet;
+    }
+    //</editor-fold>
+}
@@ -0,0 +1,525 @@
+package net.bplaced.clayn.c4j.util;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link ConcurrentMap} which resolves every key across ordered layers of
+ * read only values. The layers are for example default values, a classpath
+ * resource, files, the system properties and the environment variables. A
+ * layer which was added later overrides all layers which were added before.
+ * Values which are put into this map are stored above all layers, removing
+ * such a value makes the value of the layers visible again. The layers
+ * themselves are only changed with {@link #addLayer(java.lang.String,
+ * java.util.Map)}, {@link #setLayer(java.lang.String, java.util.Map)} and
+ * {@link #removeLayer(java.lang.String)}.
+ * <br><br>
+ * Every resolved value is cached, so a key that was found once only needs a
+ * single lookup no matter how many layers there are. If a layer changes only
+ * the cached values of its keys are removed. Each layer has a
+ * {@link BloomFilter} of its keys which is sized for the layer and built
+ * once. All filters are combined into one, so a key which is in no layer only
+ * needs a lookup in the own values and a check of that filter. Only layers
+ * whose filter may contain the key are probed. Changing a layer only builds
+ * the filter of that layer and combines the filters again.
+ * <br><br>
+ * Iterating this map and {@link #size()} need time for the keys of all
+ * layers.
+ *
+ * @author Clayn
+ * @since 0.1
+ * @version 0.1
+ */
+public final class LayeredMap extends AbstractMap<String, String> implements
+        ConcurrentMap<String, String>
+{
+
+    //<editor-fold desc="Attribute">
+    /**
+     * The values which were put into this map.
+     */
+    private final ConcurrentMap<String, String> top = new ConcurrentHashMap<>();
+    /**
+     * The resolved values. Only keys which were found are cached, misses are
+     * answered by the filters.
+     */
+    private final ConcurrentMap<String, String> resolved = new ConcurrentHashMap<>();
+    /**
+     * Increased with every change, so a value which was resolved while the
+     * map was changed is not cached.
+     */
+    private final AtomicLong version = new AtomicLong();
+    private volatile Layers layers = new Layers(new Layer[0]);
+    private transient Set<Map.Entry<String, String>> entrySet;
+
+    //</editor-fold>
+    //<editor-fold desc="Private">
+    /**
+     * A named layer with its values and the filter of its keys. Immutable,
+     * so a layer which is not changed is shared by all later lists of
+     * layers.
+     */
+    private static final class Layer
+    {
+
+        private final String name;
+        private final Map<String, String> values;
+        private final BloomFilter filter;
+
+        private Layer(String name, Map<String, String> values)
+        {
+            this.name = name;
+            this.values = values;
+            this.filter = new BloomFilter(values.size());
+            for (String key : values.keySet())
+            {
+                filter.add(key);
+            }
+        }
+    }
+
+    /**
+     * The immutable list of layers, the lowest layer first, together with
+     * the combined filter of all layers.
+     */
+    private static final class Layers
+    {
+
+        private final Layer[] layers;
+        private final BloomFilter any;
+
+        private Layers(Layer[] layers)
+        {
+            int keys = 0;
+            for (Layer layer : layers)
+            {
+                keys += layer.values.size();
+            }
+            this.layers = layers;
+            this.any = new BloomFilter(keys);
+            for (Layer layer : layers)
+            {
+                any.or(layer.filter);
+            }
+        }
+
+        private int indexOf(String name)
+        {
+            for (int i = 0; i < layers.length; i++)
+            {
+                if (layers[i].name.equals(name))
+                {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the value of the highest layer which contains the key.
+     */
+    private String lookup(String key)
+    {
+        Layers ls = layers;
+        if (!ls.any.mightContain(key))
+        {
+            return null;
+        }
+        for (int i = ls.layers.length - 1; i >= 0; i--)
+        {
+            Layer layer = ls.layers[i];
+            if (layer.filter.mightContain(key))
+            {
+                String val = layer.values.get(key);
+                if (val != null)
+                {
+                    return val;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Replaces the layers and removes the cached values of the given keys.
+     * Must be called while holding the lock of this map.
+     */
+    private void change(Layer[] next, Map<String, String> old,
+            Map<String, String> values)
+    {
+        layers = new Layers(next);
+        version.incrementAndGet();
+        for (String key : old.keySet())
+        {
+            resolved.remove(key);
+        }
+        for (String key : values.keySet())
+        {
+            resolved.remove(key);
+        }
+    }
+
+    /**
+     * Removes the cached value of the given key after the own values were
+     * changed.
+     */
+    private void changed(Object key)
+    {
+        version.incrementAndGet();
+        resolved.remove(key);
+    }
+
+    private static Map<String, String> copy(Map<String, String> values)
+    {
+        if (values == null)
+        {
+            throw new IllegalArgumentException(
+                    "The values of a layer must not be 'null'.");
+        }
+        return Collections.unmodifiableMap(new HashMap<>(values));
+    }
+
+    /**
+     * Merges the own values and all layers.
+     */
+    private Map<String, String> merge()
+    {
+        Layer[] ls = layers.layers;
+        Map<String, String> back = new HashMap<>();
+        for (Layer layer : ls)
+        {
+            back.putAll(layer.values);
+        }
+        back.putAll(top);
+        return back;
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Public">
+    /**
+     * Adds a new layer above all existing layers. The given values are
+     * copied.
+     *
+     * @param name the unique name of the layer
+     * @param values the values of the layer
+     * @throws IllegalArgumentException if a layer with the name already
+     * exists or one of the arguments is {@code null}
+     * @since 0.1
+     */
+    public synchronized void addLayer(String name, Map<String, String> values)
+    {
+        if (name == null)
+        {
+            throw new IllegalArgumentException(
+                    "The name of a layer must not be 'null'.");
+        }
+        Layer[] ls = layers.layers;
+        if (layers.indexOf(name) >= 0)
+        {
+            throw new IllegalArgumentException(
+                    "There is already a layer named " + name);
+        }
+        Map<String, String> vals = copy(values);
+        Layer[] next = new Layer[ls.length + 1];
+        System.arraycopy(ls, 0, next, 0, ls.length);
+        next[ls.length] = new Layer(name, vals);
+        change(next, Collections.<String, String>emptyMap(), vals);
+    }
+
+    /**
+     * Replaces the values of the layer with the given name. Only the cached
+     * values of the old and the new keys of the layer are removed.
+     *
+     * @param name the name of the layer
+     * @param values the new values of the layer
+     * @return the old values of the layer
+     * @throws IllegalArgumentException if there is no layer with the name
+     * @since 0.1
+     */
+    public synchronized Map<String, String> setLayer(String name,
+            Map<String, String> values)
+    {
+        Layer[] ls = layers.layers;
+        int index = layers.indexOf(name);
+        if (index < 0)
+        {
+            throw new IllegalArgumentException("There is no layer named "
+                    + name);
+        }
+        Map<String, String> vals = copy(values);
+        Layer[] next = new Layer[ls.length];
+        for (int i = 0; i < ls.length; i++)
+        {
+            next[i] = i == index ? new Layer(name, vals) : ls[i];
+        }
+        change(next, ls[index].values, vals);
+        return ls[index].values;
+    }
+
+    /**
+     * Removes the layer with the given name.
+     *
+     * @param name the name of the layer
+     * @return the values of the removed layer or {@code null} if there was no
+     * such layer
+     * @since 0.1
+     */
+    public synchronized Map<String, String> removeLayer(String name)
+    {
+        Layer[] ls = layers.layers;
+        int index = layers.indexOf(name);
+        if (index < 0)
+        {
+            return null;
+        }
+        Layer[] next = new Layer[ls.length - 1];
+        for (int i = 0, j = 0; i < ls.length; i++)
+        {
+            if (i != index)
+            {
+                next[j++] = ls[i];
+            }
+        }
+        change(next, ls[index].values, Collections.<String, String>emptyMap());
+        return ls[index].values;
+    }
+
+    /**
+     * Returns the names of all layers, the lowest layer first.
+     *
+     * @return a new list with the names of the layers
+     * @since 0.1
+     */
+    public List<String> getLayers()
+    {
+        Layer[] ls = layers.layers;
+        List<String> back = new ArrayList<>(ls.length);
+        for (Layer layer : ls)
+        {
+            back.add(layer.name);
+        }
+        return back;
+    }
+
+    /**
+     * Returns the values of the layer with the given name.
+     *
+     * @param name the name of the layer
+     * @return the unmodifiable values of the layer or {@code null} if there
+     * is no such layer
+     * @since 0.1
+     */
+    public Map<String, String> getLayer(String name)
+    {
+        Layers ls = layers;
+        int index = ls.indexOf(name);
+        return index < 0 ? null : ls.layers[index].values;
+    }
+
+    /**
+     * Returns the name of the layer the value of the given key comes from.
+     *
+     * @param key the key to resolve
+     * @return the name of the layer, {@code null} if the value was put into
+     * this map or there is no value
+     * @since 0.1
+     */
+    public String getSource(String key)
+    {
+        if (top.containsKey(key))
+        {
+            return null;
+        }
+        Layer[] ls = layers.layers;
+        for (int i = ls.length - 1; i >= 0; i--)
+        {
+            if (ls[i].values.containsKey(key))
+            {
+                return ls[i].name;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String get(Object key)
+    {
+        String val = resolved.get(key);
+        if (val != null)
+        {
+            return val;
+        }
+        long stamp = version.get();
+        val = top.get(key);
+        if (val == null)
+        {
+            if (!(key instanceof String))
+            {
+                return null;
+            }
+            val = lookup((String) key);
+        }
+        if (val != null)
+        {
+            resolved.put((String) key, val);
+            if (version.get() != stamp)
+            {
+                resolved.remove(key, val);
+            }
+        }
+        return val;
+    }
+
+    @Override
+    public boolean containsKey(Object key)
+    {
+        return get(key) != null;
+    }
+
+    @Override
+    public String put(String key, String value)
+    {
+        String old = get(key);
+        top.put(key, value);
+        changed(key);
+        return old;
+    }
+
+    /**
+     * Removes the value which was put into this map for the given key. The
+     * layers are not changed, so the key may still have a value afterwards.
+     *
+     * @param key the key to remove
+     * @return the removed value or {@code null}
+     */
+    @Override
+    public String remove(Object key)
+    {
+        String old = top.remove(key);
+        changed(key);
+        return old;
+    }
+
+    @Override
+    public String putIfAbsent(String key, String value)
+    {
+        String cur = get(key);
+        if (cur != null)
+        {
+            return cur;
+        }
+        String old = top.putIfAbsent(key, value);
+        changed(key);
+        return old;
+    }
+
+    @Override
+    public boolean remove(Object key, Object value)
+    {
+        boolean back = top.remove(key, value);
+        changed(key);
+        return back;
+    }
+
+    @Override
+    public boolean replace(String key, String oldValue, String newValue)
+    {
+        boolean back = top.containsKey(key) ? top.replace(key, oldValue,
+                newValue) : oldValue.equals(lookup(key)) && top.putIfAbsent(
+                key, newValue) == null;
+        changed(key);
+        return back;
+    }
+
+    @Override
+    public String replace(String key, String value)
+    {
+        String cur = get(key);
+        if (cur == null)
+        {
+            return null;
+        }
+        top.put(key, value);
+        changed(key);
+        return cur;
+    }
+
+    /**
+     * Removes all values which were put into this map. The layers are not
+     * changed.
+     */
+    @Override
+    public void clear()
+    {
+        top.clear();
+        version.incrementAndGet();
+        resolved.clear();
+    }
+
+    @Override
+    public Set<Map.Entry<String, String>> entrySet()
+    {
+        Set<Map.Entry<String, String>> es = entrySet;
+        if (es == null)
+        {
+            es = new AbstractSet<Map.Entry<String, String>>()
+            {
+                @Override
+                public Iterator<Map.Entry<String, String>> iterator()
+                {
+                    final Iterator<Map.Entry<String, String>> it = merge().
+                            entrySet().iterator();
+                    return new Iterator<Map.Entry<String, String>>()
+                    {
+                        private String last;
+
+                        @Override
+                        public boolean hasNext()
+                        {
+                            return it.hasNext();
+                        }
+
+                        @Override
+                        public Map.Entry<String, String> next()
+                        {
+                            Map.Entry<String, String> e = it.next();
+                            last = e.getKey();
+                            return new AbstractMap.SimpleImmutableEntry<>(e);
+                        }
+
+                        @Override
+                        public void remove()
+                        {
+                            if (last == null)
+                            {
+                                throw new IllegalStateException();
+                            }
+                            LayeredMap.this.remove(last);
+                            last = null;
+                        }
+                    };
+                }
+
+                @Override
+                public int size()
+                {
+                    return merge().size();
+                }
+            };
+            entrySet = es;
+        }
+        return es;
+    }
+    //</editor-fold>
+}
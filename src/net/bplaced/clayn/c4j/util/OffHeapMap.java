@@ -0,0 +1,978 @@
+package net.bplaced.clayn.c4j.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * A {@link ConcurrentMap} which stores its keys and values outside of the
+ * Java heap, so the garbage collector doesn´t need to look at them. Every
+ * value is serialized and appended together with its key to a direct
+ * {@link ByteBuffer}. The index which finds the record for a key is an open
+ * addressing table which is stored in direct buffers as well. Only
+ * {@link Serializable} values can be stored.
+ * <br><br>
+ * A value is deserialized again for every {@link #get(java.lang.Object)}, so
+ * each call returns a new copy. The last read values are kept in a small hot
+ * cache on the heap. Values read from the cache are shared, so they should not
+ * be changed. Changes to a value are only stored by putting it again.
+ * <br><br>
+ * Records are never changed after they were written. Replaced and removed
+ * records stay in their buffer until more than half of the stored bytes are
+ * unused, then all records are copied into new buffers. Because of that
+ * {@link #snapshot()} and {@link #fork()} only copy the index and share the
+ * buffers.
+ *
+ * @author Clayn
+ * @since 0.1
+ * @version 0.1
+ */
+public final class OffHeapMap extends AbstractMap<String, Object> implements
+        ConcurrentMap<String, Object>
+{
+
+    //<editor-fold desc="Attribute">
+    /**
+     * The default size of a single buffer in bytes.
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 4 << 20;
+    /**
+     * The default number of values in the hot cache.
+     */
+    public static final int DEFAULT_CACHE_SIZE = 1024;
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int SLOT_SIZE = 12;
+    private final int segmentSize;
+    private final boolean readOnly;
+    private final StampedLock lock = new StampedLock();
+    private final AtomicReferenceArray<Cached> cache;
+    /**
+     * The buffers with the records. Only the buffer with the index
+     * {@link #tail} is written to and only behind {@link #tailPos}.
+     */
+    private ByteBuffer[] segments;
+    /**
+     * The id of the first buffer. The ids are never reused, so an address is
+     * never reused either.
+     */
+    private int base;
+    private int tail = -1;
+    private int tailPos;
+    /**
+     * The index: a long with the address of the record plus one (so zero
+     * means empty) and an int with the hash of the key for each slot.
+     */
+    private ByteBuffer index;
+    private int capacity;
+    private int size;
+    private long live;
+    private long dead;
+    private transient Set<Map.Entry<String, Object>> entrySet;
+
+    //</editor-fold>
+    //<editor-fold desc="Konstruktoren">
+    /**
+     * Creates a new, empty OffHeapMap with the default segment and cache
+     * size.
+     *
+     * @see #OffHeapMap(int, int)
+     * @since 0.1
+     */
+    public OffHeapMap()
+    {
+        this(DEFAULT_SEGMENT_SIZE, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Creates a new, empty OffHeapMap.
+     *
+     * @param segmentSize the size of a single direct buffer in bytes. Records
+     * bigger than a buffer get a buffer of their own.
+     * @param cacheSize the number of values in the hot cache, will be rounded
+     * up to a power of two
+     * @throws IllegalArgumentException if one of the sizes is not positive
+     * @since 0.1
+     */
+    public OffHeapMap(int segmentSize, int cacheSize)
+    {
+        if (segmentSize <= 0 || cacheSize <= 0)
+        {
+            throw new IllegalArgumentException(
+                    "The segment and cache size must be positive");
+        }
+        this.segmentSize = segmentSize;
+        this.readOnly = false;
+        int n = 1;
+        while (n < cacheSize)
+        {
+            n <<= 1;
+        }
+        this.cache = new AtomicReferenceArray<>(n);
+        this.segments = new ByteBuffer[0];
+        this.capacity = INITIAL_CAPACITY;
+        this.index = ByteBuffer.allocateDirect(capacity * SLOT_SIZE);
+    }
+
+    private OffHeapMap(OffHeapMap map, boolean readOnly)
+    {
+        this.segmentSize = map.segmentSize;
+        this.readOnly = readOnly;
+        this.cache = new AtomicReferenceArray<>(map.cache.length());
+        this.segments = map.segments;
+        this.base = map.base;
+        this.capacity = map.capacity;
+        this.size = map.size;
+        this.live = map.live;
+        this.dead = map.dead;
+        ByteBuffer src = map.index.duplicate();
+        src.clear();
+        this.index = ByteBuffer.allocateDirect(capacity * SLOT_SIZE);
+        this.index.put(src);
+        this.index.clear();
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Private">
+    /**
+     * A value of the hot cache together with the address of its record. Since
+     * records are never changed the value is valid as long as the index
+     * points to the same address.
+     */
+    private static final class Cached
+    {
+
+        private final String key;
+        private final long address;
+        private final Object value;
+
+        private Cached(String key, long address, Object value)
+        {
+            this.key = key;
+            this.address = address;
+            this.value = value;
+        }
+    }
+
+    /**
+     * A value which was found but is not in the hot cache yet.
+     */
+    private static final class Miss
+    {
+
+        private final long address;
+        private final byte[] bytes;
+
+        private Miss(long address, byte[] bytes)
+        {
+            this.address = address;
+            this.bytes = bytes;
+        }
+    }
+
+    private static int spread(int hash)
+    {
+        return hash ^ (hash >>> 16);
+    }
+
+    private long address(int slot)
+    {
+        return index.getLong(slot * SLOT_SIZE) - 1;
+    }
+
+    private int hash(int slot)
+    {
+        return index.getInt(slot * SLOT_SIZE + 8);
+    }
+
+    private void setSlot(int slot, long address, int hash)
+    {
+        index.putLong(slot * SLOT_SIZE, address + 1);
+        index.putInt(slot * SLOT_SIZE + 8, hash);
+    }
+
+    private ByteBuffer segment(long address)
+    {
+        return segments[(int) (address >>> 32) - base];
+    }
+
+    private static int offset(long address)
+    {
+        return (int) address;
+    }
+
+    private boolean keyMatches(long address, String key)
+    {
+        ByteBuffer seg = segment(address);
+        int off = offset(address);
+        int len = seg.getInt(off);
+        if (len != key.length())
+        {
+            return false;
+        }
+        for (int i = 0; i < len; i++)
+        {
+            if (seg.getChar(off + 4 + 2 * i) != key.charAt(i))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String readKey(long address)
+    {
+        ByteBuffer seg = segment(address);
+        int off = offset(address);
+        char[] chars = new char[seg.getInt(off)];
+        for (int i = 0; i < chars.length; i++)
+        {
+            chars[i] = seg.getChar(off + 4 + 2 * i);
+        }
+        return new String(chars);
+    }
+
+    private byte[] readValue(long address)
+    {
+        ByteBuffer seg = segment(address);
+        int off = offset(address);
+        off += 4 + 2 * seg.getInt(off);
+        int len = seg.getInt(off);
+        if (len < 0 || off + 4 + len > seg.limit())
+        {
+            throw new IndexOutOfBoundsException();
+        }
+        byte[] bytes = new byte[len];
+        ByteBuffer dup = seg.duplicate();
+        dup.position(off + 4);
+        dup.get(bytes);
+        return bytes;
+    }
+
+    private int recordLength(long address)
+    {
+        ByteBuffer seg = segment(address);
+        int off = offset(address);
+        int keyBytes = 2 * seg.getInt(off);
+        return 8 + keyBytes + seg.getInt(off + 4 + keyBytes);
+    }
+
+    /**
+     * Returns the slot of the given key or {@code -(slot+1)} of the empty slot
+     * where the key would be inserted. The probing stops after one round, so
+     * it ends even if the index is changed concurrently.
+     */
+    private int slot(String key, int hash)
+    {
+        int mask = capacity - 1;
+        int i = spread(hash) & mask;
+        for (int n = 0; n <= mask; n++)
+        {
+            long address = address(i);
+            if (address < 0)
+            {
+                return -(i + 1);
+            }
+            if (hash(i) == hash && keyMatches(address, key))
+            {
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+        return -(i + 1);
+    }
+
+    /**
+     * Returns {@code null} if the key is not stored, the {@link Cached} value
+     * if it is in the hot cache or the {@link Miss} with the serialized value.
+     */
+    private Object lookup(String key, int hash)
+    {
+        int i = slot(key, hash);
+        if (i < 0)
+        {
+            return null;
+        }
+        long address = address(i);
+        Cached c = cache.get(spread(hash) & (cache.length() - 1));
+        if (c != null && c.address == address && c.key.equals(key))
+        {
+            return c;
+        }
+        return new Miss(address, readValue(address));
+    }
+
+    private static byte[] serialize(Object value)
+    {
+        if (!(value instanceof Serializable))
+        {
+            throw new IllegalArgumentException(
+                    "Only Serializable values can be stored off heap");
+        }
+        try
+        {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes))
+            {
+                out.writeObject(value);
+            }
+            return bytes.toByteArray();
+        }
+        catch (IOException ex)
+        {
+            throw new IllegalArgumentException(
+                    "The value can´t be serialized", ex);
+        }
+    }
+
+    private static Object deserialize(byte[] bytes)
+    {
+        try (ObjectInputStream in = new ObjectInputStream(
+                new ByteArrayInputStream(bytes)))
+        {
+            return in.readObject();
+        }
+        catch (IOException | ClassNotFoundException ex)
+        {
+            throw new IllegalStateException(
+                    "A stored value can´t be deserialized", ex);
+        }
+    }
+
+    private Object value(String key, int hash, Object found)
+    {
+        if (found == null || found instanceof Cached)
+        {
+            return found == null ? null : ((Cached) found).value;
+        }
+        Miss miss = (Miss) found;
+        Object val = deserialize(miss.bytes);
+        cache.set(spread(hash) & (cache.length() - 1), new Cached(key,
+                miss.address, val));
+        return val;
+    }
+
+    /**
+     * Reads the value for the given key, without a lock if possible.
+     */
+    private Object read(String key, int hash)
+    {
+        long stamp = lock.tryOptimisticRead();
+        Object found;
+        try
+        {
+            found = lookup(key, hash);
+        }
+        catch (RuntimeException ex)
+        {
+            found = null;
+            stamp = 0;
+        }
+        if (stamp == 0 || !lock.validate(stamp))
+        {
+            stamp = lock.readLock();
+            try
+            {
+                found = lookup(key, hash);
+            }
+            finally
+            {
+                lock.unlockRead(stamp);
+            }
+        }
+        return value(key, hash, found);
+    }
+
+    /**
+     * Appends a record and returns its address. Must hold the write lock.
+     */
+    private long append(String key, byte[] value)
+    {
+        int len = 8 + 2 * key.length() + value.length;
+        if (tail < 0 || tailPos + len > segments[tail].capacity())
+        {
+            segments = Arrays.copyOf(segments, segments.length + 1);
+            tail = segments.length - 1;
+            segments[tail] = ByteBuffer.allocateDirect(Math.max(segmentSize,
+                    len));
+            tailPos = 0;
+        }
+        ByteBuffer dup = segments[tail].duplicate();
+        dup.position(tailPos);
+        dup.putInt(key.length());
+        for (int i = 0; i < key.length(); i++)
+        {
+            dup.putChar(key.charAt(i));
+        }
+        dup.putInt(value.length);
+        dup.put(value);
+        long address = ((long) (base + tail) << 32) | tailPos;
+        tailPos += len;
+        live += len;
+        return address;
+    }
+
+    /**
+     * Stores the record in the given slot. Must hold the write lock.
+     */
+    private void store(int slot, String key, int hash, byte[] value)
+    {
+        long address = append(key, value);
+        if (slot >= 0)
+        {
+            int old = recordLength(address(slot));
+            live -= old;
+            dead += old;
+            setSlot(slot, address, hash);
+        }
+        else
+        {
+            if ((size + 1) * 2 > capacity)
+            {
+                resize(capacity * 2);
+                slot = slot(key, hash);
+            }
+            setSlot(-slot - 1, address, hash);
+            size++;
+        }
+        if (dead > live && dead > segmentSize)
+        {
+            compact();
+        }
+    }
+
+    private void resize(int newCapacity)
+    {
+        ByteBuffer old = index;
+        int oldCapacity = capacity;
+        index = ByteBuffer.allocateDirect(newCapacity * SLOT_SIZE);
+        capacity = newCapacity;
+        int mask = newCapacity - 1;
+        for (int j = 0; j < oldCapacity; j++)
+        {
+            long address = old.getLong(j * SLOT_SIZE) - 1;
+            if (address >= 0)
+            {
+                int hash = old.getInt(j * SLOT_SIZE + 8);
+                int i = spread(hash) & mask;
+                while (address(i) >= 0)
+                {
+                    i = (i + 1) & mask;
+                }
+                setSlot(i, address, hash);
+            }
+        }
+    }
+
+    /**
+     * Copies all live records into new buffers. Must hold the write lock.
+     */
+    private void compact()
+    {
+        ByteBuffer[] old = segments;
+        int oldBase = base;
+        base += old.length;
+        segments = new ByteBuffer[0];
+        tail = -1;
+        live = 0;
+        dead = 0;
+        for (int i = 0; i < capacity; i++)
+        {
+            long address = address(i);
+            if (address >= 0)
+            {
+                ByteBuffer seg = old[(int) (address >>> 32) - oldBase];
+                int off = offset(address);
+                int keyBytes = 2 * seg.getInt(off);
+                int len = 8 + keyBytes + seg.getInt(off + 4 + keyBytes);
+                if (tail < 0 || tailPos + len > segments[tail].capacity())
+                {
+                    segments = Arrays.copyOf(segments, segments.length + 1);
+                    tail = segments.length - 1;
+                    segments[tail] = ByteBuffer.allocateDirect(Math.max(
+                            segmentSize, len));
+                    tailPos = 0;
+                }
+                ByteBuffer src = seg.duplicate();
+                src.position(off).limit(off + len);
+                ByteBuffer dst = segments[tail].duplicate();
+                dst.position(tailPos);
+                dst.put(src);
+                setSlot(i, ((long) (base + tail) << 32) | tailPos, hash(i));
+                tailPos += len;
+                live += len;
+            }
+        }
+    }
+
+    /**
+     * Removes the mapping at the given slot and shifts the following mappings
+     * back. Must hold the write lock.
+     */
+    private void delete(int i)
+    {
+        int old = recordLength(address(i));
+        live -= old;
+        dead += old;
+        int mask = capacity - 1;
+        int j = i;
+        while (true)
+        {
+            j = (j + 1) & mask;
+            long address = address(j);
+            if (address < 0)
+            {
+                break;
+            }
+            int ideal = spread(hash(j)) & mask;
+            boolean move = i <= j ? ideal <= i || ideal > j
+                    : ideal <= i && ideal > j;
+            if (move)
+            {
+                setSlot(i, address, hash(j));
+                i = j;
+            }
+        }
+        setSlot(i, -1, 0);
+        size--;
+    }
+
+    private void checkWrite(Object key, Object value)
+    {
+        if (readOnly)
+        {
+            throw new UnsupportedOperationException("This map is read only");
+        }
+        if (key == null || value == null)
+        {
+            throw new NullPointerException();
+        }
+    }
+
+    /**
+     * Changes the value only if the current value equals {@code expected}.
+     * The current value is deserialized without holding the lock, so the
+     * change is retried if the record was changed in the meantime.
+     */
+    private boolean change(String key, Object expected, byte[] value)
+    {
+        int hash = key.hashCode();
+        while (true)
+        {
+            long address;
+            byte[] bytes;
+            long stamp = lock.readLock();
+            try
+            {
+                int i = slot(key, hash);
+                if (i < 0)
+                {
+                    return false;
+                }
+                address = address(i);
+                bytes = readValue(address);
+            }
+            finally
+            {
+                lock.unlockRead(stamp);
+            }
+            if (!expected.equals(deserialize(bytes)))
+            {
+                return false;
+            }
+            stamp = lock.writeLock();
+            try
+            {
+                int i = slot(key, hash);
+                if (i >= 0 && address(i) == address)
+                {
+                    if (value == null)
+                    {
+                        delete(i);
+                    }
+                    else
+                    {
+                        store(i, key, hash, value);
+                    }
+                    return true;
+                }
+            }
+            finally
+            {
+                lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Public">
+    /**
+     * Returns a read only copy of this map. Only the index is copied, the
+     * buffers with the records are shared.
+     *
+     * @return a read only copy of this map
+     * @see PersistentMap#snapshotOf(java.util.Map)
+     * @since 0.1
+     */
+    public OffHeapMap snapshot()
+    {
+        if (readOnly)
+        {
+            return this;
+        }
+        long stamp = lock.readLock();
+        try
+        {
+            return new OffHeapMap(this, true);
+        }
+        finally
+        {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Returns a changeable copy of this map. Only the index is copied, the
+     * buffers with the records are shared. Both maps continue writing into
+     * new buffers.
+     *
+     * @return a changeable copy of this map
+     * @since 0.1
+     */
+    public OffHeapMap fork()
+    {
+        long stamp = lock.writeLock();
+        try
+        {
+            tail = -1;
+            return new OffHeapMap(this, false);
+        }
+        finally
+        {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Returns whether this map is a read only snapshot.
+     *
+     * @return {@code true} if this map can´t be changed
+     * @since 0.1
+     */
+    public boolean isReadOnly()
+    {
+        return readOnly;
+    }
+
+    /**
+     * Returns the number of bytes this map has allocated outside of the heap
+     * for its records and its index.
+     *
+     * @return the allocated off heap memory in bytes
+     * @since 0.1
+     */
+    public long getOffHeapBytes()
+    {
+        long stamp = lock.readLock();
+        try
+        {
+            long bytes = (long) capacity * SLOT_SIZE;
+            for (ByteBuffer seg : segments)
+            {
+                bytes += seg.capacity();
+            }
+            return bytes;
+        }
+        finally
+        {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public Object get(Object key)
+    {
+        if (!(key instanceof String))
+        {
+            return null;
+        }
+        String k = (String) key;
+        return read(k, k.hashCode());
+    }
+
+    @Override
+    public boolean containsKey(Object key)
+    {
+        if (!(key instanceof String))
+        {
+            return false;
+        }
+        String k = (String) key;
+        long stamp = lock.readLock();
+        try
+        {
+            return slot(k, k.hashCode()) >= 0;
+        }
+        finally
+        {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public int size()
+    {
+        long stamp = lock.readLock();
+        try
+        {
+            return size;
+        }
+        finally
+        {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public Object put(String key, Object value)
+    {
+        checkWrite(key, value);
+        byte[] bytes = serialize(value);
+        int hash = key.hashCode();
+        byte[] old = null;
+        long stamp = lock.writeLock();
+        try
+        {
+            int i = slot(key, hash);
+            if (i >= 0)
+            {
+                old = readValue(address(i));
+            }
+            store(i, key, hash, bytes);
+        }
+        finally
+        {
+            lock.unlockWrite(stamp);
+        }
+        return old == null ? null : deserialize(old);
+    }
+
+    @Override
+    public Object putIfAbsent(String key, Object value)
+    {
+        checkWrite(key, value);
+        byte[] bytes = serialize(value);
+        int hash = key.hashCode();
+        byte[] old;
+        long stamp = lock.writeLock();
+        try
+        {
+            int i = slot(key, hash);
+            if (i < 0)
+            {
+                store(i, key, hash, bytes);
+                return null;
+            }
+            old = readValue(address(i));
+        }
+        finally
+        {
+            lock.unlockWrite(stamp);
+        }
+        return deserialize(old);
+    }
+
+    @Override
+    public Object remove(Object key)
+    {
+        if (readOnly)
+        {
+            throw new UnsupportedOperationException("This map is read only");
+        }
+        if (!(key instanceof String))
+        {
+            return null;
+        }
+        String k = (String) key;
+        byte[] old = null;
+        long stamp = lock.writeLock();
+        try
+        {
+            int i = slot(k, k.hashCode());
+            if (i >= 0)
+            {
+                old = readValue(address(i));
+                delete(i);
+            }
+        }
+        finally
+        {
+            lock.unlockWrite(stamp);
+        }
+        return old == null ? null : deserialize(old);
+    }
+
+    @Override
+    public boolean remove(Object key, Object value)
+    {
+        if (readOnly)
+        {
+            throw new UnsupportedOperationException("This map is read only");
+        }
+        if (!(key instanceof String) || value == null)
+        {
+            return false;
+        }
+        return change((String) key, value, null);
+    }
+
+    @Override
+    public boolean replace(String key, Object oldValue, Object newValue)
+    {
+        checkWrite(key, newValue);
+        if (oldValue == null)
+        {
+            throw new NullPointerException();
+        }
+        return change(key, oldValue, serialize(newValue));
+    }
+
+    @Override
+    public Object replace(String key, Object value)
+    {
+        checkWrite(key, value);
+        byte[] bytes = serialize(value);
+        int hash = key.hashCode();
+        byte[] old;
+        long stamp = lock.writeLock();
+        try
+        {
+            int i = slot(key, hash);
+            if (i < 0)
+            {
+                return null;
+            }
+            old = readValue(address(i));
+            store(i, key, hash, bytes);
+        }
+        finally
+        {
+            lock.unlockWrite(stamp);
+        }
+        return deserialize(old);
+    }
+
+    @Override
+    public void clear()
+    {
+        if (readOnly)
+        {
+            throw new UnsupportedOperationException("This map is read only");
+        }
+        long stamp = lock.writeLock();
+        try
+        {
+            base += segments.length;
+            segments = new ByteBuffer[0];
+            tail = -1;
+            capacity = INITIAL_CAPACITY;
+            index = ByteBuffer.allocateDirect(capacity * SLOT_SIZE);
+            size = 0;
+            live = 0;
+            dead = 0;
+        }
+        finally
+        {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     * <br><br>
+     * The iterators work on a {@link #snapshot()} which is taken when the
+     * iterator is created. The values are deserialized one by one while
+     * iterating.
+     */
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet()
+    {
+        if (entrySet == null)
+        {
+            entrySet = new AbstractSet<Map.Entry<String, Object>>()
+            {
+                @Override
+                public Iterator<Map.Entry<String, Object>> iterator()
+                {
+                    final OffHeapMap snap = snapshot();
+                    return new Iterator<Map.Entry<String, Object>>()
+                    {
+                        private int slot = advance(0);
+                        private String last;
+
+                        private int advance(int i)
+                        {
+                            while (i < snap.capacity && snap.address(i) < 0)
+                            {
+                                i++;
+                            }
+                            return i;
+                        }
+
+                        @Override
+                        public boolean hasNext()
+                        {
+                            return slot < snap.capacity;
+                        }
+
+                        @Override
+                        public Map.Entry<String, Object> next()
+                        {
+                            if (slot >= snap.capacity)
+                            {
+                                throw new NoSuchElementException();
+                            }
+                            long address = snap.address(slot);
+                            slot = advance(slot + 1);
+                            last = snap.readKey(address);
+                            return new SimpleImmutableEntry<>(last,
+                                    deserialize(snap.readValue(address)));
+                        }
+
+                        @Override
+                        public void remove()
+                        {
+                            if (last == null)
+                            {
+                                throw new IllegalStateException();
+                            }
+                            OffHeapMap.this.remove(last);
+                            last = null;
+                        }
+                    };
+                }
+
+                @Override
+                public int size()
+                {
+                    return OffHeapMap.this.size();
+                }
+            };
+        }
+        return entrySet;
+    }
+    //</editor-fold>
+}
@@ -0,0 +1,513 @@
+package net.bplaced.clayn.c4j.util;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A {@link ConcurrentMap} which only stores the mappings that differ from a
+ * shared parent map. Every lookup first checks the own mappings and then the
+ * parent, so a miss only needs one additional hash lookup. Writing into this
+ * map never changes the parent and removing a key of the parent only stores a
+ * marker which hides the parent value. Changes at the parent are visible
+ * immediately for all keys this map does not override. So many overlays of
+ * one large parent only need memory for their own mappings.
+ * <br><br>
+ * The lookups are as threadsafe as the parent map. Iterating this map and
+ * {@link #size()} need time for all mappings of the parent.
+ *
+ * @author Clayn
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ * @since 0.1
+ * @version 0.1
+ */
+public final class OverlayMap<K, V> extends AbstractMap<K, V> implements
+        ConcurrentMap<K, V>
+{
+
+    //<editor-fold desc="Attribute">
+    /**
+     * Marker for a key of the parent which was removed in this map.
+     */
+    private static final Object REMOVED = new Object();
+    private final ConcurrentMap<K, V> parent;
+    private final ConcurrentMap<K, Object> delta;
+    private transient Set<Map.Entry<K, V>> entrySet;
+
+    //</editor-fold>
+    //<editor-fold desc="Konstruktoren">
+    /**
+     * Creates a new overlay of the given map without own mappings.
+     *
+     * @param parent the map to read all not overridden keys from
+     * @throws IllegalArgumentException if {@code parent} is {@code null}
+     * @since 0.1
+     */
+    public OverlayMap(ConcurrentMap<K, V> parent)
+    {
+        this(parent, new ConcurrentHashMap<K, Object>());
+    }
+
+    private OverlayMap(ConcurrentMap<K, V> parent,
+            ConcurrentMap<K, Object> delta)
+    {
+        if (parent == null)
+        {
+            throw new IllegalArgumentException(
+                    "The parent map must not be 'null'.");
+        }
+        this.parent = parent;
+        this.delta = delta;
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Private">
+    /**
+     * Returns the given own value as value of this map. The own values are
+     * either values which were put or {@link #REMOVED}, so the cast is safe.
+     */
+    @SuppressWarnings("unchecked")
+    private V unmask(Object val)
+    {
+        return val == REMOVED ? null : (V) val;
+    }
+
+    /**
+     * Returns the given key as key of this map. Only used for keys which are
+     * known to be in the parent, so the cast is safe.
+     */
+    @SuppressWarnings("unchecked")
+    private K key(Object key)
+    {
+        return (K) key;
+    }
+
+    /**
+     * Returns the value which was visible before the own mapping of the key
+     * was changed from {@code prev}.
+     */
+    private V previous(Object key, Object prev)
+    {
+        return prev == null ? parent.get(key) : unmask(prev);
+    }
+
+    private final class EntryIterator implements Iterator<Map.Entry<K, V>>
+    {
+
+        private final Iterator<Map.Entry<K, Object>> own = delta.entrySet().
+                iterator();
+        private final Iterator<Map.Entry<K, V>> inherited = parent.
+                entrySet().iterator();
+        private Map.Entry<K, V> next;
+        private K last;
+
+        private EntryIterator()
+        {
+            advance();
+        }
+
+        private void advance()
+        {
+            next = null;
+            while (own.hasNext())
+            {
+                Map.Entry<K, Object> e = own.next();
+                if (e.getValue() != REMOVED)
+                {
+                    next = new AbstractMap.SimpleImmutableEntry<>(e.getKey(),
+                            unmask(e.getValue()));
+                    return;
+                }
+            }
+            while (inherited.hasNext())
+            {
+                Map.Entry<K, V> e = inherited.next();
+                if (!delta.containsKey(e.getKey()))
+                {
+                    next = new AbstractMap.SimpleImmutableEntry<>(e);
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return next != null;
+        }
+
+        @Override
+        public Map.Entry<K, V> next()
+        {
+            if (next == null)
+            {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<K, V> back = next;
+            last = back.getKey();
+            advance();
+            return back;
+        }
+
+        @Override
+        public void remove()
+        {
+            if (last == null)
+            {
+                throw new IllegalStateException();
+            }
+            OverlayMap.this.remove(last);
+            last = null;
+        }
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Public">
+    /**
+     * Returns the map this overlay reads all not overridden keys from.
+     *
+     * @return the parent map
+     * @since 0.1
+     */
+    public ConcurrentMap<K, V> getParent()
+    {
+        return parent;
+    }
+
+    /**
+     * Returns whether the given key is stored or removed in this map itself,
+     * so that changes at the parent do not affect it.
+     *
+     * @param key the key to check
+     * @return {@code true} if the key is overridden
+     * @since 0.1
+     */
+    public boolean isOverridden(Object key)
+    {
+        return delta.containsKey(key);
+    }
+
+    /**
+     * Returns the number of keys which are stored or removed in this map
+     * itself. This is the number of mappings this map needs memory for.
+     *
+     * @return the number of overridden keys
+     * @since 0.1
+     */
+    public int getOverrides()
+    {
+        return delta.size();
+    }
+
+    /**
+     * Removes the own mapping of the given key so that the value of the
+     * parent is visible again.
+     *
+     * @param key the key to reset
+     * @return the value that was visible before
+     * @since 0.1
+     */
+    public V reset(Object key)
+    {
+        Object prev = delta.remove(key);
+        return previous(key, prev);
+    }
+
+    /**
+     * Returns all keys that start with the given prefix. The keys of the
+     * parent are taken from {@link PersistentMap#keysOf(java.util.Map,
+     * java.lang.String)}, so a prefix index of the parent is used.
+     *
+     * @param prefix the prefix of the keys
+     * @return a new list with all the matching keys
+     * @since 0.1
+     */
+    public List<String> keys(String prefix)
+    {
+        List<String> back = new ArrayList<>();
+        @SuppressWarnings("unchecked")
+        Map<String, ?> strings = (Map<String, ?>) parent;
+        for (String key : PersistentMap.keysOf(strings, prefix))
+        {
+            if (!delta.containsKey(key))
+            {
+                back.add(key);
+            }
+        }
+        for (Map.Entry<K, Object> e : delta.entrySet())
+        {
+            if (e.getValue() != REMOVED && ((String) e.getKey()).startsWith(
+                    prefix))
+            {
+                back.add((String) e.getKey());
+            }
+        }
+        return back;
+    }
+
+    /**
+     * Returns a read only map with all the mappings of this map. If the
+     * parent is a {@link PersistentMap} only the own mappings are copied.
+     *
+     * @return a read only snapshot of this map
+     * @see PersistentMap#snapshotOf(java.util.Map)
+     * @since 0.1
+     */
+    public ConcurrentMap<K, V> snapshot()
+    {
+        PersistentMap<K, V> copy = PersistentMap.forkOf(PersistentMap.
+                snapshotOf(parent));
+        for (Map.Entry<K, Object> e : delta.entrySet())
+        {
+            if (e.getValue() == REMOVED)
+            {
+                copy.remove(e.getKey());
+            }
+            else
+            {
+                copy.put(e.getKey(), unmask(e.getValue()));
+            }
+        }
+        return copy.snapshot();
+    }
+
+    /**
+     * Returns a new overlay of the same parent with a copy of the own
+     * mappings of this map.
+     *
+     * @return a changeable copy of this map
+     * @since 0.1
+     */
+    public OverlayMap<K, V> fork()
+    {
+        return new OverlayMap<>(parent, new ConcurrentHashMap<>(delta));
+    }
+
+    @Override
+    public V get(Object key)
+    {
+        Object val = delta.get(key);
+        return val == null ? parent.get(key) : unmask(val);
+    }
+
+    @Override
+    public boolean containsKey(Object key)
+    {
+        return get(key) != null;
+    }
+
+    @Override
+    public V put(K key, V value)
+    {
+        if (value == null)
+        {
+            throw new NullPointerException();
+        }
+        return previous(key, delta.put(key, value));
+    }
+
+    /**
+     * Removes the given key. If the parent contains the key a marker is
+     * stored which hides the value of the parent, otherwise only the own
+     * mapping is removed.
+     *
+     * @param key the key to remove
+     * @return the removed value or {@code null}
+     */
+    @Override
+    public V remove(Object key)
+    {
+        if (parent.containsKey(key))
+        {
+            return previous(key, delta.put(key(key), REMOVED));
+        }
+        return unmask(delta.remove(key));
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value)
+    {
+        if (value == null)
+        {
+            throw new NullPointerException();
+        }
+        for (;;)
+        {
+            Object own = delta.get(key);
+            if (own == null)
+            {
+                V inherited = parent.get(key);
+                if (inherited != null)
+                {
+                    return inherited;
+                }
+                if (delta.putIfAbsent(key, value) == null)
+                {
+                    return null;
+                }
+            }
+            else if (own != REMOVED)
+            {
+                return unmask(own);
+            }
+            else if (delta.replace(key, REMOVED, value))
+            {
+                return null;
+            }
+        }
+    }
+
+    @Override
+    public boolean remove(Object key, Object value)
+    {
+        if (value == null)
+        {
+            return false;
+        }
+        for (;;)
+        {
+            Object own = delta.get(key);
+            if (own == null)
+            {
+                if (!value.equals(parent.get(key)))
+                {
+                    return false;
+                }
+                if (delta.putIfAbsent(key(key), REMOVED) == null)
+                {
+                    return true;
+                }
+            }
+            else if (own == REMOVED || !value.equals(own))
+            {
+                return false;
+            }
+            else if (parent.containsKey(key) ? delta.replace(key(key), own,
+                    REMOVED) : delta.remove(key, own))
+            {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue)
+    {
+        if (oldValue == null || newValue == null)
+        {
+            throw new NullPointerException();
+        }
+        for (;;)
+        {
+            Object own = delta.get(key);
+            if (own == null)
+            {
+                if (!oldValue.equals(parent.get(key)))
+                {
+                    return false;
+                }
+                if (delta.putIfAbsent(key, newValue) == null)
+                {
+                    return true;
+                }
+            }
+            else if (own == REMOVED || !oldValue.equals(own))
+            {
+                return false;
+            }
+            else if (delta.replace(key, own, newValue))
+            {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public V replace(K key, V value)
+    {
+        if (value == null)
+        {
+            throw new NullPointerException();
+        }
+        for (;;)
+        {
+            V current = get(key);
+            if (current == null)
+            {
+                return null;
+            }
+            if (replace(key, current, value))
+            {
+                return current;
+            }
+        }
+    }
+
+    /**
+     * Removes all keys. Since the parent is never changed, a marker is stored
+     * for every key of the parent.
+     */
+    @Override
+    public void clear()
+    {
+        for (K key : parent.keySet())
+        {
+            delta.put(key, REMOVED);
+        }
+        Iterator<Map.Entry<K, Object>> it = delta.entrySet().iterator();
+        while (it.hasNext())
+        {
+            Map.Entry<K, Object> e = it.next();
+            if (e.getValue() != REMOVED)
+            {
+                it.remove();
+            }
+        }
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet()
+    {
+        Set<Map.Entry<K, V>> es = entrySet;
+        if (es == null)
+        {
+            es = new AbstractSet<Map.Entry<K, V>>()
+            {
+                @Override
+                public Iterator<Map.Entry<K, V>> iterator()
+                {
+                    return new EntryIterator();
+                }
+
+                @Override
+                public int size()
+                {
+                    int count = 0;
+                    for (Iterator<Map.Entry<K, V>> it = iterator(); it.
+                            hasNext(); it.next())
+                    {
+                        count++;
+                    }
+                    return count;
+                }
+
+                @Override
+                public void clear()
+                {
+                    OverlayMap.this.clear();
+                }
+            };
+            entrySet = es;
+        }
+        return es;
+    }
+    //</editor-fold>
+}
@@ -0,0 +1,1005 @@
+package net.bplaced.clayn.c4j.util;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A {@link ConcurrentMap} which is implemented as a persistent hash array
+ * mapped trie. The trie itself is never changed, every change creates a new
+ * trie which shares all unchanged parts with the old one and is then published
+ * with a single compare and set. Because of that reading threads never block
+ * and never see a half done change, writing threads never block reading
+ * threads and a consistent view of the whole map can be taken in constant time
+ * with {@link #snapshot()}. Copies that can be changed independent from this
+ * map can also be created in constant time with {@link #fork()}.
+ * <br><br>
+ * Maps with String keys that are created with {@link #indexed()} also keep
+ * all keys in a radix trie. The trie is part of the same immutable state, so
+ * {@link #keys(java.lang.String)} and {@link #removePrefix(java.lang.String)}
+ * only need time for the matching keys and are consistent with all other
+ * operations.
+ * <br><br>
+ * Such as {@link java.util.concurrent.ConcurrentHashMap} this map does not
+ * allow {@code null} as key or value.
+ *
+ * @author Clayn
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ * @since 0.1
+ * @version 0.1
+ */
+public class PersistentMap<K, V> extends AbstractMap<K, V> implements
+        ConcurrentMap<K, V>
+{
+
+    //<editor-fold desc="Attribute">
+    private final AtomicReference<Root> root;
+    private final boolean readOnly;
+    private transient Set<Map.Entry<K, V>> entrySet;
+
+    //</editor-fold>
+    //<editor-fold desc="Konstruktoren">
+    /**
+     * Creates a new, empty PersistentMap that can be changed.
+     *
+     * @since 0.1
+     * @see #PersistentMap(java.util.Map)
+     */
+    public PersistentMap()
+    {
+        this(Root.EMPTY, false);
+    }
+
+    /**
+     * Creates a new PersistentMap that can be changed and contains all the
+     * mappings from the given map.
+     *
+     * @param map the map to copy the mappings from
+     * @throws NullPointerException if the given map contains {@code null} as
+     * key or value.
+     * @since 0.1
+     * @see #PersistentMap()
+     */
+    public PersistentMap(Map<? extends K, ? extends V> map)
+    {
+        this(Root.EMPTY.with(map), false);
+    }
+
+    private PersistentMap(Root root, boolean readOnly)
+    {
+        this.root = new AtomicReference<>(root);
+        this.readOnly = readOnly;
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Private">
+    /**
+     * Spreads the higher bits of the hash to the lower ones since the trie
+     * uses the lower bits first.
+     */
+    private static int hash(Object key)
+    {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static int bit(int hash, int shift)
+    {
+        return 1 << ((hash >>> shift) & 31);
+    }
+
+    /**
+     * Returns all keys of the given state which start with the given prefix.
+     */
+    private List<String> collect(Root r, String prefix)
+    {
+        List<String> back = new ArrayList<>();
+        if (r.index != null)
+        {
+            r.index.collect(prefix, back);
+            return back;
+        }
+        Iterator<Map.Entry<K, V>> it = new EntryIterator(r.node);
+        while (it.hasNext())
+        {
+            Object key = it.next().getKey();
+            if (key instanceof String && ((String) key).startsWith(prefix))
+            {
+                back.add((String) key);
+            }
+        }
+        return back;
+    }
+
+    private void checkWritable()
+    {
+        if (readOnly)
+        {
+            throw new UnsupportedOperationException(
+                    "This map is a read only snapshot");
+        }
+    }
+
+    /**
+     * Tries to publish the given change. Returns {@code true} if the change
+     * was published or if nothing was changed at all.
+     */
+    private boolean publish(Root old, Node node, Change change, Object key)
+    {
+        if (node == old.node)
+        {
+            return true;
+        }
+        PrefixTrie index = old.index;
+        if (index != null && change.delta != 0)
+        {
+            index = change.delta > 0 ? index.with((String) key) : index.
+                    without((String) key);
+        }
+        return root.compareAndSet(old, new Root(node, old.size + change.delta,
+                index));
+    }
+
+    /**
+     * The result of a single change at the trie.
+     */
+    private static final class Change
+    {
+
+        private Object old;
+        private int delta;
+    }
+
+    /**
+     * The immutable state of the map, that is the trie, its size and the
+     * prefix index if the map has one.
+     */
+    private static final class Root
+    {
+
+        private static final Root EMPTY = new Root(null, 0, null);
+        private static final Root INDEXED = new Root(null, 0, PrefixTrie.EMPTY);
+        private final Node node;
+        private final int size;
+        private final PrefixTrie index;
+
+        private Root(Node node, int size, PrefixTrie index)
+        {
+            this.node = node;
+            this.size = size;
+            this.index = index;
+        }
+
+        private Root empty()
+        {
+            return index == null ? EMPTY : INDEXED;
+        }
+
+        private Root with(Map<?, ?> map)
+        {
+            Node n = node;
+            int s = size;
+            PrefixTrie idx = index;
+            for (Map.Entry<?, ?> entry : map.entrySet())
+            {
+                Object key = entry.getKey();
+                Object val = entry.getValue();
+                if (key == null || val == null)
+                {
+                    throw new NullPointerException();
+                }
+                Change change = new Change();
+                n = n == null ? BitmapNode.EMPTY.put(key, hash(key), 0, val,
+                        change) : n.put(key, hash(key), 0, val, change);
+                s += change.delta;
+                if (idx != null && change.delta > 0)
+                {
+                    idx = idx.with((String) key);
+                }
+            }
+            return new Root(n, s, idx);
+        }
+    }
+
+    /**
+     * A node of the trie. The array contains key, value pairs. If the key is
+     * {@code null} the value is a sub node.
+     */
+    private static abstract class Node
+    {
+
+        final Object[] array;
+
+        Node(Object[] array)
+        {
+            this.array = array;
+        }
+
+        abstract Object find(Object key, int hash, int shift);
+
+        abstract Node put(Object key, int hash, int shift, Object val,
+                Change change);
+
+        abstract Node remove(Object key, int hash, int shift, Change change);
+    }
+
+    private static final class BitmapNode extends Node
+    {
+
+        private static final BitmapNode EMPTY = new BitmapNode(0,
+                new Object[0]);
+        private final int bitmap;
+
+        private BitmapNode(int bitmap, Object[] array)
+        {
+            super(array);
+            this.bitmap = bitmap;
+        }
+
+        private int index(int bit)
+        {
+            return 2 * Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @Override
+        Object find(Object key, int hash, int shift)
+        {
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0)
+            {
+                return null;
+            }
+            int i = index(bit);
+            Object k = array[i];
+            Object v = array[i + 1];
+            if (k == null)
+            {
+                return ((Node) v).find(key, hash, shift + 5);
+            }
+            return key.equals(k) ? v : null;
+        }
+
+        @Override
+        Node put(Object key, int hash, int shift, Object val, Change change)
+        {
+            int bit = bit(hash, shift);
+            int i = index(bit);
+            if ((bitmap & bit) == 0)
+            {
+                Object[] arr = new Object[array.length + 2];
+                System.arraycopy(array, 0, arr, 0, i);
+                arr[i] = key;
+                arr[i + 1] = val;
+                System.arraycopy(array, i, arr, i + 2, array.length - i);
+                change.delta = 1;
+                return new BitmapNode(bitmap | bit, arr);
+            }
+            Object k = array[i];
+            Object v = array[i + 1];
+            if (k == null)
+            {
+                Node sub = ((Node) v).put(key, hash, shift + 5, val, change);
+                return sub == v ? this : with(i + 1, sub);
+            }
+            if (key.equals(k))
+            {
+                change.old = v;
+                return v == val ? this : with(i + 1, val);
+            }
+            change.delta = 1;
+            Node sub = create(shift + 5, k, v, hash, key, val);
+            Object[] arr = array.clone();
+            arr[i] = null;
+            arr[i + 1] = sub;
+            return new BitmapNode(bitmap, arr);
+        }
+
+        @Override
+        Node remove(Object key, int hash, int shift, Change change)
+        {
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0)
+            {
+                return this;
+            }
+            int i = index(bit);
+            Object k = array[i];
+            Object v = array[i + 1];
+            if (k == null)
+            {
+                Node sub = ((Node) v).remove(key, hash, shift + 5, change);
+                if (sub == v)
+                {
+                    return this;
+                }
+                return sub == null ? without(bit, i) : with(i + 1, sub);
+            }
+            if (!key.equals(k))
+            {
+                return this;
+            }
+            change.old = v;
+            change.delta = -1;
+            return without(bit, i);
+        }
+
+        private Node with(int i, Object val)
+        {
+            Object[] arr = array.clone();
+            arr[i] = val;
+            return new BitmapNode(bitmap, arr);
+        }
+
+        private Node without(int bit, int i)
+        {
+            if (bitmap == bit)
+            {
+                return null;
+            }
+            Object[] arr = new Object[array.length - 2];
+            System.arraycopy(array, 0, arr, 0, i);
+            System.arraycopy(array, i + 2, arr, i, array.length - i - 2);
+            return new BitmapNode(bitmap & ~bit, arr);
+        }
+
+        private static Node create(int shift, Object k1, Object v1, int h2,
+                Object k2, Object v2)
+        {
+            int h1 = hash(k1);
+            if (h1 == h2)
+            {
+                return new CollisionNode(h1, new Object[]
+                {
+                    k1, v1, k2, v2
+                });
+            }
+            Change ignored = new Change();
+            return EMPTY.put(k1, h1, shift, v1, ignored).put(k2, h2, shift, v2,
+                    ignored);
+        }
+    }
+
+    /**
+     * Node for keys which have exactly the same hash.
+     */
+    private static final class CollisionNode extends Node
+    {
+
+        private final int hash;
+
+        private CollisionNode(int hash, Object[] array)
+        {
+            super(array);
+            this.hash = hash;
+        }
+
+        private int indexOf(Object key)
+        {
+            for (int i = 0; i < array.length; i += 2)
+            {
+                if (key.equals(array[i]))
+                {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        Object find(Object key, int hash, int shift)
+        {
+            if (hash != this.hash)
+            {
+                return null;
+            }
+            int i = indexOf(key);
+            return i < 0 ? null : array[i + 1];
+        }
+
+        @Override
+        Node put(Object key, int hash, int shift, Object val, Change change)
+        {
+            if (hash != this.hash)
+            {
+                return new BitmapNode(bit(this.hash, shift), new Object[]
+                {
+                    null, this
+                }).put(key, hash, shift, val, change);
+            }
+            int i = indexOf(key);
+            if (i >= 0)
+            {
+                change.old = array[i + 1];
+                if (array[i + 1] == val)
+                {
+                    return this;
+                }
+                Object[] arr = array.clone();
+                arr[i + 1] = val;
+                return new CollisionNode(hash, arr);
+            }
+            Object[] arr = new Object[array.length + 2];
+            System.arraycopy(array, 0, arr, 0, array.length);
+            arr[array.length] = key;
+            arr[array.length + 1] = val;
+            change.delta = 1;
+            return new CollisionNode(hash, arr);
+        }
+
+        @Override
+        Node remove(Object key, int hash, int shift, Change change)
+        {
+            int i = hash == this.hash ? indexOf(key) : -1;
+            if (i < 0)
+            {
+                return this;
+            }
+            change.old = array[i + 1];
+            change.delta = -1;
+            if (array.length == 2)
+            {
+                return null;
+            }
+            Object[] arr = new Object[array.length - 2];
+            System.arraycopy(array, 0, arr, 0, i);
+            System.arraycopy(array, i + 2, arr, i, array.length - i - 2);
+            return new CollisionNode(hash, arr);
+        }
+    }
+
+    /**
+     * Iterates over all entries of a single trie.
+     */
+    private final class EntryIterator implements Iterator<Map.Entry<K, V>>
+    {
+
+        private final Object[][] arrays = new Object[10][];
+        private final int[] positions = new int[10];
+        private int depth;
+        private Object nextKey;
+        private Object nextValue;
+        private Object lastKey;
+
+        private EntryIterator(Node node)
+        {
+            if (node != null)
+            {
+                arrays[0] = node.array;
+                depth = 1;
+            }
+            advance();
+        }
+
+        private void advance()
+        {
+            nextKey = null;
+            while (depth > 0)
+            {
+                Object[] arr = arrays[depth - 1];
+                int pos = positions[depth - 1];
+                if (pos >= arr.length)
+                {
+                    depth--;
+                    continue;
+                }
+                positions[depth - 1] = pos + 2;
+                if (arr[pos] == null)
+                {
+                    arrays[depth] = ((Node) arr[pos + 1]).array;
+                    positions[depth] = 0;
+                    depth++;
+                }
+                else
+                {
+                    nextKey = arr[pos];
+                    nextValue = arr[pos + 1];
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return nextKey != null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Map.Entry<K, V> next()
+        {
+            if (nextKey == null)
+            {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<K, V> entry = new SimpleImmutableEntry<>((K) nextKey,
+                    (V) nextValue);
+            lastKey = nextKey;
+            advance();
+            return entry;
+        }
+
+        @Override
+        public void remove()
+        {
+            if (lastKey == null)
+            {
+                throw new IllegalStateException();
+            }
+            PersistentMap.this.remove(lastKey);
+            lastKey = null;
+        }
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Public">
+    /**
+     * Returns a read only view of this map as it is at the moment. Later
+     * changes at this map will not be visible in the returned map. This method
+     * does not copy any mappings and needs constant time.
+     *
+     * @return a read only snapshot of this map
+     * @see #fork()
+     * @since 0.1
+     */
+    public PersistentMap<K, V> snapshot()
+    {
+        return readOnly ? this : new PersistentMap<K, V>(root.get(), true);
+    }
+
+    /**
+     * Returns a new map that contains the same mappings as this map at the
+     * moment but can be changed independent from this map. This method does
+     * not copy any mappings and needs constant time.
+     *
+     * @return a new changeable copy of this map
+     * @see #snapshot()
+     * @since 0.1
+     */
+    public PersistentMap<K, V> fork()
+    {
+        return new PersistentMap<K, V>(root.get(), false);
+    }
+
+    /**
+     * Returns if this map is a read only snapshot.
+     *
+     * @return {@code true} if this map can not be changed, {@code false}
+     * otherwise.
+     * @since 0.1
+     */
+    public boolean isReadOnly()
+    {
+        return readOnly;
+    }
+
+    /**
+     * Returns a read only snapshot of the given map. If the map is a
+     * PersistentMap this needs constant time and if the map is a
+     * {@link FrozenMap} the map itself is returned. A {@link CompactMap} or
+     * {@link OffHeapMap} only copies its table and an {@link OverlayMap} only
+     * its own mappings. Otherwise all mappings will be copied.
+     *
+     * @param <K> the type of the keys
+     * @param <V> the type of the values
+     * @param map the map to take the snapshot from
+     * @return a read only snapshot of the given map
+     * @see #snapshot()
+     * @since 0.1
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> ConcurrentMap<K, V> snapshotOf(Map<K, V> map)
+    {
+        if (map instanceof PersistentMap)
+        {
+            return ((PersistentMap<K, V>) map).snapshot();
+        }
+        if (map instanceof FrozenMap)
+        {
+            return (FrozenMap<K, V>) map;
+        }
+        if (map instanceof CompactMap)
+        {
+            return (ConcurrentMap<K, V>) ((CompactMap) map).snapshot();
+        }
+        if (map instanceof OffHeapMap)
+        {
+            return (ConcurrentMap<K, V>) ((OffHeapMap) map).snapshot();
+        }
+        if (map instanceof OverlayMap)
+        {
+            return ((OverlayMap<K, V>) map).snapshot();
+        }
+        return new PersistentMap<K, V>(Root.EMPTY.with(map), true);
+    }
+
+    /**
+     * Returns a changeable copy of the given map. If the map is a
+     * PersistentMap this needs constant time, otherwise all mappings will be
+     * copied.
+     *
+     * @param <K> the type of the keys
+     * @param <V> the type of the values
+     * @param map the map to copy
+     * @return a new changeable copy of the given map
+     * @see #fork()
+     * @since 0.1
+     */
+    public static <K, V> PersistentMap<K, V> forkOf(Map<K, V> map)
+    {
+        if (map instanceof PersistentMap)
+        {
+            return ((PersistentMap<K, V>) map).fork();
+        }
+        return new PersistentMap<>(map);
+    }
+
+    /**
+     * Returns a changeable copy of the given map which reads as fast as the
+     * map itself. If the map is a PersistentMap this needs constant time,
+     * otherwise all mappings will be copied into a {@link ConcurrentHashMap}.
+     *
+     * @param <K> the type of the keys
+     * @param <V> the type of the values
+     * @param map the map to copy
+     * @return a new changeable copy of the given map
+     * @see #forkOf(java.util.Map)
+     * @since 0.1
+     */
+    public static <K, V> ConcurrentMap<K, V> copyOf(Map<K, V> map)
+    {
+        if (map instanceof PersistentMap)
+        {
+            return ((PersistentMap<K, V>) map).fork();
+        }
+        return new ConcurrentHashMap<>(map);
+    }
+
+    /**
+     * Creates a new, empty PersistentMap which keeps a prefix index of its
+     * keys.
+     *
+     * @param <V> the type of the values
+     * @return a new, empty map with prefix index
+     * @see #keys(java.lang.String)
+     * @see #removePrefix(java.lang.String)
+     * @since 0.1
+     */
+    public static <V> PersistentMap<String, V> indexed()
+    {
+        return new PersistentMap<>(Root.INDEXED, false);
+    }
+
+    /**
+     * Returns all keys of the given map that start with the given prefix. If
+     * the map is a PersistentMap with prefix index, the index will be used.
+     * The same is done for the parent of an {@link OverlayMap}. Otherwise all
+     * keys will be checked.
+     *
+     * @param map the map to get the keys from
+     * @param prefix the prefix of the keys
+     * @return a new list with all the matching keys
+     * @see #keys(java.lang.String)
+     * @since 0.1
+     */
+    public static List<String> keysOf(Map<String, ?> map, String prefix)
+    {
+        if (map instanceof PersistentMap)
+        {
+            return ((PersistentMap<String, ?>) map).keys(prefix);
+        }
+        if (map instanceof OverlayMap)
+        {
+            return ((OverlayMap<String, ?>) map).keys(prefix);
+        }
+        List<String> back = new ArrayList<>();
+        for (String key : map.keySet())
+        {
+            if (key.startsWith(prefix))
+            {
+                back.add(key);
+            }
+        }
+        return back;
+    }
+
+    /**
+     * Returns if this map keeps a prefix index of its keys.
+     *
+     * @return {@code true} if this map was created with {@link #indexed()} or
+     * is a snapshot or fork of such a map, {@code false} otherwise.
+     * @since 0.1
+     */
+    public boolean isIndexed()
+    {
+        return root.get().index != null;
+    }
+
+    /**
+     * Returns all keys that start with the given prefix. All keys are taken
+     * from the same state of this map. If this map has a prefix index the
+     * needed time only depends on the number of matching keys, otherwise all
+     * keys will be checked.
+     *
+     * @param prefix the prefix of the keys
+     * @return a new list with all the matching keys
+     * @see #removePrefix(java.lang.String)
+     * @since 0.1
+     */
+    public List<String> keys(String prefix)
+    {
+        return collect(root.get(), prefix);
+    }
+
+    /**
+     * Removes all keys that start with the given prefix in a single change.
+     * Other threads either see all or none of the keys.
+     *
+     * @param prefix the prefix of the keys to remove
+     * @return the number of removed keys
+     * @see #keys(java.lang.String)
+     * @since 0.1
+     */
+    public int removePrefix(String prefix)
+    {
+        checkWritable();
+        while (true)
+        {
+            Root old = root.get();
+            List<String> keys = collect(old, prefix);
+            if (keys.isEmpty())
+            {
+                return 0;
+            }
+            Node node = old.node;
+            Change change = new Change();
+            for (String key : keys)
+            {
+                node = node == null ? null : node.remove(key, hash(key), 0,
+                        change);
+            }
+            PrefixTrie index = old.index == null ? null : old.index.
+                    withoutPrefix(prefix);
+            if (root.compareAndSet(old, new Root(node, old.size - keys.size(),
+                    index)))
+            {
+                return keys.size();
+            }
+        }
+    }
+
+    @Override
+    public int size()
+    {
+        return root.get().size;
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return size() == 0;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key)
+    {
+        Node node = root.get().node;
+        return node == null ? null : (V) node.find(key, hash(key), 0);
+    }
+
+    @Override
+    public boolean containsKey(Object key)
+    {
+        return get(key) != null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V put(K key, V value)
+    {
+        if (value == null)
+        {
+            throw new NullPointerException();
+        }
+        checkWritable();
+        int hash = hash(key);
+        while (true)
+        {
+            Root old = root.get();
+            Change change = new Change();
+            Node node = old.node == null ? BitmapNode.EMPTY.put(key, hash, 0,
+                    value, change) : old.node.put(key, hash, 0, value, change);
+            if (publish(old, node, change, key))
+            {
+                return (V) change.old;
+            }
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V putIfAbsent(K key, V value)
+    {
+        if (value == null)
+        {
+            throw new NullPointerException();
+        }
+        checkWritable();
+        while (true)
+        {
+            Root old = root.get();
+            Object current = old.node == null ? null : old.node.find(key,
+                    hash(key), 0);
+            if (current != null)
+            {
+                return (V) current;
+            }
+            Change change = new Change();
+            Node node = old.node == null ? BitmapNode.EMPTY.put(key, hash(key),
+                    0, value, change) : old.node.put(key, hash(key), 0, value,
+                            change);
+            if (publish(old, node, change, key))
+            {
+                return null;
+            }
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V remove(Object key)
+    {
+        checkWritable();
+        while (true)
+        {
+            Root old = root.get();
+            if (old.node == null)
+            {
+                return null;
+            }
+            Change change = new Change();
+            Node node = old.node.remove(key, hash(key), 0, change);
+            if (publish(old, node, change, key))
+            {
+                return (V) change.old;
+            }
+        }
+    }
+
+    @Override
+    public boolean remove(Object key, Object value)
+    {
+        checkWritable();
+        while (true)
+        {
+            Root old = root.get();
+            Object current = old.node == null ? null : old.node.find(key,
+                    hash(key), 0);
+            if (current == null || !current.equals(value))
+            {
+                return false;
+            }
+            Change change = new Change();
+            Node node = old.node.remove(key, hash(key), 0, change);
+            if (publish(old, node, change, key))
+            {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue)
+    {
+        if (oldValue == null || newValue == null)
+        {
+            throw new NullPointerException();
+        }
+        checkWritable();
+        while (true)
+        {
+            Root old = root.get();
+            Object current = old.node == null ? null : old.node.find(key,
+                    hash(key), 0);
+            if (current == null || !current.equals(oldValue))
+            {
+                return false;
+            }
+            Change change = new Change();
+            Node node = old.node.put(key, hash(key), 0, newValue, change);
+            if (publish(old, node, change, key))
+            {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V replace(K key, V value)
+    {
+        if (value == null)
+        {
+            throw new NullPointerException();
+        }
+        checkWritable();
+        while (true)
+        {
+            Root old = root.get();
+            Object current = old.node == null ? null : old.node.find(key,
+                    hash(key), 0);
+            if (current == null)
+            {
+                return null;
+            }
+            Change change = new Change();
+            Node node = old.node.put(key, hash(key), 0, value, change);
+            if (publish(old, node, change, key))
+            {
+                return (V) current;
+            }
+        }
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> map)
+    {
+        checkWritable();
+        while (true)
+        {
+            Root old = root.get();
+            if (root.compareAndSet(old, old.with(map)))
+            {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void clear()
+    {
+        checkWritable();
+        while (true)
+        {
+            Root old = root.get();
+            if (root.compareAndSet(old, old.empty()))
+            {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet()
+    {
+        if (entrySet == null)
+        {
+            entrySet = new AbstractSet<Map.Entry<K, V>>()
+            {
+                @Override
+                public Iterator<Map.Entry<K, V>> iterator()
+                {
+                    return new EntryIterator(root.get().node);
+                }
+
+                @Override
+                public int size()
+                {
+                    return PersistentMap.this.size();
+                }
+            };
+        }
+        return entrySet;
+    }
+    //</editor-fold>
+}
@@ -0,0 +1,355 @@
+package net.bplaced.clayn.c4j.util;
+
+import java.util.Collection;
+
+/**
+ * Immutable radix trie of Strings which is used by {@link PersistentMap} to
+ * find all keys with a given prefix. Every change returns a new trie which
+ * shares all unchanged nodes with the old one. The trie is only used with the
+ * root node, which has an empty edge and is never merged with its children.
+ *
+ * @author Clayn
+ * @since 0.1
+ * @version 0.1
+ */
+final class PrefixTrie
+{
+
+    //<editor-fold desc="Attribute">
+    private static final PrefixTrie[] NONE = new PrefixTrie[0];
+    /**
+     * The empty trie.
+     */
+    static final PrefixTrie EMPTY = new PrefixTrie("", null, NONE);
+    /**
+     * The part of the key between the parent node and this node.
+     */
+    private final String edge;
+    /**
+     * The complete key if a key ends at this node, {@code null} otherwise.
+     */
+    private final String key;
+    /**
+     * The child nodes, sorted by the first char of their edge.
+     */
+    private final PrefixTrie[] children;
+
+    //</editor-fold>
+    //<editor-fold desc="Konstruktoren">
+    private PrefixTrie(String edge, String key, PrefixTrie[] children)
+    {
+        this.edge = edge;
+        this.key = key;
+        this.children = children;
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Private">
+    private int find(char c)
+    {
+        int low = 0;
+        int high = children.length - 1;
+        while (low <= high)
+        {
+            int mid = (low + high) >>> 1;
+            char m = children[mid].edge.charAt(0);
+            if (m < c)
+            {
+                low = mid + 1;
+            }
+            else if (m > c)
+            {
+                high = mid - 1;
+            }
+            else
+            {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private PrefixTrie withChild(int i, PrefixTrie child)
+    {
+        PrefixTrie[] arr = children.clone();
+        arr[i] = child;
+        return new PrefixTrie(edge, key, arr);
+    }
+
+    private PrefixTrie insertChild(int i, PrefixTrie child)
+    {
+        PrefixTrie[] arr = new PrefixTrie[children.length + 1];
+        System.arraycopy(children, 0, arr, 0, i);
+        arr[i] = child;
+        System.arraycopy(children, i, arr, i + 1, children.length - i);
+        return new PrefixTrie(edge, key, arr);
+    }
+
+    private PrefixTrie[] withoutChild(int i)
+    {
+        PrefixTrie[] arr = new PrefixTrie[children.length - 1];
+        System.arraycopy(children, 0, arr, 0, i);
+        System.arraycopy(children, i + 1, arr, i, children.length - i - 1);
+        return arr;
+    }
+
+    /**
+     * Creates a node, merges it with its only child if no key ends at it or
+     * returns {@code null} if the node would be empty.
+     */
+    private static PrefixTrie node(String edge, String key,
+            PrefixTrie[] children, boolean root)
+    {
+        if (root)
+        {
+            return key == null && children.length == 0 ? EMPTY
+                    : new PrefixTrie(edge, key, children);
+        }
+        if (key == null && children.length == 0)
+        {
+            return null;
+        }
+        if (key == null && children.length == 1)
+        {
+            PrefixTrie child = children[0];
+            return new PrefixTrie(edge + child.edge, child.key, child.children);
+        }
+        return new PrefixTrie(edge, key, children);
+    }
+
+    private static int common(String edge, String key, int pos)
+    {
+        int max = Math.min(edge.length(), key.length() - pos);
+        int i = 0;
+        while (i < max && edge.charAt(i) == key.charAt(pos + i))
+        {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Adds the key to the trie. {@code pos} is the index in the key right
+     * after the edge of this node.
+     */
+    private PrefixTrie with(String k, int pos)
+    {
+        if (pos == k.length())
+        {
+            return key != null ? this : new PrefixTrie(edge, k, children);
+        }
+        int i = find(k.charAt(pos));
+        if (i < 0)
+        {
+            return insertChild(-i - 1, new PrefixTrie(k.substring(pos), k,
+                    NONE));
+        }
+        PrefixTrie child = children[i];
+        int l = common(child.edge, k, pos);
+        if (l == child.edge.length())
+        {
+            PrefixTrie nc = child.with(k, pos + l);
+            return nc == child ? this : withChild(i, nc);
+        }
+        PrefixTrie tail = new PrefixTrie(child.edge.substring(l), child.key,
+                child.children);
+        String head = child.edge.substring(0, l);
+        PrefixTrie mid;
+        if (pos + l == k.length())
+        {
+            mid = new PrefixTrie(head, k, new PrefixTrie[]
+            {
+                tail
+            });
+        }
+        else
+        {
+            PrefixTrie leaf = new PrefixTrie(k.substring(pos + l), k, NONE);
+            PrefixTrie[] arr = tail.edge.charAt(0) < leaf.edge.charAt(0)
+                    ? new PrefixTrie[]
+                    {
+                        tail, leaf
+                    } : new PrefixTrie[]
+                    {
+                        leaf, tail
+                    };
+            mid = new PrefixTrie(head, null, arr);
+        }
+        return withChild(i, mid);
+    }
+
+    /**
+     * Removes the key from the trie. {@code pos} is the index in the key right
+     * after the edge of this node.
+     */
+    private PrefixTrie without(String k, int pos, boolean root)
+    {
+        if (pos == k.length())
+        {
+            return key == null ? this : node(edge, null, children, root);
+        }
+        int i = find(k.charAt(pos));
+        if (i < 0)
+        {
+            return this;
+        }
+        PrefixTrie child = children[i];
+        if (!k.startsWith(child.edge, pos))
+        {
+            return this;
+        }
+        PrefixTrie nc = child.without(k, pos + child.edge.length(), false);
+        if (nc == child)
+        {
+            return this;
+        }
+        if (nc == null)
+        {
+            return node(edge, key, withoutChild(i), root);
+        }
+        return withChild(i, nc);
+    }
+
+    /**
+     * Removes all keys with the given prefix. {@code pos} is the index in the
+     * prefix right after the edge of this node.
+     */
+    private PrefixTrie withoutPrefix(String prefix, int pos, boolean root)
+    {
+        if (pos >= prefix.length())
+        {
+            return root ? EMPTY : null;
+        }
+        int i = find(prefix.charAt(pos));
+        if (i < 0)
+        {
+            return this;
+        }
+        PrefixTrie child = children[i];
+        int rest = prefix.length() - pos;
+        PrefixTrie nc;
+        if (rest <= child.edge.length())
+        {
+            if (!child.edge.startsWith(prefix.substring(pos)))
+            {
+                return this;
+            }
+            nc = null;
+        }
+        else
+        {
+            if (!prefix.startsWith(child.edge, pos))
+            {
+                return this;
+            }
+            nc = child.withoutPrefix(prefix, pos + child.edge.length(), false);
+            if (nc == child)
+            {
+                return this;
+            }
+        }
+        PrefixTrie[] arr = nc == null ? withoutChild(i) : withChild(i, nc).
+                children;
+        return node(edge, key, arr, root);
+    }
+
+    /**
+     * Returns the node below which all keys start with the given prefix or
+     * {@code null} if no key starts with the prefix.
+     */
+    private PrefixTrie subtree(String prefix)
+    {
+        PrefixTrie node = this;
+        int pos = 0;
+        while (pos < prefix.length())
+        {
+            int i = node.find(prefix.charAt(pos));
+            if (i < 0)
+            {
+                return null;
+            }
+            PrefixTrie child = node.children[i];
+            int rest = prefix.length() - pos;
+            if (rest <= child.edge.length())
+            {
+                return child.edge.startsWith(prefix.substring(pos)) ? child
+                        : null;
+            }
+            if (!prefix.startsWith(child.edge, pos))
+            {
+                return null;
+            }
+            pos += child.edge.length();
+            node = child;
+        }
+        return node;
+    }
+
+    private void collect(Collection<String> out)
+    {
+        if (key != null)
+        {
+            out.add(key);
+        }
+        for (PrefixTrie child : children)
+        {
+            child.collect(out);
+        }
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Public">
+    /**
+     * Returns a trie which contains all keys of this trie and the given key.
+     *
+     * @param k the key to add
+     * @return the new trie or {@code this} if the key was already contained
+     */
+    PrefixTrie with(String k)
+    {
+        return with(k, 0);
+    }
+
+    /**
+     * Returns a trie which contains all keys of this trie except the given
+     * key.
+     *
+     * @param k the key to remove
+     * @return the new trie or {@code this} if the key was not contained
+     */
+    PrefixTrie without(String k)
+    {
+        return without(k, 0, true);
+    }
+
+    /**
+     * Returns a trie which contains all keys of this trie that do not start
+     * with the given prefix.
+     *
+     * @param prefix the prefix of the keys to remove
+     * @return the new trie or {@code this} if no key starts with the prefix
+     */
+    PrefixTrie withoutPrefix(String prefix)
+    {
+        return withoutPrefix(prefix, 0, true);
+    }
+
+    /**
+     * Adds all keys that start with the given prefix into the given
+     * collection. The keys are added in the order of their chars. The needed
+     * time only depends on the length of the prefix and the number of
+     * matching keys.
+     *
+     * @param prefix the prefix of the keys
+     * @param out the collection to add the keys to
+     */
+    void collect(String prefix, Collection<String> out)
+    {
+        PrefixTrie node = subtree(prefix);
+        if (node != null)
+        {
+            node.collect(out);
+        }
+    }
+    //</editor-fold>
+}
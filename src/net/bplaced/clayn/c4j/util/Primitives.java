@@ -0,0 +1,215 @@
+package net.bplaced.clayn.c4j.util;
+
+/**
+ * Unboxes values for primitive fields the same way
+ * {@link java.lang.reflect.Field#set(java.lang.Object, java.lang.Object)}
+ * does. A wrapper is unboxed and then converted with a widening primitive
+ * conversion, so an {@link Integer} can be assigned to a {@code long} field
+ * but a {@link Long} can´t be assigned to an {@code int} field. Used by the
+ * binders generated by
+ * {@link net.bplaced.clayn.c4j.processor.BinderProcessor}, so they assign the
+ * same values as the reflective way.
+ *
+ * @author Clayn
+ * @since 0.1
+ * @version 0.1
+ */
+public final class Primitives
+{
+
+    //<editor-fold desc="Konstruktoren">
+    private Primitives()
+    {
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Private">
+    private static ClassCastException fail(Object value, String type)
+    {
+        return new ClassCastException("Can´t assign " + value.getClass().
+                getName() + " to " + type);
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Public">
+    /**
+     * Returns the given value as {@code boolean}.
+     *
+     * @param value a {@link Boolean}
+     * @return the unboxed value
+     * @throws ClassCastException if the value can´t be assigned
+     * @since 0.1
+     */
+    public static boolean toBoolean(Object value)
+    {
+        if (value instanceof Boolean)
+        {
+            return (Boolean) value;
+        }
+        throw fail(value, "boolean");
+    }
+
+    /**
+     * Returns the given value as {@code char}.
+     *
+     * @param value a {@link Character}
+     * @return the unboxed value
+     * @throws ClassCastException if the value can´t be assigned
+     * @since 0.1
+     */
+    public static char toChar(Object value)
+    {
+        if (value instanceof Character)
+        {
+            return (Character) value;
+        }
+        throw fail(value, "char");
+    }
+
+    /**
+     * Returns the given value as {@code byte}.
+     *
+     * @param value a {@link Byte}
+     * @return the unboxed value
+     * @throws ClassCastException if the value can´t be assigned
+     * @since 0.1
+     */
+    public static byte toByte(Object value)
+    {
+        if (value instanceof Byte)
+        {
+            return (Byte) value;
+        }
+        throw fail(value, "byte");
+    }
+
+    /**
+     * Returns the given value as {@code short}.
+     *
+     * @param value a {@link Short} or {@link Byte}
+     * @return the widened value
+     * @throws ClassCastException if the value can´t be assigned
+     * @since 0.1
+     */
+    public static short toShort(Object value)
+    {
+        if (value instanceof Short)
+        {
+            return (Short) value;
+        }
+        if (value instanceof Byte)
+        {
+            return (Byte) value;
+        }
+        throw fail(value, "short");
+    }
+
+    /**
+     * Returns the given value as {@code int}.
+     *
+     * @param value an {@link Integer}, {@link Short}, {@link Byte} or
+     * {@link Character}
+     * @return the widened value
+     * @throws ClassCastException if the value can´t be assigned
+     * @since 0.1
+     */
+    public static int toInt(Object value)
+    {
+        if (value instanceof Integer)
+        {
+            return (Integer) value;
+        }
+        if (value instanceof Short || value instanceof Byte)
+        {
+            return ((Number) value).intValue();
+        }
+        if (value instanceof Character)
+        {
+            return (Character) value;
+        }
+        throw fail(value, "int");
+    }
+
+    /**
+     * Returns the given value as {@code long}.
+     *
+     * @param value a {@link Long} or any value {@link #toInt(java.lang.Object)}
+     * accepts
+     * @return the widened value
+     * @throws ClassCastException if the value can´t be assigned
+     * @since 0.1
+     */
+    public static long toLong(Object value)
+    {
+        if (value instanceof Long)
+        {
+            return (Long) value;
+        }
+        if (value instanceof Integer || value instanceof Short
+                || value instanceof Byte)
+        {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof Character)
+        {
+            return (Character) value;
+        }
+        throw fail(value, "long");
+    }
+
+    /**
+     * Returns the given value as {@code float}.
+     *
+     * @param value a {@link Float} or any value
+     * {@link #toLong(java.lang.Object)} accepts
+     * @return the widened value
+     * @throws ClassCastException if the value can´t be assigned
+     * @since 0.1
+     */
+    public static float toFloat(Object value)
+    {
+        if (value instanceof Float)
+        {
+            return (Float) value;
+        }
+        if (value instanceof Long || value instanceof Integer
+                || value instanceof Short || value instanceof Byte)
+        {
+            return ((Number) value).floatValue();
+        }
+        if (value instanceof Character)
+        {
+            return (Character) value;
+        }
+        throw fail(value, "float");
+    }
+
+    /**
+     * Returns the given value as {@code double}.
+     *
+     * @param value a {@link Double} or any value
+     * {@link #toFloat(java.lang.Object)} accepts
+     * @return the widened value
+     * @throws ClassCastException if the value can´t be assigned
+     * @since 0.1
+     */
+    public static double toDouble(Object value)
+    {
+        if (value instanceof Double)
+        {
+            return (Double) value;
+        }
+        if (value instanceof Float || value instanceof Long
+                || value instanceof Integer || value instanceof Short
+                || value instanceof Byte)
+        {
+            return ((Number) value).doubleValue();
+        }
+        if (value instanceof Character)
+        {
+            return (Character) value;
+        }
+        throw fail(value, "double");
+    }
+    //</editor-fold>
+}
@@ -0,0 +1,359 @@
+package net.bplaced.clayn.c4j.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A hierarchical timer wheel which keeps track of the time when the value of
+ * a key expires. Each level of the wheel is an array of buckets which span a
+ * fixed time, the lowest level about one second, the next ones about a
+ * minute, an hour, a day and a week. Scheduling and cancelling a timer only
+ * needs constant time because the timer is simply linked into or out of its
+ * bucket. While the time advances the buckets that were passed are emptied:
+ * expired timers are returned and the others move down into a finer level.
+ * <br><br>
+ * A timer does not hold the expiring value. It is a stamp for the entry of
+ * its key: as long as the owner cancels or replaces the timer of a key with
+ * every change of the key, a timer which is still scheduled belongs to the
+ * stored entry, even if the store only returns copies of its values.
+ * <br><br>
+ * All times are values of {@link System#nanoTime()}. The expiry time of a key
+ * can be read without a lock, all other methods are synchronized.
+ *
+ * @author Clayn
+ * @since 0.1
+ * @version 0.1
+ */
+public final class TimerWheel
+{
+
+    //<editor-fold desc="Attribute">
+    private static final int[] BUCKETS =
+    {
+        64, 64, 32, 4, 1
+    };
+    private static final int[] SHIFT =
+    {
+        30, 36, 42, 47, 49
+    };
+    private final Timer[][] wheel;
+    private final ConcurrentHashMap<String, Timer> timers = new ConcurrentHashMap<>();
+    private long nanos;
+
+    //</editor-fold>
+    //<editor-fold desc="Konstruktoren">
+    /**
+     * Creates a new, empty timer wheel which starts at the current time.
+     *
+     * @since 0.1
+     */
+    public TimerWheel()
+    {
+        nanos = System.nanoTime();
+        wheel = new Timer[BUCKETS.length][];
+        for (int i = 0; i < BUCKETS.length; i++)
+        {
+            wheel[i] = new Timer[BUCKETS[i]];
+            for (int j = 0; j < BUCKETS[i]; j++)
+            {
+                wheel[i][j] = new Timer(null, 0);
+            }
+        }
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Private">
+    /**
+     * A scheduled expiry of the entry of a key. The buckets are circular lists
+     * with a sentinel timer, so linking and unlinking never needs a check.
+     */
+    public static final class Timer
+    {
+
+        private final String key;
+        private final long deadline;
+        private Timer prev = this;
+        private Timer next = this;
+
+        private Timer(String key, long deadline)
+        {
+            this.key = key;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Returns the key of the expiring value.
+         *
+         * @return the key
+         * @since 0.1
+         */
+        public String getKey()
+        {
+            return key;
+        }
+
+        /**
+         * Returns the time when the value expires.
+         *
+         * @return the expiry time in {@link System#nanoTime()}
+         * @since 0.1
+         */
+        public long getDeadline()
+        {
+            return deadline;
+        }
+
+        /**
+         * Returns whether the value is expired at the given time.
+         *
+         * @param now the current time in {@link System#nanoTime()}
+         * @return {@code true} if the value is expired
+         * @since 0.1
+         */
+        public boolean isExpired(long now)
+        {
+            return deadline - now <= 0;
+        }
+    }
+
+    private Timer bucket(long deadline)
+    {
+        long duration = deadline - nanos;
+        for (int i = 0; i < BUCKETS.length - 1; i++)
+        {
+            if (duration < 1L << SHIFT[i + 1])
+            {
+                int index = (int) ((deadline >>> SHIFT[i]) & (BUCKETS[i] - 1));
+                return wheel[i][index];
+            }
+        }
+        return wheel[BUCKETS.length - 1][0];
+    }
+
+    private void link(Timer timer)
+    {
+        Timer sentinel = bucket(timer.deadline);
+        timer.prev = sentinel.prev;
+        timer.next = sentinel;
+        sentinel.prev.next = timer;
+        sentinel.prev = timer;
+    }
+
+    private static void unlink(Timer timer)
+    {
+        timer.prev.next = timer.next;
+        timer.next.prev = timer.prev;
+        timer.prev = timer;
+        timer.next = timer;
+    }
+
+    /**
+     * Empties the buckets of the given level that were passed and moves the
+     * timers down or collects them if they are expired.
+     */
+    private void expire(int level, long previousTicks, long delta,
+            List<Timer> out)
+    {
+        Timer[] buckets = wheel[level];
+        int mask = buckets.length - 1;
+        int start;
+        int end;
+        if (delta >= buckets.length)
+        {
+            start = 0;
+            end = buckets.length;
+        }
+        else
+        {
+            start = (int) (previousTicks & mask);
+            end = start + (int) delta + 1;
+        }
+        for (int i = start; i < end; i++)
+        {
+            Timer sentinel = buckets[i & mask];
+            Timer timer = sentinel.next;
+            sentinel.prev = sentinel;
+            sentinel.next = sentinel;
+            while (timer != sentinel)
+            {
+                Timer next = timer.next;
+                timer.prev = timer;
+                timer.next = timer;
+                if (timer.isExpired(nanos))
+                {
+                    out.add(timer);
+                }
+                else
+                {
+                    link(timer);
+                }
+                timer = next;
+            }
+        }
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Public">
+    /**
+     * Schedules the expiry of the current entry of the given key. An existing
+     * timer for the key is replaced.
+     *
+     * @param key the key of the entry
+     * @param deadline the expiry time in {@link System#nanoTime()}
+     * @return the new timer
+     * @since 0.1
+     */
+    public synchronized Timer schedule(String key, long deadline)
+    {
+        Timer timer = new Timer(key, deadline);
+        Timer old = timers.put(key, timer);
+        if (old != null)
+        {
+            unlink(old);
+        }
+        link(timer);
+        return timer;
+    }
+
+    /**
+     * Cancels the timer for the given key.
+     *
+     * @param key the key of the value
+     * @return {@code true} if a timer was cancelled
+     * @since 0.1
+     */
+    public synchronized boolean cancel(String key)
+    {
+        Timer old = timers.remove(key);
+        if (old == null)
+        {
+            return false;
+        }
+        unlink(old);
+        return true;
+    }
+
+    /**
+     * Cancels the given timer if it is still scheduled or was returned by
+     * {@link #advance(long)} and not cancelled since. The owner of the entry
+     * may only remove the entry if this returns {@code true}.
+     *
+     * @param timer the timer to cancel
+     * @return {@code true} if the timer was cancelled
+     * @since 0.1
+     */
+    public synchronized boolean cancel(Timer timer)
+    {
+        if (!timers.remove(timer.key, timer))
+        {
+            return false;
+        }
+        unlink(timer);
+        return true;
+    }
+
+    /**
+     * Returns the timer for the given key without locking.
+     *
+     * @param key the key of the value
+     * @return the timer or {@code null} if no timer is scheduled
+     * @since 0.1
+     */
+    public Timer get(String key)
+    {
+        return timers.get(key);
+    }
+
+    /**
+     * Returns whether no timer is scheduled.
+     *
+     * @return {@code true} if no timer is scheduled
+     * @since 0.1
+     */
+    public boolean isEmpty()
+    {
+        return timers.isEmpty();
+    }
+
+    /**
+     * Returns the number of scheduled timers.
+     *
+     * @return the number of timers
+     * @since 0.1
+     */
+    public int size()
+    {
+        return timers.size();
+    }
+
+    /**
+     * Advances the wheel to the given time and returns all timers that
+     * expired until then. The needed time depends on the number of passed
+     * buckets and the number of timers in them, but not on the number of all
+     * scheduled timers. A timer whose deadline lies in the current bucket of
+     * the finest level, which spans about a second, is only returned once the
+     * time leaves that bucket, so a timer may be returned up to about a second
+     * late. The returned timers stay registered for their keys until they are
+     * cancelled or replaced, so the caller can check with
+     * {@link #cancel(net.bplaced.clayn.c4j.util.TimerWheel.Timer)} whether
+     * their entries are still the same.
+     *
+     * @param now the current time in {@link System#nanoTime()}
+     * @return the expired timers
+     * @see #expired(long)
+     * @since 0.1
+     */
+    public synchronized List<Timer> advance(long now)
+    {
+        List<Timer> out = new ArrayList<>();
+        long previous = nanos;
+        if (now - previous <= 0)
+        {
+            return out;
+        }
+        nanos = now;
+        for (int i = 0; i < SHIFT.length; i++)
+        {
+            long previousTicks = previous >>> SHIFT[i];
+            long delta = (now >>> SHIFT[i]) - previousTicks;
+            if (delta <= 0)
+            {
+                break;
+            }
+            expire(i, previousTicks, delta, out);
+        }
+        return out;
+    }
+
+    /**
+     * Advances the wheel such as {@link #advance(long)} and also returns the
+     * expired timers of the current bucket of the finest level, so every
+     * timer whose deadline is not after the given time is returned. Other
+     * than {@link #advance(long)} this also needs time for the timers which
+     * expire within the current second.
+     *
+     * @param now the current time in {@link System#nanoTime()}
+     * @return the expired timers
+     * @since 0.1
+     */
+    public synchronized List<Timer> expired(long now)
+    {
+        List<Timer> out = advance(now);
+        Timer sentinel = wheel[0][(int) ((nanos >>> SHIFT[0])
+                & (BUCKETS[0] - 1))];
+        Timer timer = sentinel.next;
+        while (timer != sentinel)
+        {
+            Timer next = timer.next;
+            if (timer.isExpired(now))
+            {
+                unlink(timer);
+                out.add(timer);
+            }
+            timer = next;
+        }
+        return out;
+    }
+    //</editor-fold>
+}
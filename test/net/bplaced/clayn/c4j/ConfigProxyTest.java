@@ -0,0 +1,156 @@
+package net.bplaced.clayn.c4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import net.bplaced.clayn.c4j.anno.Configure;
+import net.bplaced.clayn.c4j.set.IntSetting;
+import net.bplaced.clayn.c4j.set.StringSetting;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Tests that the values cached by {@link Configuration#proxy(java.lang.Class)}
+ * are dropped by every way the stored Strings can be changed.
+ *
+ * @author Clayn
+ * @since 0.1
+ * @version 0.1
+ */
+public class ConfigProxyTest
+{
+
+    //<editor-fold desc="Attribute">
+    private static final IntSetting PORT = new IntSetting("server.port");
+    private final Configuration conf = new Configuration();
+
+    //</editor-fold>
+    //<editor-fold desc="Private">
+    public interface Server
+    {
+
+        @Configure(key = "server.port", setting = IntSetting.class)
+        Integer port();
+
+        @Configure(key = "server.host", setting = StringSetting.class)
+        String host();
+    }
+
+    public interface Port
+    {
+
+        @Configure(key = "server.port", setting = IntSetting.class)
+        int port();
+    }
+
+    public interface Ports
+    {
+
+        @Configure(key = "server.port", setting = IntSetting.class)
+        int port();
+
+        default int next()
+        {
+            return port() + 1;
+        }
+    }
+
+    public interface Unannotated
+    {
+
+        String name();
+    }
+
+    private Server server()
+    {
+        conf.put(PORT, 1);
+        Server server = conf.proxy(Server.class);
+        assertEquals((Integer) 1, server.port());
+        return server;
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Public">
+    @Test
+    public void testPut()
+    {
+        Server server = server();
+        conf.put(PORT, 2);
+        assertEquals((Integer) 2, server.port());
+    }
+
+    @Test
+    public void testLoad() throws IOException
+    {
+        Server server = server();
+        conf.load(new ByteArrayInputStream("server.port=2".getBytes(
+                StandardCharsets.ISO_8859_1)));
+        assertEquals((Integer) 2, server.port());
+    }
+
+    @Test
+    public void testNamespace()
+    {
+        Server server = server();
+        conf.namespace("").put("server.port", "3");
+        assertEquals((Integer) 3, server.port());
+        conf.namespace("server.").put("host", "localhost");
+        assertEquals("localhost", server.host());
+    }
+
+    @Test
+    public void testRemovePrefix()
+    {
+        Server server = server();
+        assertEquals(1, conf.removePrefix("server."));
+        assertNull(server.port());
+    }
+
+    @Test
+    public void testOverlay()
+    {
+        Server server = server();
+        Configuration overlay = conf.overlay();
+        Server inherited = overlay.proxy(Server.class);
+        assertEquals((Integer) 1, inherited.port());
+        conf.put(PORT, 4);
+        assertEquals((Integer) 4, server.port());
+        assertEquals((Integer) 4, inherited.port());
+    }
+
+    @Test
+    public void testSameProxyAndObjectMethods()
+    {
+        Server server = server();
+        assertTrue(server == conf.proxy(Server.class));
+        assertTrue(server.equals(server));
+        assertEquals(System.identityHashCode(server), server.hashCode());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testPrimitiveWithoutValue()
+    {
+        new Configuration().proxy(Port.class).port();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDefaultMethodIsRejected()
+    {
+        conf.proxy(Ports.class);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnannotatedMethodIsRejected()
+    {
+        conf.proxy(Unannotated.class);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoInterfaceIsRejected()
+    {
+        conf.proxy(String.class);
+    }
+    //</editor-fold>
+}
@@ -0,0 +1,113 @@
+package net.bplaced.clayn.c4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Observable;
+import java.util.Observer;
+import java.util.concurrent.atomic.AtomicBoolean;
+import net.bplaced.clayn.c4j.anno.Configure;
+import net.bplaced.clayn.c4j.set.IntSetting;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+/**
+ * Tests how changes of overlays are published.
+ *
+ * @author Clayn
+ * @since 0.1
+ * @version 0.1
+ */
+public class ConfigurationTest
+{
+
+    //<editor-fold desc="Attribute">
+    private static final IntSetting PORT = new IntSetting("port");
+
+    //</editor-fold>
+    //<editor-fold desc="Private">
+    public static class Holder
+    {
+
+        @Configure(key = "port", setting = IntSetting.class, refresh = true)
+        public int port;
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Public">
+    @Test
+    public void testResetInformsOverlays()
+    {
+        Configuration root = new Configuration();
+        root.put(PORT, 80);
+        Configuration overlay = root.overlay();
+        Configuration nested = overlay.overlay();
+        Holder own = overlay.configure(new Holder());
+        Holder inherited = nested.configure(new Holder());
+        final List<Object> changes = new ArrayList<>();
+        nested.addObserver(new Observer()
+        {
+            @Override
+            public void update(Observable o, Object arg)
+            {
+                changes.add(arg);
+            }
+        });
+        overlay.put(PORT, 8080);
+        assertEquals(8080, own.port);
+        assertEquals(8080, inherited.port);
+        assertEquals("8080", overlay.reset("port"));
+        assertEquals(80, own.port);
+        assertEquals(80, inherited.port);
+        assertEquals(Arrays.<Object>asList("port", "port"), changes);
+    }
+
+    @Test
+    public void testResetDoesNotInformOverridingOverlays()
+    {
+        Configuration root = new Configuration();
+        root.put(PORT, 80);
+        Configuration overlay = root.overlay();
+        Configuration nested = overlay.overlay();
+        nested.put(PORT, 9000);
+        Holder holder = nested.configure(new Holder());
+        overlay.put(PORT, 8080);
+        overlay.reset("port");
+        assertEquals(9000, holder.port);
+    }
+
+    @Test
+    public void testConfigureAllSeesConcurrentChanges() throws Exception
+    {
+        final Configuration conf = new Configuration();
+        conf.put(PORT, 0);
+        List<Holder> holders = new ArrayList<>();
+        for (int i = 0; i < 100000; i++)
+        {
+            holders.add(new Holder());
+        }
+        final AtomicBoolean done = new AtomicBoolean();
+        Thread writer = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                for (int i = 1; !done.get(); i++)
+                {
+                    conf.put(PORT, i);
+                    Thread.yield();
+                }
+            }
+        };
+        writer.start();
+        conf.configureAll(holders);
+        done.set(true);
+        writer.join();
+        int last = conf.get(PORT);
+        for (Holder holder : holders)
+        {
+            assertEquals(last, holder.port);
+        }
+    }
+    //</editor-fold>
+}
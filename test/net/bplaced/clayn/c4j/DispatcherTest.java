@@ -0,0 +1,150 @@
+package net.bplaced.clayn.c4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Dispatches changes of many keys from several threads and checks that each
+ * key gets its changes in order, one at a time, ends with its last value and
+ * that no mailbox is left afterwards.
+ *
+ * @author Clayn
+ * @since 0.1
+ * @version 0.1
+ */
+public class DispatcherTest
+{
+
+    //<editor-fold desc="Attribute">
+    private static final int PRODUCERS = 4;
+    private static final int KEYS = 50;
+    private static final int CHANGES = 20000;
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private final Environment env = new Environment();
+    private final Dispatcher dispatcher = new Dispatcher(executor, env);
+    private final ConcurrentMap<String, Integer> delivered = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Integer> dispatched = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AtomicBoolean> running = new ConcurrentHashMap<>();
+    private final AtomicInteger errors = new AtomicInteger();
+
+    //</editor-fold>
+    //<editor-fold desc="Private">
+    private void watch(final String key)
+    {
+        running.put(key, new AtomicBoolean());
+        env.bind(this, "delivered", key, true, true, new Binder.Hook()
+        {
+            @Override
+            public void set(Object target, Object value)
+            {
+                if (value == null)
+                {
+                    return;
+                }
+                if (!running.get(key).compareAndSet(false, true))
+                {
+                    errors.incrementAndGet();
+                }
+                Integer last = delivered.put(key, (Integer) value);
+                if (last != null && last >= (Integer) value)
+                {
+                    errors.incrementAndGet();
+                }
+                running.get(key).set(false);
+            }
+        });
+    }
+
+    private Thread producer(final int index)
+    {
+        return new Thread()
+        {
+            @Override
+            public void run()
+            {
+                Random random = new Random(index);
+                for (int i = 1; i <= CHANGES; i++)
+                {
+                    String key = index + "." + random.nextInt(KEYS);
+                    dispatched.put(key, i);
+                    dispatcher.dispatch(key, i);
+                    if (random.nextInt(100) == 0)
+                    {
+                        Thread.yield();
+                    }
+                }
+            }
+        };
+    }
+
+    private void awaitIdle() throws InterruptedException
+    {
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (dispatcher.size() > 0 && System.nanoTime() < end)
+        {
+            Thread.sleep(10);
+        }
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Public">
+    @After
+    public void tearDown()
+    {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testChangesOfAKeyAreDeliveredInOrder() throws Exception
+    {
+        for (int p = 0; p < PRODUCERS; p++)
+        {
+            for (int k = 0; k < KEYS; k++)
+            {
+                watch(p + "." + k);
+            }
+        }
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < PRODUCERS; p++)
+        {
+            Thread t = producer(p);
+            threads.add(t);
+            t.start();
+        }
+        for (Thread t : threads)
+        {
+            t.join();
+        }
+        awaitIdle();
+        assertEquals(0, dispatcher.size());
+        assertEquals(0, errors.get());
+        assertEquals(dispatched, delivered);
+    }
+
+    @Test
+    public void testIdleMailboxIsRemoved() throws Exception
+    {
+        watch("once");
+        dispatcher.dispatch("once", 1);
+        awaitIdle();
+        assertEquals(0, dispatcher.size());
+        assertEquals((Integer) 1, delivered.get("once"));
+        dispatcher.dispatch("once", 2);
+        awaitIdle();
+        assertTrue(dispatcher.size() == 0);
+        assertEquals((Integer) 2, delivered.get("once"));
+    }
+    //</editor-fold>
+}
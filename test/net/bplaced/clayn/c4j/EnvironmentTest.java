@@ -0,0 +1,249 @@
+package net.bplaced.clayn.c4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Observable;
+import java.util.Observer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import net.bplaced.clayn.c4j.anno.Env;
+import net.bplaced.clayn.c4j.set.StringSetting;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ * Tests the time to live of values in Environments whose store returns
+ * copies of the values and the values which are computed lazily.
+ *
+ * @author Clayn
+ * @since 0.1
+ * @version 0.1
+ */
+public class EnvironmentTest
+{
+
+    //<editor-fold desc="Private">
+    public static class Holder
+    {
+
+        @Env(value = "n", refresh = true)
+        public int n;
+    }
+
+    public static class Waiter
+    {
+
+        @Env("w")
+        public int w;
+    }
+
+    private static void sleep(long millis)
+    {
+        try
+        {
+            Thread.sleep(millis);
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static File spillDirectory() throws IOException
+    {
+        File dir = Files.createTempDirectory("c4j-test").toFile();
+        dir.deleteOnExit();
+        return dir;
+    }
+
+    /**
+     * Checks that an expired value is removed by {@link Environment#expire()}
+     * and that a value which was put again afterwards does not expire with
+     * the timer of the old value.
+     */
+    private static void checkExpire(Environment env)
+    {
+        env.put("a", "first", 100, TimeUnit.MILLISECONDS);
+        env.put("b", "second", 100, TimeUnit.MILLISECONDS);
+        env.put("c", "kept");
+        env.put("d", "replaced", 100, TimeUnit.MILLISECONDS);
+        env.put("d", "forever");
+        assertEquals("first", env.get("a"));
+        sleep(300);
+        assertEquals(2, env.expire());
+        assertNull(env.get("a"));
+        assertNull(env.get("b"));
+        assertEquals("kept", env.get("c"));
+        assertEquals("forever", env.get("d"));
+        assertEquals(0, env.expire());
+    }
+
+    /**
+     * Checks that an expired value is removed when it is read.
+     */
+    private static void checkRead(Environment env)
+    {
+        env.put("a", "first", 100, TimeUnit.MILLISECONDS);
+        env.put("b", "second");
+        sleep(300);
+        assertNull(env.get("a"));
+        assertEquals("second", env.get("b"));
+        assertEquals(0, env.expire());
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Public">
+    @Test
+    public void testExpire()
+    {
+        checkExpire(new Environment());
+    }
+
+    @Test
+    public void testExpireOffHeap()
+    {
+        checkExpire(new Environment().offHeap(1));
+    }
+
+    @Test
+    public void testExpireBounded() throws IOException
+    {
+        checkExpire(new Environment().bounded(1, spillDirectory()));
+    }
+
+    @Test
+    public void testExpiredOnReadOffHeap()
+    {
+        checkRead(new Environment().offHeap(1));
+    }
+
+    @Test
+    public void testExpiredOnReadBounded() throws IOException
+    {
+        checkRead(new Environment().bounded(1, spillDirectory()));
+    }
+
+    @Test
+    public void testExpiredOnHandleRead()
+    {
+        Environment env = new Environment();
+        SettingHandle<String> timed = SettingRegistry.register(
+                new StringSetting("timed"));
+        SettingHandle<String> kept = SettingRegistry.register(
+                new StringSetting("kept"));
+        env.put("timed", "first", 100, TimeUnit.MILLISECONDS);
+        env.put("kept", "second");
+        assertEquals("first", env.get(timed, null));
+        assertEquals("second", env.get(kept, null));
+        sleep(300);
+        assertEquals("second", env.get(kept, null));
+        assertNull(env.get(timed, null));
+        assertNull(env.get("timed"));
+        env.put("timed", "again");
+        assertEquals("again", env.get(timed, null));
+    }
+
+    @Test
+    public void testPutLazyOnlyInformsAboutTheComputedValue()
+    {
+        Environment env = new Environment();
+        final AtomicInteger changes = new AtomicInteger();
+        env.addObserver(new Observer()
+        {
+            @Override
+            public void update(Observable o, Object arg)
+            {
+                changes.incrementAndGet();
+            }
+        });
+        env.put("n", 1);
+        Holder holder = env.configure(new Holder());
+        env.putLazy("n", new Supplier<Object>()
+        {
+            @Override
+            public Object get()
+            {
+                return 2;
+            }
+        });
+        assertEquals(1, changes.get());
+        assertEquals(1, holder.n);
+        assertEquals(2, (int) env.<Integer>get("n"));
+        assertEquals(2, changes.get());
+        assertEquals(2, holder.n);
+    }
+
+    @Test
+    public void testFailedLazyKeepsWaitingFields()
+    {
+        Environment env = new Environment();
+        final AtomicInteger calls = new AtomicInteger();
+        env.putLazy("w", new Supplier<Object>()
+        {
+            @Override
+            public Object get()
+            {
+                if (calls.incrementAndGet() == 1)
+                {
+                    throw new IllegalStateException("first call fails");
+                }
+                return 7;
+            }
+        });
+        Waiter waiter = env.configure(new Waiter());
+        try
+        {
+            env.get("w");
+            fail("The first computation should fail");
+        }
+        catch (IllegalStateException ex)
+        {
+            assertEquals(0, waiter.w);
+        }
+        assertEquals(7, (int) env.<Integer>get("w"));
+        assertEquals(7, waiter.w);
+    }
+
+    @Test
+    public void testConfigureAllSeesConcurrentChanges() throws Exception
+    {
+        final Environment env = new Environment();
+        env.put("n", 0);
+        List<Holder> holders = new ArrayList<>();
+        for (int i = 0; i < 100000; i++)
+        {
+            holders.add(new Holder());
+        }
+        final AtomicBoolean done = new AtomicBoolean();
+        Thread writer = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                for (int i = 1; !done.get(); i++)
+                {
+                    env.put("n", i);
+                    Thread.yield();
+                }
+            }
+        };
+        writer.start();
+        env.configureAll(holders);
+        done.set(true);
+        writer.join();
+        int last = env.<Integer>get("n");
+        for (Holder holder : holders)
+        {
+            assertEquals(last, holder.n);
+        }
+    }
+    //</editor-fold>
+}
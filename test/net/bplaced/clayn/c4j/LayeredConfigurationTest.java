@@ -0,0 +1,98 @@
+package net.bplaced.clayn.c4j;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Observable;
+import java.util.Observer;
+import net.bplaced.clayn.c4j.anno.Configure;
+import net.bplaced.clayn.c4j.set.IntSetting;
+import static org.junit.Assert.assertEquals;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that changes of the layers are published to bound fields and
+ * observers.
+ *
+ * @author Clayn
+ * @since 0.1
+ * @version 0.1
+ */
+public class LayeredConfigurationTest
+{
+
+    //<editor-fold desc="Attribute">
+    private final LayeredConfiguration conf = new LayeredConfiguration();
+    private final Map<String, String> file = new HashMap<>();
+    private final List<Object> changes = new ArrayList<>();
+
+    //</editor-fold>
+    //<editor-fold desc="Private">
+    public static class Holder
+    {
+
+        @Configure(key = "port", setting = IntSetting.class, refresh = true)
+        public int port;
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Public">
+    @Before
+    public void setUp()
+    {
+        Map<String, String> defaults = new HashMap<>();
+        defaults.put("port", "80");
+        defaults.put("host", "localhost");
+        conf.addDefaults("defaults", defaults);
+        file.put("port", "8080");
+        conf.addDefaults("file", file);
+        conf.addObserver(new Observer()
+        {
+            @Override
+            public void update(Observable o, Object arg)
+            {
+                changes.add(arg);
+            }
+        });
+    }
+
+    @Test
+    public void testReloadPublishesChangedKeys() throws IOException
+    {
+        Holder holder = conf.configure(new Holder());
+        assertEquals(8080, holder.port);
+        file.put("port", "9090");
+        file.put("host", "example.org");
+        conf.reload("file");
+        assertEquals(9090, holder.port);
+        assertEquals(2, changes.size());
+        assertEquals("example.org", conf.properties.get("host"));
+        changes.clear();
+        conf.reload();
+        assertEquals(0, changes.size());
+    }
+
+    @Test
+    public void testRemoveLayerPublishesLowerValues()
+    {
+        Holder holder = conf.configure(new Holder());
+        assertEquals(true, conf.removeLayer("file"));
+        assertEquals(80, holder.port);
+        assertEquals(Arrays.<Object>asList("port"), changes);
+    }
+
+    @Test
+    public void testUnchangedValuesAreNotPublished()
+    {
+        Map<String, String> top = new HashMap<>();
+        top.put("port", "8080");
+        top.put("user", "admin");
+        conf.addDefaults("top", top);
+        assertEquals(Arrays.<Object>asList("user"), changes);
+    }
+    //</editor-fold>
+}
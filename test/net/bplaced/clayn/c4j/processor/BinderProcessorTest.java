@@ -0,0 +1,146 @@
+package net.bplaced.clayn.c4j.processor;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import net.bplaced.clayn.c4j.Environment;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Compiles a sample class once with and once without the
+ * {@link BinderProcessor} and checks that the generated binder assigns the
+ * same values to its fields as the reflective way does.
+ *
+ * @author Clayn
+ * @since 0.1
+ * @version 0.1
+ */
+public class BinderProcessorTest
+{
+
+    //<editor-fold desc="Attribute">
+    private static final String SAMPLE = "package sample;\n"
+            + "import net.bplaced.clayn.c4j.anno.Env;\n"
+            + "public class Sample {\n"
+            + "    @Env(\"v\") public boolean z;\n"
+            + "    @Env(\"v\") public byte b;\n"
+            + "    @Env(\"v\") public short s;\n"
+            + "    @Env(\"v\") public char c;\n"
+            + "    @Env(\"v\") public int i;\n"
+            + "    @Env(\"v\") public long j;\n"
+            + "    @Env(\"v\") public float f;\n"
+            + "    @Env(\"v\") public double d;\n"
+            + "    @Env(\"v\") public Long boxed;\n"
+            + "    @Env(\"v\") public Object any;\n"
+            + "}\n";
+    private static final List<Object> VALUES = Arrays.<Object>asList(true,
+            (byte) 1, (short) 2, 'c', 3, 4L, 5.5f, 6.5d, "text");
+    private final List<File> dirs = new ArrayList<>();
+    private Class<?> generated;
+    private Class<?> reflective;
+
+    //</editor-fold>
+    //<editor-fold desc="Private">
+    private static void delete(File file)
+    {
+        File[] children = file.listFiles();
+        if (children != null)
+        {
+            for (File child : children)
+            {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private Class<?> compile(boolean processor) throws IOException,
+            ClassNotFoundException
+    {
+        File dir = Files.createTempDirectory("c4j-processor").toFile();
+        dirs.add(dir);
+        File src = new File(dir, "sample/Sample.java");
+        src.getParentFile().mkdirs();
+        Files.write(src.toPath(), SAMPLE.getBytes(StandardCharsets.UTF_8));
+        JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+        assertNotNull("No compiler available", javac);
+        String proc = processor ? "-processor" : "-proc:none";
+        String arg = processor ? BinderProcessor.class.getName() : "-nowarn";
+        int result = javac.run(null, null, null, "-classpath", System.
+                getProperty("java.class.path"), proc, arg, "-d", dir.getPath(),
+                src.getPath());
+        assertEquals(0, result);
+        ClassLoader loader = new URLClassLoader(new URL[]
+        {
+            dir.toURI().toURL()
+        }, BinderProcessorTest.class.getClassLoader());
+        return Class.forName("sample.Sample", true, loader);
+    }
+
+    private static Object configure(Class<?> type, Object value) throws
+            ReflectiveOperationException
+    {
+        Environment env = new Environment();
+        env.put("v", value);
+        return env.configure(type.getDeclaredConstructor().newInstance());
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Public">
+    @Before
+    public void setUp() throws Exception
+    {
+        generated = compile(true);
+        reflective = compile(false);
+        Class.forName("sample.Sample$$Binder", false, generated.
+                getClassLoader());
+    }
+
+    @After
+    public void tearDown()
+    {
+        for (File dir : dirs)
+        {
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void testGeneratedBinderMatchesReflection() throws Exception
+    {
+        for (Object value : VALUES)
+        {
+            Object gen = configure(generated, value);
+            Object ref = configure(reflective, value);
+            for (Field field : reflective.getFields())
+            {
+                assertEquals(field.getName() + " = " + value + " ("
+                        + value.getClass().getSimpleName() + ")", field.get(ref),
+                        generated.getField(field.getName()).get(gen));
+            }
+        }
+    }
+
+    @Test
+    public void testWidening() throws Exception
+    {
+        Object gen = configure(generated, 5);
+        assertEquals(5L, generated.getField("j").get(gen));
+        assertEquals(5.0, generated.getField("d").get(gen));
+        assertEquals((short) 0, generated.getField("s").get(gen));
+    }
+    //</editor-fold>
+}
@@ -0,0 +1,238 @@
+package net.bplaced.clayn.c4j.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Compares a {@link PersistentMap} with a {@link HashMap} for random
+ * operations. The keys are built from {@code "Aa"} and {@code "BB"} which
+ * have the same hash code, so many keys collide and end in the same leaf.
+ *
+ * @author Clayn
+ * @since 0.1
+ * @version 0.1
+ */
+public class PersistentMapTest
+{
+
+    //<editor-fold desc="Attribute">
+    private static final int OPERATIONS = 200000;
+    private final Random random = new Random(42);
+
+    //</editor-fold>
+    //<editor-fold desc="Private">
+    /**
+     * Returns a random key. Half of the keys are made of colliding parts,
+     * the other half are short numbered keys under a few prefixes.
+     */
+    private String key()
+    {
+        if (random.nextBoolean())
+        {
+            StringBuilder sb = new StringBuilder("c.");
+            for (int i = 0; i < 4; i++)
+            {
+                sb.append(random.nextBoolean() ? "Aa" : "BB");
+            }
+            return sb.toString();
+        }
+        return "p" + random.nextInt(4) + "." + random.nextInt(500);
+    }
+
+    private static List<String> keysOf(Map<String, Integer> map,
+            String prefix)
+    {
+        List<String> keys = new ArrayList<>();
+        for (String key : map.keySet())
+        {
+            if (key.startsWith(prefix))
+            {
+                keys.add(key);
+            }
+        }
+        Collections.sort(keys);
+        return keys;
+    }
+
+    private static List<String> sorted(List<String> keys)
+    {
+        List<String> copy = new ArrayList<>(keys);
+        Collections.sort(copy);
+        return copy;
+    }
+
+    /**
+     * Applies a random operation to both maps and checks that they return the
+     * same.
+     */
+    private void step(PersistentMap<String, Integer> map,
+            Map<String, Integer> expected)
+    {
+        String key = key();
+        Integer value = random.nextInt(10);
+        switch (random.nextInt(9))
+        {
+            case 0:
+            case 1:
+                assertEquals(key, expected.put(key, value), map.put(key,
+                        value));
+                break;
+            case 2:
+                assertEquals(key, expected.remove(key), map.remove(key));
+                break;
+            case 3:
+                assertEquals(key, expected.putIfAbsent(key, value), map.
+                        putIfAbsent(key, value));
+                break;
+            case 4:
+                assertEquals(key, expected.remove(key, value), map.remove(key,
+                        value));
+                break;
+            case 5:
+                Integer old = random.nextInt(10);
+                assertEquals(key, expected.replace(key, old, value), map.
+                        replace(key, old, value));
+                break;
+            case 6:
+                assertEquals(key, expected.replace(key, value), map.replace(
+                        key, value));
+                break;
+            case 7:
+                if (map.isIndexed())
+                {
+                    String prefix = "p" + random.nextInt(4) + "." + random.
+                            nextInt(5);
+                    List<String> keys = keysOf(expected, prefix);
+                    assertEquals(prefix, keys, sorted(map.keys(prefix)));
+                    if (random.nextInt(20) == 0)
+                    {
+                        assertEquals(prefix, keys.size(), map.removePrefix(
+                                prefix));
+                        expected.keySet().removeAll(keys);
+                    }
+                }
+                break;
+            default:
+                assertEquals(key, expected.get(key), map.get(key));
+                assertEquals(key, expected.containsKey(key), map.containsKey(
+                        key));
+                break;
+        }
+        assertEquals(expected.size(), map.size());
+    }
+
+    private void compare(PersistentMap<String, Integer> map)
+    {
+        Map<String, Integer> expected = new HashMap<>();
+        PersistentMap<String, Integer> snapshot = map.snapshot();
+        Map<String, Integer> atSnapshot = new HashMap<>();
+        for (int i = 0; i < OPERATIONS; i++)
+        {
+            step(map, expected);
+            if (i % 10000 == 0)
+            {
+                assertEquals(atSnapshot, snapshot);
+                snapshot = map.snapshot();
+                atSnapshot = new HashMap<>(expected);
+            }
+        }
+        assertEquals(expected, map);
+        assertEquals(expected, new HashMap<>(map));
+        assertEquals(atSnapshot, snapshot);
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Public">
+    @Test
+    public void testRandomOperations()
+    {
+        compare(new PersistentMap<String, Integer>());
+    }
+
+    @Test
+    public void testRandomOperationsIndexed()
+    {
+        compare(PersistentMap.<Integer>indexed());
+    }
+
+    @Test
+    public void testForkIsIndependent()
+    {
+        PersistentMap<String, Integer> map = PersistentMap.indexed();
+        Map<String, Integer> expected = new HashMap<>();
+        for (int i = 0; i < OPERATIONS / 4; i++)
+        {
+            step(map, expected);
+        }
+        PersistentMap<String, Integer> fork = map.fork();
+        Map<String, Integer> forkExpected = new HashMap<>(expected);
+        for (int i = 0; i < OPERATIONS / 4; i++)
+        {
+            step(map, expected);
+            step(fork, forkExpected);
+        }
+        assertEquals(expected, map);
+        assertEquals(forkExpected, fork);
+    }
+
+    @Test
+    public void testIteratorRemove()
+    {
+        PersistentMap<String, Integer> map = PersistentMap.indexed();
+        Map<String, Integer> expected = new HashMap<>();
+        for (int i = 0; i < OPERATIONS / 4; i++)
+        {
+            step(map, expected);
+        }
+        Iterator<Map.Entry<String, Integer>> it = map.entrySet().iterator();
+        while (it.hasNext())
+        {
+            Map.Entry<String, Integer> e = it.next();
+            if (e.getValue() % 2 == 0)
+            {
+                it.remove();
+                expected.remove(e.getKey());
+            }
+        }
+        assertEquals(expected, map);
+        assertEquals(keysOf(expected, "p1."), sorted(map.keys("p1.")));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testSnapshotIsReadOnly()
+    {
+        PersistentMap<String, Integer> map = new PersistentMap<>();
+        map.put("a", 1);
+        PersistentMap<String, Integer> snapshot = map.snapshot();
+        assertTrue(snapshot.isReadOnly());
+        snapshot.put("b", 2);
+    }
+
+    @Test
+    public void testCopyOf()
+    {
+        PersistentMap<String, Integer> map = PersistentMap.indexed();
+        map.put("a", 1);
+        Map<String, Integer> copy = PersistentMap.copyOf(map);
+        assertTrue(copy instanceof PersistentMap);
+        copy.put("a", 2);
+        assertEquals((Integer) 1, map.get("a"));
+        Map<String, Integer> plain = PersistentMap.copyOf(
+                new HashMap<>(map));
+        assertFalse(plain instanceof PersistentMap);
+        plain.remove("a");
+        assertNull(plain.get("a"));
+        assertEquals((Integer) 1, map.get("a"));
+    }
+    //</editor-fold>
+}
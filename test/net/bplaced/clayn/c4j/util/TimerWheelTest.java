@@ -0,0 +1,177 @@
+package net.bplaced.clayn.c4j.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ * Compares a {@link TimerWheel} with a map of the deadlines for random
+ * schedules, cancels and advances over all levels of the wheel.
+ *
+ * @author Clayn
+ * @since 0.1
+ * @version 0.1
+ */
+public class TimerWheelTest
+{
+
+    //<editor-fold desc="Attribute">
+    private static final int OPERATIONS = 200000;
+    /**
+     * The span of a bucket of the finest level, a timer which is returned by
+     * {@link TimerWheel#advance(long)} may be late by that.
+     */
+    private static final long LATENESS = 1L << 30;
+    private static final long[] DURATIONS =
+    {
+        TimeUnit.MILLISECONDS.toNanos(200), TimeUnit.SECONDS.toNanos(5),
+        TimeUnit.MINUTES.toNanos(2), TimeUnit.HOURS.toNanos(3),
+        TimeUnit.DAYS.toNanos(2), TimeUnit.DAYS.toNanos(20)
+    };
+    private final Random random = new Random(42);
+    private final TimerWheel wheel = new TimerWheel();
+    /**
+     * The expected timer of each key.
+     */
+    private final Map<String, TimerWheel.Timer> expected = new HashMap<>();
+    private long now = System.nanoTime();
+
+    //</editor-fold>
+    //<editor-fold desc="Private">
+    private long duration()
+    {
+        long max = DURATIONS[random.nextInt(DURATIONS.length)];
+        return 1 + (long) (random.nextDouble() * max);
+    }
+
+    private void schedule()
+    {
+        String key = "k" + random.nextInt(2000);
+        long deadline = now + duration();
+        TimerWheel.Timer old = expected.get(key);
+        TimerWheel.Timer timer = wheel.schedule(key, deadline);
+        assertEquals(key, timer.getKey());
+        assertEquals(deadline, timer.getDeadline());
+        expected.put(key, timer);
+        if (old != null)
+        {
+            assertFalse(wheel.cancel(old));
+        }
+    }
+
+    private void cancel()
+    {
+        String key = "k" + random.nextInt(2000);
+        assertEquals(expected.remove(key) != null, wheel.cancel(key));
+    }
+
+    /**
+     * Checks the returned timers and cancels them the same way as their
+     * owner would do.
+     */
+    private void check(List<TimerWheel.Timer> timers)
+    {
+        Set<TimerWheel.Timer> seen = new HashSet<>();
+        for (TimerWheel.Timer timer : timers)
+        {
+            assertTrue("returned twice", seen.add(timer));
+            assertTrue("returned before its deadline", timer.isExpired(now));
+            assertTrue("not the current timer", expected.get(timer.getKey())
+                    == timer);
+            assertTrue(wheel.cancel(timer));
+            expected.remove(timer.getKey());
+        }
+    }
+
+    /**
+     * Checks that no timer is left which expired before the given time.
+     */
+    private void checkLeft(long before)
+    {
+        for (TimerWheel.Timer timer : expected.values())
+        {
+            if (timer.isExpired(before))
+            {
+                fail("The timer of " + timer.getKey() + " expired "
+                        + (now - timer.getDeadline()) + " ns ago");
+            }
+        }
+    }
+
+    private void step(boolean exact)
+    {
+        int op = random.nextInt(10);
+        if (op < 5)
+        {
+            schedule();
+        }
+        else if (op < 7)
+        {
+            cancel();
+        }
+        else
+        {
+            now += duration() / (1 + random.nextInt(1000));
+            if (exact)
+            {
+                check(wheel.expired(now));
+                checkLeft(now);
+            }
+            else
+            {
+                check(wheel.advance(now));
+                checkLeft(now - LATENESS);
+            }
+        }
+        assertEquals(expected.size(), wheel.size());
+    }
+
+    private void run(boolean exact)
+    {
+        for (int i = 0; i < OPERATIONS; i++)
+        {
+            step(exact);
+        }
+        now += DURATIONS[DURATIONS.length - 1] * 2;
+        check(wheel.expired(now));
+        assertTrue(expected.isEmpty());
+        assertTrue(wheel.isEmpty());
+    }
+
+    //</editor-fold>
+    //<editor-fold desc="Public">
+    @Test
+    public void testAdvance()
+    {
+        run(false);
+    }
+
+    @Test
+    public void testExpired()
+    {
+        run(true);
+    }
+
+    @Test
+    public void testTimeGoesBack()
+    {
+        TimerWheel.Timer timer = wheel.schedule("a", now + 10);
+        assertTrue(wheel.advance(now - 100).isEmpty());
+        List<TimerWheel.Timer> out = new ArrayList<>(wheel.expired(now + 10));
+        assertEquals(1, out.size());
+        assertTrue(out.get(0) == timer);
+        assertTrue(wheel.cancel(timer));
+        assertFalse(wheel.cancel(timer));
+    }
+    //</editor-fold>
+}